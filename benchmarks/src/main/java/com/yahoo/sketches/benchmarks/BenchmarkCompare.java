@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files in CSV format, a baseline and a current run, benchmark by
+ * benchmark and parameter set by parameter set. The result files are written by running the
+ * benchmarks with <code>-rf csv -rff &lt;file&gt;</code>.
+ *
+ * <p>A change is reported as a regression or an improvement only if it is larger than the
+ * threshold, and if the 99.9% confidence intervals of the two scores do not overlap.
+ * Throughput scores are better when higher, all other modes are better when lower.
+ * The exit status is 1 if there is at least one regression, so that the comparison can gate a
+ * release.</p>
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.yahoo.sketches.benchmarks.BenchmarkCompare \
+ *     baseline.csv current.csv [thresholdPercent]
+ * </pre>
+ */
+public final class BenchmarkCompare {
+  private static final double DEFAULT_THRESHOLD_PERCENT = 5.0;
+
+  private BenchmarkCompare() {}
+
+  /**
+   * Compares the given baseline and current result files.
+   * @param args the baseline file, the current file and optionally the threshold in percent
+   * @throws IOException if a file cannot be read
+   */
+  public static void main(final String[] args) throws IOException {
+    if ((args.length < 2) || (args.length > 3)) {
+      System.err.println("Usage: BenchmarkCompare baseline.csv current.csv [thresholdPercent]");
+      System.exit(2);
+    }
+    final double threshold = (args.length == 3)
+        ? Double.parseDouble(args[2]) / 100.0
+        : DEFAULT_THRESHOLD_PERCENT / 100.0;
+    final Map<String, Result> baseline = read(args[0]);
+    final Map<String, Result> current = read(args[1]);
+
+    final String fmt = "%-12s %9s %14s %14s  %s%n";
+    System.out.printf(fmt, "Verdict", "Change", "Baseline", "Current", "Benchmark");
+    int regressions = 0;
+    for (Map.Entry<String, Result> e : baseline.entrySet()) {
+      final Result base = e.getValue();
+      final Result cur = current.get(e.getKey());
+      if (cur == null) {
+        System.out.printf(fmt, "MISSING", "", format(base), "", e.getKey());
+        continue;
+      }
+      final double change = (cur.score - base.score) / base.score;
+      final double worse = base.higherIsBetter() ? -change : change;
+      final boolean overlap = (Math.abs(cur.score - base.score) <= (cur.error + base.error));
+      String verdict = "";
+      if ((Math.abs(change) > threshold) && !overlap) {
+        if (worse > 0) {
+          verdict = "REGRESSION";
+          regressions++;
+        } else {
+          verdict = "improvement";
+        }
+      }
+      System.out.printf(fmt, verdict, String.format("%+.1f%%", change * 100.0), format(base),
+          format(cur), e.getKey());
+    }
+    for (Map.Entry<String, Result> e : current.entrySet()) {
+      if (!baseline.containsKey(e.getKey())) {
+        System.out.printf(fmt, "NEW", "", "", format(e.getValue()), e.getKey());
+      }
+    }
+    System.out.printf("%d regression(s) beyond %.1f%%%n", regressions, threshold * 100.0);
+    System.exit((regressions > 0) ? 1 : 0);
+  }
+
+  /**
+   * Reads a JMH result file in CSV format.
+   * @param path the path of the file
+   * @return the results by benchmark and parameters, in the order of the file
+   * @throws IOException if the file cannot be read
+   */
+  static Map<String, Result> read(final String path) throws IOException {
+    final List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+    final Map<String, Result> results = new LinkedHashMap<>();
+    if (lines.isEmpty()) { return results; }
+    final List<String> header = split(lines.get(0));
+    final int benchmarkCol = header.indexOf("Benchmark");
+    final int modeCol = header.indexOf("Mode");
+    final int scoreCol = header.indexOf("Score");
+    final int unitCol = header.indexOf("Unit");
+    final int errorCol = scoreCol + 1; //the header of this column names the confidence level
+    if ((benchmarkCol < 0) || (modeCol < 0) || (scoreCol < 0) || (unitCol < 0)) {
+      throw new IllegalArgumentException("Not a JMH result file in CSV format: " + path);
+    }
+    for (int i = 1; i < lines.size(); i++) {
+      if (lines.get(i).isEmpty()) { continue; }
+      final List<String> cols = split(lines.get(i));
+      final StringBuilder key = new StringBuilder(cols.get(benchmarkCol));
+      for (int c = 0; c < header.size(); c++) {
+        if (header.get(c).startsWith("Param: ") && (c < cols.size())) {
+          key.append(' ').append(header.get(c).substring(7)).append('=').append(cols.get(c));
+        }
+      }
+      final double error = parse(cols.get(errorCol));
+      results.put(key.toString(), new Result(cols.get(modeCol), parse(cols.get(scoreCol)),
+          Double.isNaN(error) ? 0 : error, cols.get(unitCol)));
+    }
+    return results;
+  }
+
+  //splits a CSV line with optionally quoted fields
+  static List<String> split(final String line) {
+    final List<String> cols = new ArrayList<>();
+    final StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+      if (c == '"') {
+        if (quoted && ((i + 1) < line.length()) && (line.charAt(i + 1) == '"')) {
+          sb.append('"');
+          i++;
+        } else {
+          quoted = !quoted;
+        }
+      } else if ((c == ',') && !quoted) {
+        cols.add(sb.toString());
+        sb.setLength(0);
+      } else {
+        sb.append(c);
+      }
+    }
+    cols.add(sb.toString());
+    return cols;
+  }
+
+  private static double parse(final String s) {
+    return s.isEmpty() ? Double.NaN : Double.parseDouble(s);
+  }
+
+  private static String format(final Result r) {
+    return String.format("%.3f %s", r.score, r.unit);
+  }
+
+  static final class Result {
+    final String mode;
+    final double score;
+    final double error;
+    final String unit;
+
+    Result(final String mode, final double score, final double error, final String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    boolean higherIsBetter() {
+      return "thrpt".equals(mode);
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks. All inputs are generated from a fixed seed, so that runs on
+ * different commits see the same data.
+ */
+final class BenchmarkUtil {
+  static final long SEED = 0x5EEDCAFEL;
+
+  private BenchmarkUtil() {}
+
+  /**
+   * Returns n distinct longs, either in ascending order or in random order.
+   * @param n the number of items
+   * @param ordered true for ascending order
+   * @return n distinct longs
+   */
+  static long[] distinctLongs(final int n, final boolean ordered) {
+    final long[] items = new long[n];
+    for (int i = 0; i < n; i++) {
+      items[i] = i;
+    }
+    if (!ordered) {
+      shuffle(items, new Random(SEED));
+    }
+    return items;
+  }
+
+  /**
+   * Returns n distinct doubles, either in ascending order or in random order.
+   * @param n the number of items
+   * @param ordered true for ascending order
+   * @return n distinct doubles
+   */
+  static double[] distinctDoubles(final int n, final boolean ordered) {
+    final long[] longs = distinctLongs(n, ordered);
+    final double[] items = new double[n];
+    for (int i = 0; i < n; i++) {
+      items[i] = longs[i];
+    }
+    return items;
+  }
+
+  /**
+   * Returns n longs from a geometric distribution, so that a few items are very frequent.
+   * @param n the number of items
+   * @param p the parameter of the distribution
+   * @return n longs from a geometric distribution
+   */
+  static long[] geometricLongs(final int n, final double p) {
+    final Random rand = new Random(SEED);
+    final long[] items = new long[n];
+    final double logQ = Math.log(1.0 - p);
+    for (int i = 0; i < n; i++) {
+      items[i] = (long) Math.floor(Math.log(1.0 - rand.nextDouble()) / logQ);
+    }
+    return items;
+  }
+
+  /**
+   * Returns n positive weights.
+   * @param n the number of items
+   * @return n positive weights
+   */
+  static double[] weights(final int n) {
+    final Random rand = new Random(SEED + 1);
+    final double[] weights = new double[n];
+    for (int i = 0; i < n; i++) {
+      weights[i] = 1.0 + (rand.nextDouble() * 100.0);
+    }
+    return weights;
+  }
+
+  private static void shuffle(final long[] items, final Random rand) {
+    for (int i = items.length; i-- > 1; ) {
+      final int j = rand.nextInt(i + 1);
+      final long tmp = items[i];
+      items[i] = items[j];
+      items[j] = tmp;
+    }
+  }
+
+}
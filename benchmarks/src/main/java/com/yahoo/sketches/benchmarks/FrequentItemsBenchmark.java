@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.frequencies.DirectLongsSketch;
+import com.yahoo.sketches.frequencies.ErrorType;
+import com.yahoo.sketches.frequencies.LongsSketch;
+
+/**
+ * Benchmarks of the frequent items LongsSketch, and of DirectLongsSketch if direct is true.
+ * The update benchmark builds a sketch and updates it with all n items, so its score is the
+ * time of n updates. The items follow a geometric distribution, so a few are very frequent.
+ * The other benchmarks use a sketch that has seen the n items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrequentItemsBenchmark {
+
+  @Param({"256", "4096"})
+  int maxMapSize;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  private long[] items;
+  private WritableDirectHandle sketchHandle; //of the sketch that the queries use
+  private WritableDirectHandle updateHandle; //reused by every invocation of update()
+  private WritableDirectHandle mergeHandle;
+  private LongsSketch sketch;
+  private DirectLongsSketch directSketch;
+  private Memory compactMem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    items = BenchmarkUtil.geometricLongs(n, 0.01);
+    if (direct) {
+      final long bytes = DirectLongsSketch.getUpdatableStorageBytes(maxMapSize);
+      sketchHandle = WritableMemory.allocateDirect(bytes);
+      updateHandle = WritableMemory.allocateDirect(bytes);
+      mergeHandle = WritableMemory.allocateDirect(bytes);
+      directSketch = fillDirect(sketchHandle.get());
+      compactMem = Memory.wrap(directSketch.toByteArray());
+    } else {
+      sketch = fillHeap();
+      compactMem = Memory.wrap(sketch.toByteArray());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (direct) {
+      sketchHandle.close();
+      updateHandle.close();
+      mergeHandle.close();
+    }
+  }
+
+  @Benchmark
+  public Object update() {
+    return direct ? fillDirect(updateHandle.get()) : fillHeap();
+  }
+
+  @Benchmark
+  public Object merge() {
+    return direct
+        ? DirectLongsSketch.initialize(maxMapSize, mergeHandle.get()).merge(directSketch)
+        : new LongsSketch(maxMapSize).merge(sketch);
+  }
+
+  @Benchmark
+  public byte[] toByteArray() {
+    return direct ? directSketch.toByteArray() : sketch.toByteArray();
+  }
+
+  @Benchmark
+  public LongsSketch getInstance() {
+    return LongsSketch.getInstance(compactMem);
+  }
+
+  @Benchmark
+  public Object getFrequentItems() {
+    return direct
+        ? directSketch.getFrequentItems(ErrorType.NO_FALSE_POSITIVES)
+        : sketch.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+  }
+
+  private LongsSketch fillHeap() {
+    final LongsSketch sk = new LongsSketch(maxMapSize);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+  private DirectLongsSketch fillDirect(final WritableMemory dstMem) {
+    final DirectLongsSketch sk = DirectLongsSketch.initialize(maxMapSize, dstMem);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+}
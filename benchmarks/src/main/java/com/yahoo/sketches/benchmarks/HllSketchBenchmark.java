@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.hll.TgtHllType;
+import com.yahoo.sketches.hll.Union;
+
+/**
+ * Benchmarks of HllSketch and hll.Union. The update benchmark builds a sketch and updates it
+ * with all n items, so its score is the time of n updates. The other benchmarks use a sketch
+ * that has seen the n items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HllSketchBenchmark {
+
+  @Param({"10", "12", "14"})
+  int lgK;
+
+  @Param({"HLL_4", "HLL_8"})
+  TgtHllType tgtHllType;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  private long[] items;
+  private WritableDirectHandle sketchHandle; //of the sketch that the queries use
+  private WritableDirectHandle updateHandle; //reused by every invocation of update()
+  private WritableDirectHandle unionHandle;
+  private HllSketch sketch;
+  private byte[] compactBytes;
+  private Memory updatableMem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    items = BenchmarkUtil.distinctLongs(n, false);
+    if (direct) {
+      final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, tgtHllType);
+      sketchHandle = WritableMemory.allocateDirect(bytes);
+      updateHandle = WritableMemory.allocateDirect(bytes);
+      unionHandle = WritableMemory.allocateDirect(
+          HllSketch.getMaxUpdatableSerializationBytes(lgK, TgtHllType.HLL_8));
+    }
+    sketch = fill(direct ? sketchHandle.get() : null);
+    compactBytes = sketch.toCompactByteArray();
+    updatableMem = Memory.wrap(sketch.toUpdatableByteArray());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (direct) {
+      sketchHandle.close();
+      updateHandle.close();
+      unionHandle.close();
+    }
+  }
+
+  @Benchmark
+  public HllSketch update() {
+    return fill(direct ? updateHandle.get() : null);
+  }
+
+  @Benchmark
+  public Union unionUpdate() {
+    final Union union = direct ? new Union(lgK, unionHandle.get()) : new Union(lgK);
+    union.update(sketch);
+    return union;
+  }
+
+  @Benchmark
+  public byte[] toCompactByteArray() {
+    return sketch.toCompactByteArray();
+  }
+
+  @Benchmark
+  public byte[] toUpdatableByteArray() {
+    return sketch.toUpdatableByteArray();
+  }
+
+  @Benchmark
+  public HllSketch heapify() {
+    return HllSketch.heapify(compactBytes);
+  }
+
+  @Benchmark
+  public HllSketch wrap() {
+    return HllSketch.wrap(updatableMem);
+  }
+
+  @Benchmark
+  public double getEstimate() {
+    return sketch.getEstimate();
+  }
+
+  private HllSketch fill(final WritableMemory dstMem) {
+    final HllSketch sk = (dstMem == null)
+        ? new HllSketch(lgK, tgtHllType)
+        : new HllSketch(lgK, tgtHllType, dstMem);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+}
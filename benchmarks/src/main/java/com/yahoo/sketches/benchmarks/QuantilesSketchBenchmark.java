@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.quantiles.DoublesSketch;
+import com.yahoo.sketches.quantiles.DoublesUnion;
+import com.yahoo.sketches.quantiles.UpdateDoublesSketch;
+
+/**
+ * Benchmarks of the quantiles DoublesSketch and DoublesUnion. The update benchmark builds a
+ * sketch and updates it with all n items, so its score is the time of n updates. The items are
+ * in ascending or in random order, as given by the ordered parameter. The other benchmarks use
+ * a sketch that has seen the n items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantilesSketchBenchmark {
+
+  @Param({"128", "256"})
+  int k;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  @Param({"false", "true"})
+  boolean ordered;
+
+  private double[] items;
+  private WritableDirectHandle sketchHandle; //of the sketch that the queries use
+  private WritableDirectHandle updateHandle; //reused by every invocation of update()
+  private WritableDirectHandle unionHandle;
+  private UpdateDoublesSketch sketch;
+  private Memory updatableMem;
+  private Memory compactMem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    items = BenchmarkUtil.distinctDoubles(n, ordered);
+    if (direct) {
+      final int bytes = DoublesSketch.getUpdatableStorageBytes(k, n);
+      sketchHandle = WritableMemory.allocateDirect(bytes);
+      updateHandle = WritableMemory.allocateDirect(bytes);
+      unionHandle = WritableMemory.allocateDirect(bytes);
+    }
+    sketch = fill(direct ? sketchHandle.get() : null);
+    updatableMem = Memory.wrap(sketch.toByteArray(false));
+    compactMem = Memory.wrap(sketch.toByteArray(true));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (direct) {
+      sketchHandle.close();
+      updateHandle.close();
+      unionHandle.close();
+    }
+  }
+
+  @Benchmark
+  public UpdateDoublesSketch update() {
+    return fill(direct ? updateHandle.get() : null);
+  }
+
+  @Benchmark
+  public UpdateDoublesSketch unionUpdate() {
+    final DoublesUnion union = direct
+        ? DoublesUnion.builder().setMaxK(k).build(unionHandle.get())
+        : DoublesUnion.builder().setMaxK(k).build();
+    union.update(sketch);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] toByteArray() {
+    return sketch.toByteArray(true);
+  }
+
+  @Benchmark
+  public DoublesSketch heapify() {
+    return DoublesSketch.heapify(compactMem);
+  }
+
+  @Benchmark
+  public DoublesSketch wrap() {
+    return DoublesSketch.wrap(updatableMem);
+  }
+
+  @Benchmark
+  public double getQuantile() {
+    return sketch.getQuantile(0.5);
+  }
+
+  @Benchmark
+  public double[] getQuantiles() {
+    return sketch.getQuantiles(100);
+  }
+
+  private UpdateDoublesSketch fill(final WritableMemory dstMem) {
+    final UpdateDoublesSketch sk = (dstMem == null)
+        ? DoublesSketch.builder().setK(k).build()
+        : DoublesSketch.builder().setK(k).build(dstMem);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.ArrayOfLongsSerDe;
+import com.yahoo.sketches.sampling.ReservoirLongsSketch;
+import com.yahoo.sketches.sampling.VarOptItemsSketch;
+import com.yahoo.sketches.sampling.VarOptItemsUnion;
+import com.yahoo.sketches.sampling.VarOptLongsSketch;
+
+/**
+ * Benchmarks of the VarOpt and reservoir sampling sketches, which exist only on the heap.
+ * The update benchmarks build a sketch and update it with all n items, so their score is the
+ * time of n updates. The other benchmarks use sketches that have seen the n items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplingSketchBenchmark {
+
+  @Param({"128", "1024"})
+  int k;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  private final ArrayOfLongsSerDe serDe = new ArrayOfLongsSerDe();
+  private long[] items;
+  private Long[] boxedItems;
+  private double[] weights;
+  private VarOptItemsSketch<Long> varOpt;
+  private Memory varOptMem;
+  private Memory reservoirMem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    items = BenchmarkUtil.distinctLongs(n, false);
+    boxedItems = new Long[n];
+    for (int i = 0; i < n; i++) {
+      boxedItems[i] = items[i];
+    }
+    weights = BenchmarkUtil.weights(n);
+    varOpt = varOptItemsUpdate();
+    varOptMem = Memory.wrap(varOpt.toByteArray(serDe));
+    reservoirMem = Memory.wrap(reservoirLongsUpdate().toByteArray());
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> varOptItemsUpdate() {
+    final VarOptItemsSketch<Long> sk = VarOptItemsSketch.newInstance(k);
+    for (int i = 0; i < boxedItems.length; i++) {
+      sk.update(boxedItems[i], weights[i]);
+    }
+    return sk;
+  }
+
+  @Benchmark
+  public VarOptLongsSketch varOptLongsUpdate() {
+    final VarOptLongsSketch sk = VarOptLongsSketch.newInstance(k);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i], weights[i]);
+    }
+    return sk;
+  }
+
+  @Benchmark
+  public ReservoirLongsSketch reservoirLongsUpdate() {
+    final ReservoirLongsSketch sk = ReservoirLongsSketch.newInstance(k);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+  @Benchmark
+  public ReservoirLongsSketch reservoirLongsBatchUpdate() {
+    final ReservoirLongsSketch sk = ReservoirLongsSketch.newInstance(k);
+    sk.update(items);
+    return sk;
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> varOptUnionUpdate() {
+    final VarOptItemsUnion<Long> union = VarOptItemsUnion.newInstance(k);
+    union.update(varOpt);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] varOptItemsToByteArray() {
+    return varOpt.toByteArray(serDe);
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> varOptItemsHeapify() {
+    return VarOptItemsSketch.heapify(varOptMem, serDe);
+  }
+
+  @Benchmark
+  public ReservoirLongsSketch reservoirLongsHeapify() {
+    return ReservoirLongsSketch.heapify(reservoirMem);
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.theta.CompactSketch;
+import com.yahoo.sketches.theta.SetOperation;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+
+/**
+ * Benchmarks of the Theta UpdateSketch, CompactSketch and Union. The update benchmark builds a
+ * sketch and updates it with all n items, so its score is the time of n updates. The other
+ * benchmarks use a sketch that has seen the n items, and its compact form, which is ordered or
+ * unordered as given by the ordered parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThetaSketchBenchmark {
+
+  @Param({"12", "16"})
+  int lgK;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  @Param({"false", "true"})
+  boolean ordered;
+
+  private long[] items;
+  private WritableDirectHandle sketchHandle; //of the sketch that the queries use
+  private WritableDirectHandle updateHandle; //reused by every invocation of update()
+  private WritableDirectHandle unionHandle;
+  private UpdateSketch sketch;
+  private CompactSketch compact;
+  private Memory compactMem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    items = BenchmarkUtil.distinctLongs(n, false);
+    if (direct) {
+      final int bytes = Sketch.getMaxUpdateSketchBytes(1 << lgK);
+      sketchHandle = WritableMemory.allocateDirect(bytes);
+      updateHandle = WritableMemory.allocateDirect(bytes);
+      unionHandle = WritableMemory.allocateDirect(SetOperation.getMaxUnionBytes(1 << lgK));
+    }
+    sketch = fill(direct ? sketchHandle.get() : null);
+    compact = sketch.compact(ordered, null);
+    compactMem = Memory.wrap(compact.toByteArray());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (direct) {
+      sketchHandle.close();
+      updateHandle.close();
+      unionHandle.close();
+    }
+  }
+
+  @Benchmark
+  public UpdateSketch update() {
+    return fill(direct ? updateHandle.get() : null);
+  }
+
+  @Benchmark
+  public CompactSketch unionUpdate() {
+    final Union union = direct
+        ? SetOperation.builder().setNominalEntries(1 << lgK).buildUnion(unionHandle.get())
+        : SetOperation.builder().setNominalEntries(1 << lgK).buildUnion();
+    union.update(compact);
+    return union.getResult(ordered, null);
+  }
+
+  @Benchmark
+  public CompactSketch compact() {
+    return sketch.compact(ordered, null);
+  }
+
+  @Benchmark
+  public byte[] toByteArray() {
+    return compact.toByteArray();
+  }
+
+  @Benchmark
+  public Sketch heapify() {
+    return Sketch.heapify(compactMem);
+  }
+
+  @Benchmark
+  public Sketch wrap() {
+    return Sketch.wrap(compactMem);
+  }
+
+  @Benchmark
+  public double getEstimate() {
+    return sketch.getEstimate();
+  }
+
+  private UpdateSketch fill(final WritableMemory dstMem) {
+    final UpdateSketch sk = (dstMem == null)
+        ? UpdateSketch.builder().setNominalEntries(1 << lgK).build()
+        : UpdateSketch.builder().setNominalEntries(1 << lgK).build(dstMem);
+    for (int i = 0; i < items.length; i++) {
+      sk.update(items[i]);
+    }
+    return sk;
+  }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.hash.MurmurHash3.hash;
+
+import java.util.Arrays;
+
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.hll.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+
+/**
+ * Hashes each item once and presents the hash to a fixed set of HLL and Theta sketches,
+ * instead of each sketch hashing the same item again with MurmurHash3.
+ *
+ * <p>All sketches must use the seed of this fan-out. HLL sketches always use the
+ * {@link Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}, and Theta sketches use the seed they
+ * were built with, which cannot be checked here.</p>
+ *
+ * <p>Tuple sketches need a value with each key, so they are not held by the fan-out. Each update
+ * method returns the hash it computed, which can be passed to
+ * {@link com.yahoo.sketches.tuple.UpdatableSketch#updateHash(long[], Object)} or
+ * {@link com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketch#updateHash(long[], double[])}.
+ * The returned array is reused by the next update.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class HashFanOut {
+  private final long seed_;
+  private final long[] hashOut_ = new long[2];
+  private HllSketch[] hllSketches_ = new HllSketch[0];
+  private Union[] hllUnions_ = new Union[0];
+  private UpdateSketch[] thetaSketches_ = new UpdateSketch[0];
+
+  /**
+   * Creates an empty fan-out with the
+   * {@link Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   */
+  public HashFanOut() {
+    this(DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Creates an empty fan-out with the given seed.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   */
+  public HashFanOut(final long seed) {
+    seed_ = seed;
+  }
+
+  /**
+   * Adds the given HLL sketch, which requires the seed of this fan-out to be the
+   * {@link Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   * @param sketch the given HLL sketch
+   * @return this fan-out
+   */
+  public HashFanOut add(final HllSketch sketch) {
+    checkHllSeed(seed_);
+    hllSketches_ = Arrays.copyOf(hllSketches_, hllSketches_.length + 1);
+    hllSketches_[hllSketches_.length - 1] = sketch;
+    return this;
+  }
+
+  /**
+   * Adds the given HLL union, which requires the seed of this fan-out to be the
+   * {@link Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   * @param union the given HLL union
+   * @return this fan-out
+   */
+  public HashFanOut add(final Union union) {
+    checkHllSeed(seed_);
+    hllUnions_ = Arrays.copyOf(hllUnions_, hllUnions_.length + 1);
+    hllUnions_[hllUnions_.length - 1] = union;
+    return this;
+  }
+
+  /**
+   * Adds the given Theta update sketch, which must have been built with the seed of this fan-out.
+   * @param sketch the given Theta update sketch
+   * @return this fan-out
+   */
+  public HashFanOut add(final UpdateSketch sketch) {
+    thetaSketches_ = Arrays.copyOf(thetaSketches_, thetaSketches_.length + 1);
+    thetaSketches_[thetaSketches_.length - 1] = sketch;
+    return this;
+  }
+
+  /**
+   * Gets the seed of this fan-out.
+   * @return the seed of this fan-out
+   */
+  public long getSeed() {
+    return seed_;
+  }
+
+  /**
+   * Presents the given long to all sketches.
+   * @param datum The given long datum.
+   * @return the hash of the datum, which is reused by the next update.
+   */
+  public long[] update(final long datum) {
+    return updateHash(hash(datum, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given double to all sketches. The double is canonicalized as with the update
+   * methods of the sketches.
+   * @param datum The given double datum.
+   * @return the hash of the datum, which is reused by the next update.
+   */
+  public long[] update(final double datum) {
+    return updateHash(hash(datum, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given String to all sketches, encoded as UTF-8.
+   * @param datum The given String.
+   * @return the hash of the datum, which is reused by the next update, or null if the datum is
+   * null or empty, in which case no sketch is updated.
+   */
+  public long[] update(final String datum) {
+    if ((datum == null) || datum.isEmpty()) { return null; }
+    return updateHash(hash(datum, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given byte array to all sketches.
+   * @param data The given byte array.
+   * @return the hash of the data, which is reused by the next update, or null if the data is
+   * null or empty, in which case no sketch is updated.
+   */
+  public long[] update(final byte[] data) {
+    if ((data == null) || (data.length == 0)) { return null; }
+    return updateHash(hash(data, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given char array to all sketches.
+   * @param data The given char array.
+   * @return the hash of the data, which is reused by the next update, or null if the data is
+   * null or empty, in which case no sketch is updated.
+   */
+  public long[] update(final char[] data) {
+    if ((data == null) || (data.length == 0)) { return null; }
+    return updateHash(hash(data, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given int array to all sketches.
+   * @param data The given int array.
+   * @return the hash of the data, which is reused by the next update, or null if the data is
+   * null or empty, in which case no sketch is updated.
+   */
+  public long[] update(final int[] data) {
+    if ((data == null) || (data.length == 0)) { return null; }
+    return updateHash(hash(data, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given long array to all sketches.
+   * @param data The given long array.
+   * @return the hash of the data, which is reused by the next update, or null if the data is
+   * null or empty, in which case no sketch is updated.
+   */
+  public long[] update(final long[] data) {
+    if ((data == null) || (data.length == 0)) { return null; }
+    return updateHash(hash(data, seed_, hashOut_));
+  }
+
+  /**
+   * Presents the given 128-bit hash, computed with the seed of this fan-out, to all sketches.
+   * @param hash128 the given 128-bit hash as an array of two longs.
+   * @return the given hash
+   */
+  public long[] updateHash(final long[] hash128) {
+    final long h0 = hash128[0];
+    final long h1 = hash128[1];
+    for (int i = 0; i < hllSketches_.length; i++) {
+      hllSketches_[i].updateHash(h0, h1);
+    }
+    for (int i = 0; i < hllUnions_.length; i++) {
+      hllUnions_[i].updateHash(h0, h1);
+    }
+    for (int i = 0; i < thetaSketches_.length; i++) {
+      thetaSketches_[i].updateHash(h0, h1);
+    }
+    return hash128;
+  }
+
+  private static void checkHllSeed(final long seed) {
+    if (seed != DEFAULT_UPDATE_SEED) {
+      throw new SketchesArgumentException(
+          "HLL sketches require the DEFAULT_UPDATE_SEED, this fan-out has seed: " + seed);
+    }
+  }
+
+}
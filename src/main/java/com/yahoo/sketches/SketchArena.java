@@ -0,0 +1,354 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import static com.yahoo.sketches.Util.LS;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.yahoo.memory.WritableMemory;
+
+/**
+ * Carves the regions of many direct sketches out of one large WritableMemory, the slab, which
+ * may be on or off the heap or memory-mapped. Each region is identified by an int handle, and
+ * {@link #getMemory(int)} returns the region of a handle, into which a sketch can be built or
+ * from which it can be wrapped:
+ *
+ * <pre>
+ *   int h = arena.allocate(HllSketch.getMaxUpdatableSerializationBytes(lgK, TgtHllType.HLL_4));
+ *   HllSketch sk = new HllSketch(lgK, TgtHllType.HLL_4, arena.getMemory(h));
+ *   ...
+ *   HllSketch sk2 = HllSketch.writableWrap(arena.getMemory(h));
+ * </pre>
+ *
+ * <p>The same works with {@link com.yahoo.sketches.theta.UpdateSketchBuilder#build(WritableMemory)}
+ * and {@link com.yahoo.sketches.theta.UpdateSketch#wrap(WritableMemory)}, and with
+ * {@link com.yahoo.sketches.quantiles.DoublesSketchBuilder#build(WritableMemory)} and
+ * {@link com.yahoo.sketches.quantiles.UpdateDoublesSketch#wrap(WritableMemory)}.</p>
+ *
+ * <p>Each region is preceded in the slab by a header of {@link #REGION_HEADER_BYTES} bytes with
+ * its handle and capacity, and the capacity is rounded up to a multiple of 8 bytes. Apart from the
+ * slab, the arena keeps one long and one int per handle, so a region costs no Java object.</p>
+ *
+ * <p>Regions are taken from the end of the used part of the slab. A region that is freed with
+ * {@link #free(int)} keeps its handle, and is recycled by the next allocation of the same
+ * capacity, which is the common case when all sketches of an aggregation have the same
+ * configuration. Free regions of other sizes are reclaimed by {@link #compact()}, which moves
+ * all live regions to the front of the slab, and which is done automatically when an
+ * allocation does not fit otherwise. {@link #reset()} frees all regions at once.</p>
+ *
+ * <p>Compaction moves regions, so a sketch that wraps a region from before a compaction must be
+ * wrapped again from {@link #getMemory(int)} of its handle. Likewise, a handle must not be used
+ * after it is freed, as it may be given to a later allocation.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class SketchArena {
+
+  /**
+   * The number of bytes of the header that precedes each region in the slab.
+   */
+  public static final int REGION_HEADER_BYTES = 8;
+
+  private static final int LIVE = -2; //links_ of a live handle
+  private static final int NIL = -1;  //end of a chain of handles
+  private static final int MIN_HANDLES = 16;
+  private static final int MOVE_BUFFER_BYTES = 1 << 16;
+
+  private final WritableMemory slab_;
+  private final long slabBytes_;
+  private long top_;         //end of the used part of the slab
+  private long freeBytes_;   //bytes of free regions below top_, including their headers
+  private int numLive_;
+
+  //per handle: offset of the region header, or -1 if the handle has no region
+  private long[] offsets_ = new long[MIN_HANDLES];
+  //per handle: LIVE, or the next handle of the same free list or of the list of unused handles
+  private int[] links_ = new int[MIN_HANDLES];
+  private int numHandles_;
+  private int unusedHead_ = NIL;
+  //region capacity to the first handle of the free regions of that capacity
+  private final HashMap<Integer, Integer> freeHeads_ = new HashMap<>();
+
+  /**
+   * Constructs an empty arena over the given slab. The arena owns the content of the slab from
+   * here on.
+   *
+   * @param slab the WritableMemory from which the regions are taken
+   */
+  public SketchArena(final WritableMemory slab) {
+    if (slab == null) {
+      throw new SketchesArgumentException("Slab must not be null");
+    }
+    slab_ = slab;
+    slabBytes_ = slab.getCapacity();
+  }
+
+  /**
+   * Allocates a zeroed region of at least the given number of bytes.
+   *
+   * @param bytes the number of bytes needed, which must be positive
+   * @return the handle of the region
+   * @throws SketchesStateException if the slab has no room for the region, even after compaction
+   */
+  public int allocate(final int bytes) {
+    if (bytes <= 0) {
+      throw new SketchesArgumentException("Bytes must be positive: " + bytes);
+    }
+    final int capacity = roundUp8(bytes);
+    final Integer head = freeHeads_.get(capacity);
+    if (head != null) {
+      final int handle = head;
+      final int next = links_[handle];
+      if (next == NIL) {
+        freeHeads_.remove(capacity);
+      } else {
+        freeHeads_.put(capacity, next);
+      }
+      freeBytes_ -= REGION_HEADER_BYTES + capacity;
+      links_[handle] = LIVE;
+      numLive_++;
+      slab_.clear(offsets_[handle] + REGION_HEADER_BYTES, capacity);
+      return handle;
+    }
+
+    final long regionBytes = REGION_HEADER_BYTES + (long) capacity;
+    if ((top_ + regionBytes) > slabBytes_) {
+      if ((top_ - freeBytes_ + regionBytes) > slabBytes_) {
+        throw new SketchesStateException("Arena is full: " + bytes + " bytes requested, "
+            + (slabBytes_ - top_ + freeBytes_) + " bytes available");
+      }
+      compact();
+    }
+    final int handle = newHandle();
+    final long offset = top_;
+    top_ += regionBytes;
+    slab_.putInt(offset, handle);
+    slab_.putInt(offset + Integer.BYTES, capacity);
+    slab_.clear(offset + REGION_HEADER_BYTES, capacity);
+    offsets_[handle] = offset;
+    links_[handle] = LIVE;
+    numLive_++;
+    return handle;
+  }
+
+  /**
+   * Frees the region of the given handle. The handle must not be used afterwards.
+   *
+   * @param handle the handle of a live region
+   */
+  public void free(final int handle) {
+    checkLive(handle);
+    final long offset = offsets_[handle];
+    final int capacity = slab_.getInt(offset + Integer.BYTES);
+    numLive_--;
+    if ((offset + REGION_HEADER_BYTES + capacity) == top_) {
+      //the last region goes back to the unused part of the slab
+      top_ = offset;
+      releaseHandle(handle);
+      return;
+    }
+    final Integer head = freeHeads_.get(capacity);
+    links_[handle] = (head == null) ? NIL : head;
+    freeHeads_.put(capacity, handle);
+    freeBytes_ += REGION_HEADER_BYTES + capacity;
+  }
+
+  /**
+   * Returns the region of the given handle. The returned WritableMemory is valid until the
+   * region is freed or the arena is compacted or reset.
+   *
+   * @param handle the handle of a live region
+   * @return the region of the given handle
+   */
+  public WritableMemory getMemory(final int handle) {
+    checkLive(handle);
+    final long offset = offsets_[handle];
+    return slab_.writableRegion(offset + REGION_HEADER_BYTES,
+        slab_.getInt(offset + Integer.BYTES));
+  }
+
+  /**
+   * Returns the offset in the slab of the region of the given handle.
+   *
+   * @param handle the handle of a live region
+   * @return the offset in the slab of the region of the given handle
+   */
+  public long getOffset(final int handle) {
+    checkLive(handle);
+    return offsets_[handle] + REGION_HEADER_BYTES;
+  }
+
+  /**
+   * Returns the capacity of the region of the given handle, which is the requested number of
+   * bytes rounded up to a multiple of 8.
+   *
+   * @param handle the handle of a live region
+   * @return the capacity in bytes of the region of the given handle
+   */
+  public int getCapacity(final int handle) {
+    checkLive(handle);
+    return slab_.getInt(offsets_[handle] + Integer.BYTES);
+  }
+
+  /**
+   * Returns true if the given handle refers to a region that has not been freed.
+   *
+   * @param handle the given handle
+   * @return true if the given handle refers to a region that has not been freed
+   */
+  public boolean isLive(final int handle) {
+    return (handle >= 0) && (handle < numHandles_) && (links_[handle] == LIVE);
+  }
+
+  /**
+   * Moves all live regions to the front of the slab, in their current order, which joins the
+   * space of all free regions with the unused part of the slab. Handles are not changed, but
+   * regions obtained before from {@link #getMemory(int)} are no longer valid.
+   */
+  public void compact() {
+    final byte[] buf = new byte[(int) Math.min(MOVE_BUFFER_BYTES, top_)];
+    long src = 0;
+    long dst = 0;
+    while (src < top_) {
+      final int handle = slab_.getInt(src);
+      final long regionBytes = REGION_HEADER_BYTES + slab_.getInt(src + Integer.BYTES);
+      if (links_[handle] == LIVE) {
+        if (dst != src) {
+          move(src, dst, regionBytes, buf);
+          offsets_[handle] = dst;
+        }
+        dst += regionBytes;
+      } else {
+        releaseHandle(handle);
+      }
+      src += regionBytes;
+    }
+    top_ = dst;
+    freeBytes_ = 0;
+    freeHeads_.clear();
+  }
+
+  /**
+   * Frees all regions. All handles given out before must not be used afterwards.
+   */
+  public void reset() {
+    top_ = 0;
+    freeBytes_ = 0;
+    numLive_ = 0;
+    numHandles_ = 0;
+    unusedHead_ = NIL;
+    freeHeads_.clear();
+  }
+
+  /**
+   * Returns the number of live regions
+   *
+   * @return the number of live regions
+   */
+  public int getNumRegions() {
+    return numLive_;
+  }
+
+  /**
+   * Returns the capacity in bytes of the slab
+   *
+   * @return the capacity in bytes of the slab
+   */
+  public long getSlabBytes() {
+    return slabBytes_;
+  }
+
+  /**
+   * Returns the number of bytes from the start of the slab to the end of the last region,
+   * including free regions and headers.
+   *
+   * @return the number of bytes of the used part of the slab
+   */
+  public long getUsedBytes() {
+    return top_;
+  }
+
+  /**
+   * Returns the number of bytes of the free regions that are waiting for reuse or compaction,
+   * including their headers.
+   *
+   * @return the number of bytes of the free regions
+   */
+  public long getFreeBytes() {
+    return freeBytes_;
+  }
+
+  /**
+   * Returns the number of bytes that a compaction would make available for new regions.
+   *
+   * @return the number of bytes available after compaction
+   */
+  public long getAvailableBytes() {
+    return (slabBytes_ - top_) + freeBytes_;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### SketchArena SUMMARY: ").append(LS);
+    sb.append("   Slab Bytes          : ").append(slabBytes_).append(LS);
+    sb.append("   Live Regions        : ").append(numLive_).append(LS);
+    sb.append("   Used Bytes          : ").append(top_).append(LS);
+    sb.append("   Free Bytes          : ").append(freeBytes_).append(LS);
+    sb.append("   Available Bytes     : ").append(getAvailableBytes()).append(LS);
+    sb.append("### END SKETCH ARENA SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  private void checkLive(final int handle) {
+    if (!isLive(handle)) {
+      throw new SketchesArgumentException("Not a live handle: " + handle);
+    }
+  }
+
+  private int newHandle() {
+    if (unusedHead_ != NIL) {
+      final int handle = unusedHead_;
+      unusedHead_ = links_[handle];
+      return handle;
+    }
+    if (numHandles_ == offsets_.length) {
+      final int newLength = 2 * offsets_.length;
+      offsets_ = Arrays.copyOf(offsets_, newLength);
+      links_ = Arrays.copyOf(links_, newLength);
+    }
+    return numHandles_++;
+  }
+
+  private void releaseHandle(final int handle) {
+    offsets_[handle] = -1;
+    links_[handle] = unusedHead_;
+    unusedHead_ = handle;
+  }
+
+  //copies through a buffer, as the source and destination may overlap with dst < src
+  private void move(long src, long dst, final long bytes, final byte[] buf) {
+    long remaining = bytes;
+    while (remaining > 0) {
+      final int chunk = (int) Math.min(remaining, buf.length);
+      slab_.getByteArray(src, buf, 0, chunk);
+      slab_.putByteArray(dst, buf, 0, chunk);
+      src += chunk;
+      dst += chunk;
+      remaining -= chunk;
+    }
+  }
+
+  private static int roundUp8(final int bytes) {
+    if (bytes > (Integer.MAX_VALUE - 7)) {
+      throw new SketchesArgumentException("Bytes too large: " + bytes);
+    }
+    return (bytes + 7) & ~7;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * The base of the {@link Collector}s that build sketches from a {@link java.util.stream.Stream},
+ * such as {@link com.yahoo.sketches.hll.HllSketch#collector(int)}. Each thread of a parallel
+ * stream updates its own container with the update method of the sketch, and the containers of
+ * the threads are combined with the union or merge of the sketch family.
+ *
+ * <p>The collectors are {@link Collector.Characteristics#UNORDERED UNORDERED}, as the sketches
+ * give the same guarantees for any order of the stream.</p>
+ *
+ * @param <T> the type of the stream items
+ * @param <A> the type of the container of each thread
+ * @param <R> the type of the result
+ */
+public abstract class SketchCollector<T, A, R> implements Collector<T, A, R> {
+  private static final Set<Characteristics> CHARACTERISTICS =
+      Collections.unmodifiableSet(EnumSet.of(Characteristics.UNORDERED));
+
+  /**
+   * Returns a new empty container.
+   * @return a new empty container
+   */
+  protected abstract A newContainer();
+
+  /**
+   * Updates the given container with the given item.
+   * @param container the given container
+   * @param item the given item
+   */
+  protected abstract void accumulate(A container, T item);
+
+  /**
+   * Combines two containers. Either container may be modified and returned.
+   * @param container1 a container
+   * @param container2 another container
+   * @return a container with the content of both containers
+   */
+  protected abstract A combine(A container1, A container2);
+
+  /**
+   * Returns the result from the final container.
+   * @param container the final container
+   * @return the result
+   */
+  protected abstract R finish(A container);
+
+  @Override
+  public Supplier<A> supplier() {
+    return new Supplier<A>() {
+      @Override
+      public A get() {
+        return newContainer();
+      }
+    };
+  }
+
+  @Override
+  public BiConsumer<A, T> accumulator() {
+    return new BiConsumer<A, T>() {
+      @Override
+      public void accept(final A container, final T item) {
+        accumulate(container, item);
+      }
+    };
+  }
+
+  @Override
+  public BinaryOperator<A> combiner() {
+    return new BinaryOperator<A>() {
+      @Override
+      public A apply(final A container1, final A container2) {
+        return combine(container1, container2);
+      }
+    };
+  }
+
+  @Override
+  public Function<A, R> finisher() {
+    return new Function<A, R>() {
+      @Override
+      public R apply(final A container) {
+        return finish(container);
+      }
+    };
+  }
+
+  @Override
+  public Set<Characteristics> characteristics() {
+    return CHARACTERISTICS;
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import java.util.Random;
+
+/**
+ * A fast {@link java.util.Random} based on the SplitMix64 generator, which is also used by
+ * {@link java.util.SplittableRandom}. Unlike java.util.Random, its state is a plain long rather
+ * than an AtomicLong, so it is not thread-safe, and there is no contention when many threads
+ * each use their own instance.
+ *
+ * <p>The quantiles and sampling sketches each own an instance of this class by default, which
+ * is used to choose the items that survive compaction or enter the sample. A generator with a
+ * fixed seed makes a sketch deterministic for the same input, which is useful for testing.</p>
+ */
+public final class SplitMixRandom extends Random {
+  private static final long serialVersionUID = 1L;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  private long state_; //no initializer, set by setSeed() from the super constructor
+
+  /**
+   * Creates a new generator with the given seed.
+   * @param seed the initial seed
+   */
+  public SplitMixRandom(final long seed) {
+    super(seed); //calls setSeed(seed)
+  }
+
+  @Override
+  public void setSeed(final long seed) {
+    super.setSeed(seed); //also clears the cached Gaussian value of Random
+    state_ = seed;
+  }
+
+  @Override
+  public long nextLong() {
+    long z = state_ += GOLDEN_GAMMA;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  @Override
+  protected int next(final int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+}
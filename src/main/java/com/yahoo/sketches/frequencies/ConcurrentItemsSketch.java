@@ -0,0 +1,304 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+import static com.yahoo.sketches.Util.isPowerOf2;
+import static com.yahoo.sketches.Util.toLog2;
+import static com.yahoo.sketches.frequencies.Util.LG_MIN_MAP_SIZE;
+import static com.yahoo.sketches.frequencies.Util.hash;
+
+import com.yahoo.sketches.ArrayOfItemsSerDe;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.frequencies.ItemsSketch.Row;
+
+/**
+ * A thread-safe frequent items sketch of generic items for many concurrent writers. This is the
+ * same as {@link ConcurrentLongsSketch}, but over {@link ItemsSketch}.
+ *
+ * <p>Each item is hashed by its hashCode() to one of a fixed number of stripes. Each stripe is
+ * an ItemsSketch with its own lock, so threads updating different stripes do not contend, and
+ * the update throughput scales with the number of cores as long as there are enough stripes.
+ * Because every item belongs to exactly one stripe, the stripes summarize disjoint parts of the
+ * stream:</p>
+ * <ul>
+ * <li>{@link #getEstimate(Object)}, {@link #getUpperBound(Object)} and
+ * {@link #getLowerBound(Object)} read only the stripe of the item, and have exactly the
+ * guarantees of a single ItemsSketch given that part of the stream.</li>
+ * <li>The other queries read a snapshot, which is an ItemsSketch that all stripes are merged
+ * into with {@link ItemsSketch#merge(ItemsSketch)}. The snapshot is large enough to hold all
+ * stripes without a purge, so its maximum error is the sum of the maximum errors of the
+ * stripes, which bounds the error of every item. The snapshot is cached, and it is rebuilt by
+ * the next query only if some stripe has been updated since.</li>
+ * </ul>
+ *
+ * <p>The stripes are locked one at a time while the snapshot is built, so a snapshot taken
+ * during concurrent updates reflects each stripe at some point during the build, but not
+ * necessarily all stripes at the same instant.</p>
+ *
+ * @param <T> type of item
+ */
+public final class ConcurrentItemsSketch<T> {
+  private final int lgSnapshotMapSize_; //large enough to hold all stripes without a purge
+  private final Stripe<T>[] stripes_;
+  private final int stripeMask_;
+
+  //guarded by this
+  private ItemsSketch<T> snapshot_;
+  private final long[] snapshotVersions_;
+
+  /**
+   * Constructs this sketch with the given maximum map size for each stripe and a number of
+   * stripes of four times the number of available processors, rounded up to a power of 2.
+   *
+   * @param maxMapSize the maximum map size of each stripe, which must be a power of 2.
+   * See {@link ItemsSketch#ItemsSketch(int)}.
+   */
+  public ConcurrentItemsSketch(final int maxMapSize) {
+    this(maxMapSize, ceilingPowerOf2(4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructs this sketch with the given maximum map size for each stripe and the given number
+   * of stripes.
+   *
+   * @param maxMapSize the maximum map size of each stripe, which must be a power of 2.
+   * See {@link ItemsSketch#ItemsSketch(int)}.
+   * @param numStripes the number of stripes, which must be a power of 2.
+   */
+  public ConcurrentItemsSketch(final int maxMapSize, final int numStripes) {
+    final int lgMaxMapSize = toLog2(maxMapSize, "maxMapSize");
+    if (!isPowerOf2(numStripes)) {
+      throw new SketchesArgumentException("numStripes must be a power of 2: " + numStripes);
+    }
+    lgSnapshotMapSize_ = Math.max(lgMaxMapSize, LG_MIN_MAP_SIZE)
+        + Integer.numberOfTrailingZeros(numStripes);
+    @SuppressWarnings("unchecked")
+    final Stripe<T>[] stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      stripes[i] = new Stripe<T>(new ItemsSketch<T>(maxMapSize));
+    }
+    stripes_ = stripes;
+    stripeMask_ = numStripes - 1;
+    snapshotVersions_ = new long[numStripes];
+  }
+
+  /**
+   * Update this sketch with an item and a frequency count of one.
+   * @param item for which the frequency should be increased.
+   */
+  public void update(final T item) {
+    update(item, 1);
+  }
+
+  /**
+   * Update this sketch with a item and a positive frequency count.
+   * See {@link ItemsSketch#update(Object, long)}.
+   *
+   * @param item for which the frequency should be increased. Null items are ignored.
+   * @param count the amount by which the frequency of the item should be increased.
+   */
+  public void update(final T item, final long count) {
+    final Stripe<T> stripe = stripeOf(item);
+    synchronized (stripe) {
+      stripe.sketch.update(item, count);
+      stripe.version++;
+    }
+  }
+
+  /**
+   * Gets the estimate of the frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the estimate of the frequency of the given item
+   */
+  public long getEstimate(final T item) {
+    final Stripe<T> stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getEstimate(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed upper bound frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the guaranteed upper bound frequency of the given item.
+   */
+  public long getUpperBound(final T item) {
+    final Stripe<T> stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getUpperBound(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed lower bound frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the guaranteed lower bound frequency of the given item.
+   */
+  public long getLowerBound(final T item) {
+    final Stripe<T> stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getLowerBound(item);
+    }
+  }
+
+  /**
+   * Returns the frequent items of the snapshot.
+   * See {@link ItemsSketch#getFrequentItems(long, ErrorType)}.
+   *
+   * @param threshold to include items in the result list
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public synchronized Row<T>[] getFrequentItems(final long threshold, final ErrorType errorType) {
+    return snapshot().getFrequentItems(threshold, errorType);
+  }
+
+  /**
+   * Returns the frequent items of the snapshot with the default threshold.
+   * See {@link ItemsSketch#getFrequentItems(ErrorType)}.
+   *
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public synchronized Row<T>[] getFrequentItems(final ErrorType errorType) {
+    return snapshot().getFrequentItems(errorType);
+  }
+
+  /**
+   * @return An upper bound on the maximum error of getEstimate(item) for any item, which is the
+   * sum of the maximum errors of the stripes.
+   */
+  public synchronized long getMaximumError() {
+    return snapshot().getMaximumError();
+  }
+
+  /**
+   * Returns the sum of the frequencies (weights or counts) in the stream seen so far by the sketch
+   *
+   * @return the sum of the frequencies in the stream seen so far by the sketch
+   */
+  public synchronized long getStreamLength() {
+    return snapshot().getStreamLength();
+  }
+
+  /**
+   * @return the number of active items in the sketch.
+   */
+  public synchronized int getNumActiveItems() {
+    return snapshot().getNumActiveItems();
+  }
+
+  /**
+   * Returns true if this sketch is empty
+   *
+   * @return true if this sketch is empty
+   */
+  public synchronized boolean isEmpty() {
+    return snapshot().isEmpty();
+  }
+
+  /**
+   * Returns the number of stripes
+   *
+   * @return the number of stripes
+   */
+  public int getNumStripes() {
+    return stripes_.length;
+  }
+
+  /**
+   * Returns a new ItemsSketch with the content of all stripes, which the caller owns.
+   *
+   * @return a new ItemsSketch with the content of all stripes
+   */
+  public synchronized ItemsSketch<T> getResult() {
+    return new ItemsSketch<T>(lgSnapshotMapSize_, LG_MIN_MAP_SIZE).merge(snapshot());
+  }
+
+  /**
+   * Returns the byte array representation of the snapshot, which
+   * {@link ItemsSketch#getInstance(com.yahoo.memory.Memory, ArrayOfItemsSerDe)} accepts.
+   *
+   * @param serDe an instance of ArrayOfItemsSerDe
+   * @return the byte array representation of the snapshot
+   */
+  public synchronized byte[] toByteArray(final ArrayOfItemsSerDe<T> serDe) {
+    return snapshot().toByteArray(serDe);
+  }
+
+  /**
+   * Resets all stripes to a virgin state.
+   */
+  public void reset() {
+    for (int i = 0; i < stripes_.length; i++) {
+      final Stripe<T> stripe = stripes_[i];
+      synchronized (stripe) {
+        stripe.sketch.reset();
+        stripe.version++;
+      }
+    }
+  }
+
+  /**
+   * Returns a human readable summary of this sketch.
+   * @return a human readable summary of this sketch.
+   */
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("ConcurrentFrequentItemsSketch:").append(LS);
+    sb.append("  Stripes          : " + stripes_.length).append(LS);
+    sb.append("  Stream Length    : " + snapshot().getStreamLength()).append(LS);
+    sb.append("  Max Error Offset : " + snapshot().getMaximumError()).append(LS);
+    return sb.toString();
+  }
+
+  private Stripe<T> stripeOf(final T item) {
+    if (item == null) { return stripes_[0]; }
+    //the high bits, as the hash map of the stripe probes with the low bits of the same hash
+    return stripes_[(int) (hash(item.hashCode()) >>> 40) & stripeMask_];
+  }
+
+  //must hold the lock of this
+  private ItemsSketch<T> snapshot() {
+    boolean stale = snapshot_ == null;
+    for (int i = 0; !stale && (i < stripes_.length); i++) {
+      final Stripe<T> stripe = stripes_[i];
+      synchronized (stripe) {
+        stale = stripe.version != snapshotVersions_[i];
+      }
+    }
+    if (stale) {
+      final ItemsSketch<T> snapshot = new ItemsSketch<T>(lgSnapshotMapSize_, LG_MIN_MAP_SIZE);
+      for (int i = 0; i < stripes_.length; i++) {
+        final Stripe<T> stripe = stripes_[i];
+        synchronized (stripe) {
+          snapshot.merge(stripe.sketch);
+          snapshotVersions_[i] = stripe.version;
+        }
+      }
+      snapshot_ = snapshot;
+    }
+    return snapshot_;
+  }
+
+  private static final class Stripe<T> {
+    final ItemsSketch<T> sketch;
+    long version; //guarded by this, incremented by every change of the sketch
+
+    Stripe(final ItemsSketch<T> sketch) {
+      this.sketch = sketch;
+    }
+  }
+
+}
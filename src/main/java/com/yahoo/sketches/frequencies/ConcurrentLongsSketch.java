@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+import static com.yahoo.sketches.Util.isPowerOf2;
+import static com.yahoo.sketches.Util.toLog2;
+import static com.yahoo.sketches.frequencies.Util.LG_MIN_MAP_SIZE;
+import static com.yahoo.sketches.frequencies.Util.hash;
+
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.frequencies.LongsSketch.Row;
+
+/**
+ * A thread-safe frequent items sketch of <i>long</i> items for many concurrent writers.
+ *
+ * <p>Each item is hashed to one of a fixed number of stripes. Each stripe is a {@link LongsSketch}
+ * with its own lock, so threads updating different stripes do not contend, and the update
+ * throughput scales with the number of cores as long as there are enough stripes.
+ * Because every item belongs to exactly one stripe, the stripes summarize disjoint parts of the
+ * stream:</p>
+ * <ul>
+ * <li>{@link #getEstimate(long)}, {@link #getUpperBound(long)} and {@link #getLowerBound(long)}
+ * read only the stripe of the item, and have exactly the guarantees of a single LongsSketch
+ * given that part of the stream.</li>
+ * <li>The other queries read a snapshot, which is a LongsSketch that all stripes are merged into
+ * with {@link LongsSketch#merge(LongsSketch)}. The snapshot is large enough to hold all stripes
+ * without a purge, so its maximum error is the sum of the maximum errors of the stripes, which
+ * bounds the error of every item. The snapshot is cached, and it is rebuilt by the next query
+ * only if some stripe has been updated since.</li>
+ * </ul>
+ *
+ * <p>The stripes are locked one at a time while the snapshot is built, so a snapshot taken
+ * during concurrent updates reflects each stripe at some point during the build, but not
+ * necessarily all stripes at the same instant.</p>
+ */
+public final class ConcurrentLongsSketch {
+  private final int lgSnapshotMapSize_; //large enough to hold all stripes without a purge
+  private final Stripe[] stripes_;
+  private final int stripeMask_;
+
+  //guarded by this
+  private LongsSketch snapshot_;
+  private final long[] snapshotVersions_;
+
+  /**
+   * Constructs this sketch with the given maximum map size for each stripe and a number of
+   * stripes of four times the number of available processors, rounded up to a power of 2.
+   *
+   * @param maxMapSize the maximum map size of each stripe, which must be a power of 2.
+   * See {@link LongsSketch#LongsSketch(int)}.
+   */
+  public ConcurrentLongsSketch(final int maxMapSize) {
+    this(maxMapSize, ceilingPowerOf2(4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructs this sketch with the given maximum map size for each stripe and the given number
+   * of stripes.
+   *
+   * @param maxMapSize the maximum map size of each stripe, which must be a power of 2.
+   * See {@link LongsSketch#LongsSketch(int)}.
+   * @param numStripes the number of stripes, which must be a power of 2.
+   */
+  public ConcurrentLongsSketch(final int maxMapSize, final int numStripes) {
+    final int lgMaxMapSize = toLog2(maxMapSize, "maxMapSize");
+    if (!isPowerOf2(numStripes)) {
+      throw new SketchesArgumentException("numStripes must be a power of 2: " + numStripes);
+    }
+    lgSnapshotMapSize_ = Math.max(lgMaxMapSize, LG_MIN_MAP_SIZE)
+        + Integer.numberOfTrailingZeros(numStripes);
+    stripes_ = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      stripes_[i] = new Stripe(new LongsSketch(maxMapSize));
+    }
+    stripeMask_ = numStripes - 1;
+    snapshotVersions_ = new long[numStripes];
+  }
+
+  /**
+   * Update this sketch with an item and a frequency count of one.
+   * @param item for which the frequency should be increased.
+   */
+  public void update(final long item) {
+    update(item, 1);
+  }
+
+  /**
+   * Update this sketch with a item and a positive frequency count (or weight).
+   * See {@link LongsSketch#update(long, long)}.
+   *
+   * @param item for which the frequency should be increased.
+   * @param count the amount by which the frequency of the item should be increased.
+   */
+  public void update(final long item, final long count) {
+    final Stripe stripe = stripeOf(item);
+    synchronized (stripe) {
+      stripe.sketch.update(item, count);
+      stripe.version++;
+    }
+  }
+
+  /**
+   * Gets the estimate of the frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the estimate of the frequency of the given item
+   */
+  public long getEstimate(final long item) {
+    final Stripe stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getEstimate(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed upper bound frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the guaranteed upper bound frequency of the given item.
+   */
+  public long getUpperBound(final long item) {
+    final Stripe stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getUpperBound(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed lower bound frequency of the given item from the stripe of the item.
+   *
+   * @param item the given item
+   * @return the guaranteed lower bound frequency of the given item.
+   */
+  public long getLowerBound(final long item) {
+    final Stripe stripe = stripeOf(item);
+    synchronized (stripe) {
+      return stripe.sketch.getLowerBound(item);
+    }
+  }
+
+  /**
+   * Returns the frequent items of the snapshot.
+   * See {@link LongsSketch#getFrequentItems(long, ErrorType)}.
+   *
+   * @param threshold to include items in the result list
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public synchronized Row[] getFrequentItems(final long threshold, final ErrorType errorType) {
+    return snapshot().getFrequentItems(threshold, errorType);
+  }
+
+  /**
+   * Returns the frequent items of the snapshot with the default threshold.
+   * See {@link LongsSketch#getFrequentItems(ErrorType)}.
+   *
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public synchronized Row[] getFrequentItems(final ErrorType errorType) {
+    return snapshot().getFrequentItems(errorType);
+  }
+
+  /**
+   * @return An upper bound on the maximum error of getEstimate(item) for any item, which is the
+   * sum of the maximum errors of the stripes.
+   */
+  public synchronized long getMaximumError() {
+    return snapshot().getMaximumError();
+  }
+
+  /**
+   * Returns the sum of the frequencies (weights or counts) in the stream seen so far by the sketch
+   *
+   * @return the sum of the frequencies in the stream seen so far by the sketch
+   */
+  public synchronized long getStreamLength() {
+    return snapshot().getStreamLength();
+  }
+
+  /**
+   * @return the number of active items in the sketch.
+   */
+  public synchronized int getNumActiveItems() {
+    return snapshot().getNumActiveItems();
+  }
+
+  /**
+   * Returns true if this sketch is empty
+   *
+   * @return true if this sketch is empty
+   */
+  public synchronized boolean isEmpty() {
+    return snapshot().isEmpty();
+  }
+
+  /**
+   * Returns the number of stripes
+   *
+   * @return the number of stripes
+   */
+  public int getNumStripes() {
+    return stripes_.length;
+  }
+
+  /**
+   * Returns a new LongsSketch with the content of all stripes, which the caller owns.
+   *
+   * @return a new LongsSketch with the content of all stripes
+   */
+  public synchronized LongsSketch getResult() {
+    return new LongsSketch(lgSnapshotMapSize_, LG_MIN_MAP_SIZE).merge(snapshot());
+  }
+
+  /**
+   * Returns the byte array representation of the snapshot, which
+   * {@link LongsSketch#getInstance(com.yahoo.memory.Memory)} accepts.
+   *
+   * @return the byte array representation of the snapshot
+   */
+  public synchronized byte[] toByteArray() {
+    return snapshot().toByteArray();
+  }
+
+  /**
+   * Resets all stripes to a virgin state.
+   */
+  public void reset() {
+    for (int i = 0; i < stripes_.length; i++) {
+      final Stripe stripe = stripes_[i];
+      synchronized (stripe) {
+        stripe.sketch.reset();
+        stripe.version++;
+      }
+    }
+  }
+
+  /**
+   * Returns a human readable summary of this sketch.
+   * @return a human readable summary of this sketch.
+   */
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("ConcurrentFrequentLongsSketch:").append(LS);
+    sb.append("  Stripes          : " + stripes_.length).append(LS);
+    sb.append("  Stream Length    : " + snapshot().getStreamLength()).append(LS);
+    sb.append("  Max Error Offset : " + snapshot().getMaximumError()).append(LS);
+    return sb.toString();
+  }
+
+  private Stripe stripeOf(final long item) {
+    //the high bits, as the hash map of the stripe probes with the low bits of the same hash
+    return stripes_[(int) (hash(item) >>> 40) & stripeMask_];
+  }
+
+  //must hold the lock of this
+  private LongsSketch snapshot() {
+    boolean stale = snapshot_ == null;
+    for (int i = 0; !stale && (i < stripes_.length); i++) {
+      final Stripe stripe = stripes_[i];
+      synchronized (stripe) {
+        stale = stripe.version != snapshotVersions_[i];
+      }
+    }
+    if (stale) {
+      final LongsSketch snapshot = new LongsSketch(lgSnapshotMapSize_, LG_MIN_MAP_SIZE);
+      for (int i = 0; i < stripes_.length; i++) {
+        final Stripe stripe = stripes_[i];
+        synchronized (stripe) {
+          snapshot.merge(stripe.sketch);
+          snapshotVersions_[i] = stripe.version;
+        }
+      }
+      snapshot_ = snapshot;
+    }
+    return snapshot_;
+  }
+
+  private static final class Stripe {
+    final LongsSketch sketch;
+    long version; //guarded by this, incremented by every change of the sketch
+
+    Stripe(final LongsSketch sketch) {
+      this.sketch = sketch;
+    }
+  }
+
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.Util.toLog2;
+import static com.yahoo.sketches.frequencies.PreambleUtil.OFFSET_LONG;
+import static com.yahoo.sketches.frequencies.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.frequencies.PreambleUtil.STREAMLENGTH_LONG;
+import static com.yahoo.sketches.frequencies.PreambleUtil.UPDATABLE_FLAG_MASK;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractFamilyID;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractFlags;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractLgCurMapSize;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractLgMaxMapSize;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractPreLongs;
+import static com.yahoo.sketches.frequencies.PreambleUtil.extractSerVer;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertFamilyID;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertFlags;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertLgCurMapSize;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertLgMaxMapSize;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertPreLongs;
+import static com.yahoo.sketches.frequencies.PreambleUtil.insertSerVer;
+import static com.yahoo.sketches.frequencies.Util.LG_MIN_MAP_SIZE;
+import static com.yahoo.sketches.frequencies.Util.SAMPLE_SIZE;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesReadOnlyException;
+import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.frequencies.LongsSketch.Row;
+
+/**
+ * The same frequent items sketch as {@link LongsSketch}, but all of its state, including the
+ * whole reverse-purge hash map, lives in a Memory instead of on the Java heap. Updates, purges
+ * and merges work in place, so a DirectLongsSketch object is only a small handle on its Memory,
+ * and many sketches can be kept resident off-heap or in memory-mapped files without GC cost.
+ *
+ * <p>The Memory has the updatable layout described in {@link PreambleUtil}, and its size is
+ * fixed by the maximum map size, see {@link #getUpdatableStorageBytes(int)}. Given the same
+ * input, a DirectLongsSketch gives the same results as a LongsSketch with the same maximum map
+ * size, and {@link #toByteArray()} gives the same compact image that
+ * {@link LongsSketch#getInstance(Memory)} accepts.</p>
+ *
+ * <p>A sketch returned by {@link #wrap(Memory)} is read-only: it answers queries directly from
+ * the Memory, and any update throws a {@link SketchesReadOnlyException}.</p>
+ */
+public final class DirectLongsSketch {
+  private static final int PRE_LONGS = Family.FREQUENCY.getMaxPreLongs();
+
+  private final Memory mem_;
+  private final WritableMemory wmem_; //null if read-only
+  private final int lgMaxMapSize_;
+  private final int sampleSize_;
+  private final DirectReversePurgeLongHashMap hashMap_;
+
+  private DirectLongsSketch(final Memory mem, final WritableMemory wmem,
+      final int lgMaxMapSize) {
+    mem_ = mem;
+    wmem_ = wmem;
+    lgMaxMapSize_ = lgMaxMapSize;
+    final int maxMapCap =
+        (int) ((1 << lgMaxMapSize) * ReversePurgeLongHashMap.getLoadFactor());
+    sampleSize_ = Math.min(SAMPLE_SIZE, maxMapCap);
+    hashMap_ = new DirectReversePurgeLongHashMap(mem, wmem, lgMaxMapSize);
+  }
+
+  /**
+   * Creates a new empty sketch in the given destination Memory, overwriting its contents.
+   *
+   * @param maxMapSize Determines the physical size of the internal hash map managed by this
+   * sketch and must be a power of 2. See {@link LongsSketch#LongsSketch(int)}.
+   * @param dstMem the destination Memory, which must have at least
+   * {@link #getUpdatableStorageBytes(int) getUpdatableStorageBytes(maxMapSize)} bytes.
+   * @return a new sketch in the given Memory
+   */
+  public static DirectLongsSketch initialize(final int maxMapSize, final WritableMemory dstMem) {
+    final int lgMaxMapSize = Math.max(toLog2(maxMapSize, "maxMapSize"), LG_MIN_MAP_SIZE);
+    checkCapacity(dstMem, lgMaxMapSize);
+
+    long pre0 = 0L;
+    pre0 = insertPreLongs(PRE_LONGS, pre0);                 //Byte 0
+    pre0 = insertSerVer(SER_VER, pre0);                     //Byte 1
+    pre0 = insertFamilyID(Family.FREQUENCY.getID(), pre0);  //Byte 2
+    pre0 = insertLgMaxMapSize(lgMaxMapSize, pre0);          //Byte 3
+    pre0 = insertLgCurMapSize(LG_MIN_MAP_SIZE, pre0);       //Byte 4
+    pre0 = insertFlags(UPDATABLE_FLAG_MASK, pre0);          //Byte 5
+    dstMem.putLong(0, pre0);
+
+    final DirectLongsSketch sketch = new DirectLongsSketch(dstMem, dstMem, lgMaxMapSize);
+    sketch.reset();
+    return sketch;
+  }
+
+  /**
+   * Wraps the given Memory, which must hold an updatable image created by
+   * {@link #initialize(int, WritableMemory)}, as a writable sketch.
+   *
+   * @param srcMem the Memory of an updatable sketch image
+   * @return a writable sketch backed by the given Memory
+   */
+  public static DirectLongsSketch writableWrap(final WritableMemory srcMem) {
+    return new DirectLongsSketch(srcMem, srcMem, checkImage(srcMem));
+  }
+
+  /**
+   * Wraps the given Memory, which must hold an updatable image created by
+   * {@link #initialize(int, WritableMemory)}, as a read-only sketch. Nothing is copied.
+   *
+   * @param srcMem the Memory of an updatable sketch image
+   * @return a read-only sketch backed by the given Memory
+   */
+  public static DirectLongsSketch wrap(final Memory srcMem) {
+    return new DirectLongsSketch(srcMem, null, checkImage(srcMem));
+  }
+
+  /**
+   * Returns the number of bytes of the updatable Memory image of a sketch with the given
+   * maximum map size.
+   *
+   * @param maxMapSize the maximum map size, a power of 2
+   * @return the number of bytes of the updatable Memory image, which exceeds the range of an int
+   * for the largest map sizes
+   */
+  public static long getUpdatableStorageBytes(final int maxMapSize) {
+    final int lgMaxMapSize = Math.max(toLog2(maxMapSize, "maxMapSize"), LG_MIN_MAP_SIZE);
+    return DirectReversePurgeLongHashMap.getRequiredBytes(lgMaxMapSize);
+  }
+
+  /**
+   * Update this sketch with an item and a frequency count of one.
+   * @param item for which the frequency should be increased.
+   */
+  public void update(final long item) {
+    update(item, 1);
+  }
+
+  /**
+   * Update this sketch with a item and a positive frequency count (or weight).
+   * @param item for which the frequency should be increased. The item can be any long value
+   * and is only used by the sketch to determine uniqueness.
+   * @param count the amount by which the frequency of the item should be increased.
+   * An count of zero is a no-op, and a negative count will throw an exception.
+   */
+  public void update(final long item, final long count) {
+    checkWritable("update()");
+    if (count == 0) { return; }
+    if (count < 0) {
+      throw new SketchesArgumentException("Count may not be negative");
+    }
+    wmem_.putLong(STREAMLENGTH_LONG, getStreamLength() + count);
+    updateMap(item, count);
+  }
+
+  /**
+   * Merges the other sketch into this one, in place.
+   * The other sketch may be of a different size.
+   *
+   * @param other a heap sketch
+   * @return this sketch
+   */
+  public DirectLongsSketch merge(final LongsSketch other) {
+    checkWritable("merge()");
+    if ((other == null) || other.isEmpty()) { return this; }
+    final long streamLen = getStreamLength() + other.getStreamLength(); //capture before merge
+    final ReversePurgeLongHashMap.Iterator iter = other.getHashMap().iterator();
+    while (iter.next()) { //this may add to offset during rebuilds
+      update(iter.getKey(), iter.getValue());
+    }
+    wmem_.putLong(OFFSET_LONG, getMaximumError() + other.getMaximumError());
+    wmem_.putLong(STREAMLENGTH_LONG, streamLen); //corrected streamLength
+    return this;
+  }
+
+  /**
+   * Merges the other sketch into this one, in place.
+   * The other sketch may be of a different size.
+   *
+   * @param other a direct sketch, which may be read-only
+   * @return this sketch
+   */
+  public DirectLongsSketch merge(final DirectLongsSketch other) {
+    checkWritable("merge()");
+    if ((other == null) || other.isEmpty()) { return this; }
+    final long streamLen = getStreamLength() + other.getStreamLength(); //capture before merge
+    final DirectReversePurgeLongHashMap.Iterator iter = other.hashMap_.iterator();
+    while (iter.next()) { //this may add to offset during rebuilds
+      update(iter.getKey(), iter.getValue());
+    }
+    wmem_.putLong(OFFSET_LONG, getMaximumError() + other.getMaximumError());
+    wmem_.putLong(STREAMLENGTH_LONG, streamLen); //corrected streamLength
+    return this;
+  }
+
+  /**
+   * Gets the estimate of the frequency of the given item.
+   * See {@link LongsSketch#getEstimate(long)}.
+   *
+   * @param item the given item
+   * @return the estimate of the frequency of the given item
+   */
+  public long getEstimate(final long item) {
+    final long itemCount = hashMap_.get(item);
+    return (itemCount > 0) ? itemCount + getMaximumError() : 0;
+  }
+
+  /**
+   * Gets the guaranteed upper bound frequency of the given item.
+   *
+   * @param item the given item
+   * @return the guaranteed upper bound frequency of the given item. That is, a number which
+   * is guaranteed to be no smaller than the real frequency.
+   */
+  public long getUpperBound(final long item) {
+    return hashMap_.get(item) + getMaximumError();
+  }
+
+  /**
+   * Gets the guaranteed lower bound frequency of the given item, which can never be
+   * negative.
+   *
+   * @param item the given item.
+   * @return the guaranteed lower bound frequency of the given item. That is, a number which
+   * is guaranteed to be no larger than the real frequency.
+   */
+  public long getLowerBound(final long item) {
+    return hashMap_.get(item);
+  }
+
+  /**
+   * Returns an array of Rows that include frequent items, estimates, upper and lower bounds
+   * given a threshold and an ErrorCondition.
+   * See {@link LongsSketch#getFrequentItems(long, ErrorType)}.
+   *
+   * @param threshold to include items in the result list
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public Row[] getFrequentItems(final long threshold, final ErrorType errorType) {
+    final long maxError = getMaximumError();
+    return sortItems(threshold > maxError ? threshold : maxError, errorType);
+  }
+
+  /**
+   * Returns an array of Rows that include frequent items, estimates, upper and lower bounds
+   * given an ErrorCondition and the default threshold.
+   * This is the same as getFrequentItems(getMaximumError(), errorType)
+   *
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public Row[] getFrequentItems(final ErrorType errorType) {
+    return sortItems(getMaximumError(), errorType);
+  }
+
+  /**
+   * Returns the current number of counters the sketch is configured to support.
+   *
+   * @return the current number of counters the sketch is configured to support.
+   */
+  public int getCurrentMapCapacity() {
+    return hashMap_.getCapacity();
+  }
+
+  /**
+   * @return An upper bound on the maximum error of getEstimate(item) for any item.
+   * This is equivalent to the maximum distance between the upper bound and the lower bound
+   * for any item.
+   */
+  public long getMaximumError() {
+    return mem_.getLong(OFFSET_LONG);
+  }
+
+  /**
+   * Returns true if this sketch is empty
+   *
+   * @return true if this sketch is empty
+   */
+  public boolean isEmpty() {
+    return getNumActiveItems() == 0;
+  }
+
+  /**
+   * Returns true if this sketch was created by {@link #wrap(Memory)} and cannot be updated.
+   *
+   * @return true if this sketch is read-only
+   */
+  public boolean isReadOnly() {
+    return wmem_ == null;
+  }
+
+  /**
+   * Returns the sum of the frequencies (weights or counts) in the stream seen so far by the sketch
+   *
+   * @return the sum of the frequencies in the stream seen so far by the sketch
+   */
+  public long getStreamLength() {
+    return mem_.getLong(STREAMLENGTH_LONG);
+  }
+
+  /**
+   * Returns the maximum number of counters the sketch is configured to support.
+   *
+   * @return the maximum number of counters the sketch is configured to support.
+   */
+  public int getMaximumMapCapacity() {
+    return (int) ((1 << lgMaxMapSize_) * ReversePurgeLongHashMap.getLoadFactor());
+  }
+
+  /**
+   * @return the number of active items in the sketch.
+   */
+  public int getNumActiveItems() {
+    return hashMap_.getNumActive();
+  }
+
+  /**
+   * Returns the number of bytes of the compact form of this sketch given by
+   * {@link #toByteArray()}.
+   *
+   * @return the number of bytes of the compact form of this sketch
+   */
+  public int getStorageBytes() {
+    if (isEmpty()) { return 8; }
+    return 4 * 8 + 16 * getNumActiveItems();
+  }
+
+  /**
+   * Returns the Memory that backs this sketch.
+   *
+   * @return the Memory that backs this sketch
+   */
+  public Memory getMemory() {
+    return mem_;
+  }
+
+  /**
+   * Resets this sketch to a virgin state, in place.
+   */
+  public void reset() {
+    checkWritable("reset()");
+    hashMap_.clear(LG_MIN_MAP_SIZE);
+    wmem_.putLong(STREAMLENGTH_LONG, 0L);
+    wmem_.putLong(OFFSET_LONG, 0L);
+  }
+
+  /**
+   * Returns the compact byte array representation of this sketch, which is the same as that of
+   * a {@link LongsSketch} with the same content.
+   *
+   * @return the compact byte array representation of this sketch
+   */
+  public byte[] toByteArray() {
+    final boolean empty = isEmpty();
+    final int activeItems = getNumActiveItems();
+    final byte[] outArr = new byte[getStorageBytes()];
+    final WritableMemory mem = WritableMemory.wrap(outArr);
+
+    long pre0 = 0L;
+    pre0 = insertPreLongs(empty ? 1 : PRE_LONGS, pre0);        //Byte 0
+    pre0 = insertSerVer(SER_VER, pre0);                        //Byte 1
+    pre0 = insertFamilyID(Family.FREQUENCY.getID(), pre0);     //Byte 2
+    pre0 = insertLgMaxMapSize(lgMaxMapSize_, pre0);            //Byte 3
+    pre0 = insertLgCurMapSize(hashMap_.getLgLength(), pre0);   //Byte 4
+    pre0 = insertFlags(empty ? PreambleUtil.EMPTY_FLAG_MASK : 0, pre0); //Byte 5
+    mem.putLong(0, pre0);
+
+    if (!empty) {
+      mem.putLong(8, PreambleUtil.insertActiveItems(activeItems, 0L));
+      mem.putLong(STREAMLENGTH_LONG, getStreamLength());
+      mem.putLong(OFFSET_LONG, getMaximumError());
+      final int preBytes = PRE_LONGS << 3;
+      mem.putLongArray(preBytes, hashMap_.getActiveValues(), 0, activeItems);
+      mem.putLongArray(preBytes + (activeItems << 3), hashMap_.getActiveKeys(), 0, activeItems);
+    }
+    return outArr;
+  }
+
+  /**
+   * Returns a human readable summary of this sketch.
+   * @return a human readable summary of this sketch.
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("DirectFrequentLongsSketch:").append(LS);
+    sb.append("  Read Only        : " + isReadOnly()).append(LS);
+    sb.append("  Stream Length    : " + getStreamLength()).append(LS);
+    sb.append("  Max Error Offset : " + getMaximumError()).append(LS);
+    sb.append(hashMap_.toString());
+    return sb.toString();
+  }
+
+  private void updateMap(final long item, final long count) {
+    hashMap_.adjustOrPutValue(item, count);
+
+    if (getNumActiveItems() > getCurrentMapCapacity()) { //over the threshold
+      if (hashMap_.getLgLength() < lgMaxMapSize_) { //below tgt size, we can grow
+        hashMap_.resize(2 * hashMap_.getLength());
+      } else { //At tgt size, must purge
+        wmem_.putLong(OFFSET_LONG, getMaximumError() + hashMap_.purge(sampleSize_));
+        if (getNumActiveItems() > getMaximumMapCapacity()) {
+          throw new SketchesStateException("Purge did not reduce active items.");
+        }
+      }
+    }
+  }
+
+  private Row[] sortItems(final long threshold, final ErrorType errorType) {
+    final ArrayList<Row> rowList = new ArrayList<Row>();
+    final long offset = getMaximumError();
+    final DirectReversePurgeLongHashMap.Iterator iter = hashMap_.iterator();
+    while (iter.next()) {
+      final long lb = iter.getValue();
+      final long ub = lb + offset;
+      final long bound = (errorType == ErrorType.NO_FALSE_NEGATIVES) ? ub : lb;
+      if (bound >= threshold) {
+        rowList.add(new Row(iter.getKey(), ub, ub, lb)); //est == ub for active items
+      }
+    }
+
+    // descending order
+    rowList.sort(new Comparator<Row>() {
+      @Override
+      public int compare(final Row r1, final Row r2) {
+        return r2.compareTo(r1);
+      }
+    });
+
+    return rowList.toArray(new Row[rowList.size()]);
+  }
+
+  private void checkWritable(final String method) {
+    if (wmem_ == null) {
+      throw new SketchesReadOnlyException("Call to " + method + " on read-only sketch");
+    }
+  }
+
+  private static void checkCapacity(final Memory mem, final int lgMaxMapSize) {
+    final long required = DirectReversePurgeLongHashMap.getRequiredBytes(lgMaxMapSize);
+    final long cap = mem.getCapacity();
+    if (cap < required) {
+      throw new SketchesArgumentException("Memory capacity is too small: " + cap
+          + ", required: " + required);
+    }
+  }
+
+  /**
+   * Checks the preamble of an updatable image.
+   * @param srcMem the updatable image
+   * @return log2 of the maximum map size
+   */
+  private static int checkImage(final Memory srcMem) {
+    final long pre0 = PreambleUtil.checkPreambleSize(srcMem);
+    final int preLongs = extractPreLongs(pre0);
+    final int serVer = extractSerVer(pre0);
+    final int familyID = extractFamilyID(pre0);
+    final int lgMaxMapSize = extractLgMaxMapSize(pre0);
+    final int lgCurMapSize = extractLgCurMapSize(pre0);
+    final int flags = extractFlags(pre0);
+
+    if ((flags & UPDATABLE_FLAG_MASK) == 0) {
+      throw new SketchesArgumentException(
+          "Image is not updatable, use LongsSketch.getInstance(Memory) instead.");
+    }
+    if (preLongs != PRE_LONGS) {
+      throw new SketchesArgumentException(
+          "Possible Corruption: PreLongs must be " + PRE_LONGS + ": " + preLongs);
+    }
+    if (serVer != SER_VER) {
+      throw new SketchesArgumentException(
+          "Possible Corruption: Ser Ver must be " + SER_VER + ": " + serVer);
+    }
+    Family.FREQUENCY.checkFamilyID(familyID);
+    if ((lgMaxMapSize < LG_MIN_MAP_SIZE) || (lgMaxMapSize > 30)
+        || (lgCurMapSize < LG_MIN_MAP_SIZE) || (lgCurMapSize > lgMaxMapSize)) {
+      throw new SketchesArgumentException("Possible Corruption: LgMaxMapSize: " + lgMaxMapSize
+          + ", LgCurMapSize: " + lgCurMapSize);
+    }
+    checkCapacity(srcMem, lgMaxMapSize);
+    final int activeItems = srcMem.getInt(PreambleUtil.ACTIVE_ITEMS_INT);
+    final int curCapacity = (int) ((1 << lgCurMapSize) * ReversePurgeLongHashMap.getLoadFactor());
+    if ((activeItems < 0) || (activeItems > curCapacity)) {
+      throw new SketchesArgumentException("Possible Corruption: ActiveItems: " + activeItems);
+    }
+    return lgMaxMapSize;
+  }
+
+}
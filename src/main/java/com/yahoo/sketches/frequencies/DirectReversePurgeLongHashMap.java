@@ -0,0 +1,379 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.frequencies.PreambleUtil.ACTIVE_ITEMS_INT;
+import static com.yahoo.sketches.frequencies.PreambleUtil.LG_CUR_MAP_SIZE_BYTE;
+import static com.yahoo.sketches.frequencies.Util.hash;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.QuickSelect;
+
+/**
+ * The same linear-probing, reverse-purge hash map of (key, value) pairs as
+ * {@link ReversePurgeLongHashMap}, but the keys, values and states live in a Memory in the
+ * updatable layout described in {@link PreambleUtil}. The number of active items and the
+ * log2 of the current length are kept in the preamble of the same Memory.
+ *
+ * <p>Given the same sequence of operations, the arrays of both maps are identical.</p>
+ */
+final class DirectReversePurgeLongHashMap {
+  private static final int PREAMBLE_BYTES = 32;
+  private static final double LOAD_FACTOR = ReversePurgeLongHashMap.getLoadFactor();
+  private final Memory mem_;
+  private final WritableMemory wmem_; //null if read-only
+  private final long keysOffset_;
+  private final long valuesOffset_;
+  private final long statesOffset_;
+
+  /**
+   * @param mem the Memory of the sketch
+   * @param wmem the same Memory if writable, otherwise null
+   * @param lgMaxMapSize log2 of the maximum length of the map, which fixes the buffer offsets
+   */
+  DirectReversePurgeLongHashMap(final Memory mem, final WritableMemory wmem,
+      final int lgMaxMapSize) {
+    mem_ = mem;
+    wmem_ = wmem;
+    final long maxMapSize = 1L << lgMaxMapSize;
+    keysOffset_ = PREAMBLE_BYTES;
+    valuesOffset_ = keysOffset_ + (maxMapSize << 3);
+    statesOffset_ = valuesOffset_ + (maxMapSize << 3);
+  }
+
+  /**
+   * @param lgMaxMapSize log2 of the maximum length of the map
+   * @return the number of bytes of the preamble and the buffers
+   */
+  static long getRequiredBytes(final int lgMaxMapSize) {
+    return PREAMBLE_BYTES + (18L << lgMaxMapSize);
+  }
+
+  /**
+   * Empties the map and sets its length.
+   * @param lgLength log2 of the new length of the map
+   */
+  void clear(final int lgLength) {
+    wmem_.clear(statesOffset_, 2L << lgLength);
+    wmem_.putByte(LG_CUR_MAP_SIZE_BYTE, (byte) lgLength);
+    wmem_.putInt(ACTIVE_ITEMS_INT, 0);
+  }
+
+  /**
+   * @param probe location in the hash table array
+   * @return true if the cell in the array contains an active key
+   */
+  boolean isActive(final int probe) {
+    return getState(probe) > 0;
+  }
+
+  /**
+   * Gets the current value with the given key
+   * @param key the given key
+   * @return the positive value the key corresponds to or zero if if the key is not found in the
+   * hash map.
+   */
+  long get(final long key) {
+    final int probe = hashProbe(key);
+    if (getState(probe) > 0) {
+      assert getKey(probe) == key;
+      return getValue(probe);
+    }
+    return 0;
+  }
+
+  /**
+   * Increments the value mapped to the key if the key is present in the map. Otherwise,
+   * the key is inserted with the putAmount.
+   *
+   * @param key the key of the value to increment
+   * @param adjustAmount the amount by which to increment the value
+   */
+  void adjustOrPutValue(final long key, final long adjustAmount) {
+    final int arrayMask = getLength() - 1;
+    int probe = (int) hash(key) & arrayMask;
+    int drift = 1;
+    short state;
+    while (((state = getState(probe)) != 0) && (getKey(probe) != key)) {
+      probe = (probe + 1) & arrayMask;
+      drift++;
+    }
+
+    if (state == 0) {
+      // adding the key to the table the value
+      assert getNumActive() <= getCapacity();
+      wmem_.putLong(keysOffset_ + ((long) probe << 3), key);
+      putValue(probe, adjustAmount);
+      putState(probe, (short) drift);
+      putNumActive(getNumActive() + 1);
+    } else {
+      // adjusting the value of an existing key
+      putValue(probe, getValue(probe) + adjustAmount);
+    }
+  }
+
+  /**
+   * Rehashes the map into the given length, in place.
+   * @param newSize the new length of the map, a power of 2 not larger than the maximum length
+   */
+  void resize(final int newSize) {
+    final int oldSize = getLength();
+    final long[] oldKeys = new long[oldSize];
+    final long[] oldValues = new long[oldSize];
+    final short[] oldStates = new short[oldSize];
+    mem_.getLongArray(keysOffset_, oldKeys, 0, oldSize);
+    mem_.getLongArray(valuesOffset_, oldValues, 0, oldSize);
+    mem_.getShortArray(statesOffset_, oldStates, 0, oldSize);
+    clear(Integer.numberOfTrailingZeros(newSize));
+    for (int i = 0; i < oldSize; i++) {
+      if (oldStates[i] > 0) {
+        adjustOrPutValue(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  /**
+   * See {@link ReversePurgeLongHashMap#purge(int)}.
+   * @param sampleSize number of samples
+   * @return the median value
+   */
+  long purge(final int sampleSize) {
+    final int limit = Math.min(sampleSize, getNumActive());
+
+    int numSamples = 0;
+    int i = 0;
+    final long[] samples = new long[limit];
+
+    while (numSamples < limit) {
+      if (isActive(i)) {
+        samples[numSamples] = getValue(i);
+        numSamples++;
+      }
+      i++;
+    }
+
+    final long val = QuickSelect.select(samples, 0, numSamples - 1, limit / 2);
+    adjustAllValuesBy(-1 * val);
+    keepOnlyPositiveCounts();
+    return val;
+  }
+
+  /**
+   * @return length of hash table internal arrays
+   */
+  int getLength() {
+    return 1 << getLgLength();
+  }
+
+  int getLgLength() {
+    return mem_.getByte(LG_CUR_MAP_SIZE_BYTE) & 0XFF;
+  }
+
+  /**
+   * @return capacity of hash table internal arrays (i.e., max number of keys that can be stored)
+   */
+  int getCapacity() {
+    return (int) (getLength() * LOAD_FACTOR);
+  }
+
+  /**
+   * @return number of populated keys
+   */
+  int getNumActive() {
+    return mem_.getInt(ACTIVE_ITEMS_INT);
+  }
+
+  /**
+   * @return an array containing the active keys in the hash map, in slot order.
+   */
+  long[] getActiveKeys() {
+    return getActive(keysOffset_);
+  }
+
+  /**
+   * @return an array containing the values corresponding to the active keys, in slot order.
+   */
+  long[] getActiveValues() {
+    return getActive(valuesOffset_);
+  }
+
+  Iterator iterator() {
+    return new Iterator(this);
+  }
+
+  /**
+   * Returns the hash table as a human readable string.
+   */
+  @Override
+  public String toString() {
+    final String fmt  = "  %12d:%11d%20d %d";
+    final String hfmt = "  %12s:%11s%20s %s";
+    final StringBuilder sb = new StringBuilder();
+    sb.append("DirectReversePurgeLongHashMap:").append(LS);
+    sb.append(String.format(hfmt, "Index","States","Values","Keys")).append(LS);
+
+    final int length = getLength();
+    for (int i = 0; i < length; i++) {
+      final short state = getState(i);
+      if (state <= 0) { continue; }
+      sb.append(String.format(fmt, i, state, getValue(i), getKey(i))).append(LS);
+    }
+    return sb.toString();
+  }
+
+  private long[] getActive(final long offsetBytes) {
+    final int numActive = getNumActive();
+    if (numActive == 0) { return null; }
+    final long[] returned = new long[numActive];
+    final int length = getLength();
+    int j = 0;
+    for (int i = 0; i < length; i++) {
+      if (isActive(i)) {
+        returned[j++] = mem_.getLong(offsetBytes + ((long) i << 3));
+      }
+    }
+    assert j == numActive : "j: " + j + " != numActive: " + numActive;
+    return returned;
+  }
+
+  private void adjustAllValuesBy(final long adjustAmount) {
+    for (int i = getLength(); i-- > 0; ) {
+      putValue(i, getValue(i) + adjustAmount);
+    }
+  }
+
+  /**
+   * Processes the map arrays and retains only keys with positive counts.
+   */
+  private void keepOnlyPositiveCounts() {
+    final int length = getLength();
+    int numActive = getNumActive();
+    // Starting from the back, find the first empty cell,
+    //  which establishes the high end of a cluster.
+    int firstProbe = length - 1;
+    while (getState(firstProbe) > 0) {
+      firstProbe--;
+    }
+    // Work towards the front; delete any non-positive entries.
+    for (int probe = firstProbe; probe-- > 0;) {
+      if ((getState(probe) > 0) && (getValue(probe) <= 0)) {
+        hashDelete(probe);
+        numActive--;
+      }
+    }
+    //now work on the first cluster that was skipped.
+    for (int probe = length; probe-- > firstProbe;) {
+      if ((getState(probe) > 0) && (getValue(probe) <= 0)) {
+        hashDelete(probe);
+        numActive--;
+      }
+    }
+    putNumActive(numActive);
+  }
+
+  private void hashDelete(int deleteProbe) {
+    // Looks ahead in the table to search for another item to move to this location.
+    // If none are found, the status is changed
+    putState(deleteProbe, (short) 0); //mark as empty
+    int drift = 1;
+    final int arrayMask = getLength() - 1;
+    int probe = (deleteProbe + drift) & arrayMask;
+    // advance until you find a free location replacing locations as needed
+    short state;
+    while ((state = getState(probe)) != 0) {
+      if (state > drift) {
+        // move current element
+        wmem_.putLong(keysOffset_ + ((long) deleteProbe << 3), getKey(probe));
+        putValue(deleteProbe, getValue(probe));
+        putState(deleteProbe, (short) (state - drift));
+        // marking this location as deleted
+        putState(probe, (short) 0);
+        drift = 0;
+        deleteProbe = probe;
+      }
+      probe = (probe + 1) & arrayMask;
+      drift++;
+    }
+  }
+
+  private int hashProbe(final long key) {
+    final int arrayMask = getLength() - 1;
+    int probe = (int) hash(key) & arrayMask;
+    while ((getState(probe) > 0) && (getKey(probe) != key)) {
+      probe = (probe + 1) & arrayMask;
+    }
+    return probe;
+  }
+
+  private long getKey(final int probe) {
+    return mem_.getLong(keysOffset_ + ((long) probe << 3));
+  }
+
+  private long getValue(final int probe) {
+    return mem_.getLong(valuesOffset_ + ((long) probe << 3));
+  }
+
+  private short getState(final int probe) {
+    return mem_.getShort(statesOffset_ + ((long) probe << 1));
+  }
+
+  private void putValue(final int probe, final long value) {
+    wmem_.putLong(valuesOffset_ + ((long) probe << 3), value);
+  }
+
+  private void putState(final int probe, final short state) {
+    wmem_.putShort(statesOffset_ + ((long) probe << 1), state);
+  }
+
+  private void putNumActive(final int numActive) {
+    wmem_.putInt(ACTIVE_ITEMS_INT, numActive);
+  }
+
+  // This iterator uses strides based on golden ratio to avoid clustering during merge
+  static final class Iterator {
+    private static final double GOLDEN_RATIO_RECIPROCAL = (Math.sqrt(5) - 1) / 2;
+
+    private final DirectReversePurgeLongHashMap map_;
+    private final int numActive_;
+    private final int stride_;
+    private final int mask_;
+    private int i_;
+    private int count_;
+
+    Iterator(final DirectReversePurgeLongHashMap map) {
+      map_ = map;
+      numActive_ = map.getNumActive();
+      final int length = map.getLength();
+      stride_ = (int) (length * GOLDEN_RATIO_RECIPROCAL) | 1;
+      mask_ = length - 1;
+      i_ = -stride_;
+      count_ = 0;
+    }
+
+    boolean next() {
+      i_ = (i_ + stride_) & mask_;
+      while (count_ < numActive_) {
+        if (map_.isActive(i_)) {
+          count_++;
+          return true;
+        }
+        i_ = (i_ + stride_) & mask_;
+      }
+      return false;
+    }
+
+    long getKey() {
+      return map_.getKey(i_);
+    }
+
+    long getValue() {
+      return map_.getValue(i_);
+    }
+  }
+
+}
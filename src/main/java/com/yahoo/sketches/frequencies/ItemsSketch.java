@@ -29,11 +29,13 @@ import static com.yahoo.sketches.frequencies.Util.SAMPLE_SIZE;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.stream.Collector;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.ArrayOfItemsSerDe;
 import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
 
@@ -199,6 +201,43 @@ public class ItemsSketch<T> {
     sampleSize = Math.min(SAMPLE_SIZE, maxMapCap);
   }
 
+  /**
+   * Returns a Collector that builds a sketch with the given maxMapSize from the items of a
+   * Stream, which also works for parallel streams. Each thread updates its own sketch, and the
+   * sketches of the threads are combined with {@link #merge(ItemsSketch)}. Null items are
+   * ignored.
+   *
+   * @param <T> The type of item that the sketch will track
+   * @param maxMapSize Determines the physical size of the internal hash map managed by each
+   * sketch and must be a power of 2.
+   * @return a Collector that builds a sketch with the given maxMapSize
+   */
+  public static <T> Collector<T, ?, ItemsSketch<T>> collector(final int maxMapSize) {
+    toLog2(maxMapSize, "maxMapSize");
+    return new SketchCollector<T, ItemsSketch<T>, ItemsSketch<T>>() {
+      @Override
+      protected ItemsSketch<T> newContainer() {
+        return new ItemsSketch<T>(maxMapSize);
+      }
+
+      @Override
+      protected void accumulate(final ItemsSketch<T> sketch, final T item) {
+        sketch.update(item);
+      }
+
+      @Override
+      protected ItemsSketch<T> combine(final ItemsSketch<T> sketch1,
+          final ItemsSketch<T> sketch2) {
+        return sketch1.merge(sketch2);
+      }
+
+      @Override
+      protected ItemsSketch<T> finish(final ItemsSketch<T> sketch) {
+        return sketch;
+      }
+    };
+  }
+
   /**
    * Returns a sketch instance of this class from the given srcMem,
    * which must be a Memory representation of this sketch class.
@@ -9,6 +9,7 @@ import static com.yahoo.sketches.Util.LS;
 import static com.yahoo.sketches.Util.toLog2;
 import static com.yahoo.sketches.frequencies.PreambleUtil.EMPTY_FLAG_MASK;
 import static com.yahoo.sketches.frequencies.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.frequencies.PreambleUtil.UPDATABLE_FLAG_MASK;
 import static com.yahoo.sketches.frequencies.PreambleUtil.extractActiveItems;
 import static com.yahoo.sketches.frequencies.PreambleUtil.extractFamilyID;
 import static com.yahoo.sketches.frequencies.PreambleUtil.extractFlags;
@@ -28,10 +29,12 @@ import static com.yahoo.sketches.frequencies.Util.SAMPLE_SIZE;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.stream.Collector;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
 
@@ -195,9 +198,48 @@ public class LongsSketch {
     sampleSize = Math.min(SAMPLE_SIZE, maxMapCap);
   }
 
+  /**
+   * Returns a Collector that builds a sketch with the given maxMapSize from the items of a
+   * Stream, which also works for parallel streams. Each thread updates its own sketch, and the
+   * sketches of the threads are combined with {@link #merge(LongsSketch)}. Null items are
+   * ignored. A LongStream can be collected after
+   * {@link java.util.stream.LongStream#boxed() boxed()}.
+   *
+   * @param maxMapSize Determines the physical size of the internal hash map managed by each
+   * sketch and must be a power of 2.
+   * @return a Collector that builds a sketch with the given maxMapSize
+   */
+  public static Collector<Long, ?, LongsSketch> collector(final int maxMapSize) {
+    toLog2(maxMapSize, "maxMapSize");
+    return new SketchCollector<Long, LongsSketch, LongsSketch>() {
+      @Override
+      protected LongsSketch newContainer() {
+        return new LongsSketch(maxMapSize);
+      }
+
+      @Override
+      protected void accumulate(final LongsSketch sketch, final Long item) {
+        if (item != null) {
+          sketch.update(item);
+        }
+      }
+
+      @Override
+      protected LongsSketch combine(final LongsSketch sketch1, final LongsSketch sketch2) {
+        return sketch1.merge(sketch2);
+      }
+
+      @Override
+      protected LongsSketch finish(final LongsSketch sketch) {
+        return sketch;
+      }
+    };
+  }
+
   /**
    * Returns a sketch instance of this class from the given srcMem,
-   * which must be a Memory representation of this sketch class.
+   * which must be a Memory representation of this sketch class or the updatable Memory image of
+   * a {@link DirectLongsSketch}.
    *
    * @param srcMem a Memory representation of a sketch of this class.
    * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
@@ -214,6 +256,10 @@ public class LongsSketch {
     final int lgCurMapSize = extractLgCurMapSize(pre0); //Byte 4
     final boolean empty = (extractFlags(pre0) & EMPTY_FLAG_MASK) != 0; //Byte 5
 
+    if ((extractFlags(pre0) & UPDATABLE_FLAG_MASK) != 0) { //image of a DirectLongsSketch
+      return getInstance(Memory.wrap(DirectLongsSketch.wrap(srcMem).toByteArray()));
+    }
+
     // Checks
     final boolean preLongsEq1 = (preLongs == 1);        //Byte 0
     final boolean preLongsEqMax = (preLongs == maxPreLongs);
@@ -742,6 +788,10 @@ public class LongsSketch {
     return sb.toString();
   }
 
+  ReversePurgeLongHashMap getHashMap() {
+    return hashMap;
+  }
+
   /**
    * Deserializes an array of String tokens into a hash map object of this class.
    *
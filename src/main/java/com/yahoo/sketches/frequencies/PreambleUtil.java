@@ -49,6 +49,14 @@ import com.yahoo.sketches.SketchesArgumentException;
  *  5   ||----------start of values buffer, followed by keys buffer------------------------|
  * </pre>
  *
+ * <p>
+ * The updatable form of a DirectLongsSketch has the UPDATABLE flag set and always has 4 preamble
+ * longs, even if it is empty. The preamble is followed by the whole hash map of the sketch, sized
+ * for the maximum map size: the keys buffer (8 * maxMapSize bytes), then the values buffer
+ * (8 * maxMapSize bytes), then the states buffer (2 * maxMapSize bytes). Only the first
+ * curMapSize entries of each buffer are in use.
+ * </p>
+ *
  * @author Lee Rhodes
  */
 final class PreambleUtil {
@@ -70,6 +78,7 @@ final class PreambleUtil {
 
   // flag bit masks
   static final int EMPTY_FLAG_MASK      = 4;
+  static final int UPDATABLE_FLAG_MASK  = 8;
 
   // Specific values for this implementation
   static final int SER_VER = 1;
@@ -95,6 +104,7 @@ final class PreambleUtil {
 
     final String flagsStr = zeroPad(Integer.toBinaryString(flags), 8) + ", " + (flags);
     final boolean empty = (flags & EMPTY_FLAG_MASK) > 0;
+    final boolean updatable = (flags & UPDATABLE_FLAG_MASK) > 0;
     final int maxMapSize = 1 << lgMaxMapSize;
     final int curMapSize = 1 << lgCurMapSize;
     final int maxPreLongs = Family.FREQUENCY.getMaxPreLongs();
@@ -125,6 +135,7 @@ final class PreambleUtil {
       .append("Byte  4: CurMapSize           : ").append(curMapSize).append(LS)
       .append("Byte  5: Flags Field          : ").append(flagsStr).append(LS)
       .append("  EMPTY                       : ").append(empty).append(LS)
+      .append("  UPDATABLE                   : ").append(updatable).append(LS)
       .append("Byte  6: Freq Sketch Type     : ").append(type).append(LS);
 
     if (preLongs == 1) {
@@ -136,8 +147,10 @@ final class PreambleUtil {
     }
 
     sb.append(  "Preamble Bytes                : ").append(preLongs * 8).append(LS);
-    sb.append(  "TOTAL Sketch Bytes            : ").append((preLongs + activeItems * 2) << 3)
-      .append(LS)
+    final long totalBytes = updatable
+        ? DirectLongsSketch.getUpdatableStorageBytes(maxMapSize)
+        : (preLongs + activeItems * 2) << 3;
+    sb.append(  "TOTAL Sketch Bytes            : ").append(totalBytes).append(LS)
       .append("### END FREQUENCY SKETCH PREAMBLE SUMMARY").append(LS);
     return sb.toString();
   }
@@ -7,6 +7,8 @@ package com.yahoo.sketches.hash;
 
 import java.io.Serializable;
 
+import com.yahoo.memory.Memory;
+
 
 /**
  * <p>
@@ -29,6 +31,10 @@ import java.io.Serializable;
  * original C++ implementation. This implementation produces the same exact output hash bits as
  * the above C++ method given the same input.</p>
  *
+ * <p>Single primitives, Strings and regions of Memory can also be hashed, and every input type
+ * has an overload that writes the result into a caller-supplied output array. These overloads
+ * do not allocate, which is important in the update paths of the sketches.</p>
+ *
  * <p>In addition, with this implementation, the hash of byte[], char[], int[], or long[] will
  * produce the same hash result if, and only if, all the arrays have the same exact length in
  * bytes, and if the contents of the values in the arrays have the same byte endianness and
@@ -56,7 +62,22 @@ public final class MurmurHash3 implements Serializable {
    * @return the hash.
    */
   public static long[] hash(final long[] key, final long seed) {
-    final HashState hashState = new HashState(seed, seed);
+    return hash(key, seed, new long[2]);
+  }
+
+  /**
+   * Computes the 128-bit hash of the input into the given hashOut array, which must be of length
+   * at least 2. This produces the same result as {@link #hash(long[], long)}, but does not
+   * allocate.
+   *
+   * @param key The input long[] array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final long[] key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
     final int longs = key.length; //in longs
 
     // Number of full 128-bit blocks of 2 longs (the body).
@@ -67,7 +88,7 @@ public final class MurmurHash3 implements Serializable {
     for (int i = 0; i < nblocks; i++ ) {
       final long k1 = key[i << 1]; //0, 2, 4, ...
       final long k2 = key[(i << 1) + 1]; //1, 3, 5, ...
-      hashState.blockMix128(k1, k2);
+      blockMix128(hashOut, k1, k2);
     }
 
     // Get the tail index, remainder length
@@ -77,7 +98,7 @@ public final class MurmurHash3 implements Serializable {
     // Get the tail
     final long k1 = (rem == 0) ? 0 : key[tail]; //k2 -> 0
     // Mix the tail into the hash and return
-    return hashState.finalMix128(k1, 0, longs << 3); //convert to bytes
+    return finalMix128(hashOut, k1, 0, longs << 3); //convert to bytes
   }
 
   //--Hash of int[]----------------------------------------------------
@@ -89,7 +110,22 @@ public final class MurmurHash3 implements Serializable {
    * @return the hash.
    */
   public static long[] hash(final int[] key, final long seed) {
-    final HashState hashState = new HashState(seed, seed);
+    return hash(key, seed, new long[2]);
+  }
+
+  /**
+   * Computes the 128-bit hash of the input into the given hashOut array, which must be of length
+   * at least 2. This produces the same result as {@link #hash(int[], long)}, but does not
+   * allocate.
+   *
+   * @param key The input int[] array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final int[] key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
     final int ints = key.length; //in ints
 
     // Number of full 128-bit blocks of 4 ints.
@@ -100,7 +136,7 @@ public final class MurmurHash3 implements Serializable {
     for (int i = 0; i < nblocks; i++ ) { //4 ints per block
       final long k1 = getLong(key, i << 2, 2); //0, 4, 8, ...
       final long k2 = getLong(key, (i << 2) + 2, 2); //2, 6, 10, ...
-      hashState.blockMix128(k1, k2);
+      blockMix128(hashOut, k1, k2);
     }
 
     // Get the tail index, remainder length
@@ -119,7 +155,7 @@ public final class MurmurHash3 implements Serializable {
       k2 = 0;
     }
     // Mix the tail into the hash and return
-    return hashState.finalMix128(k1, k2, ints << 2); //convert to bytes
+    return finalMix128(hashOut, k1, k2, ints << 2); //convert to bytes
   }
 
   //--Hash of char[]----------------------------------------------------
@@ -131,7 +167,22 @@ public final class MurmurHash3 implements Serializable {
    * @return the hash.
    */
   public static long[] hash(final char[] key, final long seed) {
-    final HashState hashState = new HashState(seed, seed);
+    return hash(key, seed, new long[2]);
+  }
+
+  /**
+   * Computes the 128-bit hash of the input into the given hashOut array, which must be of length
+   * at least 2. This produces the same result as {@link #hash(char[], long)}, but does not
+   * allocate.
+   *
+   * @param key The input char[] array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final char[] key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
     final int chars = key.length; //in chars
 
     // Number of full 128-bit blocks of 8 chars.
@@ -142,7 +193,7 @@ public final class MurmurHash3 implements Serializable {
     for (int i = 0; i < nblocks; i++ ) { //8 chars per block
       final long k1 = getLong(key, i << 3, 4); //0, 8, 16, ...
       final long k2 = getLong(key, (i << 3) + 4, 4); //4, 12, 20, ...
-      hashState.blockMix128(k1, k2);
+      blockMix128(hashOut, k1, k2);
     }
 
     // Get the tail index, remainder length
@@ -161,7 +212,7 @@ public final class MurmurHash3 implements Serializable {
       k2 = 0;
     }
     // Mix the tail into the hash and return
-    return hashState.finalMix128(k1, k2, chars << 1); //convert to bytes
+    return finalMix128(hashOut, k1, k2, chars << 1); //convert to bytes
   }
 
   //--Hash of byte[]----------------------------------------------------
@@ -173,7 +224,22 @@ public final class MurmurHash3 implements Serializable {
    * @return the hash.
    */
   public static long[] hash(final byte[] key, final long seed) {
-    final HashState hashState = new HashState(seed, seed);
+    return hash(key, seed, new long[2]);
+  }
+
+  /**
+   * Computes the 128-bit hash of the input into the given hashOut array, which must be of length
+   * at least 2. This produces the same result as {@link #hash(byte[], long)}, but does not
+   * allocate.
+   *
+   * @param key The input byte[] array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final byte[] key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
     final int bytes = key.length; //in bytes
 
     // Number of full 128-bit blocks of 16 bytes.
@@ -184,7 +250,7 @@ public final class MurmurHash3 implements Serializable {
     for (int i = 0; i < nblocks; i++ ) { //16 bytes per block
       final long k1 = getLong(key, i << 4, 8); //0, 16, 32, ...
       final long k2 = getLong(key, (i << 4) + 8, 8); //8, 24, 40, ...
-      hashState.blockMix128(k1, k2);
+      blockMix128(hashOut, k1, k2);
     }
 
     // Get the tail index, remainder length
@@ -203,96 +269,269 @@ public final class MurmurHash3 implements Serializable {
       k2 = 0;
     }
     // Mix the tail into the hash and return
-    return hashState.finalMix128(k1, k2, bytes);
+    return finalMix128(hashOut, k1, k2, bytes);
   }
 
-  //--HashState class---------------------------------------------------
+  //--Hash of long----------------------------------------------------
   /**
-   * Common processing of the 128-bit hash state independent of input type.
+   * Computes the 128-bit hash of the given long into the given hashOut array, which must be of
+   * length at least 2. This produces the same result as hashing the long[] <i>{key}</i>,
+   * but does not allocate.
+   *
+   * @param key The input long.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
    */
-  private static final class HashState {
-    private static final long C1 = 0x87c37b91114253d5L;
-    private static final long C2 = 0x4cf5ad432745937fL;
-    private long h1;
-    private long h2;
-
-    HashState(final long h1, final long h2) {
-      this.h1 = h1;
-      this.h2 = h2;
-    }
+  public static long[] hash(final long key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
+    return finalMix128(hashOut, key, 0, Long.BYTES);
+  }
 
-    /**
-     * Block mix (128-bit block) of input key to internal hash state.
-     *
-     * @param k1 intermediate mix value
-     * @param k2 intermediate mix value
-     */
-    void blockMix128(final long k1, final long k2) {
-      h1 ^= mixK1(k1);
-      h1 = Long.rotateLeft(h1, 27);
-      h1 += h2;
-      h1 = (h1 * 5) + 0x52dce729;
-
-      h2 ^= mixK2(k2);
-      h2 = Long.rotateLeft(h2, 31);
-      h2 += h1;
-      h2 = (h2 * 5) + 0x38495ab5;
-    }
+  //--Hash of double----------------------------------------------------
+  /**
+   * Computes the 128-bit hash of the given double into the given hashOut array, which must be of
+   * length at least 2. The double is first canonicalized exactly as the sketch
+   * <i>update(double)</i> methods do: plus and minus zero are normalized to plus zero and all NaN forms are normalized
+   * to a single NaN representation by <i>Double.doubleToLongBits(key)</i>.
+   * This then produces the same result as {@link #hash(long, long, long[])} of the resulting bits.
+   *
+   * @param key The input double.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final double key, final long seed, final long[] hashOut) {
+    final double d = (key == 0.0) ? 0.0 : key; // canonicalize -0.0, 0.0
+    return hash(Double.doubleToLongBits(d), seed, hashOut); // canonicalize all NaN forms
+  }
 
-    long[] finalMix128(final long k1, final long k2, final long inputLengthBytes) {
-      h1 ^= mixK1(k1);
-      h2 ^= mixK2(k2);
-      h1 ^= inputLengthBytes;
-      h2 ^= inputLengthBytes;
-      h1 += h2;
-      h2 += h1;
-      h1 = finalMix64(h1);
-      h2 = finalMix64(h2);
-      h1 += h2;
-      h2 += h1;
-      return new long[] { h1, h2 };
-    }
+  //--Hash of int----------------------------------------------------
+  /**
+   * Computes the 128-bit hash of the given int into the given hashOut array, which must be of
+   * length at least 2. This produces the same result as hashing the int[] <i>{key}</i>,
+   * but does not allocate.
+   *
+   * @param key The input int.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final int key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
+    return finalMix128(hashOut, key & 0xFFFFFFFFL, 0, Integer.BYTES);
+  }
 
-    /**
-     * Final self mix of h*.
-     *
-     * @param h input to final mix
-     * @return mix
-     */
-    private static long finalMix64(long h) {
-      h ^= h >>> 33;
-      h *= 0xff51afd7ed558ccdL;
-      h ^= h >>> 33;
-      h *= 0xc4ceb9fe1a85ec53L;
-      h ^= h >>> 33;
-      return h;
+  //--Hash of String----------------------------------------------------
+  /**
+   * Computes the 128-bit hash of the UTF-8 encoding of the given String into the given hashOut
+   * array, which must be of length at least 2. The UTF-8 bytes are generated on the fly, so this
+   * produces the same result as {@link #hash(byte[], long)} of <i>key.getBytes(UTF_8)</i>,
+   * including the replacement of malformed surrogates by '?', but does not allocate.
+   *
+   * @param key The input String. Must be non-null.
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final String key, final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
+    final int chars = key.length();
+    long k1 = 0;
+    long k2 = 0;
+    int blockBytes = 0; //bytes accumulated in the current 128-bit block: 0 to 15
+    long bytes = 0;     //total bytes
+    for (int i = 0; i < chars; i++) {
+      final char c = key.charAt(i);
+      final int enc; //up to 4 encoded bytes, little-endian
+      final int encLen;
+      if (c < 0x80) {
+        enc = c;
+        encLen = 1;
+      } else if (c < 0x800) {
+        enc = (0xC0 | (c >>> 6)) | ((0x80 | (c & 0x3F)) << 8);
+        encLen = 2;
+      } else if (Character.isSurrogate(c)) {
+        final char c2;
+        if (Character.isHighSurrogate(c) && ((i + 1) < chars)
+            && Character.isLowSurrogate(c2 = key.charAt(i + 1))) {
+          final int cp = Character.toCodePoint(c, c2);
+          enc = (0xF0 | (cp >>> 18))
+              | ((0x80 | ((cp >>> 12) & 0x3F)) << 8)
+              | ((0x80 | ((cp >>> 6) & 0x3F)) << 16)
+              | ((0x80 | (cp & 0x3F)) << 24);
+          encLen = 4;
+          i++;
+        } else { //malformed, replaced by '?' as does String.getBytes(UTF_8)
+          enc = '?';
+          encLen = 1;
+        }
+      } else {
+        enc = (0xE0 | (c >>> 12))
+            | ((0x80 | ((c >>> 6) & 0x3F)) << 8)
+            | ((0x80 | (c & 0x3F)) << 16);
+        encLen = 3;
+      }
+      for (int b = 0; b < encLen; b++) {
+        final long v = (enc >>> (b << 3)) & 0xFFL;
+        if (blockBytes < 8) {
+          k1 |= v << (blockBytes << 3);
+        } else {
+          k2 |= v << ((blockBytes - 8) << 3);
+        }
+        if (++blockBytes == 16) {
+          blockMix128(hashOut, k1, k2);
+          k1 = 0;
+          k2 = 0;
+          blockBytes = 0;
+        }
+      }
+      bytes += encLen;
     }
+    // Mix the tail into the hash and return
+    return finalMix128(hashOut, k1, k2, bytes);
+  }
 
-    /**
-     * Self mix of k1
-     *
-     * @param k1 input argument
-     * @return mix
-     */
-    private static long mixK1(long k1) {
-      k1 *= C1;
-      k1 = Long.rotateLeft(k1, 31);
-      k1 *= C2;
-      return k1;
+  //--Hash of Memory----------------------------------------------------
+  /**
+   * Computes the 128-bit hash of the given region of Memory into the given hashOut array, which
+   * must be of length at least 2. The Memory is read in native (little-endian) byte order, so
+   * this produces the same result as {@link #hash(byte[], long)} of the same bytes, but does not
+   * allocate.
+   *
+   * @param mem The input Memory. Must be non-null.
+   * @param offsetBytes the starting offset in bytes of the region to hash
+   * @param lengthBytes the length in bytes of the region to hash
+   * @param seed A long valued seed.
+   * @param hashOut the caller-supplied array that receives the hash
+   * @return the given hashOut array
+   */
+  public static long[] hash(final Memory mem, final long offsetBytes, final long lengthBytes,
+      final long seed, final long[] hashOut) {
+    hashOut[0] = seed;
+    hashOut[1] = seed;
+
+    // Number of full 128-bit blocks of 16 bytes.
+    // Possible exclusion of a remainder of up to 15 bytes.
+    final long nblocks = lengthBytes >>> 4; //bytes / 16
+
+    // Process the 128-bit blocks (the body) into the hash
+    long off = offsetBytes;
+    for (long i = 0; i < nblocks; i++ ) { //16 bytes per block
+      final long k1 = mem.getLong(off);
+      final long k2 = mem.getLong(off + 8);
+      blockMix128(hashOut, k1, k2);
+      off += 16;
     }
 
-    /**
-     * Self mix of k2
-     *
-     * @param k2 input argument
-     * @return mix
-     */
-    private static long mixK2(long k2) {
-      k2 *= C2;
-      k2 = Long.rotateLeft(k2, 33);
-      k2 *= C1;
-      return k2;
+    // Get the tail remainder length
+    final int rem = (int) (lengthBytes - (nblocks << 4)); // remainder bytes: 0,1,...,15
+
+    // Get the tail
+    final long k1;
+    final long k2;
+    if (rem > 8) { //k1 -> whole; k2 -> partial
+      k1 = mem.getLong(off);
+      k2 = getLong(mem, off + 8, rem - 8);
     }
+    else { //k1 -> whole, partial or 0; k2 == 0
+      k1 = (rem == 0) ? 0 : getLong(mem, off, rem);
+      k2 = 0;
+    }
+    // Mix the tail into the hash and return
+    return finalMix128(hashOut, k1, k2, lengthBytes);
+  }
+
+  //--Common hash state processing---------------------------------------
+  // The 128-bit hash state (h1, h2) is held in the output array itself, which is independent of
+  // the input type and avoids allocating any intermediate state.
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  /**
+   * Block mix (128-bit block) of input key to internal hash state.
+   *
+   * @param h the hash state array {h1, h2}
+   * @param k1 intermediate mix value
+   * @param k2 intermediate mix value
+   */
+  private static void blockMix128(final long[] h, final long k1, final long k2) {
+    long h1 = h[0];
+    long h2 = h[1];
+    h1 ^= mixK1(k1);
+    h1 = Long.rotateLeft(h1, 27);
+    h1 += h2;
+    h1 = (h1 * 5) + 0x52dce729;
+
+    h2 ^= mixK2(k2);
+    h2 = Long.rotateLeft(h2, 31);
+    h2 += h1;
+    h2 = (h2 * 5) + 0x38495ab5;
+    h[0] = h1;
+    h[1] = h2;
+  }
+
+  private static long[] finalMix128(final long[] h, final long k1, final long k2,
+      final long inputLengthBytes) {
+    long h1 = h[0];
+    long h2 = h[1];
+    h1 ^= mixK1(k1);
+    h2 ^= mixK2(k2);
+    h1 ^= inputLengthBytes;
+    h2 ^= inputLengthBytes;
+    h1 += h2;
+    h2 += h1;
+    h1 = finalMix64(h1);
+    h2 = finalMix64(h2);
+    h1 += h2;
+    h2 += h1;
+    h[0] = h1;
+    h[1] = h2;
+    return h;
+  }
+
+  /**
+   * Final self mix of h*.
+   *
+   * @param h input to final mix
+   * @return mix
+   */
+  private static long finalMix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Self mix of k1
+   *
+   * @param k1 input argument
+   * @return mix
+   */
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    return k1;
+  }
+
+  /**
+   * Self mix of k2
+   *
+   * @param k2 input argument
+   * @return mix
+   */
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    return k2;
   }
 
   //--Helper methods----------------------------------------------------
@@ -353,4 +592,23 @@ public final class MurmurHash3 implements Serializable {
     return out;
   }
 
+  /**
+   * Gets a long from the given Memory starting at the given offset and continuing for
+   * remainder (rem) bytes. The bytes are extracted in little-endian order. There is no limit
+   * checking.
+   *
+   * @param mem The given input Memory.
+   * @param offsetBytes Zero-based offset in bytes from the start of the Memory.
+   * @param rem Remainder bytes. An integer in the range [1,8].
+   * @return long
+   */
+  private static long getLong(final Memory mem, final long offsetBytes, final int rem) {
+    long out = 0L;
+    for (int i = rem; i-- > 0;) { //i= 7,6,5,4,3,2,1,0
+      final byte b = mem.getByte(offsetBytes + i);
+      out ^= (b & 0xFFL) << (i * 8); //equivalent to |=
+    }
+    return out;
+  }
+
 }
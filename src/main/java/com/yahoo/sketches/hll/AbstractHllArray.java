@@ -11,6 +11,8 @@ import static com.yahoo.sketches.hll.PreambleUtil.HLL_PREINTS;
 import static com.yahoo.sketches.hll.TgtHllType.HLL_4;
 import static com.yahoo.sketches.hll.TgtHllType.HLL_6;
 
+import com.yahoo.memory.Memory;
+
 /**
  * @author Lee Rhodes
  */
@@ -81,6 +83,13 @@ abstract class AbstractHllArray extends HllSketchImpl {
 
   abstract int getHllByteArrBytes();
 
+  /**
+   * Returns a read-only view of the HLL byte array, starting at the first register.
+   * This is used by the bulk register merge of the Union.
+   * @return a read-only view of the HLL byte array
+   */
+  abstract Memory getHllByteArrMemory();
+
   @Override
   abstract PairIterator getIterator();
 
@@ -7,9 +7,10 @@ package com.yahoo.sketches.hll;
 
 import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
+import static com.yahoo.sketches.hll.HllUtil.COUPON_BUF_INTS;
+import static com.yahoo.sketches.hll.HllUtil.checkArrayRange;
 import static com.yahoo.sketches.hll.HllUtil.KEY_BITS_26;
 import static com.yahoo.sketches.hll.HllUtil.KEY_MASK_26;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.yahoo.memory.Memory;
 
@@ -21,6 +22,17 @@ import com.yahoo.memory.Memory;
  */
 abstract class BaseHllSketch {
 
+  /**
+   * Reusable output of the update hash, so that the update path does not allocate.
+   * Like the sketch itself this is not thread-safe.
+   */
+  final long[] hashOut = new long[2];
+
+  /**
+   * Reusable coupon buffer for the batch update methods, allocated on first use.
+   */
+  private int[] couponBuf = null;
+
   /**
    * Gets the size in bytes of the current sketch when serialized using
    * <i>toCompactByteArray()</i>.
@@ -235,8 +247,7 @@ abstract class BaseHllSketch {
    * @param datum The given long datum.
    */
   public void update(final long datum) {
-    final long[] data = { datum };
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(datum, DEFAULT_UPDATE_SEED, hashOut)));
   }
 
   /**
@@ -249,9 +260,7 @@ abstract class BaseHllSketch {
    * @param datum The given double datum.
    */
   public void update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(datum, DEFAULT_UPDATE_SEED, hashOut))); //canonicalizes datum
   }
 
   /**
@@ -270,8 +279,7 @@ abstract class BaseHllSketch {
    */
   public void update(final String datum) {
     if ((datum == null) || datum.isEmpty()) { return; }
-    final byte[] data = datum.getBytes(UTF_8);
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(datum, DEFAULT_UPDATE_SEED, hashOut))); //UTF-8, without copying
   }
 
   /**
@@ -282,7 +290,7 @@ abstract class BaseHllSketch {
    */
   public void update(final byte[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED, hashOut)));
   }
 
   /**
@@ -296,7 +304,7 @@ abstract class BaseHllSketch {
    */
   public void update(final char[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED, hashOut)));
   }
 
   /**
@@ -307,7 +315,7 @@ abstract class BaseHllSketch {
    */
   public void update(final int[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED, hashOut)));
   }
 
   /**
@@ -318,16 +326,141 @@ abstract class BaseHllSketch {
    */
   public void update(final long[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED, hashOut)));
+  }
+
+  /**
+   * Present the given 128-bit hash of an item as a potential unique item. This allows one hash
+   * of an item to be shared with other sketches, see {@link com.yahoo.sketches.HashFanOut}.
+   * The hash must have been computed by
+   * {@link com.yahoo.sketches.hash.MurmurHash3 MurmurHash3} with the
+   * {@link com.yahoo.sketches.Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}, or the result will
+   * not be consistent with the other update methods.
+   *
+   * @param hash128 the given 128-bit hash as an array of two longs.
+   */
+  public void updateHash(final long[] hash128) {
+    couponUpdate(coupon(hash128[0], hash128[1]));
+  }
+
+  /**
+   * Present the given 128-bit hash of an item as a potential unique item.
+   * See {@link #updateHash(long[])}.
+   *
+   * @param h0 the first 64 bits of the given 128-bit hash.
+   * @param h1 the second 64 bits of the given 128-bit hash.
+   */
+  public void updateHash(final long h0, final long h1) {
+    couponUpdate(coupon(h0, h1));
+  }
+
+  /**
+   * Present each of the given range of longs as a potential unique item.
+   * This produces the same result as calling {@link #update(long)} for each item, but
+   * hashes the items in a tight loop and applies the resulting coupons as a batch.
+   *
+   * @param items the given array of long items
+   * @param offset the index of the first item
+   * @param length the number of items
+   */
+  public void update(final long[] items, final int offset, final int length) {
+    checkArrayRange(offset, length, items.length);
+    final int[] buf = getCouponBuf();
+    int n = 0;
+    for (int i = offset; i < (offset + length); i++) {
+      buf[n++] = coupon(hash(items[i], DEFAULT_UPDATE_SEED, hashOut));
+      if (n == COUPON_BUF_INTS) { couponUpdate(buf, n); n = 0; }
+    }
+    if (n > 0) { couponUpdate(buf, n); }
   }
 
-  private static final int coupon(final long[] hash) {
-    final int addr26 = (int) ((hash[0] & KEY_MASK_26));
-    final int lz = Long.numberOfLeadingZeros(hash[1]);
+  /**
+   * Present each of the given range of ints as a potential unique item.
+   * This produces the same result as calling {@link #update(long)} for each item,
+   * but hashes the items in a tight loop and applies the resulting coupons as a batch.
+   *
+   * @param items the given array of int items
+   * @param offset the index of the first item
+   * @param length the number of items
+   */
+  public void update(final int[] items, final int offset, final int length) {
+    checkArrayRange(offset, length, items.length);
+    final int[] buf = getCouponBuf();
+    int n = 0;
+    for (int i = offset; i < (offset + length); i++) {
+      buf[n++] = coupon(hash((long) items[i], DEFAULT_UPDATE_SEED, hashOut));
+      if (n == COUPON_BUF_INTS) { couponUpdate(buf, n); n = 0; }
+    }
+    if (n > 0) { couponUpdate(buf, n); }
+  }
+
+  /**
+   * Present each of the given range of doubles as a potential unique item.
+   * This produces the same result as calling {@link #update(double)} for each item, including
+   * the canonicalization of the doubles, but hashes the items in a tight loop and applies the
+   * resulting coupons as a batch.
+   *
+   * @param items the given array of double items
+   * @param offset the index of the first item
+   * @param length the number of items
+   */
+  public void update(final double[] items, final int offset, final int length) {
+    checkArrayRange(offset, length, items.length);
+    final int[] buf = getCouponBuf();
+    int n = 0;
+    for (int i = offset; i < (offset + length); i++) {
+      buf[n++] = coupon(hash(items[i], DEFAULT_UPDATE_SEED, hashOut));
+      if (n == COUPON_BUF_INTS) { couponUpdate(buf, n); n = 0; }
+    }
+    if (n > 0) { couponUpdate(buf, n); }
+  }
+
+  /**
+   * Present each of the given range of Strings as a potential unique item.
+   * This produces the same result as calling {@link #update(String)} for each item, so null or
+   * empty Strings are ignored, but hashes the items in a tight loop and applies the resulting
+   * coupons as a batch.
+   *
+   * @param items the given array of String items
+   * @param offset the index of the first item
+   * @param length the number of items
+   */
+  public void update(final String[] items, final int offset, final int length) {
+    checkArrayRange(offset, length, items.length);
+    final int[] buf = getCouponBuf();
+    int n = 0;
+    for (int i = offset; i < (offset + length); i++) {
+      final String datum = items[i];
+      if ((datum == null) || datum.isEmpty()) { continue; }
+      buf[n++] = coupon(hash(datum, DEFAULT_UPDATE_SEED, hashOut));
+      if (n == COUPON_BUF_INTS) { couponUpdate(buf, n); n = 0; }
+    }
+    if (n > 0) { couponUpdate(buf, n); }
+  }
+
+  private int[] getCouponBuf() {
+    if (couponBuf == null) { couponBuf = new int[COUPON_BUF_INTS]; }
+    return couponBuf;
+  }
+
+  static final int coupon(final long[] hash) {
+    return coupon(hash[0], hash[1]);
+  }
+
+  static final int coupon(final long h0, final long h1) {
+    final int addr26 = (int) ((h0 & KEY_MASK_26));
+    final int lz = Long.numberOfLeadingZeros(h1);
     final int value = ((lz > 62 ? 62 : lz) + 1);
     return (value << KEY_BITS_26) | addr26;
   }
 
   abstract void couponUpdate(int coupon);
 
+  /**
+   * Applies the first <i>length</i> coupons of the given array, none of which may be EMPTY.
+   * @param coupons the given coupons
+   * @param length the number of coupons to apply
+   */
+  abstract void couponUpdate(int[] coupons, int length);
+
 }
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hll;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.Util.invPow2;
+import static com.yahoo.sketches.hash.MurmurHash3.hash;
+import static com.yahoo.sketches.hll.HllUtil.EMPTY;
+import static com.yahoo.sketches.hll.HllUtil.KEY_MASK_26;
+import static com.yahoo.sketches.hll.HllUtil.LG_INIT_LIST_SIZE;
+import static com.yahoo.sketches.hll.HllUtil.RESIZE_DENOM;
+import static com.yahoo.sketches.hll.HllUtil.RESIZE_NUMER;
+import static com.yahoo.sketches.hll.HllUtil.VAL_MASK_6;
+import static com.yahoo.sketches.hll.PreambleUtil.NATIVE_ORDER_IS_BIG_ENDIAN;
+import static java.lang.Math.max;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import com.yahoo.memory.WritableMemory;
+
+/**
+ * A thread-safe HLL_8 sketch that any number of threads may update concurrently without locks.
+ *
+ * <p>The K one-byte registers live in a WritableMemory, which may be on-heap or off-heap, and
+ * are updated with a compare-and-set of the 8-byte word that contains the register, retried
+ * only while the new value is still larger than the current one. Because the register update is
+ * a maximum, the final registers are independent of the order and interleaving of the updates
+ * and are identical to those of a single-threaded HLL_8 sketch given the same items.</p>
+ *
+ * <p>During warmup the coupons are also collected in a lock-free hash set that serves the
+ * same purpose as the LIST and SET modes of the {@link HllSketch}. Once the set is about 3/4
+ * full, which happens at roughly 3/32 of K unique items, it is abandoned for the registers.</p>
+ *
+ * <p>The HIP and KxQ accumulators are maintained in striped adders. The HIP estimator is
+ * inherently sequential, so under contention its increments may be computed with a slightly
+ * stale KxQ, which makes the HIP estimate approximate. The registers are always exact, and the
+ * {@link #getCompositeEstimate()} is computed from them.</p>
+ *
+ * <p>The queries that need all the registers, such as the bounds and the serializations, are
+ * computed from a snapshot obtained with {@link #getResult()}. A snapshot taken while other
+ * threads are updating reflects some, but not necessarily all, of the concurrent updates.</p>
+ */
+public final class ConcurrentHllSketch {
+  private static final ThreadLocal<long[]> HASH_OUT = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[2];
+    }
+  };
+
+  private final int lgConfigK;
+  private final WritableMemory regMem;
+  private final AtomicIntegerArray warmupSet;
+  private final int lgWarmupSetInts;
+  private final int warmupSetMask;
+  private final int warmupThreshold;
+  private final AtomicInteger warmupCount = new AtomicInteger();
+  private volatile boolean hllMode = false;
+  private final DoubleAdder hipAccum = new DoubleAdder();
+  private final DoubleAdder kxq0 = new DoubleAdder();
+  private final DoubleAdder kxq1 = new DoubleAdder();
+
+  /**
+   * Constructs a new concurrent sketch with its registers on the java heap.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   */
+  public ConcurrentHllSketch(final int lgConfigK) {
+    this(lgConfigK, WritableMemory.allocate(getMaxRegisterBytes(lgConfigK)));
+  }
+
+  /**
+   * Constructs a new concurrent sketch with its registers in the given WritableMemory, which
+   * is usually configured for off-heap memory. The first {@link #getMaxRegisterBytes(int)}
+   * bytes of the given <i>dstMem</i> are cleared and used for the registers. Its start must be
+   * aligned to 8 bytes, which is the case for any WritableMemory allocated by the Memory library.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param dstMem the destination memory for the registers.
+   */
+  public ConcurrentHllSketch(final int lgConfigK, final WritableMemory dstMem) {
+    this.lgConfigK = HllUtil.checkLgK(lgConfigK);
+    final int regBytes = getMaxRegisterBytes(lgConfigK);
+    HllUtil.checkMemSize(regBytes, dstMem.getCapacity());
+    dstMem.clear(0, regBytes);
+    regMem = dstMem;
+    lgWarmupSetInts = max(lgConfigK - 3, LG_INIT_LIST_SIZE);
+    warmupSet = new AtomicIntegerArray(1 << lgWarmupSetInts);
+    warmupSetMask = (1 << lgWarmupSetInts) - 1;
+    warmupThreshold = (RESIZE_NUMER << lgWarmupSetInts) / RESIZE_DENOM;
+    kxq0.add(1 << lgConfigK);
+  }
+
+  /**
+   * Returns the number of bytes required for the registers of a sketch with the given
+   * lgConfigK.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @return the number of bytes required for the registers.
+   */
+  public static final int getMaxRegisterBytes(final int lgConfigK) {
+    return AbstractHllArray.hll8ArrBytes(HllUtil.checkLgK(lgConfigK));
+  }
+
+  /**
+   * This is less accurate than the {@link #getEstimate()} method, but is computed exactly
+   * from the current registers and is not affected by contention.
+   * @return the composite estimate
+   */
+  public double getCompositeEstimate() {
+    return getResult().getCompositeEstimate();
+  }
+
+  /**
+   * Return the cardinality estimate
+   * @return the cardinality estimate
+   */
+  public double getEstimate() {
+    if (hllMode) {
+      return hipAccum.sum();
+    }
+    final int couponCount = warmupCount.get();
+    final double est = CubicInterpolation.usingXAndYTables(CouponMapping.xArr,
+        CouponMapping.yArr, couponCount);
+    return max(est, couponCount);
+  }
+
+  /**
+   * Gets the <i>lgConfigK</i>.
+   * @return the <i>lgConfigK</i>.
+   */
+  public int getLgConfigK() {
+    return lgConfigK;
+  }
+
+  /**
+   * Gets the approximate lower error bound given the specified number of Standard Deviations.
+   *
+   * @param numStdDev This must be an integer between 1 and 3, inclusive.
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the lower bound.
+   */
+  public double getLowerBound(final int numStdDev) {
+    return getResult().getLowerBound(numStdDev);
+  }
+
+  /**
+   * Gets the approximate upper error bound given the specified number of Standard Deviations.
+   *
+   * @param numStdDev This must be an integer between 1 and 3, inclusive.
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">Number of Standard Deviations</a>
+   * @return the upper bound.
+   */
+  public double getUpperBound(final int numStdDev) {
+    return getResult().getUpperBound(numStdDev);
+  }
+
+  /**
+   * Returns a snapshot of this sketch as a new on-heap HLL_8 sketch, which may be used,
+   * for example, with the {@link Union}.
+   * @return a snapshot of this sketch as a new on-heap HLL_8 sketch.
+   */
+  public HllSketch getResult() {
+    if (!hllMode) {
+      final HllSketch sketch = new HllSketch(lgConfigK, TgtHllType.HLL_8);
+      for (int i = 0; i <= warmupSetMask; i++) {
+        final int coupon = warmupSet.get(i);
+        if (coupon != EMPTY) { sketch.couponUpdate(coupon); }
+      }
+      if (!hllMode) { return sketch; }
+      //the warmup ended while we were reading the set, which may be incomplete.
+    }
+    final Hll8Array hll8Array = new Hll8Array(lgConfigK);
+    final byte[] hllByteArr = hll8Array.hllByteArr;
+    regMem.getByteArray(0, hllByteArr, 0, hllByteArr.length);
+    int numZeros = 0;
+    double q0 = 0;
+    double q1 = 0;
+    for (int i = 0; i < hllByteArr.length; i++) {
+      final int value = hllByteArr[i] & VAL_MASK_6;
+      if (value == 0) { numZeros++; }
+      if (value < 32) { q0 += invPow2(value); }
+      else            { q1 += invPow2(value); }
+    }
+    hll8Array.putNumAtCurMin(numZeros);
+    hll8Array.putKxQ0(q0);
+    hll8Array.putKxQ1(q1);
+    hll8Array.putHipAccum(hipAccum.sum());
+    return new HllSketch(hll8Array);
+  }
+
+  /**
+   * Returns a snapshot of this sketch as a new on-heap sketch of the given type.
+   * @param tgtHllType the TgtHllType enum
+   * @return a snapshot of this sketch as a new on-heap sketch of the given type.
+   */
+  public HllSketch getResult(final TgtHllType tgtHllType) {
+    return getResult().copyAs(tgtHllType);
+  }
+
+  /**
+   * Returns true if no item has been presented to this sketch.
+   * @return true if empty
+   */
+  public boolean isEmpty() {
+    return !hllMode && (warmupCount.get() == 0);
+  }
+
+  /**
+   * Returns true if the registers of this sketch are off-heap.
+   * @return true if the registers of this sketch are off-heap.
+   */
+  public boolean isOffHeap() {
+    return regMem.isDirect();
+  }
+
+  /**
+   * Resets to empty, but does not change the configured value of lgConfigK.
+   * This must not be called concurrently with any update.
+   */
+  public void reset() {
+    regMem.clear(0, getMaxRegisterBytes(lgConfigK));
+    for (int i = 0; i <= warmupSetMask; i++) { warmupSet.set(i, EMPTY); }
+    warmupCount.set(0);
+    hipAccum.reset();
+    kxq0.reset();
+    kxq0.add(1 << lgConfigK);
+    kxq1.reset();
+    hllMode = false;
+  }
+
+  /**
+   * Human readable summary as a string.
+   * @return Human readable summary as a string.
+   */
+  @Override
+  public String toString() {
+    return getResult().toString();
+  }
+
+  /**
+   * Present the given long as a potential unique item.
+   *
+   * @param datum The given long datum.
+   */
+  public void update(final long datum) {
+    couponUpdate(BaseHllSketch.coupon(hash(datum, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given double (or float) datum as a potential unique item.
+   * The double is canonicalized as in {@link HllSketch#update(double)}.
+   *
+   * @param datum The given double datum.
+   */
+  public void update(final double datum) {
+    couponUpdate(BaseHllSketch.coupon(hash(datum, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given String as a potential unique item.
+   * The string is hashed using its UTF8 encoding.
+   * If the string is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given String.
+   */
+  public void update(final String datum) {
+    if ((datum == null) || datum.isEmpty()) { return; }
+    couponUpdate(BaseHllSketch.coupon(hash(datum, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given byte array as a potential unique item.
+   * If the byte array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given byte array.
+   */
+  public void update(final byte[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    couponUpdate(BaseHllSketch.coupon(hash(data, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given char array as a potential unique item.
+   * If the char array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given char array.
+   */
+  public void update(final char[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    couponUpdate(BaseHllSketch.coupon(hash(data, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given integer array as a potential unique item.
+   * If the integer array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given int array.
+   */
+  public void update(final int[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    couponUpdate(BaseHllSketch.coupon(hash(data, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given long array as a potential unique item.
+   * If the long array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given long array.
+   */
+  public void update(final long[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    couponUpdate(BaseHllSketch.coupon(hash(data, DEFAULT_UPDATE_SEED, HASH_OUT.get())));
+  }
+
+  /**
+   * Present the given 128-bit hash of an item as a potential unique item.
+   * See {@link HllSketch#updateHash(long[])}.
+   * @param hash128 the given 128-bit hash as an array of two longs.
+   */
+  public void updateHash(final long[] hash128) {
+    couponUpdate(BaseHllSketch.coupon(hash128[0], hash128[1]));
+  }
+
+  /**
+   * Present the given 128-bit hash of an item as a potential unique item.
+   * See {@link HllSketch#updateHash(long, long)}.
+   * @param h0 the first 64 bits of the given 128-bit hash.
+   * @param h1 the second 64 bits of the given 128-bit hash.
+   */
+  public void updateHash(final long h0, final long h1) {
+    couponUpdate(BaseHllSketch.coupon(h0, h1));
+  }
+
+  //restricted methods
+
+  void couponUpdate(final int coupon) {
+    if (!hllMode) { warmupUpdate(coupon); }
+    final int slotNo = HllUtil.getLow26(coupon) & ((1 << lgConfigK) - 1);
+    final int newVal = HllUtil.getValue(coupon);
+    final int oldVal = casMaxRegister(slotNo, newVal);
+    if (oldVal >= 0) {
+      //Same as AbstractHllArray.hipAndKxQIncrementalUpdate(), but with a possibly stale KxQ.
+      hipAccum.add((1 << lgConfigK) / (kxq0.sum() + kxq1.sum()));
+      if (oldVal < 32) { kxq0.add(-invPow2(oldVal)); }
+      else             { kxq1.add(-invPow2(oldVal)); }
+      if (newVal < 32) { kxq0.add(invPow2(newVal)); }
+      else             { kxq1.add(invPow2(newVal)); }
+    }
+  }
+
+  /**
+   * Raises the given register to the given value if it is larger than the current value.
+   * @param slotNo the register number
+   * @param newVal the new value
+   * @return the previous value if the register was raised, otherwise -1.
+   */
+  private int casMaxRegister(final int slotNo, final int newVal) {
+    final long wordOffset = slotNo & ~7L;
+    final int lane = NATIVE_ORDER_IS_BIG_ENDIAN ? 7 - (slotNo & 7) : slotNo & 7;
+    final int shift = lane << 3;
+    while (true) {
+      final long word = regMem.getLong(wordOffset);
+      final int curVal = (int) (word >>> shift) & VAL_MASK_6;
+      if (newVal <= curVal) { return -1; }
+      final long newWord = (word & ~(0xFFL << shift)) | ((long) newVal << shift);
+      if (regMem.compareAndSwapLong(wordOffset, word, newWord)) { return curVal; }
+    }
+  }
+
+  /**
+   * Lock-free insert into the warmup coupon set, with the same probing as
+   * AbstractCoupons.find(). Ends the warmup when the set is full enough.
+   * @param coupon the given coupon
+   */
+  private void warmupUpdate(final int coupon) {
+    int probe = coupon & warmupSetMask;
+    final int loopIndex = probe;
+    while (true) {
+      final int couponAtIdx = warmupSet.get(probe);
+      if (couponAtIdx == EMPTY) {
+        if (warmupSet.compareAndSet(probe, EMPTY, coupon)) {
+          if (warmupCount.incrementAndGet() > warmupThreshold) { hllMode = true; }
+          return;
+        }
+        continue; //lost the race for this slot, look at it again
+      }
+      if (couponAtIdx == coupon) { return; } //duplicate
+      final int stride = ((coupon & KEY_MASK_26) >>> lgWarmupSetInts) | 1;
+      probe = (probe + stride) & warmupSetMask;
+      if (probe == loopIndex) {
+        hllMode = true; //set is full, which can only happen with many racing threads
+        return;
+      }
+    }
+  }
+
+}
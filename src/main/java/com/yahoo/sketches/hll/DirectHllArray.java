@@ -8,6 +8,7 @@ package com.yahoo.sketches.hll;
 import static com.yahoo.memory.UnsafeUtil.unsafe;
 import static com.yahoo.sketches.hll.PreambleUtil.CUR_MIN_COUNT_INT;
 import static com.yahoo.sketches.hll.PreambleUtil.HIP_ACCUM_DOUBLE;
+import static com.yahoo.sketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
 import static com.yahoo.sketches.hll.PreambleUtil.extractCompactFlag;
 import static com.yahoo.sketches.hll.PreambleUtil.extractCurMin;
 import static com.yahoo.sketches.hll.PreambleUtil.extractCurMode;
@@ -42,6 +43,7 @@ abstract class DirectHllArray extends AbstractHllArray {
   Object memObj;
   long memAdd;
   final boolean compact;
+  private Memory hllByteArrMem = null; //lazy region of mem
 
   //Memory must be already initialized and may have data
   DirectHllArray(final int lgConfigK, final TgtHllType tgtHllType, final WritableMemory wmem) {
@@ -68,6 +70,7 @@ abstract class DirectHllArray extends AbstractHllArray {
   final void updateMemory(final WritableMemory newWmem) {
     wmem = newWmem;
     mem = newWmem;
+    hllByteArrMem = null;
     memObj = wmem.getArray();
     memAdd = wmem.getCumulativeOffset(0L);
   }
@@ -99,6 +102,14 @@ abstract class DirectHllArray extends AbstractHllArray {
     return extractHipAccum(memObj, memAdd);
   }
 
+  @Override
+  Memory getHllByteArrMemory() {
+    if (hllByteArrMem == null) {
+      hllByteArrMem = mem.region(HLL_BYTE_ARR_START, getHllByteArrBytes());
+    }
+    return hllByteArrMem;
+  }
+
   @Override
   double getKxQ0() {
     return extractKxQ0(memObj, memAdd);
@@ -76,6 +76,20 @@ class Hll4Array extends HllArray {
     return this;
   }
 
+  @Override
+  HllSketchImpl couponUpdate(final int[] coupons, final int offset, final int length) {
+    final int configKmask = (1 << getLgConfigK()) - 1;
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      final int coupon = coupons[i];
+      final int newValue = HllUtil.getValue(coupon);
+      if (newValue <= curMin) { continue; } // super quick rejection; only works for large N
+      final int slotNo = HllUtil.getLow26(coupon) & configKmask;
+      Hll4Update.internalHll4Update(this, slotNo, newValue); //may change curMin
+    }
+    return this;
+  }
+
   @Override
   PairIterator getIterator() {
     return new HeapHll4Iterator(1 << lgConfigK);
@@ -5,6 +5,7 @@
 
 package com.yahoo.sketches.hll;
 
+import static com.yahoo.sketches.Util.invPow2;
 import static com.yahoo.sketches.hll.HllUtil.LG_AUX_ARR_INTS;
 import static com.yahoo.sketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
 import static com.yahoo.sketches.hll.PreambleUtil.extractCurMin;
@@ -31,6 +32,7 @@ abstract class HllArray extends AbstractHllArray {
   double kxq0;
   double kxq1;
   byte[] hllByteArr = null; //init by sub-classes
+  private Memory hllByteArrMem = null; //lazy read-only view of hllByteArr
 
   /**
    * Standard constructor for new instance
@@ -97,6 +99,42 @@ abstract class HllArray extends AbstractHllArray {
     return this;
   }
 
+  @Override //used by HLL6 and HLL8, overridden by HLL4
+  HllSketchImpl couponUpdate(final int[] coupons, final int offset, final int length) {
+    final int configK = 1 << getLgConfigK();
+    final int configKmask = configK - 1;
+    //local copies of the accumulators, written back once per batch
+    double hip = hipAccum;
+    double q0 = kxq0;
+    double q1 = kxq1;
+    int zeros = numAtCurMin; //overloaded as num zeros
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      final int coupon = coupons[i];
+      final int slotNo = HllUtil.getLow26(coupon) & configKmask;
+      final int newVal = HllUtil.getValue(coupon);
+      assert newVal > 0;
+
+      final int curVal = getSlot(slotNo);
+      if (newVal > curVal) {
+        putSlot(slotNo, newVal);
+        //same as hipAndKxQIncrementalUpdate(), in the same order
+        hip += configK / (q0 + q1);
+        if (curVal < 32) { q0 -= invPow2(curVal); }
+        else             { q1 -= invPow2(curVal); }
+        if (newVal < 32) { q0 += invPow2(newVal); }
+        else             { q1 += invPow2(newVal); }
+        if (curVal == 0) { zeros--; }
+      }
+    }
+    hipAccum = hip;
+    kxq0 = q0;
+    kxq1 = q1;
+    numAtCurMin = zeros;
+    assert numAtCurMin >= 0;
+    return this;
+  }
+
   @Override
   void decNumAtCurMin() {
     numAtCurMin--;
@@ -122,6 +160,14 @@ abstract class HllArray extends AbstractHllArray {
     return hllByteArr.length;
   }
 
+  @Override
+  Memory getHllByteArrMemory() {
+    if (hllByteArrMem == null) {
+      hllByteArrMem = Memory.wrap(hllByteArr);
+    }
+    return hllByteArrMem;
+  }
+
   @Override
   double getKxQ0() {
     return kxq0;
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hll;
+
+import static com.yahoo.sketches.hll.AbstractHllArray.hipAndKxQIncrementalUpdate;
+import static com.yahoo.sketches.hll.AbstractHllArray.hll4ArrBytes;
+import static com.yahoo.sketches.hll.HllUtil.AUX_TOKEN;
+import static com.yahoo.sketches.hll.HllUtil.EMPTY;
+import static com.yahoo.sketches.hll.HllUtil.getLow26;
+import static com.yahoo.sketches.hll.HllUtil.getValue;
+import static com.yahoo.sketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
+import static com.yahoo.sketches.hll.PreambleUtil.NATIVE_ORDER_IS_BIG_ENDIAN;
+import static com.yahoo.sketches.hll.PreambleUtil.extractAuxCount;
+import static com.yahoo.sketches.hll.PreambleUtil.extractCompactFlag;
+import static com.yahoo.sketches.hll.PreambleUtil.extractCurMin;
+import static com.yahoo.sketches.hll.PreambleUtil.extractLgArr;
+import static com.yahoo.sketches.hll.PreambleUtil.extractLgK;
+import static com.yahoo.sketches.hll.PreambleUtil.extractTgtHllType;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * Bulk merge of the registers of an HLL array of any type into an HLL_8 array with the same
+ * lgConfigK, which is the dominant case of the Union.
+ *
+ * <p>The registers are processed 8 at a time as packed longs with one register per byte, which
+ * is the native layout of HLL_8. HLL_4 nibbles and HLL_6 bit fields are unpacked into this
+ * layout with a few shifts and masks per word. A SWAR byte-wise comparison then finds the words
+ * where any source register is larger than the destination register, which becomes rare as the
+ * union fills up. Only those registers are written, in slot order, and with the same HIP and
+ * KxQ updates as {@link HllSketchImpl#couponUpdate(int)}, so the result is identical to
+ * merging the pairs of the source iterator one at a time.</p>
+ *
+ * <p>HLL_4 exceptions (AUX_TOKEN nibbles) are detected word-wise as well and only then resolved
+ * from the AuxHashMap, or from the aux entries of a serialized image.</p>
+ *
+ * <p>This relies on the little-endian native byte order assumed by the rest of the library.
+ * On a big-endian platform {@link #isApplicable(int, HllSketchImpl)} returns
+ * false and the caller falls back to the iterator.</p>
+ */
+final class HllArrayMerge {
+  private static final long LO_BITS = 0x0101010101010101L; //lowest bit of each byte
+  private static final long HI_BITS = 0x8080808080808080L; //highest bit of each byte
+  private static final long VAL_BITS = 0x3F3F3F3F3F3F3F3FL; //6-bit value of each byte
+  private static final long NIB_BITS = 0x0F0F0F0F0F0F0F0FL; //low nibble of each byte
+
+  private HllArrayMerge() {}
+
+  /**
+   * Returns true if the registers of the given source can be merged into the given destination.
+   * @param src the source HLL array of any type
+   * @param dst the destination HLL array
+   * @return true if the bulk merge applies
+   */
+  static boolean isApplicable(final AbstractHllArray src, final AbstractHllArray dst) {
+    return isApplicable(src.getLgConfigK(), dst);
+  }
+
+  /**
+   * Returns true if the registers of a source with the given lgConfigK can be merged into the
+   * given destination.
+   * @param srcLgConfigK the lgConfigK of the source
+   * @param dst the destination sketch implementation
+   * @return true if the bulk merge applies
+   */
+  static boolean isApplicable(final int srcLgConfigK, final HllSketchImpl dst) {
+    return !NATIVE_ORDER_IS_BIG_ENDIAN
+        && (dst.getCurMode() == CurMode.HLL)
+        && (dst.getTgtHllType() == TgtHllType.HLL_8)
+        && (srcLgConfigK == dst.getLgConfigK());
+  }
+
+  /**
+   * Merges the registers of the given source into the given HLL_8 destination, which must be
+   * writable. The caller must manage the oooFlag.
+   * @param src the source HLL array of any type, which is not modified
+   * @param dst the destination HLL_8 array with the same lgConfigK
+   */
+  static void merge(final AbstractHllArray src, final AbstractHllArray dst) {
+    assert isApplicable(src, dst);
+    merge(src.getHllByteArrMemory(), 0, src.getTgtHllType(), src.getCurMin(),
+        src.getAuxHashMap(), null, 0, 0, dst);
+  }
+
+  /**
+   * Merges the registers of the given serialized HLL image, which may be compact or updatable,
+   * into the given HLL_8 destination, which must be writable. This reads the image in place and
+   * allocates nothing. The caller must check the preamble and manage the oooFlag.
+   * @param srcMem the Memory image of a non-empty HllSketch in HLL mode of any type
+   * @param dst the destination HLL_8 array with the same lgConfigK
+   */
+  static void merge(final Memory srcMem, final AbstractHllArray dst) {
+    final Object memObj = ((WritableMemory) srcMem).getArray();
+    final long memAdd = srcMem.getCumulativeOffset(0);
+    final int lgConfigK = extractLgK(memObj, memAdd);
+    assert isApplicable(lgConfigK, dst);
+    final TgtHllType srcType = extractTgtHllType(memObj, memAdd);
+    int auxInts = 0;
+    if (srcType == TgtHllType.HLL_4) {
+      final int auxCount = extractAuxCount(memObj, memAdd);
+      auxInts = ((auxCount == 0) || extractCompactFlag(memObj, memAdd))
+          ? auxCount : 1 << extractLgArr(memObj, memAdd);
+    }
+    merge(srcMem, HLL_BYTE_ARR_START, srcType, extractCurMin(memObj, memAdd), null, srcMem,
+        HLL_BYTE_ARR_START + hll4ArrBytes(lgConfigK), auxInts, dst);
+  }
+
+  //The exceptions of an HLL_4 source are either in the given auxHashMap, or, if that is null,
+  //in the auxInts entries of the given auxMem starting at auxStart.
+  private static void merge(final Memory srcMem, final long regStart, final TgtHllType srcType,
+      final int curMin, final AuxHashMap auxHashMap, final Memory auxMem, final long auxStart,
+      final int auxInts, final AbstractHllArray dst) {
+    final int lgConfigK = dst.getLgConfigK();
+    final int words = (1 << lgConfigK) >>> 3;
+    final Memory dstMem = dst.getHllByteArrMemory();
+    final long curMinBytes = curMin * LO_BITS;
+    for (int w = 0; w < words; w++) {
+      long srcWord;
+      if (srcType == TgtHllType.HLL_8) {
+        srcWord = srcMem.getLong(regStart + (w << 3)) & VAL_BITS;
+      } else if (srcType == TgtHllType.HLL_6) {
+        srcWord = unpack6(srcMem, regStart, w);
+      } else {
+        final long nibs = unpack4(srcMem, regStart, w);
+        long auxLanes = zeroLanes(nibs ^ (AUX_TOKEN * LO_BITS));
+        srcWord = nibs + curMinBytes;
+        while (auxLanes != 0) { //rare exceptions
+          final int shift = Long.numberOfTrailingZeros(auxLanes) - 7;
+          final int slotNo = (w << 3) + (shift >>> 3);
+          final long value = (auxHashMap != null) ? auxHashMap.mustFindValueFor(slotNo)
+              : findAuxValue(auxMem, auxStart, auxInts, lgConfigK, slotNo);
+          srcWord = (srcWord & ~(0xFFL << shift)) | (value << shift);
+          auxLanes &= auxLanes - 1;
+        }
+      }
+      final long dstWord = dstMem.getLong(w << 3);
+      //high bit of each byte is set where src > dst. No borrows, since all bytes are < 64.
+      long gtLanes = ((srcWord | HI_BITS) - dstWord - LO_BITS) & HI_BITS;
+      while (gtLanes != 0) { //rare after the union has warmed up
+        final int shift = Long.numberOfTrailingZeros(gtLanes) - 7;
+        final int slotNo = (w << 3) + (shift >>> 3);
+        final int newVal = (int) (srcWord >>> shift) & 0xFF;
+        final int curVal = (int) (dstWord >>> shift) & 0xFF;
+        dst.putSlot(slotNo, newVal);
+        hipAndKxQIncrementalUpdate(dst, curVal, newVal);
+        if (curVal == 0) {
+          dst.decNumAtCurMin(); //overloaded as num zeros
+        }
+        gtLanes &= gtLanes - 1;
+      }
+    }
+  }
+
+  //Linear search of the serialized aux entries, compact or hash table. These are few.
+  private static int findAuxValue(final Memory auxMem, final long auxStart, final int auxInts,
+      final int lgConfigK, final int slotNo) {
+    final int configKmask = (1 << lgConfigK) - 1;
+    for (int i = 0; i < auxInts; i++) {
+      final int pair = auxMem.getInt(auxStart + (i << 2));
+      if ((pair != EMPTY) && ((getLow26(pair) & configKmask) == slotNo)) {
+        return getValue(pair);
+      }
+    }
+    throw new SketchesStateException("SlotNo not found: " + slotNo);
+  }
+
+  /**
+   * Returns the high bit of each byte set where that byte of the given word is zero.
+   * The given word must have bytes less than 128.
+   * @param word the given word
+   * @return the high bit of each byte set where that byte of the given word is zero.
+   */
+  static long zeroLanes(final long word) {
+    return ~((word | HI_BITS) - LO_BITS) & HI_BITS;
+  }
+
+  /**
+   * Unpacks the 8 HLL_4 nibbles of the given word into the 8 bytes of a long.
+   * @param mem the Memory containing the HLL_4 byte array
+   * @param regStart the offset of the HLL_4 byte array in the given Memory
+   * @param w the word index
+   * @return the nibbles, one per byte, in slot order.
+   */
+  static long unpack4(final Memory mem, final long regStart, final int w) {
+    long x = mem.getInt(regStart + (w << 2)) & 0xFFFFFFFFL;
+    x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+    x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+    x = (x | (x << 4)) & NIB_BITS;
+    return x;
+  }
+
+  /**
+   * Unpacks the 8 HLL_6 bit fields of the given word into the 8 bytes of a long.
+   * @param mem the Memory containing the HLL_6 byte array
+   * @param regStart the offset of the HLL_6 byte array in the given Memory
+   * @param w the word index
+   * @return the values, one per byte, in slot order.
+   */
+  static long unpack6(final Memory mem, final long regStart, final int w) {
+    final long off = regStart + (w * 6L);
+    long x = (mem.getInt(off) & 0xFFFFFFFFL) | ((mem.getShort(off + 4) & 0xFFFFL) << 32);
+    x = ((x & 0x0000FFFFFF000000L) << 8) | (x & 0x0000000000FFFFFFL);
+    x = ((x & 0x00FFF00000FFF000L) << 4) | (x & 0x00000FFF00000FFFL);
+    x = ((x & 0x0FC00FC00FC00FC0L) << 2) | (x & 0x003F003F003F003FL);
+    return x;
+  }
+
+}
@@ -13,8 +13,11 @@ import static com.yahoo.sketches.hll.PreambleUtil.extractCompactFlag;
 import static com.yahoo.sketches.hll.PreambleUtil.extractLgK;
 import static com.yahoo.sketches.hll.PreambleUtil.extractTgtHllType;
 
+import java.util.stream.Collector;
+
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 
 /**
@@ -224,6 +227,85 @@ public class HllSketch extends BaseHllSketch {
     return directSketch;
   }
 
+  /**
+   * Returns a Collector that builds an HLL_4 sketch from the items of a Stream.
+   * See {@link #collector(int, TgtHllType)}.
+   *
+   * @param <T> the type of the stream items
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @return a Collector that builds an HLL_4 sketch
+   */
+  public static <T> Collector<T, ?, HllSketch> collector(final int lgConfigK) {
+    return collector(lgConfigK, TgtHllType.HLL_4);
+  }
+
+  /**
+   * Returns a Collector that builds a sketch of the given type from the items of a Stream, which
+   * also works for parallel streams. Each thread updates its own {@link Union}, and the unions of
+   * the threads are combined by a union.
+   *
+   * <p>The items may be of type Long, Integer, Short, Byte, Double, Float, String, byte[],
+   * char[], int[] or long[], and each is presented to the matching update method. Null items
+   * are ignored. A LongStream or a DoubleStream can be collected after
+   * {@link java.util.stream.LongStream#boxed() boxed()}.</p>
+   *
+   * @param <T> the type of the stream items
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param tgtHllType the desired Hll type of the result.
+   * @return a Collector that builds a sketch of the given type
+   */
+  public static <T> Collector<T, ?, HllSketch> collector(final int lgConfigK,
+      final TgtHllType tgtHllType) {
+    HllUtil.checkLgK(lgConfigK);
+    return new SketchCollector<T, Union, HllSketch>() {
+      @Override
+      protected Union newContainer() {
+        return new Union(lgConfigK);
+      }
+
+      @Override
+      protected void accumulate(final Union union, final T item) {
+        updateItem(union, item);
+      }
+
+      @Override
+      protected Union combine(final Union union1, final Union union2) {
+        union1.update(union2.getResult(TgtHllType.HLL_8));
+        return union1;
+      }
+
+      @Override
+      protected HllSketch finish(final Union union) {
+        return union.getResult(tgtHllType);
+      }
+    };
+  }
+
+  static void updateItem(final BaseHllSketch sketch, final Object item) {
+    if (item == null) { return; }
+    if (item instanceof Long) {
+      sketch.update(((Long) item).longValue());
+    } else if ((item instanceof Integer) || (item instanceof Short) || (item instanceof Byte)) {
+      sketch.update(((Number) item).longValue());
+    } else if ((item instanceof Double) || (item instanceof Float)) {
+      sketch.update(((Number) item).doubleValue());
+    } else if (item instanceof String) {
+      sketch.update((String) item);
+    } else if (item instanceof byte[]) {
+      sketch.update((byte[]) item);
+    } else if (item instanceof char[]) {
+      sketch.update((char[]) item);
+    } else if (item instanceof int[]) {
+      sketch.update((int[]) item);
+    } else if (item instanceof long[]) {
+      sketch.update((long[]) item);
+    } else {
+      throw new SketchesArgumentException("Unsupported item type: " + item.getClass().getName());
+    }
+  }
+
   /**
    * Return a copy of this sketch onto the Java heap.
    * @return a copy of this sketch onto the Java heap.
@@ -438,4 +520,9 @@ public class HllSketch extends BaseHllSketch {
     hllSketchImpl = hllSketchImpl.couponUpdate(coupon);
   }
 
+  @Override
+  void couponUpdate(final int[] coupons, final int length) {
+    hllSketchImpl = hllSketchImpl.couponUpdate(coupons, 0, length);
+  }
+
 }
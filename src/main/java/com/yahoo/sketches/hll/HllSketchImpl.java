@@ -30,6 +30,27 @@ abstract class HllSketchImpl {
 
   abstract HllSketchImpl couponUpdate(int coupon);
 
+  /**
+   * Applies the given coupons in order, which is equivalent to calling
+   * {@link #couponUpdate(int)} for each one. If a coupon causes a transition to a new mode,
+   * the remaining coupons are handed to the new implementation.
+   * Implementations may override this with a tighter loop.
+   * @param coupons the given coupons, none of which may be EMPTY
+   * @param offset the index of the first coupon
+   * @param length the number of coupons
+   * @return the resulting HllSketchImpl, which may be a new one.
+   */
+  HllSketchImpl couponUpdate(final int[] coupons, final int offset, final int length) {
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      final HllSketchImpl impl = couponUpdate(coupons[i]);
+      if (impl != this) {
+        return impl.couponUpdate(coupons, i + 1, end - i - 1);
+      }
+    }
+    return this;
+  }
+
  CurMode getCurMode() {
    return curMode;
  }
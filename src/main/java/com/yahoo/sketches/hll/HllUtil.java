@@ -44,6 +44,8 @@ final class HllUtil {
   static final int RESIZE_NUMER = 3;
   static final int RESIZE_DENOM = 4;
 
+  static final int COUPON_BUF_INTS = 1 << 10; //coupon scratch buffer for batch updates
+
   static final int loNibbleMask = 0x0f;
   static final int hiNibbleMask = 0xf0;
   static final int AUX_TOKEN = 0xf;
@@ -72,6 +74,13 @@ final class HllUtil {
     }
   }
 
+  static final void checkArrayRange(final int offset, final int length, final int arrLength) {
+    if ((offset < 0) || (length < 0) || (offset > (arrLength - length))) {
+      throw new SketchesArgumentException("Offset: " + offset + " and length: " + length
+          + " are not within the array length: " + arrLength);
+    }
+  }
+
   static final void checkNumStdDev(final int numStdDev) {
     if ((numStdDev < 1) || (numStdDev > 3)) {
       throw new SketchesArgumentException(
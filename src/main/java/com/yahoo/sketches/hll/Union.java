@@ -7,6 +7,17 @@ package com.yahoo.sketches.hll;
 
 import static com.yahoo.sketches.hll.CurMode.HLL;
 import static com.yahoo.sketches.hll.HllUtil.EMPTY;
+import static com.yahoo.sketches.hll.HllUtil.checkPreamble;
+import static com.yahoo.sketches.hll.PreambleUtil.HASH_SET_INT_ARR_START;
+import static com.yahoo.sketches.hll.PreambleUtil.LIST_INT_ARR_START;
+import static com.yahoo.sketches.hll.PreambleUtil.extractCompactFlag;
+import static com.yahoo.sketches.hll.PreambleUtil.extractEmptyFlag;
+import static com.yahoo.sketches.hll.PreambleUtil.extractHashSetCount;
+import static com.yahoo.sketches.hll.PreambleUtil.extractInt;
+import static com.yahoo.sketches.hll.PreambleUtil.extractLgArr;
+import static com.yahoo.sketches.hll.PreambleUtil.extractLgK;
+import static com.yahoo.sketches.hll.PreambleUtil.extractListCount;
+import static com.yahoo.sketches.hll.PreambleUtil.extractOooFlag;
 import static com.yahoo.sketches.hll.TgtHllType.HLL_4;
 import static com.yahoo.sketches.hll.TgtHllType.HLL_8;
 import static java.lang.Math.min;
@@ -264,12 +275,84 @@ public class Union extends BaseHllSketch {
     gadget.hllSketchImpl = unionImpl(sketch.hllSketchImpl, gadget.hllSketchImpl, lgMaxK);
   }
 
+  /**
+   * Update this union operator with the given Memory image of an HllSketch, which may be in
+   * compact or updatable form and of any {@link TgtHllType}. The image is read in place.
+   *
+   * <p>LIST and SET images are folded into this union coupon by coupon, and an HLL image with the
+   * same <i>lgConfigK</i> as this union is merged into it register by register, with no
+   * per-image object allocation. The first HLL image, or one that requires this union to be
+   * downsampled, is handled as if it were wrapped and passed to {@link #update(HllSketch)}.</p>
+   *
+   * @param mem the given Memory image of an HllSketch. If null or empty it is ignored.
+   */
+  public void update(final Memory mem) {
+    if (mem == null) { return; }
+    final CurMode srcMode = checkPreamble(mem);
+    final Object memObj = ((WritableMemory) mem).getArray();
+    final long memAdd = mem.getCumulativeOffset(0);
+    final HllSketchImpl gadgetImpl = gadget.hllSketchImpl;
+    if (srcMode == HLL) {
+      if (extractEmptyFlag(memObj, memAdd)) { return; }
+      if (!gadgetImpl.isEmpty()
+          && HllArrayMerge.isApplicable(extractLgK(memObj, memAdd), gadgetImpl)) {
+        HllArrayMerge.merge(mem, (AbstractHllArray) gadgetImpl);
+        gadgetImpl.putOutOfOrderFlag(true); //union of two HLL modes is always true
+      } else {
+        update(HllSketch.wrap(mem)); //the gadget must be replaced or downsampled
+      }
+      return;
+    }
+    final boolean gadgetEmpty = gadgetImpl.isEmpty();
+    final boolean srcOooFlag;
+    if (srcMode == CurMode.LIST) {
+      final int couponCount = extractListCount(memObj, memAdd);
+      if (couponCount == 0) { return; }
+      for (int i = 0; i < couponCount; i++) {
+        couponUpdate(extractInt(memObj, memAdd, LIST_INT_ARR_START + (i << 2)));
+      }
+      srcOooFlag = extractOooFlag(memObj, memAdd);
+    } else { //SET
+      final int couponCount = extractHashSetCount(memObj, memAdd);
+      if (couponCount == 0) { return; }
+      final int couponInts = (extractCompactFlag(memObj, memAdd))
+          ? couponCount : 1 << extractLgArr(memObj, memAdd);
+      for (int i = 0; i < couponInts; i++) {
+        couponUpdate(extractInt(memObj, memAdd, HASH_SET_INT_ARR_START + (i << 2))); //skips EMPTY
+      }
+      srcOooFlag = true; //SET oooFlag is always true
+    }
+    final HllSketchImpl dstImpl = gadget.hllSketchImpl;
+    //same rules as the LIST and SET cases of the union operator logic below
+    dstImpl.putOutOfOrderFlag((gadgetEmpty) ? srcOooFlag : dstImpl.isOutOfOrderFlag() | srcOooFlag);
+  }
+
+  /**
+   * Returns a union operator of the given Memory images of HllSketches, each of which is
+   * read in place as with {@link #update(Memory)}.
+   * @param images the given Memory images of HllSketches.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i> of the union.
+   * @return a union operator of the given Memory images.
+   */
+  public static Union union(final Iterable<Memory> images, final int lgMaxK) {
+    final Union union = new Union(lgMaxK);
+    for (final Memory mem : images) {
+      union.update(mem);
+    }
+    return union;
+  }
+
   @Override
   void couponUpdate(final int coupon) {
     if (coupon == EMPTY) { return; }
     gadget.hllSketchImpl = gadget.hllSketchImpl.couponUpdate(coupon);
   }
 
+  @Override
+  void couponUpdate(final int[] coupons, final int length) {
+    gadget.hllSketchImpl = gadget.hllSketchImpl.couponUpdate(coupons, 0, length);
+  }
+
   // Union operator logic
 
   /**
@@ -383,9 +466,15 @@ public class Union extends BaseHllSketch {
         if ((srcLgK < dstLgK) || (dstImpl.getTgtHllType() != HLL_8)) {
           dstImpl = copyOrDownsampleHll(dstImpl, min(dstLgK, srcLgK)); //TODO Fix for off-heap
         }
-        final PairIterator srcItr = srcImpl.getIterator(); //HLL
-        while (srcItr.nextValid()) {
-          dstImpl = dstImpl.couponUpdate(srcItr.getPair()); //assignment required
+        final AbstractHllArray srcArr = (AbstractHllArray) srcImpl;
+        final AbstractHllArray dstArr = (AbstractHllArray) dstImpl;
+        if (HllArrayMerge.isApplicable(srcArr, dstArr)) {
+          HllArrayMerge.merge(srcArr, dstArr); //word-parallel, same result as the iterator
+        } else {
+          final PairIterator srcItr = srcImpl.getIterator(); //HLL
+          while (srcItr.nextValid()) {
+            dstImpl = dstImpl.couponUpdate(srcItr.getPair()); //assignment required
+          }
         }
         dstImpl.putOutOfOrderFlag(true); //union of two HLL modes is always true
         break;
@@ -438,9 +527,13 @@ public class Union extends BaseHllSketch {
     }
     final int minLgK = Math.min(srcLgK, tgtLgK);
     final HllArray tgtHllArr = HllArray.newHeapHll(minLgK, TgtHllType.HLL_8);
-    final PairIterator srcItr = src.getIterator();
-    while (srcItr.nextValid()) {
-      tgtHllArr.couponUpdate(srcItr.getPair());
+    if (HllArrayMerge.isApplicable(src, tgtHllArr)) {
+      HllArrayMerge.merge(src, tgtHllArr);
+    } else {
+      final PairIterator srcItr = src.getIterator();
+      while (srcItr.nextValid()) {
+        tgtHllArr.couponUpdate(srcItr.getPair());
+      }
     }
     //both of these are required for isomorphism
     tgtHllArr.putHipAccum(src.getHipAccum());
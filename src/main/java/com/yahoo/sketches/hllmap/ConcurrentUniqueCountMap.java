@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hllmap;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+import static com.yahoo.sketches.Util.isPowerOf2;
+
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.MurmurHash3;
+
+/**
+ * A thread-safe {@link UniqueCountMap} for many concurrent writers.
+ *
+ * <p>Each key is hashed to one of a fixed number of segments. Each segment is a UniqueCountMap,
+ * with its own hierarchy of internal maps, and with its own lock, so threads updating keys of
+ * different segments do not contend. The identifier is hashed to its coupon before the lock is
+ * taken. Because the estimate of a key depends only on the identifiers of that key, every key has
+ * exactly the estimate it would have in a single UniqueCountMap given the same updates of that
+ * key in the same order.</p>
+ *
+ * <p>{@link #getEstimate(byte[])} and the bounds lock only the segment of the key, so they can be
+ * called concurrently with updates. The methods that summarize the whole map lock the segments
+ * one at a time, so during concurrent updates they reflect each segment at some point during the
+ * call, but not necessarily all segments at the same instant.</p>
+ */
+public final class ConcurrentUniqueCountMap {
+  private static final int INITIAL_NUM_ENTRIES = 1000003;
+  private final int keySizeBytes_;
+  private final UniqueCountMap[] segments_; //each guarded by itself
+  private final int segmentMask_;
+
+  /**
+   * Constructs this map with an initial capacity of one million entries in total and a number of
+   * segments of four times the number of available processors, rounded up to a power of 2.
+   * @param keySizeBytes must be at least 4 bytes to have sufficient entropy.
+   */
+  public ConcurrentUniqueCountMap(final int keySizeBytes) {
+    this(INITIAL_NUM_ENTRIES, keySizeBytes,
+        ceilingPowerOf2(4 * Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructs this map with the given initial number of entries in total and the given number of
+   * segments.
+   *
+   * @param initialNumEntries the initial number of entries of all segments together, which are
+   * divided evenly between the segments. See {@link UniqueCountMap#UniqueCountMap(int, int)}.
+   * @param keySizeBytes must be at least 4 bytes to have sufficient entropy
+   * @param numSegments the number of segments, which must be a power of 2.
+   */
+  public ConcurrentUniqueCountMap(final int initialNumEntries, final int keySizeBytes,
+      final int numSegments) {
+    this(initialNumEntries, keySizeBytes, numSegments, null);
+  }
+
+  /**
+   * Constructs this map with the given initial number of entries in total and the given number of
+   * segments, whose internal maps request their tables from the given MemoryRequestServer.
+   * See {@link UniqueCountMap#UniqueCountMap(int, int, MemoryRequestServer)}.
+   *
+   * @param initialNumEntries the initial number of entries of all segments together, which are
+   * divided evenly between the segments.
+   * @param keySizeBytes must be at least 4 bytes to have sufficient entropy
+   * @param numSegments the number of segments, which must be a power of 2.
+   * @param memReqSvr the MemoryRequestServer that provides the tables of all segments. It is
+   * called concurrently by the segments, so it must be thread-safe. If null, the tables are
+   * allocated on the heap.
+   */
+  public ConcurrentUniqueCountMap(final int initialNumEntries, final int keySizeBytes,
+      final int numSegments, final MemoryRequestServer memReqSvr) {
+    if (!isPowerOf2(numSegments)) {
+      throw new SketchesArgumentException("numSegments must be a power of 2: " + numSegments);
+    }
+    keySizeBytes_ = keySizeBytes;
+    segments_ = new UniqueCountMap[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      segments_[i] = new UniqueCountMap(initialNumEntries / numSegments, keySizeBytes, memReqSvr);
+    }
+    segmentMask_ = numSegments - 1;
+  }
+
+  /**
+   * Updates the map with a given key and identifier and returns the estimate of the number of
+   * unique identifiers encountered so far for the given key.
+   * See {@link UniqueCountMap#update(byte[], byte[])}.
+   * @param key the given key
+   * @param identifier the given identifier for unique counting associated with the key
+   * @return the estimate of the number of unique identifiers encountered so far for the given key.
+   */
+  public double update(final byte[] key, final byte[] identifier) {
+    if (key == null) { return Double.NaN; }
+    checkMethodKeySize(key);
+    if (identifier == null) { return getEstimate(key); }
+    final short coupon = (short) Map.coupon16(identifier);
+    final long[] hash = MurmurHash3.hash(key, Map.SEED);
+    final UniqueCountMap segment = segmentOf(hash);
+    synchronized (segment) {
+      return segment.update(key, hash, coupon);
+    }
+  }
+
+  /**
+   * Retrieves the current estimate of unique count for a given key.
+   * @param key given key
+   * @return estimate of unique count so far
+   */
+  public double getEstimate(final byte[] key) {
+    if (key == null) { return Double.NaN; }
+    checkMethodKeySize(key);
+    final UniqueCountMap segment = segmentOf(key);
+    synchronized (segment) {
+      return segment.getEstimate(key);
+    }
+  }
+
+  /**
+   * Returns the upper bound cardinality with respect to {@link #getEstimate(byte[])} associated
+   * with the given key.
+   * @param key the given key
+   * @return the upper bound cardinality with respect to {@link #getEstimate(byte[])} associated
+   * with the given key.
+   */
+  public double getUpperBound(final byte[] key) {
+    if (key == null) { return Double.NaN; }
+    checkMethodKeySize(key);
+    final UniqueCountMap segment = segmentOf(key);
+    synchronized (segment) {
+      return segment.getUpperBound(key);
+    }
+  }
+
+  /**
+   * Returns the lower bound cardinality with respect to {@link #getEstimate(byte[])} associated
+   * with the given key.
+   * @param key the given key
+   * @return the lower bound cardinality with respect to {@link #getEstimate(byte[])} associated
+   * with the given key.
+   */
+  public double getLowerBound(final byte[] key) {
+    if (key == null) { return Double.NaN; }
+    checkMethodKeySize(key);
+    final UniqueCountMap segment = segmentOf(key);
+    synchronized (segment) {
+      return segment.getLowerBound(key);
+    }
+  }
+
+  /**
+   * Returns the number of active, unique keys across all segments
+   * @return the number of active, unique keys across all segments
+   */
+  public long getActiveEntries() {
+    long total = 0;
+    for (int i = 0; i < segments_.length; i++) {
+      synchronized (segments_[i]) {
+        total += segments_[i].getActiveEntries();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Returns total bytes used by all internal maps of all segments
+   * @return total bytes used by all internal maps of all segments
+   */
+  public long getMemoryUsageBytes() {
+    long total = 0;
+    for (int i = 0; i < segments_.length; i++) {
+      synchronized (segments_[i]) {
+        total += segments_[i].getMemoryUsageBytes();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Returns total bytes used for key storage by all segments
+   * @return total bytes used for key storage by all segments
+   */
+  public long getKeyMemoryUsageBytes() {
+    long total = 0;
+    for (int i = 0; i < segments_.length; i++) {
+      synchronized (segments_[i]) {
+        total += segments_[i].getKeyMemoryUsageBytes();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Hands the tables of all segments back to the MemoryRequestServer given at construction, if
+   * any. This map must not be used afterwards. See {@link UniqueCountMap#close()}.
+   */
+  public void close() {
+    for (int i = 0; i < segments_.length; i++) {
+      synchronized (segments_[i]) {
+        segments_[i].close();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of segments.
+   * @return the number of segments
+   */
+  public int getNumSegments() {
+    return segments_.length;
+  }
+
+  /**
+   * Returns a string with a human-readable summary of this map
+   * @return human-readable summary
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("## ").append(this.getClass().getSimpleName()).append(" SUMMARY: ").append(LS);
+    sb.append("   Key Size Bytes             : ").append(Map.fmtLong(keySizeBytes_)).append(LS);
+    sb.append("   Segments                   : ").append(Map.fmtLong(segments_.length)).append(LS);
+    sb.append("   Total keys                 : ").append(Map.fmtLong(getActiveEntries()))
+      .append(LS);
+    sb.append("   Total Memory Bytes         : ").append(Map.fmtLong(getMemoryUsageBytes()))
+      .append(LS);
+    sb.append("   Total Key Memory Bytes     : ").append(Map.fmtLong(getKeyMemoryUsageBytes()))
+      .append(LS);
+    sb.append("## ").append("END CONCURRENT UNIQUE COUNT MAP SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  /**
+   * Returns the segment at the given index.
+   * @param index the given index
+   * @return the segment at the given index
+   */
+  UniqueCountMap getSegment(final int index) {
+    return segments_[index];
+  }
+
+  private UniqueCountMap segmentOf(final byte[] key) {
+    return segmentOf(MurmurHash3.hash(key, Map.SEED));
+  }
+
+  private UniqueCountMap segmentOf(final long[] hash) {
+    //the high bits, as the internal maps of the segment probe with the same hash modulo a prime
+    return segments_[(int) (hash[0] >>> 40) & segmentMask_];
+  }
+
+  private void checkMethodKeySize(final byte[] key) {
+    if (key.length != keySizeBytes_) {
+      throw new SketchesArgumentException("Key size must be " + keySizeBytes_ + " bytes.");
+    }
+  }
+
+}
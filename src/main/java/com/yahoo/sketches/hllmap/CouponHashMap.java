@@ -8,8 +8,8 @@ package com.yahoo.sketches.hllmap;
 import static com.yahoo.sketches.Util.checkIfPowerOf2;
 import static com.yahoo.sketches.Util.invPow2;
 
-import java.util.Arrays;
-
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.hash.MurmurHash3;
 
@@ -22,6 +22,10 @@ import com.yahoo.sketches.hash.MurmurHash3;
  *
  * <p>The inner hash tables are implemented with linear probing or OASH and a load factor of 0.75.
  *
+ * <p>The keys, coupons, counts and HIP registers are stored in consecutive, 8-byte aligned tables
+ * of a single Memory. When the map grows or shrinks, the entries are moved to the new tables
+ * incrementally.
+ *
  * @author Lee Rhodes
  * @author Alexander Saydakov
  * @author Kevin Lang
@@ -37,43 +41,54 @@ final class CouponHashMap extends Map {
   private final int capacityCouponsPerKey_;
   private final int entrySizeBytes_;
 
+  private Table table_;
+  private Table oldTable_; //during an incremental resize, otherwise null
   private int tableEntries_;
   private int capacityEntries_;
-  private int numActiveKeys_;
-  private int numDeletedKeys_;
-
-  //Arrays
-  private byte[] keysArr_;
-  private short[] couponsArr_;
-  private byte[] curCountsArr_; //also acts as a stateArr: 0 empty, 255 deleted
-  private float[] invPow2SumArr_;
-  private float[] hipEstAccumArr_;
-
-  private CouponHashMap(final int keySizeBytes, final int maxCouponsPerKey) {
-    super(keySizeBytes);
+  private int numActiveKeys_; //including those not yet moved from the old table
+  private int numDeletedKeys_; //of the current table
+
+  private CouponHashMap(final int keySizeBytes, final int maxCouponsPerKey,
+      final MemoryRequestServer memReqSvr) {
+    super(keySizeBytes, memReqSvr);
     maxCouponsPerKey_ = maxCouponsPerKey;
     capacityCouponsPerKey_ = (int)(maxCouponsPerKey * INNER_LOAD_FACTOR);
     entrySizeBytes_ = keySizeBytes + maxCouponsPerKey * Short.BYTES + 1 + 4 + 4;
   }
 
   static CouponHashMap getInstance(final int keySizeBytes, final int maxCouponsPerKey) {
-    checkMaxCouponsPerKey(maxCouponsPerKey);
-    final int tableEntries = COUPON_MAP_MIN_NUM_ENTRIES;
+    return getInstance(keySizeBytes, maxCouponsPerKey, null);
+  }
 
-    final CouponHashMap map = new CouponHashMap(keySizeBytes, maxCouponsPerKey);
-    map.tableEntries_ = tableEntries;
-    map.capacityEntries_ = (int)(tableEntries * COUPON_MAP_GROW_TRIGGER_FACTOR);
+  static CouponHashMap getInstance(final int keySizeBytes, final int maxCouponsPerKey,
+      final MemoryRequestServer memReqSvr) {
+    checkMaxCouponsPerKey(maxCouponsPerKey);
+    final CouponHashMap map = new CouponHashMap(keySizeBytes, maxCouponsPerKey, memReqSvr);
+    map.setTable(map.newTable(COUPON_MAP_MIN_NUM_ENTRIES));
     map.numActiveKeys_ = 0;
     map.numDeletedKeys_ = 0;
+    return map;
+  }
 
-    map.keysArr_ = new byte[tableEntries * keySizeBytes];
-    map.couponsArr_ = new short[tableEntries * maxCouponsPerKey];
-    map.curCountsArr_ = new byte[tableEntries];
-    map.invPow2SumArr_ = new float[tableEntries];
-    map.hipEstAccumArr_ = new float[tableEntries];
+  static CouponHashMap wrapInstance(final int keySizeBytes, final int maxCouponsPerKey,
+      final int tableEntries, final int numActiveKeys, final int numDeletedKeys,
+      final WritableMemory tableMem, final MemoryRequestServer memReqSvr) {
+    checkMaxCouponsPerKey(maxCouponsPerKey);
+    final CouponHashMap map = new CouponHashMap(keySizeBytes, maxCouponsPerKey, memReqSvr);
+    map.setTable(new Table(keySizeBytes, maxCouponsPerKey, tableEntries, tableMem, null));
+    map.numActiveKeys_ = numActiveKeys;
+    map.numDeletedKeys_ = numDeletedKeys;
     return map;
   }
 
+  static long getTableBytes(final int keySizeBytes, final int maxCouponsPerKey,
+      final int tableEntries) {
+    return align8((long) tableEntries * keySizeBytes)
+        + align8((long) tableEntries * maxCouponsPerKey * Short.BYTES)
+        + align8(tableEntries)
+        + (2 * align8((long) tableEntries * Float.BYTES));
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -82,34 +97,39 @@ final class CouponHashMap extends Map {
 
   @Override
   double update(final int entryIndex, final short coupon) {
-    final int couponMapArrEntryIndex = entryIndex * maxCouponsPerKey_;
+    final Table table = table_;
+    final long couponAreaOffset = table.getCouponAreaOffset(entryIndex);
 
     int innerCouponIndex = (coupon & 0xFFFF) % maxCouponsPerKey_;
 
-    while (couponsArr_[couponMapArrEntryIndex + innerCouponIndex] != 0) {
-      if (couponsArr_[couponMapArrEntryIndex + innerCouponIndex] == coupon) {
-        return hipEstAccumArr_[entryIndex]; //duplicate, returns the estimate
+    short innerCoupon;
+    while ((innerCoupon = table.mem_.getShort(couponAreaOffset + (innerCouponIndex << 1))) != 0) {
+      if (innerCoupon == coupon) {
+        return table.getHipEstAccum(entryIndex); //duplicate, returns the estimate
       }
       innerCouponIndex = (innerCouponIndex + 1) % maxCouponsPerKey_; //linear search
     }
-    if (((curCountsArr_[entryIndex] + 1) & BYTE_MASK) > capacityCouponsPerKey_) {
+    final byte curCount = table.getCurCount(entryIndex);
+    if (((curCount + 1) & BYTE_MASK) > capacityCouponsPerKey_) {
       //returns the negative estimate, as signal to promote
-      return -hipEstAccumArr_[entryIndex];
+      return -table.getHipEstAccum(entryIndex);
     }
 
-    couponsArr_[couponMapArrEntryIndex + innerCouponIndex] = coupon; //insert
-    curCountsArr_[entryIndex]++;
+    table.mem_.putShort(couponAreaOffset + (innerCouponIndex << 1), coupon); //insert
+    table.setCurCount(entryIndex, (byte) (curCount + 1));
     //hip +=  k/qt; qt -= 1/2^(val);
-    hipEstAccumArr_[entryIndex] += COUPON_K / invPow2SumArr_[entryIndex];
-    invPow2SumArr_[entryIndex] -= invPow2(coupon16Value(coupon));
-    return hipEstAccumArr_[entryIndex]; //returns the estimate
+    final float invPow2Sum = table.getInvPow2Sum(entryIndex);
+    final float hipEstAccum = table.getHipEstAccum(entryIndex) + (COUPON_K / invPow2Sum);
+    table.setHipEstAccum(entryIndex, hipEstAccum);
+    table.setInvPow2Sum(entryIndex, (float) (invPow2Sum - invPow2(coupon16Value(coupon))));
+    return hipEstAccum; //returns the estimate
   }
 
   @Override
   double getEstimate(final byte[] key) {
     final int index = findKey(key);
     if (index < 0) { return 0; }
-    return hipEstAccumArr_[index];
+    return table_.getHipEstAccum(index);
   }
 
   @Override
@@ -127,77 +147,71 @@ final class CouponHashMap extends Map {
     if (entryIndex < 0) {
       throw new SketchesArgumentException("Key not found.");
     }
-    hipEstAccumArr_[entryIndex] = (float) estimate;
+    table_.setHipEstAccum(entryIndex, (float) estimate);
   }
 
   /**
    * Returns entryIndex if the given key is found. If not found, returns one's complement index
    * of an empty slot for insertion, which may be over a deleted key.
+   * During an incremental resize a key found in the old table is moved to the current table first.
    * @param key the given key
+   * @param hash the hash of the key
    * @return the entryIndex
    */
   @Override
-  int findKey(final byte[] key) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    int firstDeletedIndex = -1;
-    final int loopIndex = entryIndex;
-    do {
-      if (curCountsArr_[entryIndex] == 0) {
-        return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // found empty or deleted
-      }
-      if (curCountsArr_[entryIndex] == DELETED_KEY_MARKER) {
-        if (firstDeletedIndex == -1) {
-          firstDeletedIndex = entryIndex;
-        }
-      } else if (Map.arraysEqual(keysArr_, entryIndex * keySizeBytes_, key, 0, keySizeBytes_)) {
-        return entryIndex; // found key
-      }
-      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  int findKey(final byte[] key, final long[] hash) {
+    final int entryIndex = table_.find(key, hash);
+    if ((entryIndex >= 0) || (oldTable_ == null)) { return entryIndex; }
+    final int oldIndex = oldTable_.find(key, hash);
+    if ((oldIndex < 0) || isMoved(oldIndex)) { return entryIndex; }
+    return moveAhead(oldIndex);
   }
 
   @Override
-  int findOrInsertKey(final byte[] key) {
-    int entryIndex = findKey(key);
+  int findOrInsertKey(final byte[] key, final long[] hash) {
+    migrate();
+    int entryIndex = findKey(key, hash);
     if (entryIndex < 0) { //key not found
       entryIndex = ~entryIndex;
-      if (curCountsArr_[entryIndex] == DELETED_KEY_MARKER) { // reusing slot from a deleted key
-        Arrays.fill(couponsArr_, entryIndex * maxCouponsPerKey_,
-            (entryIndex + 1) *  maxCouponsPerKey_, (short) 0);
-        curCountsArr_[entryIndex] = 0;
+      if (table_.getCurCount(entryIndex) == DELETED_KEY_MARKER) { // reusing slot from a deleted key
+        table_.mem_.clear(table_.getCouponAreaOffset(entryIndex), maxCouponsPerKey_ * Short.BYTES);
+        table_.setCurCount(entryIndex, (byte) 0);
         numDeletedKeys_--;
       }
       if (numActiveKeys_ + numDeletedKeys_ >= capacityEntries_) {
         resize();
-        entryIndex = ~findKey(key);
+        entryIndex = ~findKey(key, hash);
         assert entryIndex >= 0;
       }
       //insert new key
-      System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
+      table_.putKey(entryIndex, key);
       //initialize HIP:  qt <- k; hip <- 0;
-      invPow2SumArr_[entryIndex] = COUPON_K;
-      hipEstAccumArr_[entryIndex] = 0;
+      table_.setInvPow2Sum(entryIndex, COUPON_K);
+      table_.setHipEstAccum(entryIndex, 0);
       numActiveKeys_++;
+      putCounts();
     }
     return entryIndex;
   }
 
   @Override
   void deleteKey(final int entryIndex) {
-    curCountsArr_[entryIndex] = DELETED_KEY_MARKER;
+    table_.setCurCount(entryIndex, DELETED_KEY_MARKER);
     numActiveKeys_--;
     numDeletedKeys_++;
+    putCounts();
     if (numActiveKeys_ > COUPON_MAP_MIN_NUM_ENTRIES
         && numActiveKeys_ < tableEntries_ * COUPON_MAP_SHRINK_TRIGGER_FACTOR) {
       resize();
+    } else {
+      migrate();
     }
   }
 
   @Override
   CouponsIterator getCouponsIterator(final int entryIndex) {
-    return new CouponsIterator(couponsArr_, entryIndex * maxCouponsPerKey_, maxCouponsPerKey_);
+    return new CouponsIterator(table_.mem_, table_.getCouponAreaOffset(entryIndex),
+        maxCouponsPerKey_);
   }
 
   @Override
@@ -222,11 +236,8 @@ final class CouponHashMap extends Map {
 
   @Override
   long getMemoryUsageBytes() {
-    final long arrays = keysArr_.length
-        + (long)couponsArr_.length * Short.BYTES
-        + curCountsArr_.length
-        + invPow2SumArr_.length * Float.BYTES
-        + hipEstAccumArr_.length * Float.BYTES;
+    long arrays = table_.mem_.getCapacity() + getMigrationBytes();
+    if (oldTable_ != null) { arrays += oldTable_.mem_.getCapacity(); }
     final long other = 4 * 5;
     return arrays + other;
   }
@@ -260,59 +271,187 @@ final class CouponHashMap extends Map {
     }
   }
 
+  @Override
+  int getMapType() {
+    return COUPON_HASH_MAP_TYPE;
+  }
+
+  @Override
+  int getMapParameter() {
+    return maxCouponsPerKey_;
+  }
+
+  @Override
+  WritableMemory getTableMemory() {
+    return table_.mem_;
+  }
+
+  @Override
+  int getOldTableEntries() {
+    return oldTable_.entries_;
+  }
+
+  @Override
+  boolean isOldEntryValid(final int oldIndex) {
+    final byte curCount = oldTable_.getCurCount(oldIndex);
+    return (curCount != 0) && (curCount != DELETED_KEY_MARKER);
+  }
+
+  @Override
+  int moveOldEntry(final int oldIndex) {
+    final Table old = oldTable_;
+    final long[] hash = old.hashKey(oldIndex);
+    final int entryIndex = table_.findEmpty(hash);
+    old.mem_.copyTo((long) oldIndex * keySizeBytes_, table_.mem_,
+        (long) entryIndex * keySizeBytes_, keySizeBytes_);
+    old.mem_.copyTo(old.getCouponAreaOffset(oldIndex), table_.mem_,
+        table_.getCouponAreaOffset(entryIndex), maxCouponsPerKey_ * Short.BYTES);
+    table_.setCurCount(entryIndex, old.getCurCount(oldIndex));
+    table_.setInvPow2Sum(entryIndex, old.getInvPow2Sum(oldIndex));
+    table_.setHipEstAccum(entryIndex, old.getHipEstAccum(oldIndex));
+    return entryIndex;
+  }
+
+  @Override
+  void releaseOldTable() {
+    releaseTable(oldTable_.allocated_, table_.allocated_);
+    oldTable_ = null;
+  }
+
+  @Override
+  void releaseTables() {
+    if (oldTable_ != null) { releaseTable(oldTable_.allocated_, null); }
+    releaseTable(table_.allocated_, null);
+  }
+
+  @Override
+  boolean tablesOverlap(final WritableMemory mem) {
+    return overlaps(table_.mem_, mem) || ((oldTable_ != null) && overlaps(oldTable_.mem_, mem));
+  }
+
+  private Table newTable(final int tableEntries) {
+    final long tableBytes = getTableBytes(keySizeBytes_, maxCouponsPerKey_, tableEntries);
+    final WritableMemory allocated = allocateTable(tableBytes);
+    return new Table(keySizeBytes_, maxCouponsPerKey_, tableEntries,
+        getTableRegion(allocated, tableBytes), allocated);
+  }
+
+  private void setTable(final Table table) {
+    table_ = table;
+    tableEntries_ = table.entries_;
+    capacityEntries_ = (int)(tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
+  }
+
   private void resize() {
-    final byte[] oldKeysArr = keysArr_;
-    final short[] oldCouponMapArr = couponsArr_;
-    final byte[] oldCurCountsArr = curCountsArr_;
-    final float[] oldInvPow2SumArr = invPow2SumArr_;
-    final float[] oldHipEstAccumArr = hipEstAccumArr_;
-    final int oldNumEntries = tableEntries_;
-    tableEntries_ = Math.max(
+    finishMigration();
+    final int newTableEntries = Math.max(
       nextPrime((int) (numActiveKeys_ / COUPON_MAP_TARGET_FILL_FACTOR)),
       COUPON_MAP_MIN_NUM_ENTRIES
     );
-    capacityEntries_ = (int)(tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
-    keysArr_ = new byte[tableEntries_ * keySizeBytes_];
-    couponsArr_ = new short[tableEntries_ * maxCouponsPerKey_];
-    curCountsArr_ = new byte[tableEntries_];
-    invPow2SumArr_ = new float[tableEntries_];
-    hipEstAccumArr_ = new float[tableEntries_];
-    numActiveKeys_ = 0;
-    numDeletedKeys_ = 0;
-    for (int i = 0; i < oldNumEntries; i++) {
-      if (oldCurCountsArr[i] != 0 && oldCurCountsArr[i] != DELETED_KEY_MARKER) {
-        //extract an old valid key
-        final byte[] key =
-            Arrays.copyOfRange(oldKeysArr, i * keySizeBytes_, i * keySizeBytes_ + keySizeBytes_);
-        //insert the key and get its index
-        final int index = insertKey(key);
-        //copy the coupons array into that index
-        System.arraycopy(oldCouponMapArr, i * maxCouponsPerKey_, couponsArr_,
-            index * maxCouponsPerKey_, maxCouponsPerKey_);
-        //transfer the count
-        curCountsArr_[index] = oldCurCountsArr[i];
-        //transfer the HIP registers
-        invPow2SumArr_[index] = oldInvPow2SumArr[i];
-        hipEstAccumArr_[index] = oldHipEstAccumArr[i];
-      }
-    }
+    oldTable_ = table_;
+    setTable(newTable(newTableEntries));
+    numDeletedKeys_ = 0; //the deleted keys are not moved
+    startMigration(oldTable_.entries_, capacityEntries_ - numActiveKeys_);
   }
 
-  // for internal use by resize, no resize check and no deleted key check here
-  // no changes to HIP
-  private int insertKey(final byte[] key) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    final int loopIndex = entryIndex;
-    do {
-      if (curCountsArr_[entryIndex] == 0) {
-        System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
-        numActiveKeys_++;
-        return entryIndex;
-      }
-      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  /**
+   * The keys at offset 0, then the coupons, counts, invPow2Sum and hipEstAccum, in a single
+   * Memory. The counts also act as a state: 0 empty, 255 deleted.
+   */
+  private static final class Table {
+    final int keySizeBytes_;
+    final int maxCouponsPerKey_;
+    final int entries_;
+    final WritableMemory mem_;
+    final WritableMemory allocated_; //to be released, null if not allocated by the map
+    final long couponsOffset_;
+    final long curCountsOffset_;
+    final long invPow2SumOffset_;
+    final long hipEstAccumOffset_;
+
+    Table(final int keySizeBytes, final int maxCouponsPerKey, final int entries,
+        final WritableMemory mem, final WritableMemory allocated) {
+      keySizeBytes_ = keySizeBytes;
+      maxCouponsPerKey_ = maxCouponsPerKey;
+      entries_ = entries;
+      mem_ = mem;
+      allocated_ = allocated;
+      couponsOffset_ = align8((long) entries * keySizeBytes);
+      curCountsOffset_ = couponsOffset_ + align8((long) entries * maxCouponsPerKey * Short.BYTES);
+      invPow2SumOffset_ = curCountsOffset_ + align8(entries);
+      hipEstAccumOffset_ = invPow2SumOffset_ + align8((long) entries * Float.BYTES);
+    }
+
+    long getCouponAreaOffset(final int entryIndex) {
+      return couponsOffset_ + (((long) entryIndex * maxCouponsPerKey_) << 1);
+    }
+
+    byte getCurCount(final int entryIndex) {
+      return mem_.getByte(curCountsOffset_ + entryIndex);
+    }
+
+    void setCurCount(final int entryIndex, final byte curCount) {
+      mem_.putByte(curCountsOffset_ + entryIndex, curCount);
+    }
+
+    float getInvPow2Sum(final int entryIndex) {
+      return mem_.getFloat(invPow2SumOffset_ + ((long) entryIndex << 2));
+    }
+
+    void setInvPow2Sum(final int entryIndex, final float invPow2Sum) {
+      mem_.putFloat(invPow2SumOffset_ + ((long) entryIndex << 2), invPow2Sum);
+    }
+
+    float getHipEstAccum(final int entryIndex) {
+      return mem_.getFloat(hipEstAccumOffset_ + ((long) entryIndex << 2));
+    }
+
+    void setHipEstAccum(final int entryIndex, final float hipEstAccum) {
+      mem_.putFloat(hipEstAccumOffset_ + ((long) entryIndex << 2), hipEstAccum);
+    }
+
+    void putKey(final int entryIndex, final byte[] key) {
+      mem_.putByteArray((long) entryIndex * keySizeBytes_, key, 0, keySizeBytes_);
+    }
+
+    long[] hashKey(final int entryIndex) {
+      return MurmurHash3.hash(mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_, SEED,
+          new long[2]);
+    }
+
+    int find(final byte[] key, final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      int firstDeletedIndex = -1;
+      final int loopIndex = entryIndex;
+      do {
+        final byte curCount = getCurCount(entryIndex);
+        if (curCount == 0) {
+          return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // empty or deleted
+        }
+        if (curCount == DELETED_KEY_MARKER) {
+          if (firstDeletedIndex == -1) {
+            firstDeletedIndex = entryIndex;
+          }
+        } else if (Map.keyEquals(key, mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_)) {
+          return entryIndex; // found key
+        }
+        entryIndex = (entryIndex + getStride(hash[1], entries_)) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+
+    // for moving entries during a resize, where the key is known not to be in this table
+    int findEmpty(final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      final int loopIndex = entryIndex;
+      do {
+        if (getCurCount(entryIndex) == 0) {
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + getStride(hash[1], entries_)) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
   }
 
 }
@@ -5,8 +5,8 @@
 
 package com.yahoo.sketches.hllmap;
 
-import java.util.Arrays;
-
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.hash.MurmurHash3;
 
@@ -18,6 +18,10 @@ import com.yahoo.sketches.hash.MurmurHash3;
  * <p>The map is implemented as a prime-sized, Open Address, Double Hash, with deletes and a 1-bit
  * state array. The size of this map can grow or shrink.
  *
+ * <p>The keys, coupons and state bits are stored in consecutive, 8-byte aligned tables of a
+ * single Memory. When the map grows or shrinks, the entries are moved to the new tables
+ * incrementally.
+ *
  * @author Lee Rhodes
  * @author Alexander Saydakov
  * @author Kevin Lang
@@ -26,43 +30,50 @@ final class CouponTraverseMap extends Map {
   private static final double RSE = 0.408 / Math.sqrt(1024);
   private final int maxCouponsPerKey_;
 
+  private Table table_;
+  private Table oldTable_; //during an incremental resize, otherwise null
   private int tableEntries_;
   private int capacityEntries_;
-  private int numActiveKeys_;
-  private int numDeletedKeys_;
+  private int numActiveKeys_; //including those not yet moved from the old table
+  private int numDeletedKeys_; //of the current table
   private double entrySizeBytes_;
 
-  //Arrays
-  private byte[] keysArr_;
-  private short[] couponsArr_;
-
-  /**
-   * <ul><li>State: 0: Empty always, don't need to look at 1st coupon. Coupons could be dirty.</li>
-   * <li>State: 1: Valid entry or dirty. During rebuild, look at the first coupon to determine.
-   * If first coupon != 0 means valid entry; first coupon == 0: dirty (we set to 0 when deleted)</li>
-   * </ul>
-   */
-  private byte[] stateArr_;
-
-  private CouponTraverseMap(final int keySizeBytes, final int maxCouponsPerKey) {
-    super(keySizeBytes);
+  private CouponTraverseMap(final int keySizeBytes, final int maxCouponsPerKey,
+      final MemoryRequestServer memReqSvr) {
+    super(keySizeBytes, memReqSvr);
     maxCouponsPerKey_ = maxCouponsPerKey;
   }
 
   static CouponTraverseMap getInstance(final int keySizeBytes, final int maxCouponsPerKey) {
-    final CouponTraverseMap map = new CouponTraverseMap(keySizeBytes, maxCouponsPerKey);
-    map.tableEntries_ = COUPON_MAP_MIN_NUM_ENTRIES;
-    map.capacityEntries_ = (int)(map.tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
+    return getInstance(keySizeBytes, maxCouponsPerKey, null);
+  }
+
+  static CouponTraverseMap getInstance(final int keySizeBytes, final int maxCouponsPerKey,
+      final MemoryRequestServer memReqSvr) {
+    final CouponTraverseMap map = new CouponTraverseMap(keySizeBytes, maxCouponsPerKey, memReqSvr);
+    map.setTable(map.newTable(COUPON_MAP_MIN_NUM_ENTRIES));
     map.numActiveKeys_ = 0;
     map.numDeletedKeys_ = 0;
-    map.entrySizeBytes_ = updateEntrySizeBytes(map.tableEntries_, keySizeBytes, maxCouponsPerKey);
+    return map;
+  }
 
-    map.keysArr_ = new byte[COUPON_MAP_MIN_NUM_ENTRIES * keySizeBytes];
-    map.couponsArr_ = new short[COUPON_MAP_MIN_NUM_ENTRIES * maxCouponsPerKey];
-    map.stateArr_ = new byte[(int) Math.ceil(COUPON_MAP_MIN_NUM_ENTRIES / 8.0)];
+  static CouponTraverseMap wrapInstance(final int keySizeBytes, final int maxCouponsPerKey,
+      final int tableEntries, final int numActiveKeys, final int numDeletedKeys,
+      final WritableMemory tableMem, final MemoryRequestServer memReqSvr) {
+    final CouponTraverseMap map = new CouponTraverseMap(keySizeBytes, maxCouponsPerKey, memReqSvr);
+    map.setTable(new Table(keySizeBytes, maxCouponsPerKey, tableEntries, tableMem, null));
+    map.numActiveKeys_ = numActiveKeys;
+    map.numDeletedKeys_ = numDeletedKeys;
     return map;
   }
 
+  static long getTableBytes(final int keySizeBytes, final int maxCouponsPerKey,
+      final int tableEntries) {
+    return align8((long) tableEntries * keySizeBytes)
+        + align8((long) tableEntries * maxCouponsPerKey * Short.BYTES)
+        + align8((tableEntries + 7) / 8);
+  }
+
   @Override //used for test
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -71,15 +82,17 @@ final class CouponTraverseMap extends Map {
 
   @Override
   double update(final int entryIndex, final short value) {
-    final int offset = entryIndex * maxCouponsPerKey_;
+    final WritableMemory mem = table_.mem_;
+    final long offset = table_.getCouponAreaOffset(entryIndex);
     boolean wasFound = false;
     for (int i = 0; i < maxCouponsPerKey_; i++) {
-      if (couponsArr_[offset + i] == 0) {
+      final short coupon = mem.getShort(offset + (i << 1));
+      if (coupon == 0) {
         if (wasFound) { return i; }
-        couponsArr_[offset + i] = value;
+        mem.putShort(offset + (i << 1), value);
         return i + 1;
       }
-      if (couponsArr_[offset + i] == value) {
+      if (coupon == value) {
         wasFound = true;
       }
     }
@@ -107,65 +120,60 @@ final class CouponTraverseMap extends Map {
   /**
    * Returns entryIndex if the given key is found. If not found, returns one's complement entryIndex
    * of an empty slot for insertion, which may be over a deleted key.
+   * During an incremental resize a key found in the old table is moved to the current table first.
    * @param key the given key
+   * @param hash the hash of the key
    * @return the entryIndex
    */
   @Override
-  int findKey(final byte[] key) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    int firstDeletedIndex = -1;
-    final int loopIndex = entryIndex;
-    do {
-      if (isBitClear(stateArr_, entryIndex)) {
-        return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // found empty or deleted
-      }
-      if (couponsArr_[entryIndex * maxCouponsPerKey_] == 0) { //found deleted
-        if (firstDeletedIndex == -1) { firstDeletedIndex = entryIndex; }
-      } else if (Map.arraysEqual(keysArr_, entryIndex * keySizeBytes_, key, 0, keySizeBytes_)) {
-        return entryIndex; // found key
-      }
-      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  int findKey(final byte[] key, final long[] hash) {
+    final int entryIndex = table_.find(key, hash);
+    if ((entryIndex >= 0) || (oldTable_ == null)) { return entryIndex; }
+    final int oldIndex = oldTable_.find(key, hash);
+    if ((oldIndex < 0) || isMoved(oldIndex)) { return entryIndex; }
+    return moveAhead(oldIndex);
   }
 
   @Override
-  int findOrInsertKey(final byte[] key) {
-    int entryIndex = findKey(key);
+  int findOrInsertKey(final byte[] key, final long[] hash) {
+    migrate();
+    int entryIndex = findKey(key, hash);
     if (entryIndex < 0) {
       entryIndex = ~entryIndex;
-      if (isBitSet(stateArr_, entryIndex)) { // reusing slot from a deleted key
-        clearCouponArea(entryIndex);
+      if (table_.isOccupied(entryIndex)) { // reusing slot from a deleted key
+        table_.clearCouponArea(entryIndex);
         numDeletedKeys_--;
       }
       if ((numActiveKeys_ + numDeletedKeys_ + 1) > capacityEntries_) {
         resize();
-        entryIndex = ~findKey(key);
+        entryIndex = ~findKey(key, hash);
         assert entryIndex >= 0;
       }
-      System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
-      setBit(stateArr_, entryIndex);
+      table_.putKey(entryIndex, key);
       numActiveKeys_++;
+      putCounts();
     }
     return entryIndex;
   }
 
   @Override
   void deleteKey(final int entryIndex) {
-    couponsArr_[entryIndex * maxCouponsPerKey_] = 0;
+    table_.mem_.putShort(table_.getCouponAreaOffset(entryIndex), (short) 0);
     numActiveKeys_--;
     numDeletedKeys_++;
+    putCounts();
     if ((numActiveKeys_ > COUPON_MAP_MIN_NUM_ENTRIES)
         && (numActiveKeys_ < (tableEntries_ * COUPON_MAP_SHRINK_TRIGGER_FACTOR))) {
       resize();
+    } else {
+      migrate();
     }
   }
 
   private int getCouponCount(final int entryIndex) {
-    final int offset = entryIndex * maxCouponsPerKey_;
+    final long offset = table_.getCouponAreaOffset(entryIndex);
     for (int i = 0; i < maxCouponsPerKey_; i++) {
-      if (couponsArr_[offset + i] == 0) {
+      if (table_.mem_.getShort(offset + (i << 1)) == 0) {
         return i;
       }
     }
@@ -174,7 +182,8 @@ final class CouponTraverseMap extends Map {
 
   @Override
   CouponsIterator getCouponsIterator(final int entryIndex) {
-    return new CouponsIterator(couponsArr_, entryIndex * maxCouponsPerKey_, maxCouponsPerKey_);
+    return new CouponsIterator(table_.mem_, table_.getCouponAreaOffset(entryIndex),
+        maxCouponsPerKey_);
   }
 
   @Override
@@ -199,9 +208,9 @@ final class CouponTraverseMap extends Map {
 
   @Override
   long getMemoryUsageBytes() {
-    return keysArr_.length
-        + (long)couponsArr_.length * Short.BYTES
-        + stateArr_.length + 4 * Integer.BYTES;
+    long arrays = table_.mem_.getCapacity() + getMigrationBytes();
+    if (oldTable_ != null) { arrays += oldTable_.mem_.getCapacity(); }
+    return arrays + 4 * Integer.BYTES;
   }
 
   @Override
@@ -224,58 +233,85 @@ final class CouponTraverseMap extends Map {
     return maxCouponsPerKey_;
   }
 
-  private void resize() { //can grow or shrink
-    final byte[] oldKeysArr = keysArr_;
-    final short[] oldCouponsArr = couponsArr_;
-    final byte[] oldStateArr = stateArr_;
-    final int oldSizeKeys = tableEntries_;
-    tableEntries_ = Math.max(
-      nextPrime((int) (numActiveKeys_ / COUPON_MAP_TARGET_FILL_FACTOR)),
-      COUPON_MAP_MIN_NUM_ENTRIES
-    );
-    capacityEntries_ = (int)(tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
-    numActiveKeys_ = 0;
-    numDeletedKeys_ = 0;
-    entrySizeBytes_ = updateEntrySizeBytes(tableEntries_, keySizeBytes_, maxCouponsPerKey_);
+  @Override
+  int getMapType() {
+    return COUPON_TRAVERSE_MAP_TYPE;
+  }
 
-    keysArr_ = new byte[tableEntries_ * keySizeBytes_];
-    couponsArr_ = new short[tableEntries_ * maxCouponsPerKey_];
-    stateArr_ = new byte[(int) Math.ceil(tableEntries_ / 8.0)];
-
-    //move data
-    for (int i = 0; i < oldSizeKeys; i++) {
-      if (isBitSet(oldStateArr, i) && (oldCouponsArr[i * maxCouponsPerKey_] != 0)) {
-        final byte[] key =
-            Arrays.copyOfRange(oldKeysArr, i * keySizeBytes_, i * keySizeBytes_ + keySizeBytes_);
-        final int index = insertKey(key);
-        System.arraycopy(oldCouponsArr, i * maxCouponsPerKey_, couponsArr_,
-            index * maxCouponsPerKey_, maxCouponsPerKey_);
-      }
-    }
+  @Override
+  int getMapParameter() {
+    return maxCouponsPerKey_;
   }
 
-  // for internal use during resize, so no resize check here
-  private int insertKey(final byte[] key) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    final int loopIndex = entryIndex;
-    do {
-      if (isBitClear(stateArr_, entryIndex)) {
-        System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
-        setBit(stateArr_, entryIndex);
-        numActiveKeys_++;
-        return entryIndex;
-      }
-      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  @Override
+  WritableMemory getTableMemory() {
+    return table_.mem_;
   }
 
-  private void clearCouponArea(final int entryIndex) {
-    final int couponAreaIndex = entryIndex * maxCouponsPerKey_;
-    for (int i = 0; i < maxCouponsPerKey_; i++) {
-      couponsArr_[couponAreaIndex + i] = 0;
-    }
+  @Override
+  int getOldTableEntries() {
+    return oldTable_.entries_;
+  }
+
+  @Override
+  boolean isOldEntryValid(final int oldIndex) {
+    return oldTable_.isOccupied(oldIndex)
+        && (oldTable_.mem_.getShort(oldTable_.getCouponAreaOffset(oldIndex)) != 0);
+  }
+
+  @Override
+  int moveOldEntry(final int oldIndex) {
+    final long[] hash = oldTable_.hashKey(oldIndex);
+    final int entryIndex = table_.findEmpty(hash);
+    oldTable_.mem_.copyTo((long) oldIndex * keySizeBytes_, table_.mem_,
+        (long) entryIndex * keySizeBytes_, keySizeBytes_);
+    setBit(table_.mem_, table_.stateOffset_, entryIndex);
+    oldTable_.mem_.copyTo(oldTable_.getCouponAreaOffset(oldIndex), table_.mem_,
+        table_.getCouponAreaOffset(entryIndex), maxCouponsPerKey_ * Short.BYTES);
+    return entryIndex;
+  }
+
+  @Override
+  void releaseOldTable() {
+    releaseTable(oldTable_.allocated_, table_.allocated_);
+    oldTable_ = null;
+  }
+
+  @Override
+  void releaseTables() {
+    if (oldTable_ != null) { releaseTable(oldTable_.allocated_, null); }
+    releaseTable(table_.allocated_, null);
+  }
+
+  @Override
+  boolean tablesOverlap(final WritableMemory mem) {
+    return overlaps(table_.mem_, mem) || ((oldTable_ != null) && overlaps(oldTable_.mem_, mem));
+  }
+
+  private Table newTable(final int tableEntries) {
+    final long tableBytes = getTableBytes(keySizeBytes_, maxCouponsPerKey_, tableEntries);
+    final WritableMemory allocated = allocateTable(tableBytes);
+    return new Table(keySizeBytes_, maxCouponsPerKey_, tableEntries,
+        getTableRegion(allocated, tableBytes), allocated);
+  }
+
+  private void setTable(final Table table) {
+    table_ = table;
+    tableEntries_ = table.entries_;
+    capacityEntries_ = (int)(tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
+    entrySizeBytes_ = updateEntrySizeBytes(tableEntries_, keySizeBytes_, maxCouponsPerKey_);
+  }
+
+  private void resize() { //can grow or shrink
+    finishMigration();
+    final int newTableEntries = Math.max(
+      nextPrime((int) (numActiveKeys_ / COUPON_MAP_TARGET_FILL_FACTOR)),
+      COUPON_MAP_MIN_NUM_ENTRIES
+    );
+    oldTable_ = table_;
+    setTable(newTable(newTableEntries));
+    numDeletedKeys_ = 0; //the deleted keys are not moved
+    startMigration(oldTable_.entries_, capacityEntries_ - numActiveKeys_);
   }
 
   private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
@@ -284,4 +320,87 @@ final class CouponTraverseMap extends Map {
     return keySizeBytes + maxCouponsPerKey * Short.BYTES + byteFraction;
   }
 
+  /**
+   * The keys at offset 0, then the coupons, then the state bits, in a single Memory.
+   *
+   * <ul><li>State: 0: Empty always, don't need to look at 1st coupon. Coupons could be dirty.</li>
+   * <li>State: 1: Valid entry or dirty. During rebuild, look at the first coupon to determine.
+   * If first coupon != 0 means valid entry; first coupon == 0: dirty (we set to 0 when deleted)
+   * </li>
+   * </ul>
+   */
+  private static final class Table {
+    final int keySizeBytes_;
+    final int maxCouponsPerKey_;
+    final int entries_;
+    final WritableMemory mem_;
+    final WritableMemory allocated_; //to be released, null if not allocated by the map
+    final long couponsOffset_;
+    final long stateOffset_;
+
+    Table(final int keySizeBytes, final int maxCouponsPerKey, final int entries,
+        final WritableMemory mem, final WritableMemory allocated) {
+      keySizeBytes_ = keySizeBytes;
+      maxCouponsPerKey_ = maxCouponsPerKey;
+      entries_ = entries;
+      mem_ = mem;
+      allocated_ = allocated;
+      couponsOffset_ = align8((long) entries * keySizeBytes);
+      stateOffset_ = couponsOffset_ + align8((long) entries * maxCouponsPerKey * Short.BYTES);
+    }
+
+    long getCouponAreaOffset(final int entryIndex) {
+      return couponsOffset_ + (((long) entryIndex * maxCouponsPerKey_) << 1);
+    }
+
+    boolean isOccupied(final int entryIndex) {
+      return isBitSet(mem_, stateOffset_, entryIndex);
+    }
+
+    void clearCouponArea(final int entryIndex) {
+      mem_.clear(getCouponAreaOffset(entryIndex), maxCouponsPerKey_ * Short.BYTES);
+    }
+
+    void putKey(final int entryIndex, final byte[] key) {
+      mem_.putByteArray((long) entryIndex * keySizeBytes_, key, 0, keySizeBytes_);
+      setBit(mem_, stateOffset_, entryIndex);
+    }
+
+    long[] hashKey(final int entryIndex) {
+      return MurmurHash3.hash(mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_, SEED,
+          new long[2]);
+    }
+
+    int find(final byte[] key, final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      int firstDeletedIndex = -1;
+      final int loopIndex = entryIndex;
+      do {
+        if (isBitClear(mem_, stateOffset_, entryIndex)) {
+          return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // empty or deleted
+        }
+        if (mem_.getShort(getCouponAreaOffset(entryIndex)) == 0) { //found deleted
+          if (firstDeletedIndex == -1) { firstDeletedIndex = entryIndex; }
+        } else if (Map.keyEquals(key, mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_)) {
+          return entryIndex; // found key
+        }
+        entryIndex = (entryIndex + getStride(hash[1], entries_)) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+
+    // for moving entries during a resize, where the key is known not to be in this table
+    int findEmpty(final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      final int loopIndex = entryIndex;
+      do {
+        if (isBitClear(mem_, stateOffset_, entryIndex)) {
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + getStride(hash[1], entries_)) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+  }
+
 }
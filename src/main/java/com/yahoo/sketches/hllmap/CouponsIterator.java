@@ -5,6 +5,8 @@
 
 package com.yahoo.sketches.hllmap;
 
+import com.yahoo.memory.Memory;
+
 /**
  * Common iterator class for maps that need one.
  *
@@ -12,15 +14,15 @@ package com.yahoo.sketches.hllmap;
  */
 class CouponsIterator {
 
-  private final int offset_;
+  private final long offsetBytes_;
   private final int maxEntries_;
-  private final short[] couponsArr_;
+  private final Memory mem_;
   private int index_;
 
-  CouponsIterator(final short[] couponsArr, final int offset, final int maxEntries) {
-    offset_ = offset;
+  CouponsIterator(final Memory mem, final long offsetBytes, final int maxEntries) {
+    offsetBytes_ = offsetBytes;
     maxEntries_ = maxEntries;
-    couponsArr_ = couponsArr;
+    mem_ = mem;
     index_ = -1;
   }
 
@@ -31,7 +33,7 @@ class CouponsIterator {
   boolean next() {
     index_++;
     while (index_ < maxEntries_) {
-      if (couponsArr_[offset_ + index_] != 0) { return true; }
+      if (getValue() != 0) { return true; }
       index_++;
     }
     return false;
@@ -42,7 +44,7 @@ class CouponsIterator {
    * @return the value at the current index.
    */
   short getValue() {
-    return couponsArr_[offset_ + index_];
+    return mem_.getShort(offsetBytes_ + ((long) index_ << 1));
   }
 
 }
@@ -9,8 +9,8 @@ import static com.yahoo.sketches.Util.invPow2;
 import static java.lang.Math.log;
 import static java.lang.Math.sqrt;
 
-import java.util.Arrays;
-
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.hash.MurmurHash3;
 
@@ -25,6 +25,10 @@ import com.yahoo.sketches.hash.MurmurHash3;
  * estimators and the early estimators in this implementation are quite novel and provide superior
  * error performance over most other HLL implementations.
  *
+ * <p>The keys, HLL arrays, HIP registers and state bits are stored in consecutive, 8-byte aligned
+ * tables of a single Memory. When the map grows, the entries are moved to the new tables
+ * incrementally.
+ *
  * @author Lee Rhodes
  * @author KevinLang
  * @author Alexander Saydakov
@@ -34,53 +38,61 @@ final class HllMap extends Map {
   private static final int HLL_INIT_NUM_ENTRIES = 157;
   private static final float HLL_RESIZE_FACTOR = 2.0F;
   private static final double RSE = sqrt(log(2.0)) / 32.0;
+  private static final int HLL_VALUES_PER_LONG = 10;
   private final int k_;
   private final int hllArrLongs_; //# of longs required to store the HLL array
 
+  private Table table_;
+  private Table oldTable_;        //during an incremental resize, otherwise null
   private int tableEntries_;      //Full size of the table
   private int capacityEntries_;   //max capacity entries defined by Load factor
   private int curCountEntries_;   //current count of valid entries
   private float growthFactor_;    //e.g., 1.2 to 2.0
   private double entrySizeBytes_;
 
-  //Arrays
-  private byte[] keysArr_; //keys of zero are allowed
-  private long[] arrOfHllArr_;
-  private double[] invPow2SumHiArr_;
-  private double[] invPow2SumLoArr_;
-  private double[] hipEstAccumArr_;
-  private byte[] stateArr_;
-
   /**
    * Private constructor used to set all finals
    * @param keySizeBytes size of key in bytes
    * @param k size of HLL sketch
+   * @param memReqSvr the MemoryRequestServer for the tables, or null for the heap
    */
-  private HllMap(final int keySizeBytes, final int k) {
-    super(keySizeBytes);
+  private HllMap(final int keySizeBytes, final int k, final MemoryRequestServer memReqSvr) {
+    super(keySizeBytes, memReqSvr);
     k_ = k;
     hllArrLongs_ = (k / 10) + 1;
   }
 
   static HllMap getInstance(final int keySizeBytes, final int k) {
-    final int tableEntries = HLL_INIT_NUM_ENTRIES;
+    return getInstance(keySizeBytes, k, null);
+  }
 
-    final HllMap map = new HllMap(keySizeBytes, k);
-    map.tableEntries_ = tableEntries;
-    map.capacityEntries_ = (int)(tableEntries * LOAD_FACTOR);
+  static HllMap getInstance(final int keySizeBytes, final int k,
+      final MemoryRequestServer memReqSvr) {
+    final HllMap map = new HllMap(keySizeBytes, k, memReqSvr);
+    map.setTable(map.newTable(HLL_INIT_NUM_ENTRIES));
     map.curCountEntries_ = 0;
     map.growthFactor_ = HLL_RESIZE_FACTOR;
-    map.entrySizeBytes_ = updateEntrySizeBytes(map.tableEntries_, keySizeBytes, map.hllArrLongs_);
-
-    map.keysArr_ = new byte[tableEntries * map.keySizeBytes_];
-    map.arrOfHllArr_ = new long[tableEntries * map.hllArrLongs_];
-    map.invPow2SumHiArr_ = new double[tableEntries];
-    map.invPow2SumLoArr_ = new double[tableEntries];
-    map.hipEstAccumArr_ = new double[tableEntries];
-    map.stateArr_ = new byte[(int) Math.ceil(tableEntries / 8.0)];
     return map;
   }
 
+  static HllMap wrapInstance(final int keySizeBytes, final int k, final int tableEntries,
+      final int curCountEntries, final WritableMemory tableMem,
+      final MemoryRequestServer memReqSvr) {
+    final HllMap map = new HllMap(keySizeBytes, k, memReqSvr);
+    map.setTable(new Table(keySizeBytes, map.hllArrLongs_, tableEntries, tableMem, null));
+    map.curCountEntries_ = curCountEntries;
+    map.growthFactor_ = HLL_RESIZE_FACTOR;
+    return map;
+  }
+
+  static long getTableBytes(final int keySizeBytes, final int k, final int tableEntries) {
+    final int hllArrLongs = (k / 10) + 1;
+    return align8((long) tableEntries * keySizeBytes)
+        + ((long) tableEntries * hllArrLongs * Long.BYTES)
+        + (3L * tableEntries * Double.BYTES)
+        + align8((tableEntries + 7) / 8);
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -90,7 +102,7 @@ final class HllMap extends Map {
   @Override
   double update(final int entryIndex, final short coupon) {
     updateHll(entryIndex, coupon); //update HLL array, updates HIP
-    return hipEstAccumArr_[entryIndex];
+    return table_.getHipEstAccum(entryIndex);
   }
 
   @Override
@@ -100,7 +112,7 @@ final class HllMap extends Map {
     if (entryIndex < 0) {
       return 0;
     }
-    return hipEstAccumArr_[entryIndex];
+    return table_.getHipEstAccum(entryIndex);
   }
 
   @Override
@@ -115,55 +127,107 @@ final class HllMap extends Map {
 
   @Override
   void updateEstimate(final int entryIndex, final double estimate) {
-    hipEstAccumArr_[entryIndex] = estimate;
+    table_.setHipEstAccum(entryIndex, estimate);
   }
 
   /**
    * Returns the entry index for the given key given the array of keys, if found.
-   * Otherwise, returns the one's complement of first empty entry found;
+   * Otherwise, returns the one's complement of first empty entry found.
+   * During an incremental resize a key found in the old table is moved to the current table first.
    * @param key the key to search for
+   * @param hash the hash of the key
    * @return the entry index of the given key, or the one's complement of the index if not found.
    */
   @Override
-  final int findKey(final byte[] key) {
-    final int keyLen = key.length;
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex  = getIndex(hash[0], tableEntries_);
-    final int stride = getStride(hash[1], tableEntries_);
-    final int loopIndex = entryIndex;
-
-    do {
-      if (isBitClear(stateArr_, entryIndex)) { //check if slot is empty
-        return ~entryIndex;
-      }
-      if (arraysEqual(key, 0, keysArr_, entryIndex * keyLen, keyLen)) { //check for key match
-        return entryIndex;
-      }
-      entryIndex = (entryIndex + stride) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  final int findKey(final byte[] key, final long[] hash) {
+    final int entryIndex = table_.find(key, hash);
+    if ((entryIndex >= 0) || (oldTable_ == null)) { return entryIndex; }
+    final int oldIndex = oldTable_.find(key, hash);
+    if ((oldIndex < 0) || isMoved(oldIndex)) { return entryIndex; }
+    return moveAhead(oldIndex);
   }
 
   @Override
-  int findOrInsertKey(final byte[] key) {
-    int entryIndex = findKey(key);
+  int findOrInsertKey(final byte[] key, final long[] hash) {
+    migrate();
+    int entryIndex = findKey(key, hash);
     if (entryIndex < 0) { //key not found, initialize new row
-      entryIndex = ~entryIndex;
-      System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
-      setBit(stateArr_, entryIndex);
-      invPow2SumHiArr_[entryIndex] = k_;
-      invPow2SumLoArr_[entryIndex] = 0;
-      hipEstAccumArr_[entryIndex] = 0;
-      curCountEntries_++;
-      if (curCountEntries_ > capacityEntries_) {
+      if (curCountEntries_ + 1 > capacityEntries_) {
         resize();
-        entryIndex = findKey(key);
-        assert entryIndex >= 0;
+        entryIndex = findKey(key, hash);
+        assert entryIndex < 0;
       }
+      entryIndex = ~entryIndex;
+      table_.putKey(entryIndex, key);
+      table_.mem_.putDouble(table_.invPow2SumHiOffset_ + ((long) entryIndex << 3), k_);
+      table_.mem_.putDouble(table_.invPow2SumLoOffset_ + ((long) entryIndex << 3), 0);
+      table_.setHipEstAccum(entryIndex, 0);
+      curCountEntries_++;
+      putCounts();
     }
     return entryIndex;
   }
 
+  /**
+   * Merges the HLL array of the entry at the given index of another HllMap with the same k into
+   * the entry at the given index of this map, keeping the maximum of each pair of registers.
+   *
+   * <p>The HIP estimator cannot be merged. If the merged registers are those of this entry, or of
+   * the other entry, the HIP estimate of that entry is kept. Otherwise the estimate becomes the HLL
+   * estimate of the merged registers, with linear counting for small estimates.</p>
+   *
+   * @param entryIndex the index of the entry of this map
+   * @param other the other HllMap
+   * @param otherIndex the index of the entry of the other map
+   */
+  void merge(final int entryIndex, final HllMap other, final int otherIndex) {
+    final WritableMemory otherMem = other.table_.mem_;
+    final long otherArrOffset = other.table_.hllArrOffset_
+        + (((long) otherIndex * hllArrLongs_) << 3);
+    boolean changed = false;
+    for (int hllIdx = 0; hllIdx < k_; hllIdx++) {
+      final long hllLong = otherMem.getLong(otherArrOffset + ((hllIdx / HLL_VALUES_PER_LONG) << 3));
+      final int value = (int) (hllLong >>> ((hllIdx % HLL_VALUES_PER_LONG) * 6)) & SIX_BIT_MASK;
+      if (value > 0) {
+        changed |= updateHll(entryIndex, (value << 10) | hllIdx);
+      }
+    }
+    if (!changed) { return; } //the other registers add nothing, keep the estimate
+    final WritableMemory mem = table_.mem_;
+    final long arrOffset = table_.hllArrOffset_ + (((long) entryIndex * hllArrLongs_) << 3);
+    boolean sameAsOther = true;
+    for (int i = 0; i < hllArrLongs_; i++) {
+      if (mem.getLong(arrOffset + (i << 3)) != otherMem.getLong(otherArrOffset + (i << 3))) {
+        sameAsOther = false;
+        break;
+      }
+    }
+    table_.setHipEstAccum(entryIndex, sameAsOther
+        ? other.table_.getHipEstAccum(otherIndex) : getHllEstimate(entryIndex));
+  }
+
+  /**
+   * Returns the HLL estimate of the registers of the entry at the given index, with linear
+   * counting if it is small and some registers are still zero.
+   * @param entryIndex the given index
+   * @return the HLL estimate of the registers of the entry
+   */
+  private double getHllEstimate(final int entryIndex) {
+    final WritableMemory mem = table_.mem_;
+    final double invPow2Sum = mem.getDouble(table_.invPow2SumHiOffset_ + ((long) entryIndex << 3))
+        + mem.getDouble(table_.invPow2SumLoOffset_ + ((long) entryIndex << 3));
+    final double alpha = 0.7213 / (1.0 + (1.079 / k_));
+    final double rawEstimate = (alpha * k_ * k_) / invPow2Sum;
+    if (rawEstimate > (2.5 * k_)) { return rawEstimate; }
+    final long arrOffset = table_.hllArrOffset_ + (((long) entryIndex * hllArrLongs_) << 3);
+    int zeros = 0;
+    for (int hllIdx = 0; hllIdx < k_; hllIdx++) {
+      final long hllLong = mem.getLong(arrOffset + ((hllIdx / HLL_VALUES_PER_LONG) << 3));
+      if (((hllLong >>> ((hllIdx % HLL_VALUES_PER_LONG) * 6)) & SIX_BIT_MASK) == 0) { zeros++; }
+    }
+    return zeros == 0 ? rawEstimate : k_ * log((double) k_ / zeros);
+  }
+
   @Override
   double getEntrySizeBytes() {
     return entrySizeBytes_;
@@ -186,12 +250,8 @@ final class HllMap extends Map {
 
   @Override
   long getMemoryUsageBytes() {
-    final long arrays = keysArr_.length
-        + ((long)arrOfHllArr_.length * Long.BYTES)
-        + (invPow2SumLoArr_.length * Double.BYTES)
-        + (invPow2SumHiArr_.length * Double.BYTES)
-        + (hipEstAccumArr_.length * Double.BYTES)
-        + stateArr_.length;
+    long arrays = table_.mem_.getCapacity() + getMigrationBytes();
+    if (oldTable_ != null) { arrays += oldTable_.mem_.getCapacity(); }
     final long other = (5 * Integer.BYTES) + Float.BYTES + Double.BYTES;
     return arrays + other;
   }
@@ -224,99 +284,130 @@ final class HllMap extends Map {
     return 0;
   }
 
-  /**
-   * Find the first empty slot for the given key.
-   * Only used by resize, where it is known that the key does not exist in the table.
-   * Throws an exception if no empty slots.
-   * @param key the given key
-   * @param tableEntries prime size of table
-   * @param stateArr the valid bit array
-   * @return the first empty slot for the given key
-   */
-  private static final int findEmpty(final byte[] key, final int tableEntries, final byte[] stateArr) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex  = getIndex(hash[0], tableEntries);
-    final int stride = getStride(hash[1], tableEntries);
-    final int loopIndex = entryIndex;
-
-    do {
-      if (isBitClear(stateArr, entryIndex)) { //check if slot is empty
-        return entryIndex;
-      }
-      entryIndex = (entryIndex + stride) % tableEntries;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("No empty slots.");
+  @Override
+  int getMapType() {
+    return HLL_MAP_TYPE;
+  }
+
+  @Override
+  int getMapParameter() {
+    return k_;
+  }
+
+  @Override
+  WritableMemory getTableMemory() {
+    return table_.mem_;
+  }
+
+  @Override
+  int getOldTableEntries() {
+    return oldTable_.entries_;
+  }
+
+  @Override
+  boolean isOldEntryValid(final int oldIndex) {
+    return isBitSet(oldTable_.mem_, oldTable_.stateOffset_, oldIndex);
+  }
+
+  @Override
+  int moveOldEntry(final int oldIndex) {
+    final Table old = oldTable_;
+    final Table table = table_;
+    final int newIndex = table.findEmpty(old.hashKey(oldIndex));
+    old.mem_.copyTo((long) oldIndex * keySizeBytes_, table.mem_,
+        (long) newIndex * keySizeBytes_, keySizeBytes_); //put key
+    //put the rest of the row
+    final int hllArrBytes = hllArrLongs_ * Long.BYTES;
+    old.mem_.copyTo(old.hllArrOffset_ + ((long) oldIndex * hllArrBytes), table.mem_,
+        table.hllArrOffset_ + ((long) newIndex * hllArrBytes), hllArrBytes);
+    old.mem_.copyTo(old.invPow2SumHiOffset_ + ((long) oldIndex << 3), table.mem_,
+        table.invPow2SumHiOffset_ + ((long) newIndex << 3), Double.BYTES);
+    old.mem_.copyTo(old.invPow2SumLoOffset_ + ((long) oldIndex << 3), table.mem_,
+        table.invPow2SumLoOffset_ + ((long) newIndex << 3), Double.BYTES);
+    old.mem_.copyTo(old.hipEstAccumOffset_ + ((long) oldIndex << 3), table.mem_,
+        table.hipEstAccumOffset_ + ((long) newIndex << 3), Double.BYTES);
+    setBit(table.mem_, table.stateOffset_, newIndex);
+    return newIndex;
+  }
+
+  @Override
+  void releaseOldTable() {
+    releaseTable(oldTable_.allocated_, table_.allocated_);
+    oldTable_ = null;
+  }
+
+  @Override
+  void releaseTables() {
+    if (oldTable_ != null) { releaseTable(oldTable_.allocated_, null); }
+    releaseTable(table_.allocated_, null);
+  }
+
+  @Override
+  boolean tablesOverlap(final WritableMemory mem) {
+    return overlaps(table_.mem_, mem) || ((oldTable_ != null) && overlaps(oldTable_.mem_, mem));
+  }
+
+  private Table newTable(final int tableEntries) {
+    final long tableBytes = getTableBytes(keySizeBytes_, k_, tableEntries);
+    final WritableMemory allocated = allocateTable(tableBytes);
+    return new Table(keySizeBytes_, hllArrLongs_, tableEntries,
+        getTableRegion(allocated, tableBytes), allocated);
+  }
+
+  private void setTable(final Table table) {
+    table_ = table;
+    tableEntries_ = table.entries_;
+    capacityEntries_ = (int)(tableEntries_ * LOAD_FACTOR);
+    entrySizeBytes_ = updateEntrySizeBytes(tableEntries_, keySizeBytes_, hllArrLongs_);
   }
 
   //This method is specifically tied to the HLL array layout
   private final boolean updateHll(final int entryIndex, final int coupon) {
+    final WritableMemory mem = table_.mem_;
     final int newValue = coupon16Value(coupon);
 
     final int hllIdx = coupon & (k_ - 1); //lower lgK bits
     final int longIdx = hllIdx / 10;
     final int shift = ((hllIdx % 10) * 6) & SIX_BIT_MASK;
 
-    long hllLong = arrOfHllArr_[(entryIndex * hllArrLongs_) + longIdx];
+    final long hllLongOffset =
+        table_.hllArrOffset_ + (((long) entryIndex * hllArrLongs_ + longIdx) << 3);
+    long hllLong = mem.getLong(hllLongOffset);
     final int oldValue = (int)(hllLong >>> shift) & SIX_BIT_MASK;
     if (newValue <= oldValue) { return false; }
     // newValue > oldValue
 
     //update hipEstAccum BEFORE updating invPow2Sum
-    final double invPow2Sum = invPow2SumHiArr_[entryIndex] + invPow2SumLoArr_[entryIndex];
+    final long hiOffset = table_.invPow2SumHiOffset_ + ((long) entryIndex << 3);
+    final long loOffset = table_.invPow2SumLoOffset_ + ((long) entryIndex << 3);
+    double invPow2SumHi = mem.getDouble(hiOffset);
+    double invPow2SumLo = mem.getDouble(loOffset);
+    final double invPow2Sum = invPow2SumHi + invPow2SumLo;
     final double oneOverQ = k_ / invPow2Sum;
-    hipEstAccumArr_[entryIndex] += oneOverQ;
+    table_.setHipEstAccum(entryIndex, table_.getHipEstAccum(entryIndex) + oneOverQ);
 
     //update invPow2Sum
-    if (oldValue < 32) { invPow2SumHiArr_[entryIndex] -= invPow2(oldValue); }
-    else               { invPow2SumLoArr_[entryIndex] -= invPow2(oldValue); }
-    if (newValue < 32) { invPow2SumHiArr_[entryIndex] += invPow2(newValue); }
-    else               { invPow2SumLoArr_[entryIndex] += invPow2(newValue); }
+    if (oldValue < 32) { invPow2SumHi -= invPow2(oldValue); }
+    else               { invPow2SumLo -= invPow2(oldValue); }
+    if (newValue < 32) { invPow2SumHi += invPow2(newValue); }
+    else               { invPow2SumLo += invPow2(newValue); }
+    mem.putDouble(hiOffset, invPow2SumHi);
+    mem.putDouble(loOffset, invPow2SumLo);
 
     //insert the new value
     hllLong &= ~(0X3FL << shift);  //zero out the 6-bit field
     hllLong |=  ((long)newValue) << shift; //insert
-    arrOfHllArr_[(entryIndex * hllArrLongs_) + longIdx] = hllLong;
+    mem.putLong(hllLongOffset, hllLong);
     return true;
   }
 
   private final void resize() {
+    finishMigration();
     final int newTableEntries = nextPrime((int)(tableEntries_ * growthFactor_));
-    final int newCapacityEntries = (int)(newTableEntries * LOAD_FACTOR);
-
-    final byte[] newKeysArr = new byte[newTableEntries * keySizeBytes_];
-    final long[] newArrOfHllArr = new long[newTableEntries * hllArrLongs_];
-    final double[] newInvPow2Sum1 = new double[newTableEntries];
-    final double[] newInvPow2Sum2 = new double[newTableEntries];
-    final double[] newHipEstAccum = new double[newTableEntries];
-    final byte[] newStateArr = new byte[(int) Math.ceil(newTableEntries / 8.0)];
-
-    for (int oldIndex = 0; oldIndex < tableEntries_; oldIndex++) {
-      if (isBitClear(stateArr_, oldIndex)) { continue; }
-      // extract an old key
-      final byte[] key =
-          Arrays.copyOfRange(keysArr_, oldIndex * keySizeBytes_, (oldIndex + 1) * keySizeBytes_);
-      final int newIndex = findEmpty(key, newTableEntries, newStateArr);
-      System.arraycopy(key, 0, newKeysArr, newIndex * keySizeBytes_, keySizeBytes_); //put key
-      //put the rest of the row
-      System.arraycopy(arrOfHllArr_, oldIndex * hllArrLongs_, newArrOfHllArr,
-          newIndex * hllArrLongs_, hllArrLongs_);
-      newInvPow2Sum1[newIndex] = invPow2SumHiArr_[oldIndex];
-      newInvPow2Sum2[newIndex] = invPow2SumLoArr_[oldIndex];
-      newHipEstAccum[newIndex] = hipEstAccumArr_[oldIndex];
-      setBit(newStateArr, newIndex);
-    }
-    //restore into sketch
-    tableEntries_ = newTableEntries;
-    capacityEntries_ = newCapacityEntries;
     //curCountEntries_, growthFactor_  unchanged
-    entrySizeBytes_ = updateEntrySizeBytes(tableEntries_, keySizeBytes_, hllArrLongs_);
-
-    keysArr_ = newKeysArr;
-    arrOfHllArr_ = newArrOfHllArr;
-    invPow2SumHiArr_ = newInvPow2Sum1; //init to k
-    invPow2SumLoArr_ = newInvPow2Sum2; //init to 0
-    hipEstAccumArr_ = newHipEstAccum;  //init to 0
-    stateArr_ = newStateArr;
+    oldTable_ = table_;
+    setTable(newTable(newTableEntries));
+    startMigration(oldTable_.entries_, capacityEntries_ - curCountEntries_);
   }
 
   private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
@@ -325,4 +416,89 @@ final class HllMap extends Map {
     return keySizeBytes + (hllArrLongs * Long.BYTES) + (3 * Double.BYTES) + byteFraction;
   }
 
+  /**
+   * The keys at offset 0 (keys of zero are allowed), then the HLL arrays, invPow2SumHi,
+   * invPow2SumLo, hipEstAccum and state bits, in a single Memory.
+   */
+  private static final class Table {
+    final int keySizeBytes_;
+    final int entries_;
+    final WritableMemory mem_;
+    final WritableMemory allocated_; //to be released, null if not allocated by the map
+    final long hllArrOffset_;
+    final long invPow2SumHiOffset_;
+    final long invPow2SumLoOffset_;
+    final long hipEstAccumOffset_;
+    final long stateOffset_;
+
+    Table(final int keySizeBytes, final int hllArrLongs, final int entries,
+        final WritableMemory mem, final WritableMemory allocated) {
+      keySizeBytes_ = keySizeBytes;
+      entries_ = entries;
+      mem_ = mem;
+      allocated_ = allocated;
+      hllArrOffset_ = align8((long) entries * keySizeBytes);
+      invPow2SumHiOffset_ = hllArrOffset_ + ((long) entries * hllArrLongs * Long.BYTES);
+      invPow2SumLoOffset_ = invPow2SumHiOffset_ + ((long) entries * Double.BYTES);
+      hipEstAccumOffset_ = invPow2SumLoOffset_ + ((long) entries * Double.BYTES);
+      stateOffset_ = hipEstAccumOffset_ + ((long) entries * Double.BYTES);
+    }
+
+    double getHipEstAccum(final int entryIndex) {
+      return mem_.getDouble(hipEstAccumOffset_ + ((long) entryIndex << 3));
+    }
+
+    void setHipEstAccum(final int entryIndex, final double hipEstAccum) {
+      mem_.putDouble(hipEstAccumOffset_ + ((long) entryIndex << 3), hipEstAccum);
+    }
+
+    void putKey(final int entryIndex, final byte[] key) {
+      mem_.putByteArray((long) entryIndex * keySizeBytes_, key, 0, keySizeBytes_);
+      setBit(mem_, stateOffset_, entryIndex);
+    }
+
+    long[] hashKey(final int entryIndex) {
+      return MurmurHash3.hash(mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_, SEED,
+          new long[2]);
+    }
+
+    int find(final byte[] key, final long[] hash) {
+      int entryIndex  = getIndex(hash[0], entries_);
+      final int stride = getStride(hash[1], entries_);
+      final int loopIndex = entryIndex;
+
+      do {
+        if (isBitClear(mem_, stateOffset_, entryIndex)) { //check if slot is empty
+          return ~entryIndex;
+        }
+        if (keyEquals(key, mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_)) {
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + stride) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+
+    /**
+     * Find the first empty slot for the given hash of a key.
+     * Only used by resize, where it is known that the key does not exist in the table.
+     * Throws an exception if no empty slots.
+     * @param hash the hash of the key
+     * @return the first empty slot for the given key
+     */
+    int findEmpty(final long[] hash) {
+      int entryIndex  = getIndex(hash[0], entries_);
+      final int stride = getStride(hash[1], entries_);
+      final int loopIndex = entryIndex;
+
+      do {
+        if (isBitClear(mem_, stateOffset_, entryIndex)) { //check if slot is empty
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + stride) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("No empty slots.");
+    }
+  }
+
 }
@@ -7,6 +7,10 @@ package com.yahoo.sketches.hllmap;
 
 import java.math.BigInteger;
 
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.hash.MurmurHash3;
 
 /**
@@ -31,10 +35,38 @@ abstract class Map {
   static final double COUPON_MAP_GROW_TRIGGER_FACTOR = 15.0 / 16.0;
   static final double COUPON_MAP_TARGET_FILL_FACTOR = 2.0 / 3.0;
 
+  // The serialized form of a map is a header followed by the table Memory of the map.
+  // The header is: byte 0: map type; bytes 4-7: table entries; bytes 8-11: active entries;
+  // bytes 12-15: deleted entries; bytes 16-19: map parameter; bytes 24-31: table bytes.
+  // A wrapped map keeps the counts in its header up to date. The type of a wrapped map that has
+  // moved to new tables is set to OUTGROWN_MAP_TYPE, as its header no longer describes it.
+  static final int MAP_HEADER_BYTES = 32;
+  static final int OUTGROWN_MAP_TYPE = 0;
+  static final int SINGLE_COUPON_MAP_TYPE = 1;
+  static final int COUPON_TRAVERSE_MAP_TYPE = 2;
+  static final int COUPON_HASH_MAP_TYPE = 3;
+  static final int HLL_MAP_TYPE = 4;
+  private static final int TYPE_BYTE = 0;
+  private static final int TABLE_ENTRIES_INT = 4;
+  private static final int ACTIVE_ENTRIES_INT = 8;
+  private static final int DELETED_ENTRIES_INT = 12;
+  private static final int PARAMETER_INT = 16;
+  private static final int TABLE_BYTES_LONG = 24;
+
   final int keySizeBytes_;
+  private final MemoryRequestServer memReqSvr_; //null: tables on the heap
+  private WritableMemory header_; //of the image whose tables this map wraps, otherwise null
+
+  // Incremental resize. After a resize the entries of the old table are moved to the new table
+  // a few slots at a time by each insert or delete, in slot order, or ahead of that order when a
+  // key is looked up. The subclass keeps both tables until releaseOldTable() is called.
+  private WritableMemory movedBits_; //old slots moved ahead of the cursor, null if not migrating
+  private int migrateIndex_; //the cursor: all old slots below it have been moved
+  private int migrateStride_; //old slots moved by each insert or delete
 
-  Map(final int keySizeBytes) {
+  Map(final int keySizeBytes, final MemoryRequestServer memReqSvr) {
     keySizeBytes_ = keySizeBytes;
+    memReqSvr_ = memReqSvr;
   }
 
   /**
@@ -89,9 +121,36 @@ abstract class Map {
    */
   abstract double getLowerBound(byte[] key);
 
-  abstract int findKey(byte[] key);
+  /**
+   * Returns the entry index of the given key, or the one's complement of the index of an empty
+   * slot for insertion if not found.
+   * @param key the given key
+   * @return the entry index of the given key, or the one's complement of the index if not found.
+   */
+  final int findKey(final byte[] key) {
+    return findKey(key, MurmurHash3.hash(key, SEED));
+  }
+
+  /**
+   * Same as {@link #findKey(byte[])} given the hash of the key, so that a caller looking the key up
+   * in several maps hashes it only once.
+   * @param key the given key
+   * @param hash the 128-bit hash of the key with {@link #SEED}
+   * @return the entry index of the given key, or the one's complement of the index if not found.
+   */
+  abstract int findKey(byte[] key, long[] hash);
+
+  final int findOrInsertKey(final byte[] key) {
+    return findOrInsertKey(key, MurmurHash3.hash(key, SEED));
+  }
 
-  abstract int findOrInsertKey(byte[] key);
+  /**
+   * Returns the entry index of the given key, inserting the key if not found.
+   * @param key the given key
+   * @param hash the 128-bit hash of the key with {@link #SEED}
+   * @return the entry index of the given key
+   */
+  abstract int findOrInsertKey(byte[] key, long[] hash);
 
   abstract CouponsIterator getCouponsIterator(int index);
 
@@ -117,6 +176,356 @@ abstract class Map {
     return keySizeBytes_;
   }
 
+  /**
+   * Returns the type of this map, one of the *_MAP_TYPE constants.
+   * @return the type of this map
+   */
+  abstract int getMapType();
+
+  /**
+   * Returns the parameter that, with the key size and the number of table entries, determines the
+   * table layout of this map: the maximum coupons per key of a coupon map, or k of the HLL map.
+   * @return the parameter of this map
+   */
+  abstract int getMapParameter();
+
+  /**
+   * Returns the Memory that holds all the tables of this map. During an incremental resize this is
+   * the new table, which does not yet hold all the entries.
+   * @return the Memory that holds all the tables of this map
+   */
+  abstract WritableMemory getTableMemory();
+
+  /**
+   * Returns the number of entries of the old table during an incremental resize.
+   * @return the number of entries of the old table
+   */
+  abstract int getOldTableEntries();
+
+  /**
+   * Returns true if the slot of the old table at the given index holds a valid entry.
+   * @param oldIndex the given index into the old table
+   * @return true if the slot holds a valid entry
+   */
+  abstract boolean isOldEntryValid(int oldIndex);
+
+  /**
+   * Inserts the valid entry of the old table at the given index into the current table, which is
+   * known not to hold its key.
+   * @param oldIndex the given index into the old table
+   * @return the index of the entry in the current table
+   */
+  abstract int moveOldEntry(int oldIndex);
+
+  /**
+   * Releases the old table once all its entries have been moved.
+   */
+  abstract void releaseOldTable();
+
+  /**
+   * Releases all the tables of this map. The map must not be used afterwards.
+   */
+  abstract void releaseTables();
+
+  /**
+   * Returns true if any table of this map, including the old table of an incremental resize,
+   * shares bytes with the given Memory, as the tables of a wrapped map do with the Memory it wraps.
+   * @param mem the given Memory
+   * @return true if any table of this map shares bytes with the given Memory
+   */
+  abstract boolean tablesOverlap(WritableMemory mem);
+
+  /**
+   * Starts moving the entries of the old table into the current table. The number of slots moved by
+   * each insert is chosen so that the move completes well before the free entries of the current
+   * table are used up.
+   * @param oldTableEntries the number of entries of the old table
+   * @param freeEntries the number of entries that can be inserted before the next resize
+   */
+  final void startMigration(final int oldTableEntries, final int freeEntries) {
+    detachHeader();
+    movedBits_ = WritableMemory.wrap(new long[(oldTableEntries + 63) >>> 6]);
+    migrateIndex_ = 0;
+    migrateStride_ = 1 + ((2 * oldTableEntries) / Math.max(freeEntries, 1));
+  }
+
+  final boolean isMigrating() {
+    return movedBits_ != null;
+  }
+
+  /**
+   * Moves the next few slots of the old table, if any. Called by every insert and delete.
+   */
+  final void migrate() {
+    if (movedBits_ != null) { migrate(migrateStride_); }
+  }
+
+  /**
+   * Moves all remaining slots of the old table, if any.
+   */
+  final void finishMigration() {
+    if (movedBits_ != null) { migrate(Integer.MAX_VALUE); }
+  }
+
+  private void migrate(final int slots) {
+    final int oldTableEntries = getOldTableEntries();
+    final int end = (int) Math.min((long) migrateIndex_ + slots, oldTableEntries);
+    for (; migrateIndex_ < end; migrateIndex_++) {
+      if (isBitClear(movedBits_, 0, migrateIndex_) && isOldEntryValid(migrateIndex_)) {
+        moveOldEntry(migrateIndex_);
+      }
+    }
+    if (migrateIndex_ == oldTableEntries) {
+      movedBits_ = null;
+      releaseOldTable();
+    }
+  }
+
+  /**
+   * Returns true if the slot of the old table at the given index has already been moved, so that a
+   * key found there must be looked up in the current table only.
+   * @param oldIndex the given index into the old table
+   * @return true if the slot has already been moved
+   */
+  final boolean isMoved(final int oldIndex) {
+    return (oldIndex < migrateIndex_) || isBitSet(movedBits_, 0, oldIndex);
+  }
+
+  /**
+   * Moves the entry of the old table at the given index ahead of the cursor, because its key has
+   * been looked up.
+   * @param oldIndex the given index into the old table
+   * @return the index of the entry in the current table
+   */
+  final int moveAhead(final int oldIndex) {
+    setBit(movedBits_, 0, oldIndex);
+    return moveOldEntry(oldIndex);
+  }
+
+  /**
+   * Returns the bytes used to track an incremental resize, not counting the old table.
+   * @return the bytes used to track an incremental resize
+   */
+  final long getMigrationBytes() {
+    return movedBits_ == null ? 0 : movedBits_.getCapacity();
+  }
+
+  /**
+   * Writes the counts of this map to the header of the image it wraps, if any. Called by every
+   * insert and delete, so that the image remains valid while it is updated in place.
+   */
+  final void putCounts() {
+    if (header_ != null) {
+      header_.putInt(ACTIVE_ENTRIES_INT, getActiveEntries());
+      header_.putInt(DELETED_ENTRIES_INT, getDeletedEntries());
+    }
+  }
+
+  /**
+   * Marks the image this map wraps, if any, as no longer valid and stops updating its header.
+   * Called when the map moves to new tables, which the image cannot hold.
+   */
+  final void detachHeader() {
+    if (header_ != null) {
+      header_.putByte(TYPE_BYTE, (byte) OUTGROWN_MAP_TYPE);
+      header_ = null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes of this map in serialized form.
+   * @return the number of bytes of this map in serialized form
+   */
+  long getSerializedSizeBytes() {
+    return MAP_HEADER_BYTES + getTableMemory().getCapacity();
+  }
+
+  /**
+   * Writes this map in serialized form to the given Memory at the given offset.
+   * @param dstMem the given destination Memory
+   * @param offsetBytes the offset in the given Memory
+   * @return the offset just past the serialized map
+   */
+  long serializeTo(final WritableMemory dstMem, final long offsetBytes) {
+    finishMigration();
+    final WritableMemory tableMem = getTableMemory();
+    final long tableBytes = tableMem.getCapacity();
+    dstMem.clear(offsetBytes, MAP_HEADER_BYTES);
+    dstMem.putByte(offsetBytes + TYPE_BYTE, (byte) getMapType());
+    dstMem.putInt(offsetBytes + TABLE_ENTRIES_INT, getTableEntries());
+    dstMem.putInt(offsetBytes + ACTIVE_ENTRIES_INT, getActiveEntries());
+    dstMem.putInt(offsetBytes + DELETED_ENTRIES_INT, getDeletedEntries());
+    dstMem.putInt(offsetBytes + PARAMETER_INT, getMapParameter());
+    dstMem.putLong(offsetBytes + TABLE_BYTES_LONG, tableBytes);
+    tableMem.copyTo(0, dstMem, offsetBytes + MAP_HEADER_BYTES, tableBytes);
+    return offsetBytes + MAP_HEADER_BYTES + tableBytes;
+  }
+
+  /**
+   * Returns the number of bytes of the serialized map at the given offset.
+   * @param srcMem the given source Memory
+   * @param offsetBytes the offset of the serialized map
+   * @return the number of bytes of the serialized map at the given offset
+   */
+  static long getSerializedSizeBytes(final Memory srcMem, final long offsetBytes) {
+    return MAP_HEADER_BYTES + srcMem.getLong(offsetBytes + TABLE_BYTES_LONG);
+  }
+
+  /**
+   * Returns a map from its serialized form, either wrapping the table Memory in place or working on
+   * a heap copy of it.
+   * @param srcMem the given source Memory
+   * @param offsetBytes the offset of the serialized map
+   * @param keySizeBytes the size of the keys in bytes
+   * @param inPlace if true the map wraps its tables in the given Memory, which must then be
+   * writable, and keeps the counts in the header up to date
+   * @param memReqSvr the MemoryRequestServer for the tables of the map when it grows, or null for
+   * the heap
+   * @return the map
+   */
+  static Map deserialize(final Memory srcMem, final long offsetBytes, final int keySizeBytes,
+      final boolean inPlace, final MemoryRequestServer memReqSvr) {
+    if ((offsetBytes + MAP_HEADER_BYTES) > srcMem.getCapacity()) {
+      throw new SketchesArgumentException("Memory too small for a map at offset " + offsetBytes);
+    }
+    final int type = srcMem.getByte(offsetBytes + TYPE_BYTE);
+    if (type == OUTGROWN_MAP_TYPE) {
+      throw new SketchesArgumentException("The map at offset " + offsetBytes + " has outgrown "
+          + "this image while it was wrapped. Write the updated map with putMemory().");
+    }
+    final int tableEntries = srcMem.getInt(offsetBytes + TABLE_ENTRIES_INT);
+    final int activeEntries = srcMem.getInt(offsetBytes + ACTIVE_ENTRIES_INT);
+    final int deletedEntries = srcMem.getInt(offsetBytes + DELETED_ENTRIES_INT);
+    final int parameter = srcMem.getInt(offsetBytes + PARAMETER_INT);
+    final long tableBytes = srcMem.getLong(offsetBytes + TABLE_BYTES_LONG);
+    final long expectedBytes = getTableBytes(type, keySizeBytes, tableEntries, parameter);
+    if ((tableEntries <= 0) || (tableBytes != expectedBytes)
+        || ((offsetBytes + MAP_HEADER_BYTES + tableBytes) > srcMem.getCapacity())) {
+      throw new SketchesArgumentException("Corrupted map of type " + type + " at offset "
+          + offsetBytes);
+    }
+    final WritableMemory tableMem;
+    if (inPlace) {
+      tableMem = ((WritableMemory) srcMem).writableRegion(offsetBytes + MAP_HEADER_BYTES,
+          tableBytes);
+    } else {
+      tableMem = allocateHeapTable(tableBytes);
+      srcMem.copyTo(offsetBytes + MAP_HEADER_BYTES, tableMem, 0, tableBytes);
+    }
+    final Map map;
+    switch (type) {
+      case SINGLE_COUPON_MAP_TYPE:
+        map = SingleCouponMap.wrapInstance(keySizeBytes, tableEntries, activeEntries, tableMem,
+            memReqSvr);
+        break;
+      case COUPON_TRAVERSE_MAP_TYPE:
+        map = CouponTraverseMap.wrapInstance(keySizeBytes, parameter, tableEntries,
+            activeEntries, deletedEntries, tableMem, memReqSvr);
+        break;
+      case COUPON_HASH_MAP_TYPE:
+        map = CouponHashMap.wrapInstance(keySizeBytes, parameter, tableEntries, activeEntries,
+            deletedEntries, tableMem, memReqSvr);
+        break;
+      default: //HLL_MAP_TYPE, checked by getTableBytes
+        map = HllMap.wrapInstance(keySizeBytes, parameter, tableEntries, activeEntries,
+            tableMem, memReqSvr);
+    }
+    if (inPlace) {
+      map.header_ = ((WritableMemory) srcMem).writableRegion(offsetBytes, MAP_HEADER_BYTES);
+    }
+    return map;
+  }
+
+  private static long getTableBytes(final int type, final int keySizeBytes,
+      final int tableEntries, final int parameter) {
+    switch (type) {
+      case SINGLE_COUPON_MAP_TYPE:
+        return SingleCouponMap.getTableBytes(keySizeBytes, tableEntries);
+      case COUPON_TRAVERSE_MAP_TYPE:
+        return CouponTraverseMap.getTableBytes(keySizeBytes, parameter, tableEntries);
+      case COUPON_HASH_MAP_TYPE:
+        return CouponHashMap.getTableBytes(keySizeBytes, parameter, tableEntries);
+      case HLL_MAP_TYPE:
+        return HllMap.getTableBytes(keySizeBytes, parameter, tableEntries);
+      default:
+        throw new SketchesArgumentException("Unknown map type: " + type);
+    }
+  }
+
+  /**
+   * Returns a new Memory for the tables of this map, zeroed over the given size. It is requested
+   * from the MemoryRequestServer of this map, which may provide direct or memory-mapped Memory,
+   * otherwise it is allocated on the heap. The returned Memory may be larger than requested, see
+   * {@link #getTableRegion(WritableMemory, long)}.
+   * @param tableBytes the size of the tables in bytes, a multiple of 8
+   * @return a new Memory, zeroed over the given size
+   */
+  final WritableMemory allocateTable(final long tableBytes) {
+    if (memReqSvr_ == null) { return allocateHeapTable(tableBytes); }
+    final WritableMemory mem = memReqSvr_.request(tableBytes);
+    if ((mem == null) || (mem.getCapacity() < tableBytes)) {
+      throw new SketchesArgumentException("MemoryRequestServer failed to provide "
+          + tableBytes + " bytes");
+    }
+    mem.clear(0, tableBytes);
+    return mem;
+  }
+
+  /**
+   * Hands a Memory obtained from {@link #allocateTable(long)} back to the MemoryRequestServer of
+   * this map, if any.
+   * @param allocated the Memory to release, or null if it was not allocated by this map
+   * @param newMem the Memory that replaces it, or null if none
+   */
+  final void releaseTable(final WritableMemory allocated, final WritableMemory newMem) {
+    if ((memReqSvr_ != null) && (allocated != null)) {
+      memReqSvr_.requestClose(allocated, newMem);
+    }
+  }
+
+  /**
+   * Returns true if the two given Memory regions share any byte of the same resource.
+   * @param a one Memory region
+   * @param b the other Memory region
+   * @return true if the two given Memory regions share any byte of the same resource
+   */
+  static boolean overlaps(final WritableMemory a, final WritableMemory b) {
+    if ((a.getArray() != b.getArray()) || (a.isDirect() != b.isDirect())) { return false; }
+    final long aStart = a.getCumulativeOffset(0);
+    final long bStart = b.getCumulativeOffset(0);
+    return (aStart < (bStart + b.getCapacity())) && (bStart < (aStart + a.getCapacity()));
+  }
+
+  /**
+   * Returns the region of exactly the given size at the start of an allocated Memory.
+   * @param allocated the Memory returned by {@link #allocateTable(long)}
+   * @param tableBytes the size of the tables in bytes
+   * @return the region of exactly the given size
+   */
+  static WritableMemory getTableRegion(final WritableMemory allocated, final long tableBytes) {
+    return allocated.getCapacity() == tableBytes ? allocated
+        : allocated.writableRegion(0, tableBytes);
+  }
+
+  /**
+   * Returns a new zeroed Memory on the heap for the tables of a map.
+   * @param tableBytes the size of the tables in bytes, a multiple of 8
+   * @return a new zeroed Memory
+   */
+  static WritableMemory allocateHeapTable(final long tableBytes) {
+    return WritableMemory.wrap(new long[(int) (tableBytes >>> 3)]);
+  }
+
+  /**
+   * Returns the given number of bytes rounded up to a multiple of 8, so that each table in the
+   * Memory of a map is aligned.
+   * @param bytes the given number of bytes
+   * @return the given number of bytes rounded up to a multiple of 8
+   */
+  static long align8(final long bytes) {
+    return (bytes + 7L) & ~7L;
+  }
+
   /**
    * Delete the key at the given index
    * @param index the given index
@@ -124,22 +533,19 @@ abstract class Map {
   void deleteKey(final int index) {}
 
   /**
-   * Returns <tt>true</tt> if the two specified sub-arrays of bytes are <i>equal</i> to one another.
-   * Two arrays are considered equal if all corresponding pairs of elements in the two arrays are
-   * equal. In other words, two arrays are equal if and only if they contain the same elements
-   * in the same order.
+   * Returns <tt>true</tt> if the given key is equal to the key stored in the given Memory at the
+   * given offset.
    *
-   * @param a one sub-array to be tested for equality
-   * @param offsetA the offset in bytes of the start of sub-array <i>a</i>.
-   * @param b the other sub-array to be tested for equality
-   * @param offsetB the offset in bytes of the start of sub-array <i>b</i>.
-   * @param length the length in bytes of the two sub-arrays.
-   * @return <tt>true</tt> if the two sub-arrays are equal
-   */
-  static final boolean arraysEqual(final byte[] a, final int offsetA, final byte[] b,
-      final int offsetB, final int length) {
+   * @param key the given key
+   * @param mem the Memory holding the stored key
+   * @param offsetBytes the offset in bytes of the stored key
+   * @param length the length of the keys in bytes
+   * @return <tt>true</tt> if the two keys are equal
+   */
+  static final boolean keyEquals(final byte[] key, final Memory mem, final long offsetBytes,
+      final int length) {
     for (int i = 0; i < length; i++) {
-      if (a[i + offsetA] != b[i + offsetB]) {
+      if (key[i] != mem.getByte(offsetBytes + i)) {
         return false;
       }
     }
@@ -153,7 +559,17 @@ abstract class Map {
    * @return the HLL array index and value
    */
   static final int coupon16(final byte[] identifier) {
-    final long[] hash = MurmurHash3.hash(identifier, SEED);
+    return coupon16(identifier, new long[2]);
+  }
+
+  /**
+   * Same as {@link #coupon16(byte[])}, but hashes into the given array instead of allocating one.
+   * @param identifier the given identifier
+   * @param hash an array of at least 2 longs that receives the hash of the identifier
+   * @return the HLL array index and value
+   */
+  static final int coupon16(final byte[] identifier, final long[] hash) {
+    MurmurHash3.hash(identifier, SEED, hash);
     final int hllIdx = (int) (((hash[0] >>> 1) % 1024) & TEN_BIT_MASK); //hash[0] for 10-bit address
     final int lz = Long.numberOfLeadingZeros(hash[1]);
     final int value = (lz > 62 ? 62 : lz) + 1;
@@ -172,28 +588,26 @@ abstract class Map {
     return (int) ((hash >>> 1) % (tableEntries - 2L) + 1L);
   }
 
-  static boolean isBitSet(final byte[] byteArr, final int bitIndex) {
-    final int byteIndex = bitIndex / 8;
+  static boolean isBitSet(final Memory mem, final long offsetBytes, final int bitIndex) {
     final int mask = 1 << (bitIndex % 8);
-    return (byteArr[byteIndex] & mask) > 0;
+    return (mem.getByte(offsetBytes + (bitIndex / 8)) & mask) != 0;
   }
 
-  static boolean isBitClear(final byte[] byteArr, final int bitIndex) {
-    final int byteIndex = bitIndex / 8;
+  static boolean isBitClear(final Memory mem, final long offsetBytes, final int bitIndex) {
     final int mask = 1 << (bitIndex % 8);
-    return (byteArr[byteIndex] & mask) == 0;
+    return (mem.getByte(offsetBytes + (bitIndex / 8)) & mask) == 0;
   }
 
-  static void clearBit(final byte[] byteArr, final int index) {
-    final int byteIndex = index / 8;
-    final int mask = 1 << (index % 8);
-    byteArr[byteIndex] &= ~mask;
+  static void clearBit(final WritableMemory mem, final long offsetBytes, final int bitIndex) {
+    final long byteOffset = offsetBytes + (bitIndex / 8);
+    final int mask = 1 << (bitIndex % 8);
+    mem.putByte(byteOffset, (byte) (mem.getByte(byteOffset) & ~mask));
   }
 
-  static void setBit(final byte[] bits, final int index) {
-    final int byteIndex = index / 8;
-    final int mask = 1 << (index % 8);
-    bits[byteIndex] |= mask;
+  static void setBit(final WritableMemory mem, final long offsetBytes, final int bitIndex) {
+    final long byteOffset = offsetBytes + (bitIndex / 8);
+    final int mask = 1 << (bitIndex % 8);
+    mem.putByte(byteOffset, (byte) (mem.getByte(byteOffset) | mask));
   }
 
   /**
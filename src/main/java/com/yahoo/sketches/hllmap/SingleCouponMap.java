@@ -5,8 +5,8 @@
 
 package com.yahoo.sketches.hllmap;
 
-import java.util.Arrays;
-
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.hash.MurmurHash3;
 
@@ -16,6 +16,9 @@ import com.yahoo.sketches.hash.MurmurHash3;
  * This map is implemented with a prime sized Open Address, Double Hash, with a 1-bit state array,
  * which indicates the contents of the value.
  *
+ * <p>The keys, coupons and state bits are stored in consecutive, 8-byte aligned tables of a
+ * single Memory. When the map grows, the entries are moved to the new tables incrementally.
+ *
  * @author Lee Rhodes
  * @author Alexander Saydakov
  * @author Kevin Lang
@@ -23,42 +26,45 @@ import com.yahoo.sketches.hash.MurmurHash3;
 final class SingleCouponMap extends Map {
   private static final double RSE = 0.408 / Math.sqrt(1024);
 
+  private Table table_;
+  private Table oldTable_; //during an incremental resize, otherwise null
   private int tableEntries_;
   private int capacityEntries_;
   private int curCountEntries_;
   private double entrySizeBytes_;
 
-  // Arrays
-  private byte[] keysArr_;
-  private short[] couponsArr_;
-
-  /**
-   * <ul><li>state: 0: empty or valid; empty if coupon is 0, otherwise valid.</li>
-   * <li>state: 1: original coupon has been promoted, current coupon contains a table #
-   * reference instead.</li>
-   * </ul>
-   */
-  private byte[] stateArr_;
-
-  private SingleCouponMap(final int keySizeBytes) {
-    super(keySizeBytes);
+  private SingleCouponMap(final int keySizeBytes, final MemoryRequestServer memReqSvr) {
+    super(keySizeBytes, memReqSvr);
   }
 
   static SingleCouponMap getInstance(final int initialNumEntries, final int keySizeBytes) {
-    final int tableEntries = nextPrime(initialNumEntries);
+    return getInstance(initialNumEntries, keySizeBytes, null);
+  }
 
-    final SingleCouponMap map = new SingleCouponMap(keySizeBytes);
-    map.tableEntries_ = tableEntries;
-    map.capacityEntries_ = (int)(tableEntries * COUPON_MAP_GROW_TRIGGER_FACTOR);
+  static SingleCouponMap getInstance(final int initialNumEntries, final int keySizeBytes,
+      final MemoryRequestServer memReqSvr) {
+    final int tableEntries = nextPrime(initialNumEntries);
+    final SingleCouponMap map = new SingleCouponMap(keySizeBytes, memReqSvr);
+    map.setTable(map.newTable(tableEntries));
     map.curCountEntries_ = 0;
-    map.entrySizeBytes_ = updateEntrySizeBytes(tableEntries, keySizeBytes);
+    return map;
+  }
 
-    map.keysArr_ = new byte[tableEntries * map.keySizeBytes_];
-    map.couponsArr_ = new short[tableEntries];
-    map.stateArr_ = new byte[(int) Math.ceil(tableEntries / 8.0)];
+  static SingleCouponMap wrapInstance(final int keySizeBytes, final int tableEntries,
+      final int curCountEntries, final WritableMemory tableMem,
+      final MemoryRequestServer memReqSvr) {
+    final SingleCouponMap map = new SingleCouponMap(keySizeBytes, memReqSvr);
+    map.setTable(new Table(keySizeBytes, tableEntries, tableMem, null));
+    map.curCountEntries_ = curCountEntries;
     return map;
   }
 
+  static long getTableBytes(final int keySizeBytes, final int tableEntries) {
+    return align8((long) tableEntries * keySizeBytes)
+        + align8((long) tableEntries * Short.BYTES)
+        + align8((tableEntries + 7) / 8);
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -67,25 +73,26 @@ final class SingleCouponMap extends Map {
 
   @Override
   double update(final int entryIndex, final short coupon) {
-    if (couponsArr_[entryIndex] == 0) {
-      couponsArr_[entryIndex] = coupon;
+    final short curCoupon = table_.getCoupon(entryIndex);
+    if (curCoupon == 0) {
+      table_.putCoupon(entryIndex, coupon);
       return 1;
     }
-    if (isCoupon(entryIndex)) {
-      if (couponsArr_[entryIndex] == coupon) { //duplicate
+    if (table_.isCoupon(entryIndex)) {
+      if (curCoupon == coupon) { //duplicate
         return 1;
       }
       return 0; // signal to promote
     }
-    return -couponsArr_[entryIndex]; // negative level number
+    return -curCoupon; // negative level number
   }
 
   @Override
   double getEstimate(final byte[] key) {
     final int entryIndex = findKey(key);
     if (entryIndex < 0) { return 0; }
-    if (isCoupon(entryIndex)) { return 1; }
-    return -getCoupon(entryIndex); // negative: level #, zero: signal to promote
+    if (table_.isCoupon(entryIndex)) { return 1; }
+    return -table_.getCoupon(entryIndex); // negative: level #, zero: signal to promote
   }
 
   @Override
@@ -102,47 +109,41 @@ final class SingleCouponMap extends Map {
    * Returns entryIndex if the given key is found. The coupon may be valid or contain a table index.
    * If not found, returns one's complement entryIndex
    * of an empty slot for insertion, which may be over a deleted key.
+   * During an incremental resize a key found in the old table is moved to the current table first.
    * @param key the given key
+   * @param hash the hash of the key
    * @return the entryIndex
    */
   @Override
-  int findKey(final byte[] key) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    final int stride = getStride(hash[1], tableEntries_);
-    final int loopIndex = entryIndex;
-
-    do {
-      if (couponsArr_[entryIndex] == 0) {
-        return ~entryIndex; //empty
-      }
-      if (Map.arraysEqual(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_)) {
-        return entryIndex;
-      }
-      entryIndex = (entryIndex + stride) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  int findKey(final byte[] key, final long[] hash) {
+    final int entryIndex = table_.find(key, hash);
+    if ((entryIndex >= 0) || (oldTable_ == null)) { return entryIndex; }
+    final int oldIndex = oldTable_.find(key, hash);
+    if ((oldIndex < 0) || isMoved(oldIndex)) { return entryIndex; }
+    return moveAhead(oldIndex);
   }
 
   @Override
-  int findOrInsertKey(final byte[] key) {
-    int entryIndex = findKey(key);
+  int findOrInsertKey(final byte[] key, final long[] hash) {
+    migrate();
+    int entryIndex = findKey(key, hash);
     if (entryIndex < 0) {
       if (curCountEntries_ + 1 > capacityEntries_) {
         resize();
-        entryIndex = findKey(key);
+        entryIndex = findKey(key, hash);
         assert entryIndex < 0;
       }
       entryIndex = ~entryIndex;
-      System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
+      table_.putKey(entryIndex, key);
       curCountEntries_++;
+      putCounts();
     }
     return entryIndex;
   }
 
   @Override
   CouponsIterator getCouponsIterator(final int entryIndex) {
-    return new CouponsIterator(couponsArr_, entryIndex, 1);
+    return new CouponsIterator(table_.mem_, table_.getCouponOffset(entryIndex), 1);
   }
 
   @Override
@@ -166,25 +167,28 @@ final class SingleCouponMap extends Map {
   }
 
   boolean isCoupon(final int entryIndex) {
-    return !isBitSet(stateArr_, entryIndex);
+    return table_.isCoupon(entryIndex);
   }
 
   short getCoupon(final int entryIndex) {
-    return couponsArr_[entryIndex];
+    return table_.getCoupon(entryIndex);
   }
 
   void setCoupon(final int entryIndex, final short coupon, final boolean isLevel) {
-    couponsArr_[entryIndex] = coupon;
-    if (isLevel) {
-      setBit(stateArr_, entryIndex);
-    } else {
-      clearBit(stateArr_, entryIndex);
-    }
+    table_.setCoupon(entryIndex, coupon, isLevel);
   }
 
   void setLevel(final int entryIndex, final int level) {
-    couponsArr_[entryIndex] = (short) level;
-    setBit(stateArr_, entryIndex);
+    table_.setCoupon(entryIndex, (short) level, true);
+  }
+
+  /**
+   * Copies the key at the given index into the given array.
+   * @param entryIndex the given index
+   * @param key the array that receives the key
+   */
+  void getKey(final int entryIndex, final byte[] key) {
+    table_.mem_.getByteArray((long) entryIndex * keySizeBytes_, key, 0, keySizeBytes_);
   }
 
   @Override
@@ -209,49 +213,84 @@ final class SingleCouponMap extends Map {
 
   @Override
   long getMemoryUsageBytes() {
-    final long arrays = keysArr_.length
-        + (long)couponsArr_.length * Short.BYTES
-        + stateArr_.length;
+    long arrays = table_.mem_.getCapacity() + getMigrationBytes();
+    if (oldTable_ != null) { arrays += oldTable_.mem_.getCapacity(); }
     final long other = 4 * 4 + 8;
     return arrays + other;
   }
 
-  private void resize() {
-    final byte[] oldKeysArr = keysArr_;
-    final short[] oldCouponsArr = couponsArr_;
-    final byte[] oldStateArr = stateArr_;
-    final int oldTableEntries = tableEntries_;
-    tableEntries_ = nextPrime((int) (curCountEntries_ / COUPON_MAP_TARGET_FILL_FACTOR));
+  @Override
+  int getMapType() {
+    return SINGLE_COUPON_MAP_TYPE;
+  }
+
+  @Override
+  int getMapParameter() {
+    return 1;
+  }
+
+  @Override
+  WritableMemory getTableMemory() {
+    return table_.mem_;
+  }
+
+  @Override
+  int getOldTableEntries() {
+    return oldTable_.entries_;
+  }
+
+  @Override
+  boolean isOldEntryValid(final int oldIndex) {
+    return oldTable_.getCoupon(oldIndex) != 0;
+  }
+
+  @Override
+  int moveOldEntry(final int oldIndex) {
+    final long[] hash = oldTable_.hashKey(oldIndex);
+    final int entryIndex = table_.findEmpty(hash);
+    oldTable_.mem_.copyTo((long) oldIndex * keySizeBytes_, table_.mem_,
+        (long) entryIndex * keySizeBytes_, keySizeBytes_);
+    table_.setCoupon(entryIndex, oldTable_.getCoupon(oldIndex), !oldTable_.isCoupon(oldIndex));
+    return entryIndex;
+  }
+
+  @Override
+  void releaseOldTable() {
+    releaseTable(oldTable_.allocated_, table_.allocated_);
+    oldTable_ = null;
+  }
+
+  @Override
+  void releaseTables() {
+    if (oldTable_ != null) { releaseTable(oldTable_.allocated_, null); }
+    releaseTable(table_.allocated_, null);
+  }
+
+  @Override
+  boolean tablesOverlap(final WritableMemory mem) {
+    return overlaps(table_.mem_, mem) || ((oldTable_ != null) && overlaps(oldTable_.mem_, mem));
+  }
+
+  private Table newTable(final int tableEntries) {
+    final long tableBytes = getTableBytes(keySizeBytes_, tableEntries);
+    final WritableMemory allocated = allocateTable(tableBytes);
+    return new Table(keySizeBytes_, tableEntries, getTableRegion(allocated, tableBytes),
+        allocated);
+  }
+
+  private void setTable(final Table table) {
+    table_ = table;
+    tableEntries_ = table.entries_;
     capacityEntries_ = (int)(tableEntries_ * COUPON_MAP_GROW_TRIGGER_FACTOR);
-    keysArr_ = new byte[tableEntries_ * keySizeBytes_];
-    couponsArr_ = new short[tableEntries_];
-    stateArr_ = new byte[(int) Math.ceil(tableEntries_ / 8.0)];
     entrySizeBytes_ = updateEntrySizeBytes(tableEntries_, keySizeBytes_);
-    //move the data
-    for (int i = 0; i < oldTableEntries; i++) {
-      if (oldCouponsArr[i] != 0) {
-        final byte[] key =
-            Arrays.copyOfRange(oldKeysArr, i * keySizeBytes_, i * keySizeBytes_ + keySizeBytes_);
-        insertEntry(key, oldCouponsArr[i], isBitSet(oldStateArr, i));
-      }
-    }
   }
 
-  // for internal use during resize, so no resize check here
-  private void insertEntry(final byte[] key, final int coupon, final boolean setStateOne) {
-    final long[] hash = MurmurHash3.hash(key, SEED);
-    int entryIndex = getIndex(hash[0], tableEntries_);
-    final int stride = getStride(hash[1], tableEntries_);
-    final int loopIndex = entryIndex;
-    do {
-      if (couponsArr_[entryIndex] == 0) {
-        System.arraycopy(key, 0, keysArr_, entryIndex * keySizeBytes_, keySizeBytes_);
-        setCoupon(entryIndex, (short)coupon, setStateOne);
-        return;
-      }
-      entryIndex = (entryIndex + stride) % tableEntries_;
-    } while (entryIndex != loopIndex);
-    throw new SketchesArgumentException("Key not found and no empty slots!");
+  private void resize() {
+    finishMigration();
+    final int newTableEntries = nextPrime((int) (curCountEntries_ / COUPON_MAP_TARGET_FILL_FACTOR));
+    oldTable_ = table_;
+    setTable(newTable(newTableEntries));
+    startMigration(oldTable_.entries_, capacityEntries_ - curCountEntries_);
   }
 
   private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes) {
@@ -259,4 +298,96 @@ final class SingleCouponMap extends Map {
     return keySizeBytes + Short.BYTES + byteFraction;
   }
 
+  /**
+   * The keys at offset 0, then the coupons, then the state bits, in a single Memory.
+   *
+   * <ul><li>state: 0: empty or valid; empty if coupon is 0, otherwise valid.</li>
+   * <li>state: 1: original coupon has been promoted, current coupon contains a table #
+   * reference instead.</li>
+   * </ul>
+   */
+  private static final class Table {
+    final int keySizeBytes_;
+    final int entries_;
+    final WritableMemory mem_;
+    final WritableMemory allocated_; //to be released, null if not allocated by the map
+    final long couponsOffset_;
+    final long stateOffset_;
+
+    Table(final int keySizeBytes, final int entries, final WritableMemory mem,
+        final WritableMemory allocated) {
+      keySizeBytes_ = keySizeBytes;
+      entries_ = entries;
+      mem_ = mem;
+      allocated_ = allocated;
+      couponsOffset_ = align8((long) entries * keySizeBytes);
+      stateOffset_ = couponsOffset_ + align8((long) entries * Short.BYTES);
+    }
+
+    long getCouponOffset(final int entryIndex) {
+      return couponsOffset_ + ((long) entryIndex << 1);
+    }
+
+    short getCoupon(final int entryIndex) {
+      return mem_.getShort(getCouponOffset(entryIndex));
+    }
+
+    void putCoupon(final int entryIndex, final short coupon) {
+      mem_.putShort(getCouponOffset(entryIndex), coupon);
+    }
+
+    boolean isCoupon(final int entryIndex) {
+      return isBitClear(mem_, stateOffset_, entryIndex);
+    }
+
+    void setCoupon(final int entryIndex, final short coupon, final boolean isLevel) {
+      putCoupon(entryIndex, coupon);
+      if (isLevel) {
+        setBit(mem_, stateOffset_, entryIndex);
+      } else {
+        clearBit(mem_, stateOffset_, entryIndex);
+      }
+    }
+
+    void putKey(final int entryIndex, final byte[] key) {
+      mem_.putByteArray((long) entryIndex * keySizeBytes_, key, 0, keySizeBytes_);
+    }
+
+    long[] hashKey(final int entryIndex) {
+      return MurmurHash3.hash(mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_, SEED,
+          new long[2]);
+    }
+
+    int find(final byte[] key, final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      final int stride = getStride(hash[1], entries_);
+      final int loopIndex = entryIndex;
+
+      do {
+        if (getCoupon(entryIndex) == 0) {
+          return ~entryIndex; //empty
+        }
+        if (Map.keyEquals(key, mem_, (long) entryIndex * keySizeBytes_, keySizeBytes_)) {
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + stride) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+
+    // for moving entries during a resize, where the key is known not to be in this table
+    int findEmpty(final long[] hash) {
+      int entryIndex = getIndex(hash[0], entries_);
+      final int stride = getStride(hash[1], entries_);
+      final int loopIndex = entryIndex;
+      do {
+        if (getCoupon(entryIndex) == 0) {
+          return entryIndex;
+        }
+        entryIndex = (entryIndex + stride) % entries_;
+      } while (entryIndex != loopIndex);
+      throw new SketchesArgumentException("Key not found and no empty slots!");
+    }
+  }
+
 }
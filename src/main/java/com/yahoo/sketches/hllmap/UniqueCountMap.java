@@ -5,7 +5,14 @@
 
 package com.yahoo.sketches.hllmap;
 
+import java.util.Arrays;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.hash.MurmurHash3;
 
 /**
  * This is a real-time, key-value HLL mapping sketch that tracks approximate unique counts of
@@ -55,6 +62,22 @@ import com.yahoo.sketches.SketchesArgumentException;
  * <p>The sketch estimator algorithms are unbiased with a Relative Standard Error (RSE)
  * of about 2.6% with 68% confidence, or equivalently, about 5.2% with a 95% confidence.
  *
+ * <p>The tables of each internal map are kept in a single Memory. The whole map can be written
+ * sequentially with {@link #putMemory(WritableMemory)}, for example to a memory-mapped file, and
+ * later either wrapped in place with {@link #wrap(WritableMemory)}, which reads no keys at all, or
+ * copied to the heap with {@link #heapify(Memory)}. Neither of them re-inserts any key.
+ *
+ * <p>By default the tables are allocated on the heap. Given a {@link MemoryRequestServer}, all
+ * internal maps request their tables from it instead, so that they may be kept in direct or
+ * memory-mapped Memory outside of the garbage collected heap, and hand back each table they no
+ * longer use with {@link MemoryRequestServer#requestClose(WritableMemory, WritableMemory)}.
+ * Tables still in use are handed back by {@link #close()}. When an internal map grows or shrinks
+ * its entries are moved to the new table a few at a time by the following updates, so no update
+ * copies a whole table, and the old table is handed back once it is empty.
+ *
+ * <p>This map is not thread-safe. For many concurrent writers use
+ * {@link ConcurrentUniqueCountMap}, which partitions the keys into independently locked segments.
+ *
  * <p>In a parallel package in the sketches-misc repository, there are 2 classes  that can be used
  * from the command line to feed this mapping sketch piped from standard-in for experimental
  * evaluation. The first is ProcessIpStream, which processes simple IP/ID pairs and the second,
@@ -73,7 +96,22 @@ public class UniqueCountMap {
   private static final int HLL_K = 1024;
   private static final int INITIAL_NUM_ENTRIES = 1000003;
   private static final int MIN_INITIAL_NUM_ENTRIES = 157;
+
+  // Serialized form: a preamble followed by the serialized maps of the active levels, in order.
+  // The preamble is: byte 0: serialization version; byte 1: number of levels;
+  // bytes 2-3: bit mask of the active levels; bytes 4-7: key size; bytes 8-15: total bytes.
+  // The mask is cleared when a wrapped map adds a level, which the image has no room for.
+  private static final int PREAMBLE_BYTES = 16;
+  private static final int SER_VER = 1;
+  private static final int SER_VER_BYTE = 0;
+  private static final int NUM_LEVELS_BYTE = 1;
+  private static final int LEVELS_SHORT = 2;
+  private static final int KEY_SIZE_INT = 4;
+  private static final int TOTAL_BYTES_LONG = 8;
+
   private final int keySizeBytes_;
+  private final MemoryRequestServer memReqSvr_; //null: tables on the heap
+  private WritableMemory image_; //the wrapped Memory, null if not wrapped or outgrown
 
   /** TraverseCouponMap or HashCouponMap instances */
   private final Map[] maps_;
@@ -94,11 +132,81 @@ public class UniqueCountMap {
    * @param keySizeBytes must be at least 4 bytes to have sufficient entropy
    */
   public UniqueCountMap(final int initialNumEntries, final int keySizeBytes) {
+    this(initialNumEntries, keySizeBytes, null);
+  }
+
+  /**
+   * Constructs a UniqueCountMap with a given initial number of entries, whose internal maps request
+   * their tables from the given MemoryRequestServer.
+   *
+   * @param initialNumEntries The initial number of entries provides a tradeoff between
+   * wasted space, if too high, and wasted time resizing the table, if too low.
+   * @param keySizeBytes must be at least 4 bytes to have sufficient entropy
+   * @param memReqSvr the MemoryRequestServer that provides the tables of the internal maps, which
+   * may be direct or memory-mapped Memory. If null, the tables are allocated on the heap.
+   */
+  public UniqueCountMap(final int initialNumEntries, final int keySizeBytes,
+      final MemoryRequestServer memReqSvr) {
     checkConstructorKeySize(keySizeBytes);
     final int initEntries = Math.max(initialNumEntries, MIN_INITIAL_NUM_ENTRIES);
     keySizeBytes_ = keySizeBytes;
+    memReqSvr_ = memReqSvr;
     maps_ = new Map[NUM_LEVELS]; // includes base level and top level
-    maps_[0] = SingleCouponMap.getInstance(initEntries, keySizeBytes);
+    maps_[0] = SingleCouponMap.getInstance(initEntries, keySizeBytes, memReqSvr);
+  }
+
+  private UniqueCountMap(final int keySizeBytes, final Map[] maps,
+      final MemoryRequestServer memReqSvr, final WritableMemory image) {
+    keySizeBytes_ = keySizeBytes;
+    memReqSvr_ = memReqSvr;
+    maps_ = maps;
+    image_ = image;
+  }
+
+  /**
+   * Returns a UniqueCountMap that wraps the given Memory, which holds a UniqueCountMap written by
+   * {@link #putMemory(WritableMemory)}. The tables of all the internal maps are used in place,
+   * so the given Memory may be a memory-mapped file, and the map is available at once. Updates
+   * are written to the given Memory, including the counts of the internal maps, so that it keeps
+   * holding a valid image that can be wrapped or heapified again.
+   *
+   * <p>This lasts until an internal map has to grow or shrink, or a key is promoted to a level
+   * that the image does not hold. The tables of that map are then allocated anew, outside the
+   * given Memory, which is marked as outgrown, so that wrapping or heapifying it again throws
+   * instead of returning stale estimates. To keep the updated map, write it with
+   * {@link #putMemory(WritableMemory)} to a different Memory, such as a new file. The given Memory
+   * itself is rejected by putMemory.</p>
+   *
+   * @param srcMem the given Memory
+   * @return a UniqueCountMap that wraps the given Memory
+   */
+  public static UniqueCountMap wrap(final WritableMemory srcMem) {
+    return deserialize(srcMem, true, null);
+  }
+
+  /**
+   * Returns a UniqueCountMap that wraps the given Memory, as {@link #wrap(WritableMemory)}, whose
+   * internal maps request the tables they grow into from the given MemoryRequestServer. The
+   * wrapped tables themselves are never handed back to it.
+   * @param srcMem the given Memory
+   * @param memReqSvr the MemoryRequestServer that provides new tables. If null, new tables are
+   * allocated on the heap.
+   * @return a UniqueCountMap that wraps the given Memory
+   */
+  public static UniqueCountMap wrap(final WritableMemory srcMem,
+      final MemoryRequestServer memReqSvr) {
+    return deserialize(srcMem, true, memReqSvr);
+  }
+
+  /**
+   * Returns a UniqueCountMap on the heap from the given Memory, which holds a UniqueCountMap
+   * written by {@link #putMemory(WritableMemory)}. The tables of the internal maps are copied in
+   * bulk, no key is re-inserted.
+   * @param srcMem the given Memory
+   * @return a UniqueCountMap on the heap
+   */
+  public static UniqueCountMap heapify(final Memory srcMem) {
+    return deserialize(srcMem, false, null);
   }
 
   /**
@@ -112,21 +220,142 @@ public class UniqueCountMap {
     if (key == null) { return Double.NaN; }
     checkMethodKeySize(key);
     if (identifier == null) { return getEstimate(key); }
-    final short coupon = (short) Map.coupon16(identifier);
+    return update(key, (short) Map.coupon16(identifier));
+  }
+
+  /**
+   * Updates the map with the given keys and identifiers, each identifier with the key at the same
+   * index, in the given order. This is equivalent to calling {@link #update(byte[], byte[])} for
+   * each pair, but is faster for large batches: all keys and identifiers are hashed first, without
+   * allocating per pair, and each key is hashed only once for its lookups at all levels. The base
+   * map is searched only once for a run of consecutive pairs with the same key, so callers whose
+   * input is grouped by key benefit the most. Pairs with a null key or a null identifier are
+   * ignored. No pair is applied if any key has the wrong size.
+   *
+   * @param keys the given keys, each of the key size of this map
+   * @param identifiers the given identifiers, as many as there are keys
+   */
+  public void updateAll(final byte[][] keys, final byte[][] identifiers) {
+    if (keys.length != identifiers.length) {
+      throw new SketchesArgumentException("Number of keys and identifiers differ: " + keys.length
+          + " != " + identifiers.length);
+    }
+    final long[] hashes = new long[2 * keys.length];
+    final short[] coupons = new short[keys.length];
+    final long[] hash = new long[2];
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == null) { continue; }
+      checkMethodKeySize(keys[i]);
+      if (identifiers[i] == null) { continue; }
+      coupons[i] = (short) Map.coupon16(identifiers[i], hash);
+      MurmurHash3.hash(keys[i], Map.SEED, hash);
+      hashes[2 * i] = hash[0];
+      hashes[(2 * i) + 1] = hash[1];
+    }
+    int i = 0;
+    while (i < keys.length) {
+      if (coupons[i] == 0) { i++; continue; } //ignored pair, as no coupon is 0
+      final byte[] key = keys[i];
+      hash[0] = hashes[2 * i];
+      hash[1] = hashes[(2 * i) + 1];
+      //updates of this key do not move its entry in the base map, only inserts of other keys may
+      final int baseMapIndex = maps_[0].findOrInsertKey(key, hash);
+      do {
+        update(key, hash, baseMapIndex, coupons[i]);
+        i++;
+      } while ((i < keys.length) && (coupons[i] != 0) && isSameKey(key, hash, keys, hashes, i));
+    }
+  }
+
+  /**
+   * Updates the map with a given key and coupon, without checking the key.
+   * @param key the given key
+   * @param coupon the coupon of the identifier
+   * @return the estimate of the number of unique identifiers encountered so far for the given key.
+   */
+  double update(final byte[] key, final short coupon) {
+    return update(key, MurmurHash3.hash(key, Map.SEED), coupon);
+  }
 
-    final int baseMapIndex = maps_[0].findOrInsertKey(key);
+  /**
+   * Updates the map with a given key, its hash and a coupon, without checking the key.
+   * @param key the given key
+   * @param hash the 128-bit hash of the key with {@link Map#SEED}
+   * @param coupon the coupon of the identifier
+   * @return the estimate of the number of unique identifiers encountered so far for the given key.
+   */
+  double update(final byte[] key, final long[] hash, final short coupon) {
+    return update(key, hash, maps_[0].findOrInsertKey(key, hash), coupon);
+  }
+
+  private double update(final byte[] key, final long[] hash, final int baseMapIndex,
+      final short coupon) {
     final double baseMapEstimate = maps_[0].update(baseMapIndex, coupon);
     if (baseMapEstimate > 0) { return baseMapEstimate; }
     final int level = -(int) baseMapEstimate; // base map is level 0
     if (level == 0) {
-      return promote(key, coupon, maps_[0], baseMapIndex, level, baseMapIndex, 0);
+      return promote(key, hash, coupon, maps_[0], baseMapIndex, level, baseMapIndex, 0);
     }
 
     final Map map = maps_[level];
-    final int index = map.findOrInsertKey(key);
+    final int index = map.findOrInsertKey(key, hash);
     final double estimate = map.update(index, coupon);
     if (estimate > 0) { return estimate; }
-    return promote(key, coupon, map, index, level, baseMapIndex, -estimate);
+    return promote(key, hash, coupon, map, index, level, baseMapIndex, -estimate);
+  }
+
+  /**
+   * Merges the given map into this map, so that each key estimates the unique count of the union
+   * of the identifiers of that key in both maps. The given map is not changed, other than finishing
+   * any pending incremental resize, and must have the same key size. This allows ingestion to be
+   * split between maps, for example on different hosts or for different time intervals, whose
+   * serialized forms are later heapified or wrapped and merged into one map.
+   *
+   * <p>The tables of the given map are read in place, one key at a time, and no identifier is
+   * hashed again. The coupons of each key are added to this map as by
+   * {@link #update(byte[], byte[])}, so the keys of this map are promoted as needed. A key in the
+   * final HLL map of the given map is promoted to the final HLL map of this map, where the
+   * registers of both keys are merged by taking the maximum of each. The historic (HIP) estimate of
+   * such a key cannot be merged: it is kept if the registers of either key already hold the
+   * merged registers, otherwise it is replaced by the HLL estimate of the merged registers.</p>
+   *
+   * @param other the map to merge into this map
+   */
+  public void merge(final UniqueCountMap other) {
+    if (other.keySizeBytes_ != keySizeBytes_) {
+      throw new SketchesArgumentException("Key sizes differ: " + other.keySizeBytes_ + " != "
+          + keySizeBytes_);
+    }
+    if (other == this) { return; }
+    for (int i = 0; i < other.maps_.length; i++) {
+      if (other.maps_[i] != null) {
+        other.maps_[i].finishMigration();
+      }
+    }
+    final SingleCouponMap otherBase = (SingleCouponMap) other.maps_[0];
+    final int tableEntries = otherBase.getTableEntries();
+    final byte[] key = new byte[keySizeBytes_];
+    final long[] hash = new long[2];
+    for (int i = 0; i < tableEntries; i++) {
+      final short coupon = otherBase.getCoupon(i);
+      if (coupon == 0) { continue; } //empty
+      otherBase.getKey(i, key);
+      MurmurHash3.hash(key, Map.SEED, hash);
+      if (otherBase.isCoupon(i)) {
+        update(key, hash, coupon);
+        continue;
+      }
+      final Map otherMap = other.maps_[coupon]; //the coupon holds the level of the key
+      final int otherIndex = otherMap.findKey(key, hash);
+      if (coupon < (NUM_LEVELS - 1)) {
+        final CouponsIterator it = otherMap.getCouponsIterator(otherIndex);
+        while (it.next()) {
+          update(key, hash, it.getValue());
+        }
+      } else {
+        mergeHll(key, hash, (HllMap) otherMap, otherIndex);
+      }
+    }
   }
 
   /**
@@ -225,6 +454,83 @@ public class UniqueCountMap {
     return (double) (getMemoryUsageBytes() - getKeyMemoryUsageBytes()) / getActiveEntries();
   }
 
+  /**
+   * Returns the number of bytes required to store this map with
+   * {@link #putMemory(WritableMemory)}.
+   * @return the number of bytes required to store this map
+   */
+  public long getStorageBytes() {
+    long total = PREAMBLE_BYTES;
+    for (int i = 0; i < maps_.length; i++) {
+      if (maps_[i] != null) {
+        total += maps_[i].getSerializedSizeBytes();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Writes this map sequentially to the given Memory, starting at offset zero.
+   * The map can be restored with {@link #wrap(WritableMemory)} or {@link #heapify(Memory)}.
+   * The given Memory must not overlap the tables of this map, which rules out the Memory wrapped
+   * by this map: the maps are written one after another at new offsets, so a map could overwrite
+   * the tables of the next maps before they are copied.
+   * @param dstMem the given Memory, which must hold at least {@link #getStorageBytes()} bytes
+   */
+  public void putMemory(final WritableMemory dstMem) {
+    final long totalBytes = getStorageBytes();
+    if (dstMem.getCapacity() < totalBytes) {
+      throw new SketchesArgumentException("Memory capacity is too small: "
+          + dstMem.getCapacity() + " < " + totalBytes);
+    }
+    for (int i = 0; i < maps_.length; i++) {
+      if ((maps_[i] != null) && maps_[i].tablesOverlap(dstMem)) {
+        throw new SketchesArgumentException(
+            "Memory overlaps the tables of this map, such as the Memory it wraps.");
+      }
+    }
+    int levels = 0;
+    long offset = PREAMBLE_BYTES;
+    for (int i = 0; i < maps_.length; i++) {
+      if (maps_[i] != null) {
+        levels |= 1 << i;
+        offset = maps_[i].serializeTo(dstMem, offset);
+      }
+    }
+    dstMem.putByte(SER_VER_BYTE, (byte) SER_VER);
+    dstMem.putByte(NUM_LEVELS_BYTE, (byte) NUM_LEVELS);
+    dstMem.putShort(LEVELS_SHORT, (short) levels);
+    dstMem.putInt(KEY_SIZE_INT, keySizeBytes_);
+    dstMem.putLong(TOTAL_BYTES_LONG, totalBytes);
+  }
+
+  /**
+   * Returns this map serialized to a byte array. See {@link #putMemory(WritableMemory)}.
+   * @return this map serialized to a byte array
+   */
+  public byte[] toByteArray() {
+    final long totalBytes = getStorageBytes();
+    if (totalBytes > Integer.MAX_VALUE) {
+      throw new SketchesStateException("Map too large for a byte array: " + totalBytes
+          + " bytes. Use putMemory() instead.");
+    }
+    final byte[] bytes = new byte[(int) totalBytes];
+    putMemory(WritableMemory.wrap(bytes));
+    return bytes;
+  }
+
+  /**
+   * Hands the tables of all internal maps back to the MemoryRequestServer given at construction,
+   * if any. This map must not be used afterwards. Without a MemoryRequestServer this does nothing.
+   */
+  public void close() {
+    for (int i = 0; i < maps_.length; i++) {
+      if (maps_[i] != null) {
+        maps_[i].releaseTables();
+      }
+    }
+  }
+
   /**
    * Returns the number of active internal maps so far.
    * Only the base map is initialized in the constructor, so this method would return 1.
@@ -302,10 +608,11 @@ public class UniqueCountMap {
     ((SingleCouponMap) maps_[0]).setLevel(index, level);
   }
 
-  private double promote(final byte[] key, final short coupon, final Map fromMap, final int fromIndex,
-      final int fromLevel, final int baseMapIndex, final double estimate) {
+  private double promote(final byte[] key, final long[] hash, final short coupon,
+      final Map fromMap, final int fromIndex, final int fromLevel, final int baseMapIndex,
+      final double estimate) {
     final Map newMap = getMapForLevel(fromLevel + 1);
-    final int newMapIndex = newMap.findOrInsertKey(key);
+    final int newMapIndex = newMap.findOrInsertKey(key, hash);
     final CouponsIterator it = fromMap.getCouponsIterator(fromIndex);
     while (it.next()) {
       final double est = newMap.update(newMapIndex, it.getValue());
@@ -319,15 +626,111 @@ public class UniqueCountMap {
     return newEstimate;
   }
 
+  /**
+   * Promotes the given key of this map, if present, to the final HLL map and merges the HLL array
+   * of the given entry of another HllMap into it.
+   */
+  private void mergeHll(final byte[] key, final long[] hash, final HllMap otherHll,
+      final int otherIndex) {
+    final int hllLevel = NUM_LEVELS - 1;
+    final SingleCouponMap base = (SingleCouponMap) maps_[0];
+    final int baseMapIndex = base.findOrInsertKey(key, hash);
+    final short baseCoupon = base.getCoupon(baseMapIndex);
+    final HllMap hllMap = (HllMap) getMapForLevel(hllLevel);
+    final int index;
+    if ((baseCoupon != 0) && !base.isCoupon(baseMapIndex) && (baseCoupon == hllLevel)) {
+      index = hllMap.findKey(key, hash);
+    } else {
+      index = hllMap.findOrInsertKey(key, hash);
+      if (baseCoupon != 0) {
+        if (base.isCoupon(baseMapIndex)) {
+          hllMap.update(index, baseCoupon);
+        } else { //move the key up from its current level, as promote() does
+          final Map fromMap = maps_[baseCoupon];
+          final int fromIndex = fromMap.findKey(key, hash);
+          final double estimate = fromMap.getEstimate(key);
+          final CouponsIterator it = fromMap.getCouponsIterator(fromIndex);
+          while (it.next()) {
+            hllMap.update(index, it.getValue());
+          }
+          fromMap.deleteKey(fromIndex);
+          hllMap.updateEstimate(index, estimate);
+        }
+      }
+      setLevelInBaseMap(baseMapIndex, hllLevel);
+    }
+    hllMap.merge(index, otherHll, otherIndex);
+  }
+
+  private static UniqueCountMap deserialize(final Memory srcMem, final boolean inPlace,
+      final MemoryRequestServer memReqSvr) {
+    final long capBytes = srcMem.getCapacity();
+    if (capBytes < PREAMBLE_BYTES) {
+      throw new SketchesArgumentException("Memory too small for a UniqueCountMap: " + capBytes);
+    }
+    final int serVer = srcMem.getByte(SER_VER_BYTE);
+    if (serVer != SER_VER) {
+      throw new SketchesArgumentException("Unsupported serialization version: " + serVer);
+    }
+    final int numLevels = srcMem.getByte(NUM_LEVELS_BYTE);
+    final int levels = srcMem.getShort(LEVELS_SHORT) & 0XFFFF;
+    final int keySizeBytes = srcMem.getInt(KEY_SIZE_INT);
+    final long totalBytes = srcMem.getLong(TOTAL_BYTES_LONG);
+    if (levels == 0) {
+      throw new SketchesArgumentException("This UniqueCountMap has outgrown this image while it "
+          + "was wrapped. Write the updated map with putMemory().");
+    }
+    if ((numLevels != NUM_LEVELS) || ((levels & 1) == 0) || ((levels >>> NUM_LEVELS) != 0)
+        || (totalBytes > capBytes)) {
+      throw new SketchesArgumentException("Corrupted UniqueCountMap preamble.");
+    }
+    checkConstructorKeySize(keySizeBytes);
+    final Map[] maps = new Map[NUM_LEVELS];
+    long offset = PREAMBLE_BYTES;
+    for (int level = 0; level < NUM_LEVELS; level++) {
+      if ((levels & (1 << level)) == 0) { continue; }
+      final Map map = Map.deserialize(srcMem, offset, keySizeBytes, inPlace, memReqSvr);
+      if ((map.getMapType() != getMapTypeForLevel(level))
+          || (map.getMapParameter() != getMapParameterForLevel(level))) {
+        throw new SketchesArgumentException("Corrupted map at level " + level);
+      }
+      maps[level] = map;
+      offset += map.getSerializedSizeBytes();
+    }
+    if (offset != totalBytes) {
+      throw new SketchesArgumentException("Corrupted UniqueCountMap: " + offset + " != "
+          + totalBytes);
+    }
+    return new UniqueCountMap(keySizeBytes, maps, memReqSvr,
+        inPlace ? (WritableMemory) srcMem : null);
+  }
+
+  private static int getMapTypeForLevel(final int level) {
+    if (level == 0) { return Map.SINGLE_COUPON_MAP_TYPE; }
+    if (level <= NUM_TRAVERSE_MAPS) { return Map.COUPON_TRAVERSE_MAP_TYPE; }
+    if (level < (NUM_LEVELS - 1)) { return Map.COUPON_HASH_MAP_TYPE; }
+    return Map.HLL_MAP_TYPE;
+  }
+
+  private static int getMapParameterForLevel(final int level) {
+    if (level == 0) { return 1; }
+    if (level < (NUM_LEVELS - 1)) { return 1 << level; }
+    return HLL_K;
+  }
+
   private Map getMapForLevel(final int level) {
     if (maps_[level] == null) {
+      if (image_ != null) { //mark the wrapped image as outgrown
+        image_.putShort(LEVELS_SHORT, (short) 0);
+        image_ = null;
+      }
       final int newLevelCapacity = 1 << level;
       if (level <= NUM_TRAVERSE_MAPS) {
-        maps_[level] = CouponTraverseMap.getInstance(keySizeBytes_, newLevelCapacity);
+        maps_[level] = CouponTraverseMap.getInstance(keySizeBytes_, newLevelCapacity, memReqSvr_);
       } else if (level < maps_.length - 1) {
-        maps_[level] = CouponHashMap.getInstance(keySizeBytes_, newLevelCapacity);
+        maps_[level] = CouponHashMap.getInstance(keySizeBytes_, newLevelCapacity, memReqSvr_);
       } else {
-        maps_[level] = HllMap.getInstance(keySizeBytes_, HLL_K);
+        maps_[level] = HllMap.getInstance(keySizeBytes_, HLL_K, memReqSvr_);
       }
     }
     return maps_[level];
@@ -339,6 +742,12 @@ public class UniqueCountMap {
     }
   }
 
+  private static boolean isSameKey(final byte[] key, final long[] hash, final byte[][] keys,
+      final long[] hashes, final int index) {
+    return (hashes[2 * index] == hash[0]) && (hashes[(2 * index) + 1] == hash[1])
+        && Arrays.equals(keys[index], key);
+  }
+
   private final void checkMethodKeySize(final byte[] key) {
     if (key.length != keySizeBytes_) {
       throw new SketchesArgumentException("Key size must be " + keySizeBytes_ + " bytes.");
@@ -27,6 +27,8 @@ import static com.yahoo.sketches.quantiles.PreambleUtil.insertPreLongs;
 import static com.yahoo.sketches.quantiles.PreambleUtil.insertSerVer;
 import static com.yahoo.sketches.quantiles.Util.computeBitPattern;
 
+import java.util.Arrays;
+
 import com.yahoo.memory.MemoryRequestServer;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.Family;
@@ -117,6 +119,7 @@ final class DirectUpdateDoublesSketch extends DirectUpdateDoublesSketchR {
   @Override
   public void update(final double dataItem) {
     if (Double.isNaN(dataItem)) { return; }
+    invalidateAuxiliary();
 
     final int curBBCount = getBaseBufferCount();
     final int newBBCount = curBBCount + 1; //derived, not stored
@@ -139,39 +142,79 @@ final class DirectUpdateDoublesSketch extends DirectUpdateDoublesSketchR {
     mem_.putByte(FLAGS_BYTE, (byte) 0); //not compact, not ordered, not empty
 
     if (newBBCount == (2 * k_)) { //Propagate
-      // make sure there will be enough levels for the propagation
-      final int curMemItemCap = getCombinedBufferItemCapacity();
-      final int itemSpaceNeeded = DoublesUpdateImpl.getRequiredItemCapacity(k_, newN);
-
-      //check mem has capacity to accommodate new level
-      if (itemSpaceNeeded > curMemItemCap) {
-        // copies base buffer plus old levels, adds space for new level
-        mem_ = growCombinedMemBuffer(mem_, itemSpaceNeeded);
-      }
-
       // sort base buffer via accessor which modifies the underlying base buffer,
       // then use as one of the inputs to propagate-carry
-      final DoublesSketchAccessor bbAccessor = DoublesSketchAccessor.wrap(this, true);
-      bbAccessor.sort();
-
-      final long newBitPattern = DoublesUpdateImpl.inPlacePropagateCarry(
-              0, // starting level
-              null,
-              bbAccessor,
-              true,
-              k_,
-              DoublesSketchAccessor.wrap(this, true),
-              getBitPattern()
-      );
-
-      assert newBitPattern == computeBitPattern(k_, newN); // internal consistency check
-      //bit pattern on direct is always derived, no need to save it.
+      DoublesSketchAccessor.wrap(this, true).sort();
+      propagateSortedBaseBuffer(newN);
     }
     putN(newN);
   }
 
+  @Override
+  void putItems(final double[] values, final int offset, final int length) {
+    final int twoK = 2 * k_;
+    final int end = offset + length;
+    double[] sortBuf = null; //a full base buffer is sorted on the heap before it is put
+    int srcIdx = offset;
+    while (srcIdx < end) {
+      final int curBBCount = getBaseBufferCount();
+      final int count = Math.min(twoK - curBBCount, end - srcIdx);
+      final int newBBCount = curBBCount + count;
+      final long newN = getN() + count;
+      if (newBBCount > getCombinedBufferItemCapacity()) {
+        //only changes combinedBuffer when it is only a base buffer
+        mem_ = growCombinedMemBuffer(mem_, twoK);
+      }
+      if (newBBCount == twoK) { //Propagate
+        if (sortBuf == null) { sortBuf = new double[twoK]; }
+        mem_.getDoubleArray(COMBINED_BUFFER, sortBuf, 0, curBBCount);
+        System.arraycopy(values, srcIdx, sortBuf, curBBCount, count);
+        Arrays.sort(sortBuf);
+        mem_.putDoubleArray(COMBINED_BUFFER, sortBuf, 0, twoK);
+        propagateSortedBaseBuffer(newN);
+      } else {
+        mem_.putDoubleArray(COMBINED_BUFFER + (curBBCount * Double.BYTES), values, srcIdx, count);
+      }
+      srcIdx += count;
+      putN(newN);
+    }
+    mem_.putByte(FLAGS_BYTE, (byte) 0); //not compact, not ordered, not empty
+  }
+
+  /**
+   * Propagates the full and sorted base buffer into the levels. The bit pattern is derived from
+   * <i>n</i>, which is not set here.
+   * @param newN the value of <i>n</i> including the items of the base buffer
+   */
+  private void propagateSortedBaseBuffer(final long newN) {
+    // make sure there will be enough levels for the propagation
+    final int curMemItemCap = getCombinedBufferItemCapacity();
+    final int itemSpaceNeeded = DoublesUpdateImpl.getRequiredItemCapacity(k_, newN);
+
+    //check mem has capacity to accommodate new level
+    if (itemSpaceNeeded > curMemItemCap) {
+      // copies base buffer plus old levels, adds space for new level
+      mem_ = growCombinedMemBuffer(mem_, itemSpaceNeeded);
+    }
+
+    final long newBitPattern = DoublesUpdateImpl.inPlacePropagateCarry(
+            0, // starting level
+            null,
+            DoublesSketchAccessor.wrap(this, true),
+            true,
+            k_,
+            DoublesSketchAccessor.wrap(this, true),
+            getBitPattern(),
+            getRandom()
+    );
+
+    assert newBitPattern == computeBitPattern(k_, newN); // internal consistency check
+    //bit pattern on direct is always derived, no need to save it.
+  }
+
   @Override
   public void reset() {
+    invalidateAuxiliary();
     if (mem_.getCapacity() >= COMBINED_BUFFER) {
       mem_.putByte(FLAGS_BYTE, (byte) EMPTY_FLAG_MASK); //not compact, not ordered
       mem_.putLong(N_LONG, 0L);
@@ -208,6 +251,7 @@ final class DirectUpdateDoublesSketch extends DirectUpdateDoublesSketchR {
 
   @Override
   void putN(final long n) {
+    invalidateAuxiliary();
     if (mem_.getCapacity() < COMBINED_BUFFER) {
       mem_ = growCombinedMemBuffer(mem_, 2 * getK());
     }
@@ -216,6 +260,7 @@ final class DirectUpdateDoublesSketch extends DirectUpdateDoublesSketchR {
 
   @Override
   void putCombinedBuffer(final double[] combinedBuffer) {
+    invalidateAuxiliary();
     mem_.putDoubleArray(COMBINED_BUFFER, combinedBuffer, 0, combinedBuffer.length);
   }
 
@@ -190,6 +190,11 @@ class DirectUpdateDoublesSketchR extends UpdateDoublesSketch {
     throw new SketchesReadOnlyException("Call to putBaseBufferCount() on read-only buffer");
   }
 
+  @Override
+  void putItems(final double[] items, final int offset, final int length) {
+    throw new SketchesReadOnlyException("Call to putItems() on read-only buffer");
+  }
+
   @Override
   double[] growCombinedBuffer(final int curCombBufItemCap, final int itemSpaceNeeded) {
     throw new SketchesReadOnlyException("Call to growCombinedBuffer() on read-only buffer");
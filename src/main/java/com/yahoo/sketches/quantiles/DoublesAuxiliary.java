@@ -17,9 +17,9 @@ import java.util.Arrays;
  * @author Lee Rhodes
  */
 final class DoublesAuxiliary {
-  long auxN_;
-  double[] auxSamplesArr_; //array of size samples
-  long[] auxCumWtsArr_;
+  final long auxN_;
+  final double[] auxSamplesArr_; //array of size samples
+  final long[] auxCumWtsArr_;
 
   /**
    * Constructs the Auxiliary structure from the DoublesSketch
@@ -72,6 +72,28 @@ final class DoublesAuxiliary {
     return approximatelyAnswerPositionalQuery(pos);
   }
 
+  /**
+   * Returns the total weight of the samples that are less than the given value, which is the
+   * approximate number of items of the stream that are less than the given value.
+   * This is a binary search over the sorted samples.
+   * @param value the given value
+   * @return the total weight of the samples that are less than the given value
+   */
+  long getWeightBelow(final double value) {
+    final double[] samples = auxSamplesArr_;
+    int lo = 0;
+    int hi = samples.length; //the first sample not less than value is in [lo, hi]
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (samples[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return auxCumWtsArr_[lo];
+  }
+
   /**
    * Returns the zero-based index (position) of a value in the hypothetical sorted stream of
    * values of size n. Also used by ItemsAuxiliary.
@@ -9,6 +9,8 @@ import static com.yahoo.sketches.Util.checkIfPowerOf2;
 import static com.yahoo.sketches.quantiles.PreambleUtil.EMPTY_FLAG_MASK;
 import static com.yahoo.sketches.quantiles.PreambleUtil.FLAGS_BYTE;
 
+import java.util.Random;
+
 import com.yahoo.memory.WritableMemory;
 
 import com.yahoo.sketches.SketchesArgumentException;
@@ -87,7 +89,8 @@ final class DoublesMergeImpl {
                 false,
                 tgtK,
                 tgtSketchBuf,
-                tgt.getBitPattern()
+                tgt.getBitPattern(),
+                tgt.getRandom()
         );
 
         tgt.putBitPattern(newTgtBitPattern);
@@ -163,7 +166,8 @@ final class DoublesMergeImpl {
                 srcSketchBuf.setLevel(srcLvl),
                 downScratchKAcc,
                 tgtK,
-                downFactor
+                downFactor,
+                tgt.getRandom()
         );
         newTgtBitPattern = DoublesUpdateImpl.inPlacePropagateCarry(
                 srcLvl + lgDownFactor,    //starting level
@@ -172,7 +176,8 @@ final class DoublesMergeImpl {
                 false,                    //do mergeInto version
                 tgtK,
                 tgtSketchBuf,
-                newTgtBitPattern
+                newTgtBitPattern,
+                tgt.getRandom()
         );
 
         tgt.putBitPattern(newTgtBitPattern); //off-heap is a no-op
@@ -199,8 +204,9 @@ final class DoublesMergeImpl {
           final DoublesBufferAccessor bufA, // input
           final DoublesBufferAccessor bufC, // output
           final int kC, // number of items that should be in the output
-          final int stride) {
-    final int randomOffset = DoublesSketch.rand.nextInt(stride);
+          final int stride,
+          final Random random) {
+    final int randomOffset = random.nextInt(stride);
     for (int a = randomOffset, c = 0; c < kC; a += stride, c++ ) {
       bufC.set(c, bufA.get(a));
     }
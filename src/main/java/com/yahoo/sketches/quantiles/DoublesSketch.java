@@ -9,11 +9,14 @@ import static com.yahoo.sketches.Util.ceilingPowerOf2;
 import static com.yahoo.sketches.quantiles.Util.checkIsCompactMemory;
 
 import java.util.Random;
+import java.util.stream.Collector;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
 
 
 /**
@@ -129,15 +132,27 @@ public abstract class DoublesSketch {
   final int k_;
 
   /**
-   * Setting the seed makes the results of the sketch deterministic if the input values are
+   * The cached sorted view of this sketch, see {@link #getAuxiliary()}.
+   */
+  private DoublesAuxiliary aux_ = null;
+
+  /**
+   * The random source of this sketch, which chooses the items that survive each compaction.
+   */
+  private Random random_;
+
+  /**
+   * Seeds the random source of each new sketch that is not given one. Setting the seed makes the
+   * results of the sketches deterministic if the sketches are created and the input values are
    * received in exactly the same order. This is only useful when performing test comparisons,
-   * otherwise is not recommended.
+   * otherwise is not recommended. See {@link DoublesSketchBuilder#setRandom(Random)}.
    */
   public static final Random rand = new Random();
 
   DoublesSketch(final int k) {
     Util.checkK(k);
     k_ = k;
+    random_ = new SplitMixRandom(rand.nextLong());
   }
 
   /**
@@ -148,6 +163,49 @@ public abstract class DoublesSketch {
     return new DoublesSketchBuilder();
   }
 
+  /**
+   * Returns a Collector that builds a sketch with the given k from the items of a Stream of
+   * numbers, which also works for parallel streams. Each thread updates its own sketch with the
+   * double value of each item, and the sketches of the threads are combined by a DoublesUnion.
+   * Null items are ignored. A DoubleStream can be collected after
+   * {@link java.util.stream.DoubleStream#boxed() boxed()}.
+   *
+   * @param <T> the type of the stream items
+   * @param k Parameter that controls space usage of sketch and accuracy of estimates.
+   * Must be greater than 1 and less than 65536 and a power of 2.
+   * @return a Collector that builds a sketch with the given k
+   */
+  public static <T extends Number> Collector<T, ?, UpdateDoublesSketch> collector(final int k) {
+    final DoublesSketchBuilder bldr = new DoublesSketchBuilder().setK(k);
+    return new SketchCollector<T, UpdateDoublesSketch, UpdateDoublesSketch>() {
+      @Override
+      protected UpdateDoublesSketch newContainer() {
+        return bldr.build();
+      }
+
+      @Override
+      protected void accumulate(final UpdateDoublesSketch sketch, final T item) {
+        if (item != null) {
+          sketch.update(item.doubleValue());
+        }
+      }
+
+      @Override
+      protected UpdateDoublesSketch combine(final UpdateDoublesSketch sketch1,
+          final UpdateDoublesSketch sketch2) {
+        final DoublesUnion union = DoublesUnion.builder().setMaxK(k).build();
+        union.update(sketch1);
+        union.update(sketch2);
+        return union.getResult();
+      }
+
+      @Override
+      protected UpdateDoublesSketch finish(final UpdateDoublesSketch sketch) {
+        return sketch;
+      }
+    };
+  }
+
   /**
    * Heapify takes the sketch image in Memory and instantiates an on-heap Sketch.
    * The resulting sketch will not retain any link to the source Memory.
@@ -182,9 +240,10 @@ public abstract class DoublesSketch {
    * that would be preceded by the given fraction of a hypothetical sorted
    * version of the input stream so far.
    *
-   * <p>We note that this method has a fairly large overhead (microseconds instead of nanoseconds)
-   * so it should not be called multiple times to get different quantiles from the same
-   * sketch. Instead use getQuantiles(), which pays the overhead only once.
+   * <p>We note that the first query after the sketch changes has a fairly large overhead
+   * (microseconds instead of nanoseconds) to build a sorted view of the sketch. The sorted view
+   * is cached until the next update, so further calls of getQuantile(), getQuantiles(),
+   * getRank(), getPMF() and getCDF() on an unchanged sketch are fast.
    *
    * <p>If the sketch is empty:
    * <ul><li>getQuantile(0.0) returns Double.POSITIVE_INFINITY</li>
@@ -206,8 +265,7 @@ public abstract class DoublesSketch {
     if      (fraction == 0.0) { return getMinValue(); }
     else if (fraction == 1.0) { return getMaxValue(); }
     else {
-      final DoublesAuxiliary aux = constructAuxiliary();
-      return aux.getQuantile(fraction);
+      return getAuxiliary().getQuantile(fraction);
     }
   }
 
@@ -244,7 +302,7 @@ public abstract class DoublesSketch {
       else if (fraction == 1.0) { answers[i] = getMaxValue(); }
       else {
         if (aux == null) {
-          aux = constructAuxiliary();
+          aux = getAuxiliary();
         }
         answers[i] = aux.getQuantile(fraction);
       }
@@ -274,6 +332,28 @@ public abstract class DoublesSketch {
     return getQuantiles(getEvenlySpaced(evenlySpaced));
   }
 
+  /**
+   * Returns an approximation to the normalized (fractional) rank of the given value, which is
+   * the fraction of the input stream that is less than the given value. This is the inverse of
+   * getQuantile() and the same as getCDF() with the given value as the only split point.
+   *
+   * <p>The resulting approximation has a probabilistic guarantee that be obtained from the
+   * getNormalizedRankError() function.
+   *
+   * <p>If the sketch is empty this returns Double.NaN.</p>
+   *
+   * @param value the given value, which must not be NaN
+   * @return an approximation to the fraction of the input stream that is less than the given
+   * value
+   */
+  public double getRank(final double value) {
+    if (Double.isNaN(value)) {
+      throw new SketchesArgumentException("Value cannot be NaN");
+    }
+    final DoublesAuxiliary aux = getAuxiliary();
+    return (double) aux.getWeightBelow(value) / aux.auxN_;
+  }
+
   /**
    * Returns an approximation to the Probability Mass Function (PMF) of the input stream
    * given a set of splitPoints (values).
@@ -619,6 +699,46 @@ public abstract class DoublesSketch {
     return new DoublesAuxiliary( this );
   }
 
+  /**
+   * Returns the cached Auxiliary data structure, which is built on the first query after this
+   * sketch changes. The cache is invalidated by the mutators of the update sketches, and is also
+   * rebuilt if N differs, e.g., if another object changed the underlying Memory. Compact sketches
+   * never change, so they keep their Auxiliary data structure.
+   * @return the Auxiliary data structure
+   */
+  DoublesAuxiliary getAuxiliary() {
+    DoublesAuxiliary aux = aux_;
+    if ((aux == null) || (aux.auxN_ != getN())) {
+      aux = constructAuxiliary();
+      aux_ = aux;
+    }
+    return aux;
+  }
+
+  /**
+   * Discards the cached Auxiliary data structure. This must be called whenever the data of this
+   * sketch changes.
+   */
+  final void invalidateAuxiliary() {
+    aux_ = null;
+  }
+
+  /**
+   * Returns the random source of this sketch
+   * @return the random source of this sketch
+   */
+  Random getRandom() {
+    return random_;
+  }
+
+  /**
+   * Sets the random source of this sketch
+   * @param random the random source of this sketch
+   */
+  void setRandom(final Random random) {
+    random_ = random;
+  }
+
   //Restricted abstract
 
   /**
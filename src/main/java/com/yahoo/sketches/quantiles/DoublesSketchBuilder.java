@@ -8,6 +8,8 @@ package com.yahoo.sketches.quantiles;
 import static com.yahoo.sketches.quantiles.Util.LS;
 import static com.yahoo.sketches.quantiles.Util.TAB;
 
+import java.util.Random;
+
 import com.yahoo.memory.WritableMemory;
 
 /**
@@ -17,12 +19,14 @@ import com.yahoo.memory.WritableMemory;
  */
 public class DoublesSketchBuilder {
   private int bK = PreambleUtil.DEFAULT_K;
+  private Random bRandom = null;
 
   /**
    * Constructor for a new DoublesSketchBuilder. The default configuration is
    * <ul>
    * <li>k: 128. This produces a normalized rank error of about 1.7%</li>
    * <li>Memory: null</li>
+   * <li>Random: null, each sketch has its own fast generator</li>
    * </ul>
    */
   public DoublesSketchBuilder() {}
@@ -49,12 +53,36 @@ public class DoublesSketchBuilder {
     return bK;
   }
 
+  /**
+   * Sets the random source that chooses the items that survive each compaction of the sketch.
+   * If null, which is the default, each sketch gets its own
+   * {@link com.yahoo.sketches.SplitMixRandom SplitMixRandom} seeded from
+   * {@link DoublesSketch#rand}, so threads that update different sketches do not contend.
+   * A generator with a fixed seed makes a sketch deterministic for the same input.
+   * The given generator is shared by all the sketches built until it is changed, so it must be
+   * thread-safe if those sketches are updated by different threads.
+   * @param random the random source of the sketch, or null for the default
+   * @return this builder
+   */
+  public DoublesSketchBuilder setRandom(final Random random) {
+    bRandom = random;
+    return this;
+  }
+
+  /**
+   * Gets the configured random source, or null for the default
+   * @return the configured random source, or null for the default
+   */
+  public Random getRandom() {
+    return bRandom;
+  }
+
   /**
    * Returns an UpdateDoublesSketch with the current configuration of this Builder.
    * @return a UpdateDoublesSketch
    */
   public UpdateDoublesSketch build() {
-    return HeapUpdateDoublesSketch.newInstance(bK);
+    return withRandom(HeapUpdateDoublesSketch.newInstance(bK));
   }
 
   /**
@@ -64,7 +92,12 @@ public class DoublesSketchBuilder {
    * @return an UpdateDoublesSketch
    */
   public UpdateDoublesSketch build(final WritableMemory dstMem) {
-    return DirectUpdateDoublesSketch.newInstance(bK, dstMem);
+    return withRandom(DirectUpdateDoublesSketch.newInstance(bK, dstMem));
+  }
+
+  private UpdateDoublesSketch withRandom(final UpdateDoublesSketch sketch) {
+    if (bRandom != null) { sketch.setRandom(bRandom); }
+    return sketch;
   }
 
   /**
@@ -75,6 +108,8 @@ public class DoublesSketchBuilder {
     final StringBuilder sb = new StringBuilder();
     sb.append("QuantileSketchBuilder configuration:").append(LS);
     sb.append("K     : ").append(TAB).append(bK).append(LS);
+    sb.append("Random: ").append(TAB).append((bRandom == null) ? "default" : bRandom.toString())
+      .append(LS);
     return sb.toString();
   }
 
@@ -5,6 +5,8 @@
 
 package com.yahoo.sketches.quantiles;
 
+import java.util.Random;
+
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 
@@ -15,12 +17,14 @@ import com.yahoo.memory.WritableMemory;
  */
 public class DoublesUnionBuilder {
   private int bMaxK = PreambleUtil.DEFAULT_K;
+  private Random bRandom = null;
 
   /**
    * Constructor for a new DoublesUnionBuilder. The default configuration is
    * <ul>
    * <li>k: 128. This produces a normalized rank error of about 1.7%</li>
    * <li>Memory: null</li>
+   * <li>Random: null, each sketch of the union has its own generator</li>
    * </ul>
    */
   public DoublesUnionBuilder() {}
@@ -59,12 +63,32 @@ public class DoublesUnionBuilder {
     return bMaxK;
   }
 
+  /**
+   * Sets the random source of the sketches of the union, which chooses the items that survive
+   * each compaction. If null, which is the default, each sketch has its own generator, see
+   * {@link DoublesSketchBuilder#setRandom(Random)}.
+   * @param random the random source of the sketches of the union, or null for the default
+   * @return this builder
+   */
+  public DoublesUnionBuilder setRandom(final Random random) {
+    bRandom = random;
+    return this;
+  }
+
+  /**
+   * Gets the configured random source, or null for the default
+   * @return the configured random source, or null for the default
+   */
+  public Random getRandom() {
+    return bRandom;
+  }
+
   /**
    * Returns a new empty Union object with the current configuration of this Builder.
    * @return a Union object
    */
   public DoublesUnion build() {
-    return DoublesUnionImpl.heapInstance(bMaxK);
+    return DoublesUnionImpl.heapInstance(bMaxK, bRandom);
   }
 
   /**
@@ -74,7 +98,7 @@ public class DoublesUnionBuilder {
    * @return a Union object
    */
   public DoublesUnion build(final WritableMemory dstMem) {
-    return DoublesUnionImpl.directInstance(bMaxK, dstMem);
+    return DoublesUnionImpl.directInstance(bMaxK, dstMem, bRandom);
   }
 
   /**
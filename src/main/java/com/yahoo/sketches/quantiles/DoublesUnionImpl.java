@@ -7,6 +7,8 @@ package com.yahoo.sketches.quantiles;
 
 import static com.yahoo.sketches.quantiles.DoublesUtil.copyToHeap;
 
+import java.util.Random;
+
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 
@@ -33,6 +35,18 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
     return new DoublesUnionImpl(maxK);
   }
 
+  /**
+   * Returns a empty Heap DoublesUnion object that gives the given random source to its sketches.
+   * @param maxK see {@link #heapInstance(int)}
+   * @param random the random source of the sketches of the union, or null for the default
+   * @return a DoublesUnion object
+   */
+  static DoublesUnionImpl heapInstance(final int maxK, final Random random) {
+    final DoublesUnionImpl union = new DoublesUnionImpl(maxK);
+    union.random_ = random;
+    return union;
+  }
+
   /**
    * Returns a empty DoublesUnion object that refers to the given direct, off-heap Memory,
    * which will be initialized to the empty state.
@@ -45,10 +59,24 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
    * @return a DoublesUnion object
    */
   static DoublesUnionImpl directInstance(final int maxK, final WritableMemory dstMem) {
+    return directInstance(maxK, dstMem, null);
+  }
+
+  /**
+   * Returns a empty direct DoublesUnion object that gives the given random source to its
+   * sketches.
+   * @param maxK see {@link #directInstance(int, WritableMemory)}
+   * @param dstMem the Memory to be used by the sketch
+   * @param random the random source of the sketches of the union, or null for the default
+   * @return a DoublesUnion object
+   */
+  static DoublesUnionImpl directInstance(final int maxK, final WritableMemory dstMem,
+      final Random random) {
     final DirectUpdateDoublesSketch sketch = DirectUpdateDoublesSketch.newInstance(maxK, dstMem);
     final DoublesUnionImpl union = new DoublesUnionImpl(maxK);
     union.maxK_ = maxK;
-    union.gadget_ = sketch;
+    union.random_ = random;
+    union.gadget_ = withRandom(sketch, random);
     return union;
   }
 
@@ -107,18 +135,18 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
 
   @Override
   public void update(final DoublesSketch sketchIn) {
-    gadget_ = updateLogic(maxK_, gadget_, sketchIn);
+    gadget_ = updateLogic(maxK_, gadget_, sketchIn, random_);
   }
 
   @Override
   public void update(final Memory mem) {
-    gadget_ = updateLogic(maxK_, gadget_, HeapUpdateDoublesSketch.heapifyInstance(mem));
+    gadget_ = updateLogic(maxK_, gadget_, HeapUpdateDoublesSketch.heapifyInstance(mem), random_);
   }
 
   @Override
   public void update(final double dataItem) {
     if (gadget_ == null) {
-      gadget_ = HeapUpdateDoublesSketch.newInstance(maxK_);
+      gadget_ = withRandom(HeapUpdateDoublesSketch.newInstance(maxK_), random_);
     }
     gadget_.update(dataItem);
   }
@@ -136,10 +164,27 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
     gadget_ = null;
   }
 
+  static UpdateDoublesSketch updateLogic(final int myMaxK, final UpdateDoublesSketch myQS,
+                                         final DoublesSketch other) {
+    return updateLogic(myMaxK, myQS, other, null);
+  }
+
+  /**
+   * Returns the given sketch after setting its random source, unless the given random source is
+   * null.
+   * @param sketch the given sketch
+   * @param random the given random source or null for the default of the sketch
+   * @return the given sketch
+   */
+  static UpdateDoublesSketch withRandom(final UpdateDoublesSketch sketch, final Random random) {
+    if (random != null) { sketch.setRandom(random); }
+    return sketch;
+  }
+
   //@formatter:off
   @SuppressWarnings("null")
   static UpdateDoublesSketch updateLogic(final int myMaxK, final UpdateDoublesSketch myQS,
-                                         final DoublesSketch other) {
+                                         final DoublesSketch other, final Random random) {
     int sw1 = ((myQS  == null) ? 0 :  myQS.isEmpty() ? 4 : 8);
     sw1 |=    ((other == null) ? 0 : other.isEmpty() ? 1 : 2);
     int outCase = 0; //0=null, 1=NOOP, 2=copy, 3=merge
@@ -162,7 +207,7 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
       case 2: { //myQS = null,  other = valid; stream or downsample to myMaxK
         assert other != null;
         if (!other.isEstimationMode()) { //other is exact, stream items in
-          ret = HeapUpdateDoublesSketch.newInstance(myMaxK);
+          ret = withRandom(HeapUpdateDoublesSketch.newInstance(myMaxK), random);
           // exact mode, only need copy base buffer
           final DoublesSketchAccessor otherAccessor = DoublesSketchAccessor.wrap(other);
           for (int i = 0; i < otherAccessor.numItems(); ++i) {
@@ -170,9 +215,12 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
           }
         }
         else { //myQS = null, other is est mode
-          ret = (myMaxK < other.getK())
-              ? other.downSampleInternal(other, myMaxK, null) //null mem
-              : DoublesUtil.copyToHeap(other); //copy required because caller has handle
+          if (myMaxK < other.getK()) { //downsample
+            ret = withRandom(HeapUpdateDoublesSketch.newInstance(myMaxK), random);
+            DoublesMergeImpl.downSamplingMergeInto(other, ret);
+          } else { //copy required because caller has handle
+            ret = withRandom(DoublesUtil.copyToHeap(other), random);
+          }
         }
         break;
       }
@@ -197,18 +245,18 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
               if (myQS.isDirect()) {
                 final WritableMemory mem = myQS.getMemory(); //myQS is empty, ok to reconfigure
                 other.putMemory(mem, false); // not compact, but BB ordered
-                ret = DirectUpdateDoublesSketch.wrapInstance(mem);
+                ret = withRandom(DirectUpdateDoublesSketch.wrapInstance(mem), random);
               } else { //myQS is empty and on heap
-                ret = DoublesUtil.copyToHeap(other);
+                ret = withRandom(DoublesUtil.copyToHeap(other), random);
               }
             }
             else { //Not Empty: myQS has data, downsample to tmp
-              final UpdateDoublesSketch tmp = DoublesSketch.builder().setK(other.getK()).build();
+              final DoublesSketchBuilder bldr =
+                  DoublesSketch.builder().setK(other.getK()).setRandom(random);
+              final UpdateDoublesSketch tmp = bldr.build();
 
               DoublesMergeImpl.downSamplingMergeInto(myQS, tmp); //myData -> tmp
-              ret = (myQS.isDirect())
-                  ? DoublesSketch.builder().setK(other.getK()).build(myQS.getMemory())
-                  : DoublesSketch.builder().setK(other.getK()).build();
+              ret = (myQS.isDirect()) ? bldr.build(myQS.getMemory()) : bldr.build();
 
               DoublesMergeImpl.mergeInto(tmp, ret);
               DoublesMergeImpl.mergeInto(other, ret);
@@ -218,7 +266,7 @@ final class DoublesUnionImpl extends DoublesUnionImplR {
         break;
       }
       case 4: { //myQS = null,  other = empty; create empty-heap(myMaxK)
-        ret = HeapUpdateDoublesSketch.newInstance(myMaxK);
+        ret = withRandom(HeapUpdateDoublesSketch.newInstance(myMaxK), random);
         break;
       }
       //default: //This cannot happen and cannot be tested
@@ -7,6 +7,8 @@ package com.yahoo.sketches.quantiles;
 
 import static com.yahoo.sketches.Util.LS;
 
+import java.util.Random;
+
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
@@ -21,6 +23,7 @@ import com.yahoo.sketches.SketchesReadOnlyException;
 class DoublesUnionImplR extends DoublesUnion {
   int maxK_;
   UpdateDoublesSketch gadget_ = null;
+  Random random_ = null; //the random source of new gadgets, null for the default
 
   DoublesUnionImplR(final int maxK) {
     maxK_ = maxK;
@@ -5,6 +5,8 @@
 
 package com.yahoo.sketches.quantiles;
 
+import java.util.Random;
+
 /**
  * The doubles update algorithms for quantiles.
  *
@@ -78,6 +80,7 @@ final class DoublesUpdateImpl {
    * @param doUpdateVersion true if update version
    * @param k the target value of k
    * @param bitPattern the current bitPattern, prior to this call
+   * @param random the random source of the target sketch
    * @return The updated bit pattern.  The updated combined buffer is output as a side effect.
    */
   static long inPlacePropagateCarry(
@@ -87,13 +90,14 @@ final class DoublesUpdateImpl {
           final boolean doUpdateVersion,
           final int k,
           final DoublesSketchAccessor tgtSketchBuf,
-          final long bitPattern
+          final long bitPattern,
+          final Random random
   ) {
     final int endingLevel = Util.lowestZeroBitStartingAt(bitPattern, startingLevel);
     tgtSketchBuf.setLevel(endingLevel);
     if (doUpdateVersion) { // update version of computation
       // its is okay for optSrcKBuf to be null in this case
-      zipSize2KBuffer(size2KBuf, tgtSketchBuf);
+      zipSize2KBuffer(size2KBuf, tgtSketchBuf, random);
     } else { // mergeInto version of computation
       tgtSketchBuf.putArray(optSrcKBuf.getArray(0, k), 0, 0, k);
     }
@@ -105,7 +109,7 @@ final class DoublesUpdateImpl {
               currLevelBuf, // target level: lvl
               tgtSketchBuf, // target level: endingLevel
               size2KBuf);
-      zipSize2KBuffer(size2KBuf, tgtSketchBuf);
+      zipSize2KBuffer(size2KBuf, tgtSketchBuf, random);
     } // end of loop over lower levels
 
     // update bit pattern with binary-arithmetic ripple carry
@@ -114,8 +118,9 @@ final class DoublesUpdateImpl {
 
   private static void zipSize2KBuffer(
           final DoublesBufferAccessor bufIn,
-          final DoublesBufferAccessor bufOut) {
-    final int randomOffset = DoublesSketch.rand.nextBoolean() ? 1 : 0;
+          final DoublesBufferAccessor bufOut,
+          final Random random) {
+    final int randomOffset = random.nextBoolean() ? 1 : 0;
     final int limOut = bufOut.numItems();
     for (int idxIn = randomOffset, idxOut = 0; idxOut < limOut; idxIn += 2, idxOut++) {
       bufOut.set(idxOut, bufIn.get(idxIn));
@@ -152,6 +152,7 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
   @Override
   public void update(final double dataItem) {
     if (Double.isNaN(dataItem)) { return; }
+    invalidateAuxiliary();
     final double maxValue = getMaxValue();
     final double minValue = getMinValue();
 
@@ -172,35 +173,9 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
     combinedBuffer_[curBBCount] = dataItem;
 
     if (newBBCount == k_ << 1) { //Propagate
-
-      // make sure there will be enough space (levels) for the propagation
-      final int spaceNeeded = DoublesUpdateImpl.getRequiredItemCapacity(k_, newN);
-
-      if (spaceNeeded > combBufItemCap) {
-        // copies base buffer plus old levels, adds space for new level
-        growCombinedBuffer(combBufItemCap, spaceNeeded);
-      }
-
-      // sort only the (full) base buffer via accessor which modifies the underlying base buffer,
-      // then use as one of the inputs to propagate-carry
-      final DoublesSketchAccessor bbAccessor = DoublesSketchAccessor.wrap(this, true);
-      bbAccessor.sort();
-
-      final long newBitPattern = DoublesUpdateImpl.inPlacePropagateCarry(
-              0, // starting level
-              null,
-              bbAccessor,
-              true,
-              k_,
-              DoublesSketchAccessor.wrap(this, true),
-              bitPattern_
-      );
-
-      assert newBitPattern == computeBitPattern(k_, newN); // internal consistency check
-      assert newBitPattern == bitPattern_ + 1;
-
-      bitPattern_ = newBitPattern;
-      baseBufferCount_ = 0;
+      // sort only the (full) base buffer, then use as one of the inputs to propagate-carry
+      Arrays.sort(combinedBuffer_, 0, newBBCount);
+      propagateSortedBaseBuffer(newN);
     } else {
       //bitPattern unchanged
       baseBufferCount_ = newBBCount;
@@ -208,6 +183,66 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
     n_ = newN;
   }
 
+  @Override
+  void putItems(final double[] values, final int offset, final int length) {
+    final int twoK = k_ << 1;
+    final int end = offset + length;
+    int srcIdx = offset;
+    while (srcIdx < end) {
+      final int curBBCount = baseBufferCount_;
+      final int count = Math.min(twoK - curBBCount, end - srcIdx);
+      final int newBBCount = curBBCount + count;
+      if (newBBCount > combinedBuffer_.length) {
+        //only a base buffer, grow it by factors of 2 up to 2k
+        final int newSize = Math.min(twoK, Math.max(newBBCount, 2 * combinedBuffer_.length));
+        combinedBuffer_ = Arrays.copyOf(combinedBuffer_, newSize);
+      }
+      System.arraycopy(values, srcIdx, combinedBuffer_, curBBCount, count);
+      srcIdx += count;
+      final long newN = n_ + count;
+      if (newBBCount == twoK) { //Propagate
+        Arrays.sort(combinedBuffer_, 0, twoK);
+        propagateSortedBaseBuffer(newN);
+      } else {
+        baseBufferCount_ = newBBCount;
+      }
+      n_ = newN;
+    }
+  }
+
+  /**
+   * Propagates the full and sorted base buffer into the levels. Sets the bit pattern and empties
+   * the base buffer, but does not set <i>n</i>.
+   * @param newN the value of <i>n</i> including the items of the base buffer
+   */
+  private void propagateSortedBaseBuffer(final long newN) {
+    // make sure there will be enough space (levels) for the propagation
+    final int spaceNeeded = DoublesUpdateImpl.getRequiredItemCapacity(k_, newN);
+    final int combBufItemCap = combinedBuffer_.length;
+
+    if (spaceNeeded > combBufItemCap) {
+      // copies base buffer plus old levels, adds space for new level
+      growCombinedBuffer(combBufItemCap, spaceNeeded);
+    }
+
+    final long newBitPattern = DoublesUpdateImpl.inPlacePropagateCarry(
+            0, // starting level
+            null,
+            DoublesSketchAccessor.wrap(this, true),
+            true,
+            k_,
+            DoublesSketchAccessor.wrap(this, true),
+            bitPattern_,
+            getRandom()
+    );
+
+    assert newBitPattern == computeBitPattern(k_, newN); // internal consistency check
+    assert newBitPattern == bitPattern_ + 1;
+
+    bitPattern_ = newBitPattern;
+    baseBufferCount_ = 0;
+  }
+
   @Override
   public long getN() {
     return n_;
@@ -230,6 +265,7 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
 
   @Override
   public void reset() {
+    invalidateAuxiliary();
     n_ = 0;
     final int combinedBufferItemCapacity = 2 * Math.min(DoublesSketch.MIN_K, k_); //min is important
     combinedBuffer_ = new double[combinedBufferItemCapacity];
@@ -329,11 +365,13 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
 
   @Override
   void putN(final long n) {
+    invalidateAuxiliary();
     n_ = n;
   }
 
   @Override
   void putCombinedBuffer(final double[] combinedBuffer) {
+    invalidateAuxiliary();
     combinedBuffer_ = combinedBuffer;
   }
 
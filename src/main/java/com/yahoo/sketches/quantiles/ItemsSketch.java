@@ -25,6 +25,7 @@ import com.yahoo.memory.WritableMemory;
 
 import com.yahoo.sketches.ArrayOfItemsSerDe;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
 
 /**
  * This is a stochastic streaming sketch that enables near-real time analysis of the
@@ -102,16 +103,23 @@ public final class ItemsSketch<T> {
   Object[] combinedBuffer_;
 
   /**
+   * Seeds the random source of each new sketch that is not given its own.
    * Setting the seed makes the results of the sketch deterministic if the input values are
    * received in exactly the same order. This is only useful when performing test comparisons,
    * otherwise is not recommended.
    */
   public static final Random rand = new Random();
 
-  private ItemsSketch(final int k, final Comparator<? super T> comparator) {
+  /**
+   * The random source that chooses the items that survive each compaction.
+   */
+  final Random random_;
+
+  private ItemsSketch(final int k, final Comparator<? super T> comparator, final Random random) {
     Util.checkK(k);
     k_ = k;
     comparator_ = comparator;
+    random_ = (random == null) ? new SplitMixRandom(rand.nextLong()) : random;
   }
 
   /**
@@ -133,7 +141,24 @@ public final class ItemsSketch<T> {
    * @return a GenericQuantileSketch
    */
   public static <T> ItemsSketch<T> getInstance(final int k, final Comparator<? super T> comparator) {
-    final ItemsSketch<T> qs = new ItemsSketch<T>(k, comparator);
+    return getInstance(k, comparator, null);
+  }
+
+  /**
+   * Obtains a new instance of an ItemsSketch with the given random source, which chooses the
+   * items that survive each compaction. A random source with a fixed seed makes the sketch
+   * deterministic for the same input in the same order.
+   * @param <T> type of item
+   * @param k Parameter that controls space usage of sketch and accuracy of estimates.
+   * Must be greater than 2 and less than 65536 and a power of 2.
+   * @param comparator to compare items
+   * @param random the random source of this sketch. If null, the sketch has its own
+   * {@link SplitMixRandom} seeded from {@link #rand}.
+   * @return a GenericQuantileSketch
+   */
+  public static <T> ItemsSketch<T> getInstance(final int k, final Comparator<? super T> comparator,
+      final Random random) {
+    final ItemsSketch<T> qs = new ItemsSketch<T>(k, comparator, random);
     final int bufAlloc = 2 * Math.min(DoublesSketch.MIN_K, k); //the min is important
     qs.n_ = 0;
     qs.combinedBufferItemCapacity_ = bufAlloc;
@@ -498,7 +523,7 @@ public final class ItemsSketch<T> {
    * @return the new sketch.
    */
   public ItemsSketch<T> downSample(final int newK) {
-    final ItemsSketch<T> newSketch = ItemsSketch.getInstance(newK, comparator_);
+    final ItemsSketch<T> newSketch = ItemsSketch.getInstance(newK, comparator_, random_);
     ItemsMergeImpl.downSamplingMergeInto(this, newSketch);
     return newSketch;
   }
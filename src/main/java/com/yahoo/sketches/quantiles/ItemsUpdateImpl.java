@@ -7,6 +7,7 @@ package com.yahoo.sketches.quantiles;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Random;
 
 final class ItemsUpdateImpl {
 
@@ -52,7 +53,7 @@ final class ItemsUpdateImpl {
       zipSize2KBuffer(
           size2KBuf, size2KStart,
           levelsArr, (2 + endingLevel) * k,
-          k);
+          k, sketch.random_);
     } else { // mergeInto version of computation
       System.arraycopy(
           sizeKBuf, sizeKStart,
@@ -70,7 +71,7 @@ final class ItemsUpdateImpl {
       zipSize2KBuffer(
           size2KBuf, size2KStart,
           levelsArr, (2 + endingLevel) * k,
-          k);
+          k, sketch.random_);
       // to release the discarded objects
       Arrays.fill(levelsArr, (2 + lvl) * k, (2 + lvl + 1) * k, null);
     } // end of loop over lower levels
@@ -79,12 +80,12 @@ final class ItemsUpdateImpl {
     sketch.bitPattern_ = bitPattern + (1L << startingLevel);
   }
 
-  //note: this version refers to the ItemsSketch.rand
+  //note: this version refers to the random source of the sketch
   private static void zipSize2KBuffer(
       final Object[] bufA, final int startA, // input
       final Object[] bufC, final int startC, // output
-      final int k) {
-    final int randomOffset = ItemsSketch.rand.nextBoolean() ? 1 : 0;
+      final int k, final Random random) {
+    final int randomOffset = random.nextBoolean() ? 1 : 0;
     final int limC = startC + k;
     for (int a = startA + randomOffset, c = startC; c < limC; a += 2, c++) {
       bufC[c] = bufA[a];
@@ -7,6 +7,7 @@ package com.yahoo.sketches.quantiles;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
 
 /**
  * @author Jon Malkin
@@ -33,6 +34,59 @@ public abstract class UpdateDoublesSketch extends DoublesSketch {
    */
   public abstract void update(double dataItem);
 
+  /**
+   * Updates this sketch with the given array of double data items. This has the same result as
+   * updating this sketch with each item in turn, but it is faster for large arrays: the items are
+   * copied into the base buffer in bulk, and each full base buffer is sorted and propagated at
+   * once.
+   *
+   * @param dataItems an array of items from a stream of items. NaNs are ignored. If null, this
+   * is a no-op.
+   */
+  public void update(final double[] dataItems) {
+    if (dataItems == null) { return; }
+    update(dataItems, 0, dataItems.length);
+  }
+
+  /**
+   * Updates this sketch with the given range of the given array of double data items.
+   * See {@link #update(double[])}.
+   *
+   * @param dataItems an array of items from a stream of items. NaNs are ignored.
+   * @param offset the index of the first item to update with
+   * @param length the number of items to update with
+   */
+  public void update(final double[] dataItems, final int offset, final int length) {
+    if ((offset < 0) || (length < 0) || (offset > (dataItems.length - length))) {
+      throw new SketchesArgumentException("Invalid range: offset: " + offset + ", length: "
+          + length + ", array length: " + dataItems.length);
+    }
+    double minValue = getMinValue();
+    double maxValue = getMaxValue();
+    int numNaNs = 0;
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      final double item = dataItems[i];
+      if (item < minValue) { minValue = item; }
+      if (item > maxValue) { maxValue = item; }
+      if (item != item) { numNaNs++; } //NaN
+    }
+    if (numNaNs == length) { return; }
+    invalidateAuxiliary();
+    if (numNaNs == 0) {
+      putItems(dataItems, offset, length);
+    } else {
+      final double[] items = new double[length - numNaNs];
+      int count = 0;
+      for (int i = offset; i < end; i++) {
+        if (!Double.isNaN(dataItems[i])) { items[count++] = dataItems[i]; }
+      }
+      putItems(items, 0, count);
+    }
+    putMinValue(minValue);
+    putMaxValue(maxValue);
+  }
+
   /**
    * Resets this sketch to the empty state, but retains the original value of k.
    */
@@ -116,6 +170,16 @@ public abstract class UpdateDoublesSketch extends DoublesSketch {
    */
   abstract void putBitPattern(long bitPattern);
 
+  /**
+   * Appends the given items, which must not be NaN, to the base buffer and propagates each full
+   * base buffer. Updates <i>n</i>, but not the min and max values.
+   *
+   * @param items the given items
+   * @param offset the index of the first item
+   * @param length the number of items
+   */
+  abstract void putItems(double[] items, int offset, int length);
+
   /**
    * Grows the combined buffer to the given spaceNeeded
    *
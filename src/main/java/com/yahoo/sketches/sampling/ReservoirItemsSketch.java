@@ -22,7 +22,10 @@ import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricUBonP
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
@@ -30,8 +33,10 @@ import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.ArrayOfItemsSerDe;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 import com.yahoo.sketches.Util;
 
 /**
@@ -66,6 +71,7 @@ public final class ReservoirItemsSketch<T> {
   private long itemsSeen_;               // number of items presented to sketch
   private final ResizeFactor rf_;        // resize factor
   private ArrayList<T> data_;            // stored sampled items
+  private Random rand_ = new SplitMixRandom(SamplingUtil.rand.nextLong()); // random source
 
   private ReservoirItemsSketch(final int k, final ResizeFactor rf) {
     // required due to a theorem about lightness during merging
@@ -170,6 +176,71 @@ public final class ReservoirItemsSketch<T> {
     return new ReservoirItemsSketch<>(k, rf);
   }
 
+  /**
+   * Construct a sampling sketch with up to k samples using the specified resize factor and the
+   * given random source, which decides the items that enter the sample. A random source with a
+   * fixed seed makes the sketch deterministic for the same input in the same order.
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @param rf  <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param random the random source of this sketch
+   * @param <T> The type of object held in the sketch.
+   * @return A ReservoirItemsSketch initialized with maximum size k, resize factor rf and the given
+   *         random source.
+   */
+  public static <T> ReservoirItemsSketch<T> newInstance(final int k, final ResizeFactor rf,
+      final Random random) {
+    if (random == null) {
+      throw new SketchesArgumentException("random must not be null");
+    }
+    final ReservoirItemsSketch<T> sketch = new ReservoirItemsSketch<>(k, rf);
+    sketch.rand_ = random;
+    return sketch;
+  }
+
+  /**
+   * Returns a Collector that builds a sketch with the given reservoir size from the items of a
+   * Stream, which also works for parallel streams. Each thread updates its own sketch, and the
+   * sketches of the threads are combined by a {@link ReservoirItemsUnion}. Null items are
+   * ignored.
+   *
+   * @param <T> The type of object held in the reservoir.
+   * @param k   Maximum size of the reservoir of each sketch
+   * @return a Collector that builds a sketch with the given reservoir size
+   */
+  public static <T> Collector<T, ?, ReservoirItemsSketch<T>> collector(final int k) {
+    if (k < 2) {
+      throw new SketchesArgumentException("k must be at least 2");
+    }
+    return new SketchCollector<T, ReservoirItemsSketch<T>, ReservoirItemsSketch<T>>() {
+      @Override
+      protected ReservoirItemsSketch<T> newContainer() {
+        return newInstance(k);
+      }
+
+      @Override
+      protected void accumulate(final ReservoirItemsSketch<T> sketch, final T item) {
+        sketch.update(item);
+      }
+
+      @Override
+      protected ReservoirItemsSketch<T> combine(final ReservoirItemsSketch<T> sketch1,
+          final ReservoirItemsSketch<T> sketch2) {
+        final ReservoirItemsUnion<T> union = ReservoirItemsUnion.newInstance(k);
+        union.update(sketch1);
+        union.update(sketch2);
+        return union.getResult();
+      }
+
+      @Override
+      protected ReservoirItemsSketch<T> finish(final ReservoirItemsSketch<T> sketch) {
+        return sketch;
+      }
+    };
+  }
+
   /**
    * Thin wrapper around private constructor
    *
@@ -255,6 +326,14 @@ public final class ReservoirItemsSketch<T> {
     return ris;
   }
 
+  /**
+   * Returns the random source of this sketch
+   * @return the random source of this sketch
+   */
+  Random getRandom() {
+    return rand_;
+  }
+
   /**
    * Returns the sketch's value of <i>k</i>, the maximum number of samples stored in the
    * reservoir. The current number of items in the sketch may be lower.
@@ -310,13 +389,66 @@ public final class ReservoirItemsSketch<T> {
       ++itemsSeen_;
       // prob(keep_item) < k / n = reservoirSize_ / itemsSeen_
       // so multiply to get: keep if rand * itemsSeen_ < reservoirSize_
-      if (SamplingUtil.rand.nextDouble() * itemsSeen_ < reservoirSize_) {
-        final int newSlot = SamplingUtil.rand.nextInt(reservoirSize_);
+      if (rand_.nextDouble() * itemsSeen_ < reservoirSize_) {
+        final int newSlot = rand_.nextInt(reservoirSize_);
         data_.set(newSlot, item);
       }
     }
   }
 
+  /**
+   * Updates this sketch with the given array of items. The resulting sample has the same
+   * distribution as updating this sketch with each item in turn.
+   * See {@link #updateAll(Iterator)}.
+   *
+   * @param items an array of unit-weight items of the set being sampled from. Null items are
+   * ignored. If null, this is a no-op.
+   */
+  public void updateAll(final T[] items) {
+    if (items == null) {
+      return;
+    }
+    updateAll(Arrays.asList(items).iterator());
+  }
+
+  /**
+   * Updates this sketch with the items of the given iterator. The resulting sample has the same
+   * distribution as updating this sketch with each item in turn. Once the reservoir is full,
+   * the number of items to skip before the next accepted item is drawn directly, so rejected
+   * items cost no random draws. Because null items are ignored, the skipped items are still
+   * visited, but only to check them for null.
+   *
+   * @param items an iterator over unit-weight items of the set being sampled from. Null items
+   * are ignored. If null, this is a no-op.
+   */
+  public void updateAll(final Iterator<? extends T> items) {
+    if (items == null) {
+      return;
+    }
+    while (items.hasNext() && (itemsSeen_ < reservoirSize_)) { // initial phase
+      update(items.next());
+    }
+
+    while (items.hasNext()) { // steady state, jump straight to the next accepted item
+      long skip = SamplingUtil.reservoirSkipCount(itemsSeen_, reservoirSize_, rand_);
+      T item;
+      do {
+        do {
+          if (!items.hasNext()) {
+            return;
+          }
+          item = items.next();
+        } while (item == null);
+        if (itemsSeen_ == MAX_ITEMS_SEEN) {
+          throw new SketchesStateException("Sketch has exceeded capacity for total items seen: "
+                  + MAX_ITEMS_SEEN);
+        }
+        ++itemsSeen_;
+      } while (skip-- > 0);
+      data_.set(rand_.nextInt(reservoirSize_), item);
+    }
+  }
+
   /**
    * Resets this sketch to the empty state, but retains the original value of k.
    */
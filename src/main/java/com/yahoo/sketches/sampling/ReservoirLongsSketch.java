@@ -20,14 +20,18 @@ import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricLBonP
 import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricUBonP;
 
 import java.util.Arrays;
+import java.util.Random;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 import com.yahoo.sketches.Util;
 
 /**
@@ -60,6 +64,7 @@ public final class ReservoirLongsSketch {
   private long itemsSeen_;             // number of items presented to sketch
   private final ResizeFactor rf_;      // resize factor
   private long[] data_;                // stored sampling items
+  private Random rand_ = new SplitMixRandom(SamplingUtil.rand.nextLong()); // random source
 
   /**
    * The basic constructor for building an empty sketch.
@@ -168,6 +173,72 @@ public final class ReservoirLongsSketch {
     return new ReservoirLongsSketch(k, rf);
   }
 
+  /**
+   * Construct a sampling sketch with up to k samples using the specified resize factor and the
+   * given random source, which decides the items that enter the sample. A random source with a
+   * fixed seed makes the sketch deterministic for the same input in the same order.
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @param rf  <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param random the random source of this sketch
+   * @return A ReservoirLongsSketch initialized with maximum size k, resize factor rf and the given
+   *         random source.
+   */
+  public static ReservoirLongsSketch newInstance(final int k, final ResizeFactor rf,
+      final Random random) {
+    if (random == null) {
+      throw new SketchesArgumentException("random must not be null");
+    }
+    final ReservoirLongsSketch sketch = new ReservoirLongsSketch(k, rf);
+    sketch.rand_ = random;
+    return sketch;
+  }
+
+  /**
+   * Returns a Collector that builds a sketch with the given reservoir size from the items of a
+   * Stream, which also works for parallel streams. Each thread updates its own sketch, and the
+   * sketches of the threads are combined by a {@link ReservoirLongsUnion}. Null items are
+   * ignored. A LongStream can be collected after
+   * {@link java.util.stream.LongStream#boxed() boxed()}.
+   *
+   * @param k Maximum size of the reservoir of each sketch
+   * @return a Collector that builds a sketch with the given reservoir size
+   */
+  public static Collector<Long, ?, ReservoirLongsSketch> collector(final int k) {
+    if (k < 2) {
+      throw new SketchesArgumentException("k must be at least 2");
+    }
+    return new SketchCollector<Long, ReservoirLongsSketch, ReservoirLongsSketch>() {
+      @Override
+      protected ReservoirLongsSketch newContainer() {
+        return newInstance(k);
+      }
+
+      @Override
+      protected void accumulate(final ReservoirLongsSketch sketch, final Long item) {
+        if (item != null) {
+          sketch.update(item);
+        }
+      }
+
+      @Override
+      protected ReservoirLongsSketch combine(final ReservoirLongsSketch sketch1,
+          final ReservoirLongsSketch sketch2) {
+        final ReservoirLongsUnion union = ReservoirLongsUnion.newInstance(k);
+        union.update(sketch1);
+        union.update(sketch2);
+        return union.getResult();
+      }
+
+      @Override
+      protected ReservoirLongsSketch finish(final ReservoirLongsSketch sketch) {
+        return sketch;
+      }
+    };
+  }
+
   /**
    * Returns a sketch instance of this class from the given srcMem, which must be a Memory
    * representation of this sketch class.
@@ -243,6 +314,14 @@ public final class ReservoirLongsSketch {
     return new ReservoirLongsSketch(data, itemsSeen, rf, k);
   }
 
+  /**
+   * Returns the random source of this sketch
+   * @return the random source of this sketch
+   */
+  Random getRandom() {
+    return rand_;
+  }
+
   /**
    * Returns the sketch's value of <i>k</i>, the maximum number of samples stored in the reservoir.
    * The current number of items in the sketch may be lower.
@@ -309,13 +388,65 @@ public final class ReservoirLongsSketch {
       ++itemsSeen_;
       // prob(keep_item) < k / n = reservoirSize_ / itemsSeen_
       // so multiply to get: keep if rand * itemsSeen_ < reservoirSize_
-      if (SamplingUtil.rand.nextDouble() * itemsSeen_ < reservoirSize_) {
-        final int newSlot = SamplingUtil.rand.nextInt(reservoirSize_);
+      if (rand_.nextDouble() * itemsSeen_ < reservoirSize_) {
+        final int newSlot = rand_.nextInt(reservoirSize_);
         data_[newSlot] = item;
       }
     }
   }
 
+  /**
+   * Updates this sketch with the given array of items. The resulting sample has the same
+   * distribution as updating this sketch with each item in turn. Once the reservoir is full,
+   * the number of items to skip before the next accepted item is drawn directly, so rejected
+   * items are never read and cost no random draws.
+   *
+   * @param items an array of unit-weight items of the set being sampled from. If null, this is
+   * a no-op.
+   */
+  public void update(final long[] items) {
+    if (items == null) {
+      return;
+    }
+    update(items, 0, items.length);
+  }
+
+  /**
+   * Updates this sketch with the given range of the given array of items.
+   * See {@link #update(long[])}.
+   *
+   * @param items an array of unit-weight items of the set being sampled from
+   * @param offset the index of the first item to update with
+   * @param length the number of items to update with
+   */
+  public void update(final long[] items, final int offset, final int length) {
+    if ((offset < 0) || (length < 0) || (offset > (items.length - length))) {
+      throw new SketchesArgumentException("Invalid range: offset: " + offset + ", length: "
+          + length + ", array length: " + items.length);
+    }
+    if (itemsSeen_ > (MAX_ITEMS_SEEN - length)) {
+      throw new SketchesStateException(
+          "Sketch has exceeded capacity for total items seen: " + MAX_ITEMS_SEEN);
+    }
+
+    final int end = offset + length;
+    int i = offset;
+    while ((i < end) && (itemsSeen_ < reservoirSize_)) { // initial phase
+      update(items[i++]);
+    }
+
+    while (i < end) { // steady state, jump straight to the next accepted item
+      final long skip = SamplingUtil.reservoirSkipCount(itemsSeen_, reservoirSize_, rand_);
+      if (skip >= (end - i)) {
+        itemsSeen_ += end - i;
+        return;
+      }
+      i += (int) skip;
+      itemsSeen_ += skip + 1;
+      data_[rand_.nextInt(reservoirSize_)] = items[i++];
+    }
+  }
+
   /**
    * Resets this sketch to the empty state, but retains the original value of k.
    */
@@ -22,6 +22,15 @@ final class SamplingUtil {
    */
   private static final double DEFAULT_KAPPA = 2.0;
 
+  /**
+   * Above this multiple of the reservoir size, reservoirSkipCount() switches from the sequential
+   * search of Vitter's Algorithm X to the rejection method of Algorithm Z
+   */
+  private static final int SKIP_ALGORITHM_Z_THRESHOLD = 22;
+
+  /**
+   * Seeds the random source of each new sampling sketch that is not given its own.
+   */
   public static final Random rand = new Random();
 
   private SamplingUtil() {}
@@ -41,14 +50,83 @@ final class SamplingUtil {
     return resizeTarget;
   }
 
-  static double nextDoubleExcludeZero() {
-    double r = rand.nextDouble();
+  static double nextDoubleExcludeZero(final Random random) {
+    double r = random.nextDouble();
     while (r == 0.0) {
-      r = rand.nextDouble();
+      r = random.nextDouble();
     }
     return r;
   }
 
+  /**
+   * Returns the number of items that a full reservoir of size k, which has seen n items, rejects
+   * before it accepts the next one. This is the same distribution as drawing a random number for
+   * each item and accepting the item with probability k / (items seen), but the cost does not
+   * grow with the number of rejected items once n is large compared to k.
+   *
+   * <p>Uses Algorithm X for n &le; 22k and Algorithm Z otherwise, from J. S. Vitter,
+   * "Random Sampling with a Reservoir", ACM Transactions on Mathematical Software, 1985.</p>
+   *
+   * @param n the number of items seen so far, at least k
+   * @param k the reservoir size
+   * @param random the random source
+   * @return the number of items to skip before the next accepted item
+   */
+  static long reservoirSkipCount(final long n, final int k, final Random random) {
+    assert n >= k;
+    if (n <= ((long) SKIP_ALGORITHM_Z_THRESHOLD * k)) {
+      // Algorithm X: find the smallest s with Prob(skip > s) <= v, one term at a time
+      final double v = random.nextDouble();
+      long s = 0;
+      long t = n + 1;
+      double quot = (double) (t - k) / t;
+      while (quot > v) {
+        ++s;
+        ++t;
+        quot *= (double) (t - k) / t;
+      }
+      return s;
+    }
+
+    // Algorithm Z: rejection sampling with an envelope from the continuous approximation
+    final double dn = n;
+    final double term = dn - k + 1;
+    final double quickScale = ((dn + 1) / term) * ((dn + 1) / term);
+    double w = Math.exp(-Math.log(nextDoubleExcludeZero(random)) / k);
+    while (true) {
+      final double u = random.nextDouble();
+      final double x = dn * (w - 1.0);
+      final long s = (long) x;
+
+      // quick acceptance test, u <= h(s) / cg(x)
+      final double lhs = Math.exp(Math.log(((u * quickScale) * (term + s)) / (dn + x)) / k);
+      final double rhs = (((dn + x) / (term + s)) * term) / dn;
+      if (lhs <= rhs) {
+        return s;
+      }
+
+      // full acceptance test, u <= f(s) / cg(x)
+      double y = (((u * (dn + 1)) / term) * (dn + s + 1)) / (dn + x);
+      double denom;
+      final double numerLimit;
+      if (k < s) {
+        denom = dn;
+        numerLimit = term + s;
+      } else {
+        denom = (dn - k) + s;
+        numerLimit = dn + 1;
+      }
+      for (double numer = dn + s; numer >= numerLimit; --numer) {
+        y = (y * numer) / denom;
+        --denom;
+      }
+      if (Math.exp(Math.log(y) / k) <= ((dn + x) / dn)) {
+        return s;
+      }
+      w = Math.exp(-Math.log(nextDoubleExcludeZero(random)) / k);
+    }
+  }
+
   static int startingSubMultiple(final int lgTarget, final int lgRf, final int lgMin) {
     return (lgTarget <= lgMin)
             ? lgMin : (lgRf == 0) ? lgTarget
@@ -24,9 +24,8 @@ import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricLBonP
 import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricUBonP;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Random;
 import java.util.function.Predicate;
 
 import com.yahoo.memory.Memory;
@@ -38,6 +37,7 @@ import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 import com.yahoo.sketches.Util;
 
 /**
@@ -69,8 +69,9 @@ public final class VarOptItemsSketch<T> {
   private int k_;                        // max size of sketch, in items
   private int currItemsAlloc_;           // currently allocated array size
   private final ResizeFactor rf_;        // resize factor
-  private ArrayList<T> data_;            // stored sampled items
-  private ArrayList<Double> weights_;    // weights for sampled items
+  private Object[] data_;                // stored sampled items
+  private double[] weights_;             // weights for sampled items
+  private Random rand_ = new SplitMixRandom(SamplingUtil.rand.nextLong()); // random source
 
   private long n_;                       // total number of items processed by the sketch
   private int h_;                        // number of items in heap
@@ -94,7 +95,7 @@ public final class VarOptItemsSketch<T> {
   // [although it really belongs in the unioning object]. If the array were to be made explicit,
   // some additional coding would need to be done to ensure that all of the necessary data motion
   // occurs and is properly tracked.
-  private ArrayList<Boolean> marks_;
+  private boolean[] marks_;
 
   // used to return a shallow copy of the sketch's samples to a VarOptItemsSamples, as arrays
   // with any null value stripped and the R region weight computed
@@ -128,13 +129,13 @@ public final class VarOptItemsSketch<T> {
       ++currItemsAlloc_;
     }
 
-    data_ = new ArrayList<>(currItemsAlloc_);
-    weights_ = new ArrayList<>(currItemsAlloc_);
+    data_ = new Object[currItemsAlloc_];
+    weights_ = new double[currItemsAlloc_];
     marks_ = null;
   }
 
-  private VarOptItemsSketch(final ArrayList<T> dataList,
-                            final ArrayList<Double> weightList,
+  private VarOptItemsSketch(final Object[] dataArr,
+                            final double[] weightArr,
                             final int k,
                             final long n,
                             final int currItemsAlloc,
@@ -142,15 +143,15 @@ public final class VarOptItemsSketch<T> {
                             final int hCount,
                             final int rCount,
                             final double totalWtR) {
-    assert dataList != null;
-    assert weightList != null;
-    assert dataList.size() == weightList.size();
-    assert currItemsAlloc >= dataList.size();
+    assert dataArr != null;
+    assert weightArr != null;
+    assert dataArr.length == weightArr.length;
+    assert currItemsAlloc == dataArr.length;
     assert k >= 2;
     assert n >= 0;
     assert hCount >= 0;
     assert rCount >= 0;
-    assert (rCount == 0 && dataList.size() == hCount) || (rCount > 0 && dataList.size() == k + 1);
+    assert (rCount == 0 && currItemsAlloc >= hCount) || (rCount > 0 && currItemsAlloc >= k + 1);
 
     k_ = k;
     n_ = n;
@@ -160,8 +161,8 @@ public final class VarOptItemsSketch<T> {
     totalWtR_ = totalWtR;
     currItemsAlloc_ = currItemsAlloc;
     rf_ = rf;
-    data_ = dataList;
-    weights_ = weightList;
+    data_ = dataArr;
+    weights_ = weightArr;
 
     numMarksInH_ = 0;
     marks_ = null;
@@ -194,6 +195,30 @@ public final class VarOptItemsSketch<T> {
     return new VarOptItemsSketch<>(k, rf);
   }
 
+  /**
+   * Construct a sampling sketch with up to k samples using the specified resize factor and the
+   * given random source, which decides the items that enter the sample. A random source with a
+   * fixed seed makes the sketch deterministic for the same input in the same order.
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @param rf  <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param random the random source of this sketch
+   * @param <T> The type of object held in the sketch.
+   * @return A VarOptItemsSketch initialized with maximum size k, resize factor rf and the given
+   *         random source.
+   */
+  public static <T> VarOptItemsSketch<T> newInstance(final int k, final ResizeFactor rf,
+      final Random random) {
+    if (random == null) {
+      throw new SketchesArgumentException("random must not be null");
+    }
+    final VarOptItemsSketch<T> sketch = new VarOptItemsSketch<>(k, rf);
+    sketch.rand_ = random;
+    return sketch;
+  }
+
   /**
    * Construct a varopt sketch for use as a unioning gadget, meaning the array of marked elements
    * is also initialized.
@@ -206,7 +231,7 @@ public final class VarOptItemsSketch<T> {
    */
   static <T> VarOptItemsSketch<T> newInstanceAsGadget(final int k) {
     final VarOptItemsSketch<T> sketch = new VarOptItemsSketch<>(k, DEFAULT_RESIZE_FACTOR);
-    sketch.marks_ = new ArrayList<>(sketch.currItemsAlloc_);
+    sketch.marks_ = new boolean[sketch.currItemsAlloc_];
     return sketch;
   }
 
@@ -214,7 +239,7 @@ public final class VarOptItemsSketch<T> {
    * Construct a varopt sketch as the output of a union's getResult() method. Because this method
    * is package-private, we do not perform checks on the input values.
    *
-   * <p>Assumes dataList.size() is the correct allocated size but does not check.</p>
+   * <p>Assumes dataArr.length is the correct allocated size but does not check.</p>
    *
    * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
    *            Unlike many sketches in this package, this value does <em>not</em> need to be a
@@ -222,15 +247,15 @@ public final class VarOptItemsSketch<T> {
    * @param <T> The type of object held in the sketch.
    * @return A VarOptItemsSketch initialized with maximum size k and a valid array of marks.
    */
-  static <T> VarOptItemsSketch<T> newInstanceFromUnionResult(final ArrayList<T> dataList,
-                                                             final ArrayList<Double> weightList,
+  static <T> VarOptItemsSketch<T> newInstanceFromUnionResult(final Object[] dataArr,
+                                                             final double[] weightArr,
                                                              final int k,
                                                              final long n,
                                                              final int hCount,
                                                              final int rCount,
                                                              final double totalWtR) {
-    final VarOptItemsSketch<T> sketch =  new VarOptItemsSketch<>(dataList, weightList, k, n,
-            dataList.size(), DEFAULT_RESIZE_FACTOR, hCount, rCount, totalWtR);
+    final VarOptItemsSketch<T> sketch =  new VarOptItemsSketch<>(dataArr, weightArr, k, n,
+            dataArr.length, DEFAULT_RESIZE_FACTOR, hCount, rCount, totalWtR);
     sketch.convertToHeap();
     return sketch;
   }
@@ -333,71 +358,70 @@ public final class VarOptItemsSketch<T> {
       }
     }
 
-    // allocate full-sized ArrayLists, but we store only hCount weights at any moment
+    // allocate full-sized arrays, but we store only hCount weights at any moment
     final long weightOffsetBytes = TOTAL_WEIGHT_R_DOUBLE + (rCount > 0 ? Double.BYTES : 0);
-    final ArrayList<Double> weightList = new ArrayList<>(allocatedItems);
     final double[] wts = new double[allocatedItems];
     srcMem.getDoubleArray(weightOffsetBytes, wts, 0, hCount);
-    // can't use Arrays.asList(wts) since double[] rather than Double[]
     for (int i = 0; i < hCount; ++ i) {
       if (wts[i] <= 0.0) {
       throw new SketchesArgumentException("Possible Corruption: "
               + "Non-positive weight in heapify(): " + wts[i]);
       }
-      weightList.add(wts[i]);
     }
 
     // marks, if we have a gadget
     long markBytes = 0;
     int markCount = 0;
-    ArrayList<Boolean> markList = null;
+    boolean[] marks = null;
     if (isGadget) {
       final long markOffsetBytes = preLongBytes + (hCount * Double.BYTES);
       markBytes = ArrayOfBooleansSerDe.computeBytesNeeded(hCount);
-      markList = new ArrayList<>(allocatedItems);
+      marks = new boolean[allocatedItems];
 
-      final ArrayOfBooleansSerDe booleansSerDe = new ArrayOfBooleansSerDe();
-      final Boolean[] markArray = booleansSerDe.deserializeFromMemory(
+      final Boolean[] markArray = MARK_SERDE.deserializeFromMemory(
               srcMem.region(markOffsetBytes, (hCount >>> 3) + 1), hCount);
 
-      for (Boolean mark : markArray) {
-        if (mark) { ++markCount; }
+      for (int i = 0; i < hCount; ++i) {
+        if (markArray[i]) {
+          marks[i] = true;
+          ++markCount;
+        }
       }
-      markList.addAll(Arrays.asList(markArray));
     }
 
     final long offsetBytes = preLongBytes + (hCount * Double.BYTES) + markBytes;
     final T[] data = serDe.deserializeFromMemory(
             srcMem.region(offsetBytes, srcMem.getCapacity() - offsetBytes), totalItems);
-    final List<T> wrappedData = Arrays.asList(data);
-    final ArrayList<T> dataList = new ArrayList<>(allocatedItems);
-    dataList.addAll(wrappedData.subList(0, hCount));
+    final Object[] dataArr = new Object[allocatedItems];
+    System.arraycopy(data, 0, dataArr, 0, hCount);
 
     // Load items in R as needed
     if (rCount > 0) {
-      weightList.add(-1.0); // the gap
-      if (isGadget) { markList.add(false); } // the gap
-      for (int i = 0; i < rCount; ++i) {
-        weightList.add(-1.0);
-        if (isGadget) { markList.add(false); }
-      }
-
-      dataList.add(null); // the gap
-      dataList.addAll(wrappedData.subList(hCount, totalItems));
+      // the gap, at index hCount, stays null
+      Arrays.fill(wts, hCount, hCount + 1 + rCount, -1.0);
+      System.arraycopy(data, hCount, dataArr, hCount + 1, rCount);
     }
 
     final VarOptItemsSketch<T> sketch =
-            new VarOptItemsSketch<>(dataList, weightList, k, n,
+            new VarOptItemsSketch<>(dataArr, wts, k, n,
                     allocatedItems, rf, hCount, rCount, totalRWeight);
 
     if (isGadget) {
-      sketch.marks_ = markList;
+      sketch.marks_ = marks;
       sketch.numMarksInH_ = markCount;
     }
 
     return sketch;
   }
 
+  /**
+   * Returns the random source of this sketch
+   * @return the random source of this sketch
+   */
+  Random getRandom() {
+    return rand_;
+  }
+
   /**
    * Returns the sketch's value of <i>k</i>, the maximum number of samples stored in the
    * sketch. The current number of items in the sketch may be lower.
@@ -454,10 +478,13 @@ public final class VarOptItemsSketch<T> {
             SamplingUtil.startingSubMultiple(ceilingLgK, rf_.lg(), MIN_LG_ARR_ITEMS);
 
     currItemsAlloc_ = SamplingUtil.getAdjustedSize(k_, 1 << initialLgSize);
-    data_    = new ArrayList<>(currItemsAlloc_);
-    weights_ = new ArrayList<>(currItemsAlloc_);
+    if (currItemsAlloc_ == k_) {
+      ++currItemsAlloc_;
+    }
+    data_    = new Object[currItemsAlloc_];
+    weights_ = new double[currItemsAlloc_];
     if (marks_ != null) {
-      marks_ = new ArrayList<>(currItemsAlloc_);
+      marks_ = new boolean[currItemsAlloc_];
     }
 
     n_ = 0;
@@ -504,7 +531,7 @@ public final class VarOptItemsSketch<T> {
       return toByteArray(serDe, null);
     } else {
       final int validIndex = (h_ == 0 ? 1 : 0);
-      final Class<?> clazz = data_.get(validIndex).getClass();
+      final Class<?> clazz = data_[validIndex].getClass();
       return toByteArray(serDe, clazz);
     }
   }
@@ -558,15 +585,16 @@ public final class VarOptItemsSketch<T> {
 
       // write the first h_ weights
       int offset = preLongs << 3;
-      for (int i = 0; i < h_; ++i) {
-        mem.putDouble(offset, weights_.get(i));
-        offset += Double.BYTES;
-      }
+      mem.putDoubleArray(offset, weights_, 0, h_);
+      offset += h_ * Double.BYTES;
 
       // write the first h_ marks, iff we have a gadget
       if (marks_ != null) {
-        final byte[] markBytes;
-        markBytes = MARK_SERDE.serializeToByteArray(marks_.subList(0, h_).toArray(new Boolean[0]));
+        final Boolean[] hMarks = new Boolean[h_];
+        for (int i = 0; i < h_; ++i) {
+          hMarks[i] = marks_[i];
+        }
+        final byte[] markBytes = MARK_SERDE.serializeToByteArray(hMarks);
         mem.putByteArray(offset, markBytes, 0, markBytes.length);
         offset += markBytes.length;
       }
@@ -599,9 +627,9 @@ public final class VarOptItemsSketch<T> {
     double hTrueWeight = 0.0;
     int idx = 0;
     for (; idx < h_; ++idx) {
-      final double wt = weights_.get(idx);
+      final double wt = weights_[idx];
       totalWtH += wt;
-      if (predicate.test(data_.get(idx))) {
+      if (predicate.test(getItem(idx))) {
         hTrueWeight += wt;
       }
     }
@@ -620,7 +648,7 @@ public final class VarOptItemsSketch<T> {
     int rTrueCount = 0;
     ++idx; // skip the gap
     for (; idx < k_ + 1; ++idx) {
-      if (predicate.test(data_.get(idx))) {
+      if (predicate.test(getItem(idx))) {
         ++rTrueCount;
       }
     }
@@ -647,7 +675,7 @@ public final class VarOptItemsSketch<T> {
     }
 
     final int validIndex = (h_ == 0 ? 1 : 0);
-    final Class<?> clazz = data_.get(validIndex).getClass();
+    final Class<?> clazz = data_[validIndex].getClass();
     return getSamplesAsArrays(clazz);
   }
 
@@ -661,12 +689,12 @@ public final class VarOptItemsSketch<T> {
    */
   VarOptItemsSketch<T> copyAndSetN(final boolean asSketch, final long adjustedN) {
     final VarOptItemsSketch<T> sketch;
-    sketch = new VarOptItemsSketch<>(data_, weights_, k_,n_,
+    sketch = new VarOptItemsSketch<>(data_.clone(), weights_.clone(), k_, n_,
             currItemsAlloc_, rf_, h_, r_, totalWtR_);
 
-    if (!asSketch) {
-      sketch.marks_ = this.marks_;
-      sketch.numMarksInH_ = this.numMarksInH_;
+    if (!asSketch && (marks_ != null)) {
+      sketch.marks_ = marks_.clone();
+      sketch.numMarksInH_ = numMarksInH_;
     }
 
     if (adjustedN >= 0) {
@@ -703,17 +731,16 @@ public final class VarOptItemsSketch<T> {
       return null;
     }
 
-    // are Array.asList(data_.subList()) copies better?
     final int numSamples = getNumSamples();
     final T[] prunedItems = (T[]) Array.newInstance(clazz, numSamples);
     final double[] prunedWeights = new double[numSamples];
     int j = 0;
     final double rWeight = totalWtR_ / r_;
     for (int i = 0; j < numSamples; ++i) {
-      final T item = data_.get(i);
+      final T item = (T) data_[i];
       if (item != null) {
         prunedItems[j] = item;
-        prunedWeights[j] = (weights_.get(i) > 0 ? weights_.get(i) : rWeight);
+        prunedWeights[j] = (weights_[i] > 0 ? weights_[i] : rWeight);
         ++j;
       }
     }
@@ -727,21 +754,35 @@ public final class VarOptItemsSketch<T> {
 
   // package-private getters
 
-  // package-private: Relies on ArrayList for bounds checking and assumes caller knows how to handle
-  // a null from the middle of the list
+  // package-private: Checks that idx is in the used part of the array and assumes caller knows
+  // how to handle a null from the middle of the array
+  @SuppressWarnings("unchecked")
   T getItem(final int idx) {
-    return data_.get(idx);
+    checkSlot(idx);
+    return (T) data_[idx];
   }
 
-  // package-private: Relies on ArrayList for bounds checking and assumes caller knows how to handle
-  // a negative value (whether from the null in the middle or an R-region item)
+  // package-private: Checks that idx is in the used part of the array and assumes caller knows
+  // how to handle a negative value (whether from the gap in the middle or an R-region item)
   double getWeight(final int idx) {
-    return weights_.get(idx);
+    checkSlot(idx);
+    return weights_[idx];
   }
 
-  // package-private: Relies on ArrayList for bounds checking and assumes caller knows how to
-  // handle a null from the middle of the list.
-  boolean getMark(final int idx) { return marks_.get(idx); }
+  // package-private: Checks that idx is in the used part of the array and assumes caller knows
+  // how to handle the gap in the middle of the array.
+  boolean getMark(final int idx) {
+    checkSlot(idx);
+    return marks_[idx];
+  }
+
+  // the used part of the arrays is H in warmup mode, else H, the gap or M, and R
+  private void checkSlot(final int idx) {
+    final int numSlots = (r_ == 0) ? h_ : k_ + 1;
+    if ((idx < 0) || (idx >= numSlots)) {
+      throw new IndexOutOfBoundsException("Index: " + idx + ", used slots: " + numSlots);
+    }
+  }
 
   int getHRegionCount() {
     return h_;
@@ -849,12 +890,12 @@ public final class VarOptItemsSketch<T> {
       // the push() of the item that will probably happen later will be cheap.
 
       final int pulledIdx = h_ - 1;
-      final T pulledItem = data_.get(pulledIdx);
-      final double pulledWeight = weights_.get(pulledIdx);
-      final boolean pulledMark = marks_.get(pulledIdx);
+      final T pulledItem = getItem(pulledIdx);
+      final double pulledWeight = weights_[pulledIdx];
+      final boolean pulledMark = marks_[pulledIdx];
 
       if (pulledMark) { --numMarksInH_; }
-      weights_.set(pulledIdx, -1.0); // to make bugs easier to spot
+      weights_[pulledIdx] = -1.0; // to make bugs easier to spot
 
       --h_;
       --k_;
@@ -865,10 +906,10 @@ public final class VarOptItemsSketch<T> {
       // pure reservoir mode, so can simply eject a randomly chosen sample from the reservoir
       assert r_ >= 2;
 
-      final int rIdxToDelete = 1 + SamplingUtil.rand.nextInt(r_); // 1 for the gap
+      final int rIdxToDelete = 1 + rand_.nextInt(r_); // 1 for the gap
       final int rightmostRIdx = (1 + r_) - 1;
       swapValues(rIdxToDelete, rightmostRIdx);
-      weights_.set(rightmostRIdx, -1.0);
+      weights_[rightmostRIdx] = -1.0;
 
       --k_;
       --r_;
@@ -884,9 +925,9 @@ public final class VarOptItemsSketch<T> {
     assert r_ + h_ == k_;
 
     final int mSlot = h_; // index of the gap, which becomes the M region
-    data_.set(mSlot, item);
-    weights_.set(mSlot, weight);
-    if (marks_ != null) { marks_.set(mSlot, mark); }
+    data_[mSlot] = item;
+    weights_[mSlot] = weight;
+    if (marks_ != null) { marks_[mSlot] = mark; }
     ++m_;
 
     growCandidateSet(totalWtR_ + weight, r_ + 1);
@@ -925,7 +966,7 @@ public final class VarOptItemsSketch<T> {
     // Any set of two items is downsample-able to one item,
     // so the two lightest items are a valid starting point for the following
     final int mSlot = k_ - 1; // array is k+1, 1 in R, so slot before is M
-    growCandidateSet(weights_.get(mSlot) + totalWtR_, 2);
+    growCandidateSet(weights_[mSlot] + totalWtR_, 2);
   }
 
   private void updateWarmupPhase(final T item, final double wt, final boolean mark) {
@@ -938,9 +979,9 @@ public final class VarOptItemsSketch<T> {
     }
 
     // store items as they come in, until full
-    data_.add(h_, item);
-    weights_.add(h_, wt);
-    if (marks_ != null) { marks_.add(h_, mark); }
+    data_[h_] = item;
+    weights_[h_] = wt;
+    if (marks_ != null) { marks_[h_] = mark; }
     ++h_;
     numMarksInH_ += mark ? 1 : 0;
 
@@ -965,12 +1006,12 @@ public final class VarOptItemsSketch<T> {
 
     // Update total weight in R then, having grabbed the value, overwrite in
     // weight_ array to help make bugs more obvious
-    totalWtR_ = weights_.get(k_); // only one item, known location
-    weights_.set(k_, -1.0);
+    totalWtR_ = weights_[k_]; // only one item, known location
+    weights_[k_] = -1.0;
 
     // The two lightest items are necessarily downsample-able to one item, and are therefore a
     // valid initial candidate set.
-    growCandidateSet(weights_.get(k_ - 1) + totalWtR_, 2);
+    growCandidateSet(weights_[k_ - 1] + totalWtR_, 2);
   }
 
   /* Validates the heap condition for the weight array */
@@ -978,7 +1019,7 @@ public final class VarOptItemsSketch<T> {
   private void validateHeap() {
     for (int j = h_ - 1; j >= 1; --j) {
       final int p = ((j + 1) / 2) - 1;
-      assert weights_.get(p) <= weights_.get(j);
+      assert weights_[p] <= weights_[j];
     }
   }
   */
@@ -1012,12 +1053,12 @@ public final class VarOptItemsSketch<T> {
 
     while (child <= lastSlot) {
       final int child2 = child + 1; // might also be invalid
-      if (child2 <= lastSlot && weights_.get(child2) < weights_.get(child)) {
+      if (child2 <= lastSlot && weights_[child2] < weights_[child]) {
         // switch to other child if it's both valid and smaller
         child = child2;
       }
 
-      if (weights_.get(slot) <= weights_.get(child)) {
+      if (weights_[slot] <= weights_[child]) {
         // invariant holds so we're done
         break;
       }
@@ -1033,7 +1074,7 @@ public final class VarOptItemsSketch<T> {
   private void restoreTowardsRoot(final int slotIn) {
     int slot = slotIn;
     int p = (((slot + 1) / 2) - 1); // valid if slot >= 1
-    while (slot > 0 && weights_.get(slot) < weights_.get(p)) {
+    while (slot > 0 && weights_[slot] < weights_[p]) {
       swapValues(slot, p);
       slot = p;
       p = (((slot + 1) / 2) - 1); // valid if slot >= 1
@@ -1041,10 +1082,10 @@ public final class VarOptItemsSketch<T> {
   }
 
   private void push(final T item, final double wt, final boolean mark) {
-    data_.set(h_, item);
-    weights_.set(h_, wt);
+    data_[h_] = item;
+    weights_[h_] = wt;
     if (marks_ != null) {
-      marks_.set(h_, mark);
+      marks_[h_] = mark;
       numMarksInH_ += (mark ? 1 : 0);
     }
     ++h_;
@@ -1054,7 +1095,7 @@ public final class VarOptItemsSketch<T> {
 
   private double peekMin() {
     assert h_ > 0;
-    return weights_.get(0);
+    return weights_[0];
   }
 
   private void popMinToMRegion() {
@@ -1119,7 +1160,7 @@ public final class VarOptItemsSketch<T> {
     if (r_ == 1) {
       return offset;
     } else {
-      return offset + SamplingUtil.rand.nextInt(r_);
+      return offset + rand_.nextInt(r_);
     }
   }
 
@@ -1132,8 +1173,8 @@ public final class VarOptItemsSketch<T> {
     } else if (m_ == 1) {
       // check if we keep the item in M or pick one from R
       // p(keep) = (numCand - 1) * wt_M / wt_cand
-      final double wtMCand = weights_.get(h_); // slot of item in M is h_
-      if (wtCand * SamplingUtil.nextDoubleExcludeZero() < (numCand - 1) * wtMCand) {
+      final double wtMCand = weights_[h_]; // slot of item in M is h_
+      if (wtCand * SamplingUtil.nextDoubleExcludeZero(rand_) < (numCand - 1) * wtMCand) {
         return pickRandomSlotInR(); // keep item in M
       } else {
         return h_; // index of item in M
@@ -1158,10 +1199,10 @@ public final class VarOptItemsSketch<T> {
     final int numToKeep = numCand - 1;
 
     double leftSubtotal = 0.0;
-    double rightSubtotal = -1.0 * wtCand * SamplingUtil.nextDoubleExcludeZero();
+    double rightSubtotal = -1.0 * wtCand * SamplingUtil.nextDoubleExcludeZero(rand_);
 
     for (int i = offset; i <= finalM; ++i) {
-      leftSubtotal += numToKeep * weights_.get(i);
+      leftSubtotal += numToKeep * weights_[i];
       rightSubtotal += wtCand;
 
       if (leftSubtotal < rightSubtotal) {
@@ -1186,12 +1227,12 @@ public final class VarOptItemsSketch<T> {
     // overwrite weights for items from M moving into R, to make bugs more obvious
     final int stopIdx = leftmostCandSlot + m_;
     for (int j = leftmostCandSlot; j < stopIdx; ++j) {
-      weights_.set(j, -1.0);
+      weights_[j] = -1.0;
     }
 
     // The next two lines work even when deleteSlot == leftmostCandSlot
-    data_.set(deleteSlot, data_.get(leftmostCandSlot));
-    data_.set(leftmostCandSlot, null);
+    data_[deleteSlot] = data_[leftmostCandSlot];
+    data_[leftmostCandSlot] = null;
 
     m_ = 0;
     r_ = numCands - 1;
@@ -1200,23 +1241,23 @@ public final class VarOptItemsSketch<T> {
 
   /* swap values of data_, weights_, and marks between src and dst indices */
   private void swapValues(final int src, final int dst) {
-    final T item = data_.get(src);
-    data_.set(src, data_.get(dst));
-    data_.set(dst, item);
+    final Object item = data_[src];
+    data_[src] = data_[dst];
+    data_[dst] = item;
 
-    final Double wt = weights_.get(src);
-    weights_.set(src, weights_.get(dst));
-    weights_.set(dst, wt);
+    final double wt = weights_[src];
+    weights_[src] = weights_[dst];
+    weights_[dst] = wt;
 
     if (marks_ != null) {
-      final Boolean mark = marks_.get(src);
-      marks_.set(src, marks_.get(dst));
-      marks_.set(dst, mark);
+      final boolean mark = marks_[src];
+      marks_[src] = marks_[dst];
+      marks_[dst] = mark;
     }
   }
 
   private boolean isMarked(final int idx) {
-    return marks_ != null ? marks_.get(idx) : false;
+    return marks_ != null ? marks_[idx] : false;
   }
 
   /**
@@ -1234,12 +1275,13 @@ public final class VarOptItemsSketch<T> {
   private T[] getDataSamples(final Class<?> clazz) {
     assert h_ + r_ > 0;
 
-    // are 2 Array.asList(data_.subList()) copies better?
-    final T[] prunedList = (T[]) Array.newInstance(clazz, getNumSamples());
-    int i = 0;
-    for (T item : data_) {
+    final int numSamples = getNumSamples();
+    final T[] prunedList = (T[]) Array.newInstance(clazz, numSamples);
+    int j = 0;
+    for (int i = 0; j < numSamples; ++i) {
+      final T item = (T) data_[i];
       if (item != null) {
-        prunedList[i++] = item;
+        prunedList[j++] = item;
       }
     }
     return prunedList;
@@ -1256,10 +1298,10 @@ public final class VarOptItemsSketch<T> {
       ++currItemsAlloc_;
     }
 
-    data_.ensureCapacity(currItemsAlloc_);
-    weights_.ensureCapacity(currItemsAlloc_);
+    data_ = Arrays.copyOf(data_, currItemsAlloc_);
+    weights_ = Arrays.copyOf(weights_, currItemsAlloc_);
     if (marks_ != null) {
-      marks_.ensureCapacity(currItemsAlloc_);
+      marks_ = Arrays.copyOf(marks_, currItemsAlloc_);
     }
   }
 }
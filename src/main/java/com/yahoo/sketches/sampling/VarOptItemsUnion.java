@@ -483,15 +483,9 @@ public final class VarOptItemsUnion<T> {
     int resultR = 0;
     int nextRPos = resultK; // = (resultK+1)-1, to fill R region from back to front
 
-    final ArrayList<T> data         = new ArrayList<>(resultK + 1);
-    final ArrayList<Double> weights = new ArrayList<>(resultK + 1);
-
-    // Need arrays filled to use set() and be able to fill from end forward.
-    // Ideally would create as arrays but trying to avoid forcing user to pass a Class<?>
-    for (int i = 0; i < (resultK + 1); ++i) {
-      data.add(null);
-      weights.add(null);
-    }
+    // Object[] rather than T[] to avoid forcing user to pass a Class<?>
+    final Object[] data    = new Object[resultK + 1];
+    final double[] weights = new double[resultK + 1];
 
     final VarOptItemsSamples<T> sketchSamples = gadget_.getSketchSamples();
     // insert R region items, ignoring weights
@@ -502,8 +496,8 @@ public final class VarOptItemsUnion<T> {
     sketchIterator = sketchSamples.getRIterator();
     while (sketchIterator.hasNext()) {
       final VarOptItemsSamples<T>.WeightedSample ws = sketchIterator.next();
-      data.set(nextRPos, ws.getItem());
-      weights.set(nextRPos, -1.0);
+      data[nextRPos] = ws.getItem();
+      weights[nextRPos] = -1.0;
       ++resultR;
       --nextRPos;
     }
@@ -514,14 +508,14 @@ public final class VarOptItemsUnion<T> {
     while (sketchIterator.hasNext()) {
       final VarOptItemsSamples<T>.WeightedSample ws = sketchIterator.next();
       if (ws.getMark()) {
-        data.set(nextRPos, ws.getItem());
-        weights.set(nextRPos, -1.0);
+        data[nextRPos] = ws.getItem();
+        weights[nextRPos] = -1.0;
         transferredWeight += ws.getWeight();
         ++resultR;
         --nextRPos;
       } else {
-        data.set(resultH, ws.getItem());
-        weights.set(resultH, ws.getWeight());
+        data[resultH] = ws.getItem();
+        weights[resultH] = ws.getWeight();
         ++resultH;
       }
     }
@@ -533,8 +527,8 @@ public final class VarOptItemsUnion<T> {
     final long resultN = n_;
 
     // explicitly set values for the gap
-    data.set(resultH, null);
-    weights.set(resultH, -1.0);
+    data[resultH] = null;
+    weights[resultH] = -1.0;
 
     // create sketch with the new values
     return newInstanceFromUnionResult(data, weights, resultK, resultN, resultH, resultR, resultRWeight);
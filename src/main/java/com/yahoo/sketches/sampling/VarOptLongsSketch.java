@@ -0,0 +1,866 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.sampling;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.sampling.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.sampling.PreambleUtil.GADGET_FLAG_MASK;
+import static com.yahoo.sketches.sampling.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.sampling.PreambleUtil.TOTAL_WEIGHT_R_DOUBLE;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractFamilyID;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractFlags;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractHRegionItemCount;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractK;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractN;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractRRegionItemCount;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractResizeFactor;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractSerVer;
+import static com.yahoo.sketches.sampling.PreambleUtil.extractTotalRWeight;
+import static com.yahoo.sketches.sampling.PreambleUtil.getAndCheckPreLongs;
+import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricLBonP;
+import static com.yahoo.sketches.sampling.SamplingUtil.pseudoHypergeometricUBonP;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongPredicate;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
+import com.yahoo.sketches.Util;
+
+/**
+ * This sketch provides a variance optimal sample over an input stream of weighted <tt>long</tt>s.
+ * It is the same algorithm as {@link VarOptItemsSketch}, but the items and weights are kept in
+ * primitive arrays, so an update never allocates an object.
+ *
+ * <p>The serialized form is the same as that of a <tt>VarOptItemsSketch&lt;Long&gt;</tt> with an
+ * {@link com.yahoo.sketches.ArrayOfLongsSerDe ArrayOfLongsSerDe}. So a serialized
+ * VarOptLongsSketch can be given to a {@link VarOptItemsUnion} or heapified as a
+ * VarOptItemsSketch, and the result of a union can be heapified as a VarOptLongsSketch.</p>
+ */
+public final class VarOptLongsSketch {
+  /**
+   * The smallest sampling array allocated: 16
+   */
+  private static final int MIN_LG_ARR_ITEMS = 4;
+
+  /**
+   * Default sampling size multiple when reallocating storage: 8
+   */
+  private static final ResizeFactor DEFAULT_RESIZE_FACTOR = ResizeFactor.X8;
+
+  private final int k_;                  // max size of sketch, in items
+  private int currItemsAlloc_;           // currently allocated array size
+  private final ResizeFactor rf_;        // resize factor
+  private long[] data_;                  // stored sampled items
+  private double[] weights_;             // weights for sampled items
+  private Random rand_ = new SplitMixRandom(SamplingUtil.rand.nextLong()); // random source
+
+  private long n_;                       // total number of items processed by the sketch
+  private int h_;                        // number of items in heap
+  private int m_;                        // number of items in middle region
+  private int r_;                        // number of items in reservoir-like area
+  private double totalWtR_;              // total weight of items in reservoir-like area
+
+  private VarOptLongsSketch(final int k, final ResizeFactor rf) {
+    // required due to a theorem about lightness during merging
+    if (k < 1) {
+      throw new SketchesArgumentException("k must be at least 1");
+    }
+
+    k_ = k;
+    rf_ = rf;
+    allocate();
+  }
+
+  /**
+   * Construct a varopt sampling sketch with up to k samples using the default resize factor (8).
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @return A VarOptLongsSketch initialized with maximum size k and the default resize factor.
+   */
+  public static VarOptLongsSketch newInstance(final int k) {
+    return new VarOptLongsSketch(k, DEFAULT_RESIZE_FACTOR);
+  }
+
+  /**
+   * Construct a varopt sampling sketch with up to k samples using the specified resize factor.
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @param rf  <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @return A VarOptLongsSketch initialized with maximum size k and resize factor rf.
+   */
+  public static VarOptLongsSketch newInstance(final int k, final ResizeFactor rf) {
+    return new VarOptLongsSketch(k, rf);
+  }
+
+  /**
+   * Construct a varopt sampling sketch with up to k samples using the specified resize factor
+   * and the given random source. A random source with a fixed seed makes the sketch
+   * deterministic for the same input in the same order.
+   *
+   * @param k   Maximum size of sampling. Allocated size may be smaller until sketch fills.
+   *            Unlike many sketches in this package, this value does <em>not</em> need to be a
+   *            power of 2.
+   * @param rf  <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param random the random source of this sketch
+   * @return A VarOptLongsSketch initialized with maximum size k, resize factor rf and the given
+   *         random source.
+   */
+  public static VarOptLongsSketch newInstance(final int k, final ResizeFactor rf,
+      final Random random) {
+    if (random == null) {
+      throw new SketchesArgumentException("random must not be null");
+    }
+    final VarOptLongsSketch sketch = new VarOptLongsSketch(k, rf);
+    sketch.rand_ = random;
+    return sketch;
+  }
+
+  /**
+   * Returns a sketch instance of this class from the given srcMem, which must be a Memory
+   * representation of a VarOptLongsSketch or of a VarOptItemsSketch&lt;Long&gt; serialized with
+   * an ArrayOfLongsSerDe. Images of a union gadget are not supported.
+   *
+   * @param srcMem a Memory representation of a sketch of this class.
+   *               <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a sketch instance of this class
+   */
+  public static VarOptLongsSketch heapify(final Memory srcMem) {
+    final int numPreLongs = getAndCheckPreLongs(srcMem);
+    final ResizeFactor rf = ResizeFactor.getRF(extractResizeFactor(srcMem));
+    final int serVer = extractSerVer(srcMem);
+    final int familyId = extractFamilyID(srcMem);
+    final int flags = extractFlags(srcMem);
+    final boolean isEmpty = (flags & EMPTY_FLAG_MASK) != 0;
+
+    // Check values
+    if (numPreLongs != Family.VAROPT.getMinPreLongs()
+            && numPreLongs != Family.VAROPT.getMaxPreLongs()
+            && numPreLongs != PreambleUtil.VO_WARMUP_PRELONGS) {
+      throw new SketchesArgumentException(
+              "Possible corruption: Must have " + Family.VAROPT.getMinPreLongs()
+                      + ", " + PreambleUtil.VO_WARMUP_PRELONGS + ", or "
+                      + Family.VAROPT.getMaxPreLongs() + " preLongs. Found: " + numPreLongs);
+    }
+    if (serVer != SER_VER) {
+      throw new SketchesArgumentException(
+              "Possible Corruption: Ser Ver must be " + SER_VER + ": " + serVer);
+    }
+    final int reqFamilyId = Family.VAROPT.getID();
+    if (familyId != reqFamilyId) {
+      throw new SketchesArgumentException(
+              "Possible Corruption: FamilyID must be " + reqFamilyId + ": " + familyId);
+    }
+    if ((flags & GADGET_FLAG_MASK) != 0) {
+      throw new SketchesArgumentException("Union gadget images are not supported");
+    }
+
+    final int k = extractK(srcMem);
+    if (k < 1) {
+      throw new SketchesArgumentException("Possible Corruption: k must be at least 1: " + k);
+    }
+
+    final VarOptLongsSketch sketch = new VarOptLongsSketch(k, rf);
+    if (isEmpty) {
+      assert numPreLongs == Family.VAROPT.getMinPreLongs();
+      return sketch;
+    }
+
+    final long n = extractN(srcMem);
+    if (n < 0) {
+      throw new SketchesArgumentException("Possible Corruption: n cannot be negative: " + n);
+    }
+
+    // get rest of preamble
+    final int hCount = extractHRegionItemCount(srcMem);
+    final int rCount = extractRRegionItemCount(srcMem);
+
+    if (hCount < 0) {
+      throw new SketchesArgumentException("Possible Corruption: H region count cannot be "
+              + "negative: " + hCount);
+    }
+    if (rCount < 0) {
+      throw new SketchesArgumentException("Possible Corruption: R region count cannot be "
+              + "negative: " + rCount);
+    }
+    if ((rCount == 0 && hCount > k) || (rCount > 0 && hCount + rCount != k)) {
+      throw new SketchesArgumentException("Possible Corruption: H region count: " + hCount
+              + " and R region count: " + rCount + " do not match k: " + k);
+    }
+
+    double totalRWeight = 0.0;
+    if (numPreLongs == Family.VAROPT.getMaxPreLongs()) {
+      if (rCount > 0) {
+        totalRWeight = extractTotalRWeight(srcMem);
+      } else {
+        throw new SketchesArgumentException(
+                "Possible Corruption: "
+                        + Family.VAROPT.getMaxPreLongs() + " preLongs but no items in R region");
+      }
+    }
+
+    int allocatedItems = k + 1; // default to full
+    if (rCount == 0) {
+      // Not in sampling mode, so determine size to allocate, using ceilingLog2(hCount) as minimum
+      final int ceilingLgK = Util.toLog2(Util.ceilingPowerOf2(k), "heapify");
+      final int minLgSize = Util.toLog2(Util.ceilingPowerOf2(hCount), "heapify");
+      final int initialLgSize = SamplingUtil.startingSubMultiple(ceilingLgK, rf.lg(),
+              Math.max(minLgSize, MIN_LG_ARR_ITEMS));
+
+      allocatedItems = SamplingUtil.getAdjustedSize(k, 1 << initialLgSize);
+      if (allocatedItems == k) {
+        ++allocatedItems;
+      }
+    }
+
+    final int preLongBytes = numPreLongs << 3;
+    final long weightOffsetBytes = TOTAL_WEIGHT_R_DOUBLE + (rCount > 0 ? Double.BYTES : 0);
+    assert weightOffsetBytes == preLongBytes;
+    final long itemsOffsetBytes = preLongBytes + ((long) hCount * Double.BYTES);
+    final long reqBytes = itemsOffsetBytes + ((long) (hCount + rCount) * Long.BYTES);
+    if (srcMem.getCapacity() < reqBytes) {
+      throw new SketchesArgumentException("Possible Corruption: Memory capacity too small: "
+              + srcMem.getCapacity() + " < " + reqBytes);
+    }
+
+    final double[] weights = new double[allocatedItems];
+    srcMem.getDoubleArray(weightOffsetBytes, weights, 0, hCount);
+    for (int i = 0; i < hCount; ++i) {
+      if (weights[i] <= 0.0) {
+        throw new SketchesArgumentException("Possible Corruption: "
+                + "Non-positive weight in heapify(): " + weights[i]);
+      }
+    }
+
+    final long[] data = new long[allocatedItems];
+    srcMem.getLongArray(itemsOffsetBytes, data, 0, hCount);
+    if (rCount > 0) {
+      // the gap is at index hCount
+      Arrays.fill(weights, hCount, hCount + 1 + rCount, -1.0);
+      srcMem.getLongArray(itemsOffsetBytes + ((long) hCount * Long.BYTES), data, hCount + 1,
+              rCount);
+    }
+
+    sketch.currItemsAlloc_ = allocatedItems;
+    sketch.data_ = data;
+    sketch.weights_ = weights;
+    sketch.n_ = n;
+    sketch.h_ = hCount;
+    sketch.r_ = rCount;
+    sketch.totalWtR_ = totalRWeight;
+    return sketch;
+  }
+
+  /**
+   * Returns the sketch's value of <i>k</i>, the maximum number of samples stored in the
+   * sketch. The current number of items in the sketch may be lower.
+   *
+   * @return k, the maximum number of samples in the sketch
+   */
+  public int getK() {
+    return k_;
+  }
+
+  /**
+   * Returns the number of items processed from the input stream
+   *
+   * @return n, the number of stream items the sketch has seen
+   */
+  public long getN() {
+    return n_;
+  }
+
+  /**
+   * Returns the current number of items in the sketch, which may be smaller than the
+   * sketch capacity.
+   *
+   * @return the number of items currently in the sketch
+   */
+  public int getNumSamples() {
+    return Math.min(k_, h_ + r_);
+  }
+
+  /**
+   * Returns a copy of the sampled items, or null if the sketch is empty. The items of the H
+   * region come first, followed by the items of the R region.
+   *
+   * @return a copy of the sampled items
+   */
+  public long[] getSamples() {
+    if (h_ + r_ == 0) {
+      return null;
+    }
+    final long[] samples = new long[getNumSamples()];
+    System.arraycopy(data_, 0, samples, 0, h_);
+    if (r_ > 0) {
+      System.arraycopy(data_, h_ + 1, samples, h_, r_); // skip the gap
+    }
+    return samples;
+  }
+
+  /**
+   * Returns a copy of the (adjusted) weights of the sampled items, in the same order as
+   * {@link #getSamples()}, or null if the sketch is empty. Each item of the R region has the
+   * weight <i>tau</i>, the total weight of the R region divided by the number of its items.
+   *
+   * @return a copy of the weights of the sampled items
+   */
+  public double[] getWeights() {
+    if (h_ + r_ == 0) {
+      return null;
+    }
+    final double[] weights = new double[getNumSamples()];
+    System.arraycopy(weights_, 0, weights, 0, h_);
+    if (r_ > 0) {
+      Arrays.fill(weights, h_, h_ + r_, totalWtR_ / r_);
+    }
+    return weights;
+  }
+
+  /**
+   * Randomly decide whether or not to include an item in the sample set.
+   *
+   * @param item an item of the set being sampled from
+   * @param weight a strictly positive weight associated with the item
+   */
+  public void update(final long item, final double weight) {
+    if (weight <= 0.0) {
+      throw new SketchesArgumentException("Item weights must be strictly positive: "
+              + weight + ", for item " + item);
+    }
+    ++n_;
+
+    if (r_ == 0) {
+      // exact mode
+      updateWarmupPhase(item, weight);
+    } else {
+      // sketch is in estimation mode, so we can make the following check
+      assert h_ == 0 || peekMin() >= getTau();
+
+      // what tau would be if deletion candidates turn out to be R plus the new item
+      // note: (r_ + 1) - 1 is intentional
+      final double hypotheticalTau = (weight + totalWtR_) / ((r_ + 1) - 1);
+
+      // is new item's turn to be considered for reservoir?
+      final boolean condition1 = h_ == 0 || weight <= peekMin();
+
+      // is new item light enough for reservoir?
+      final boolean condition2 = weight < hypotheticalTau;
+
+      if (condition1 && condition2) {
+        updateLight(item, weight);
+      } else if (r_ == 1) {
+        updateHeavyREq1(item, weight);
+      } else {
+        updateHeavyGeneral(item, weight);
+      }
+    }
+  }
+
+  /**
+   * Resets this sketch to the empty state, but retains the original value of k.
+   */
+  public void reset() {
+    allocate();
+  }
+
+  /**
+   * Returns a human-readable summary of the sketch.
+   *
+   * @return A string version of the sketch summary
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+
+    final String thisSimpleName = this.getClass().getSimpleName();
+
+    sb.append(LS);
+    sb.append("### ").append(thisSimpleName).append(" SUMMARY: ").append(LS);
+    sb.append("   k            : ").append(k_).append(LS);
+    sb.append("   h            : ").append(h_).append(LS);
+    sb.append("   r            : ").append(r_).append(LS);
+    sb.append("   weight_r     : ").append(totalWtR_).append(LS);
+    sb.append("   Current size : ").append(currItemsAlloc_).append(LS);
+    sb.append("   Resize factor: ").append(rf_).append(LS);
+    sb.append("### END SKETCH SUMMARY").append(LS);
+
+    return sb.toString();
+  }
+
+  /**
+   * Returns a byte array representation of this sketch.
+   *
+   * @return a byte array representation of this sketch
+   */
+  public byte[] toByteArray() {
+    final int preLongs, outBytes;
+    final boolean empty = r_ == 0 && h_ == 0;
+    int flags = 0;
+
+    if (empty) {
+      preLongs = Family.VAROPT.getMinPreLongs();
+      outBytes = Family.VAROPT.getMinPreLongs() << 3; // only contains the minimum header info
+      flags |= EMPTY_FLAG_MASK;
+    } else {
+      preLongs = (r_ == 0 ? PreambleUtil.VO_WARMUP_PRELONGS : Family.VAROPT.getMaxPreLongs());
+      outBytes = (preLongs << 3) + (h_ * Double.BYTES) + ((h_ + r_) * Long.BYTES);
+    }
+    final byte[] outArr = new byte[outBytes];
+    final WritableMemory mem = WritableMemory.wrap(outArr);
+
+    final Object memObj = mem.getArray(); // may be null
+    final long memAddr = mem.getCumulativeOffset(0L);
+
+    // build first preLong
+    PreambleUtil.insertPreLongs(memObj, memAddr, preLongs);               // Byte 0
+    PreambleUtil.insertLgResizeFactor(memObj, memAddr, rf_.lg());
+    PreambleUtil.insertSerVer(memObj, memAddr, SER_VER);                  // Byte 1
+    PreambleUtil.insertFamilyID(memObj, memAddr, Family.VAROPT.getID());  // Byte 2
+    PreambleUtil.insertFlags(memObj, memAddr, flags);                     // Byte 3
+    PreambleUtil.insertK(memObj, memAddr, k_);                            // Bytes 4-7
+    PreambleUtil.insertN(memObj, memAddr, n_);                            // Bytes 8-15
+
+    if (!empty) {
+      PreambleUtil.insertHRegionItemCount(memObj, memAddr, h_);           // Bytes 16-19
+      PreambleUtil.insertRRegionItemCount(memObj, memAddr, r_);           // Bytes 20-23
+      if (r_ > 0) {
+        PreambleUtil.insertTotalRWeight(memObj, memAddr, totalWtR_);      // Bytes 24-31
+      }
+
+      // write the first h_ weights
+      long offset = preLongs << 3;
+      mem.putDoubleArray(offset, weights_, 0, h_);
+      offset += h_ * Double.BYTES;
+
+      // write the sample items, H region then R region, skipping the gap
+      mem.putLongArray(offset, data_, 0, h_);
+      offset += h_ * Long.BYTES;
+      if (r_ > 0) {
+        mem.putLongArray(offset, data_, h_ + 1, r_);
+      }
+    }
+
+    return outArr;
+  }
+
+  /**
+   * Computes an estimated subset sum from the entire stream for objects matching a given
+   * predicate. Provides a lower bound, estimate, and upper bound using a target of 2 standard
+   * deviations.
+   *
+   * <p>This is technically a heuristic method, and tries to err on the conservative side.</p>
+   *
+   * @param predicate A predicate to use when identifying items.
+   * @return A summary object containing the estimate, upper and lower bounds, and the total
+   * sketch weight.
+   */
+  public SampleSubsetSummary estimateSubsetSum(final LongPredicate predicate) {
+    if (n_ == 0) {
+      return new SampleSubsetSummary(0.0, 0.0, 0.0, 0.0);
+    }
+
+    double totalWtH = 0.0;
+    double hTrueWeight = 0.0;
+    int idx = 0;
+    for (; idx < h_; ++idx) {
+      final double wt = weights_[idx];
+      totalWtH += wt;
+      if (predicate.test(data_[idx])) {
+        hTrueWeight += wt;
+      }
+    }
+
+    // if only heavy items, we have an exact answer
+    if (r_ == 0) {
+      return new SampleSubsetSummary(hTrueWeight, hTrueWeight, hTrueWeight, hTrueWeight);
+    }
+
+    final long numSampled = n_ - h_;
+    assert numSampled > 0;
+    final double effectiveSamplingRate = r_ / (double) numSampled;
+    assert effectiveSamplingRate >= 0.0;
+    assert effectiveSamplingRate <= 1.0;
+
+    int rTrueCount = 0;
+    ++idx; // skip the gap
+    for (; idx < k_ + 1; ++idx) {
+      if (predicate.test(data_[idx])) {
+        ++rTrueCount;
+      }
+    }
+
+    final double lbTrueFraction = pseudoHypergeometricLBonP(r_, rTrueCount, effectiveSamplingRate);
+    final double estimatedTrueFraction = (1.0 * rTrueCount) / r_;
+    final double ubTrueFraction = pseudoHypergeometricUBonP(r_, rTrueCount, effectiveSamplingRate);
+    return new SampleSubsetSummary(
+            hTrueWeight + totalWtR_ * lbTrueFraction,
+            hTrueWeight + totalWtR_ * estimatedTrueFraction,
+            hTrueWeight + totalWtR_ * ubTrueFraction,
+            totalWtH + totalWtR_);
+  }
+
+  // package-private getters
+
+  int getHRegionCount() {
+    return h_;
+  }
+
+  int getRRegionCount() { return r_; }
+
+  double getTau() {
+    return r_ == 0 ? Double.NaN : (totalWtR_ / r_);
+  }
+
+  double getTotalWtR() {
+    return totalWtR_;
+  }
+
+  /**
+   * Returns the random source of this sketch
+   * @return the random source of this sketch
+   */
+  Random getRandom() {
+    return rand_;
+  }
+
+  private void allocate() {
+    final int ceilingLgK = Util.toLog2(Util.ceilingPowerOf2(k_), "VarOptLongsSketch");
+    final int initialLgSize =
+            SamplingUtil.startingSubMultiple(ceilingLgK, rf_.lg(), MIN_LG_ARR_ITEMS);
+
+    currItemsAlloc_ = SamplingUtil.getAdjustedSize(k_, 1 << initialLgSize);
+    if (currItemsAlloc_ == k_) {
+      ++currItemsAlloc_;
+    }
+
+    data_ = new long[currItemsAlloc_];
+    weights_ = new double[currItemsAlloc_];
+
+    n_ = 0;
+    h_ = 0;
+    m_ = 0;
+    r_ = 0;
+    totalWtR_ = 0.0;
+  }
+
+  /* In the "light" case the new item has weight <= old_tau, so
+     would appear to the right of the R items in a hypothetical reverse-sorted
+     list. It is easy to prove that it is light enough to be part of this
+     round's downsampling */
+  private void updateLight(final long item, final double weight) {
+    assert r_ >= 1;
+    assert r_ + h_ == k_;
+
+    final int mSlot = h_; // index of the gap, which becomes the M region
+    data_[mSlot] = item;
+    weights_[mSlot] = weight;
+    ++m_;
+
+    growCandidateSet(totalWtR_ + weight, r_ + 1);
+  }
+
+  /* In the "heavy" case the new item has weight > old_tau, so would
+     appear to the left of items in R in a hypothetical reverse-sorted list and
+     might or might not be light enough be part of this round's downsampling.
+     See VarOptItemsSketch for why the new item is always put into the H heap. */
+  private void updateHeavyGeneral(final long item, final double weight) {
+    assert m_ == 0;
+    assert r_ >= 2;
+    assert r_ + h_ == k_;
+
+    // put into H, although may come back out momentarily
+    push(item, weight);
+
+    growCandidateSet(totalWtR_, r_);
+  }
+
+  /* Since R < 2, we must grab an M item to have a valid starting point for
+     growCandidateSet() */
+  private void updateHeavyREq1(final long item, final double weight) {
+    assert m_ == 0;
+    assert r_ == 1;
+    assert r_ + h_ == k_;
+
+    push(item, weight);  // new item into H
+    popMinToMRegion();   // pop lightest back into M
+
+    // Any set of two items is downsample-able to one item,
+    // so the two lightest items are a valid starting point for the following
+    final int mSlot = k_ - 1; // array is k+1, 1 in R, so slot before is M
+    growCandidateSet(weights_[mSlot] + totalWtR_, 2);
+  }
+
+  private void updateWarmupPhase(final long item, final double wt) {
+    assert r_ == 0;
+    assert m_ == 0;
+    assert h_ <= k_;
+
+    if (h_ >= currItemsAlloc_) {
+      growDataArrays();
+    }
+
+    // store items as they come in, until full
+    data_[h_] = item;
+    weights_[h_] = wt;
+    ++h_;
+
+    // check if need to heapify
+    if (h_ > k_) {
+      transitionFromWarmup();
+    }
+  }
+
+  private void transitionFromWarmup() {
+    // Move 2 lightest items from H to M
+    // But the lighter really belongs in R, so update counts to reflect that
+    convertToHeap();
+    popMinToMRegion();
+    popMinToMRegion();
+    --m_;
+    ++r_;
+
+    assert h_ == k_ - 1;
+    assert m_ == 1;
+    assert r_ == 1;
+
+    // Update total weight in R then, having grabbed the value, overwrite in
+    // weight_ array to help make bugs more obvious
+    totalWtR_ = weights_[k_]; // only one item, known location
+    weights_[k_] = -1.0;
+
+    // The two lightest items are necessarily downsample-able to one item, and are therefore a
+    // valid initial candidate set.
+    growCandidateSet(weights_[k_ - 1] + totalWtR_, 2);
+  }
+
+  /* Converts the data_ and weights_ arrays to heaps. */
+  private void convertToHeap() {
+    if (h_ < 2) {
+      return; // nothing to do
+    }
+
+    final int lastSlot = h_ - 1;
+    final int lastNonLeaf = ((lastSlot + 1) / 2) - 1;
+
+    for (int j = lastNonLeaf; j >= 0; --j) {
+      restoreTowardsLeaves(j);
+    }
+  }
+
+  private void restoreTowardsLeaves(final int slotIn) {
+    assert h_ > 0;
+    final int lastSlot = h_ - 1;
+    assert slotIn <= lastSlot;
+
+    int slot = slotIn;
+    int child = 2 * slotIn + 1; // might be invalid, need to check
+
+    while (child <= lastSlot) {
+      final int child2 = child + 1; // might also be invalid
+      if (child2 <= lastSlot && weights_[child2] < weights_[child]) {
+        // switch to other child if it's both valid and smaller
+        child = child2;
+      }
+
+      if (weights_[slot] <= weights_[child]) {
+        // invariant holds so we're done
+        break;
+      }
+
+      // swap and continue
+      swapValues(slot, child);
+
+      slot = child;
+      child = 2 * slot + 1; // might be invalid, checked on next loop
+    }
+  }
+
+  private void restoreTowardsRoot(final int slotIn) {
+    int slot = slotIn;
+    int p = (((slot + 1) / 2) - 1); // valid if slot >= 1
+    while (slot > 0 && weights_[slot] < weights_[p]) {
+      swapValues(slot, p);
+      slot = p;
+      p = (((slot + 1) / 2) - 1); // valid if slot >= 1
+    }
+  }
+
+  private void push(final long item, final double wt) {
+    data_[h_] = item;
+    weights_[h_] = wt;
+    ++h_;
+
+    restoreTowardsRoot(h_ - 1); // need use old h_, but want accurate h_
+  }
+
+  private double peekMin() {
+    assert h_ > 0;
+    return weights_[0];
+  }
+
+  private void popMinToMRegion() {
+    assert h_ > 0;
+    assert h_ + m_ + r_ == k_ + 1;
+
+    if (h_ == 1) {
+      // just update bookkeeping
+      ++m_;
+      --h_;
+    } else {
+      // main case
+      final int tgt = h_ - 1; // last slot, will swap with root
+      swapValues(0, tgt);
+      ++m_;
+      --h_;
+
+      restoreTowardsLeaves(0);
+    }
+  }
+
+  /* See VarOptItemsSketch.growCandidateSet() */
+  private void growCandidateSet(double wtCands, int numCands) {
+    assert h_ + m_ + r_ == k_ + 1;
+    assert numCands >= 2;       // essential
+    assert numCands == m_ + r_; // essential
+    assert m_ == 0 || m_ == 1;
+
+    while (h_ > 0) {
+      final double nextWt = peekMin();
+      final double nextTotWt = wtCands + nextWt;
+
+      // test for strict lightness of next prospect (denominator multiplied through)
+      if (nextWt * numCands < nextTotWt) {
+        wtCands = nextTotWt;
+        ++numCands;
+        popMinToMRegion(); // adjusts h_ and m_
+      } else {
+        break;
+      }
+    }
+
+    downsampleCandidateSet(wtCands, numCands);
+  }
+
+  private int pickRandomSlotInR() {
+    assert r_ > 0;
+    final int offset = h_ + m_;
+    if (r_ == 1) {
+      return offset;
+    } else {
+      return offset + rand_.nextInt(r_);
+    }
+  }
+
+  private int chooseDeleteSlot(final double wtCand, final int numCand) {
+    assert r_ > 0;
+
+    if (m_ == 0) {
+      // this happens if we insert a really heavy item
+      return pickRandomSlotInR();
+    } else if (m_ == 1) {
+      // check if we keep the item in M or pick one from R
+      // p(keep) = (numCand - 1) * wt_M / wt_cand
+      final double wtMCand = weights_[h_]; // slot of item in M is h_
+      if (wtCand * SamplingUtil.nextDoubleExcludeZero(rand_) < (numCand - 1) * wtMCand) {
+        return pickRandomSlotInR(); // keep item in M
+      } else {
+        return h_; // index of item in M
+      }
+    } else {
+      // general case
+      final int deleteSlot = chooseWeightedDeleteSlot(wtCand, numCand);
+      final int firstRSlot = h_ + m_;
+      if (deleteSlot == firstRSlot) {
+        return pickRandomSlotInR();
+      } else {
+        return deleteSlot;
+      }
+    }
+  }
+
+  private int chooseWeightedDeleteSlot(final double wtCand, final int numCand) {
+    assert m_ >= 1;
+
+    final int offset = h_;
+    final int finalM = offset + m_ - 1;
+    final int numToKeep = numCand - 1;
+
+    double leftSubtotal = 0.0;
+    double rightSubtotal = -1.0 * wtCand * SamplingUtil.nextDoubleExcludeZero(rand_);
+
+    for (int i = offset; i <= finalM; ++i) {
+      leftSubtotal += numToKeep * weights_[i];
+      rightSubtotal += wtCand;
+
+      if (leftSubtotal < rightSubtotal) {
+        return i;
+      }
+    }
+
+    // this slot tells caller that we need to delete out of R
+    return finalM + 1;
+  }
+
+  private void downsampleCandidateSet(final double wtCands, final int numCands) {
+    assert numCands >= 2;
+    assert h_ + numCands == k_ + 1;
+
+    // need this before overwriting anything
+    final int deleteSlot = chooseDeleteSlot(wtCands, numCands);
+    final int leftmostCandSlot = h_;
+    assert deleteSlot >= leftmostCandSlot;
+    assert deleteSlot <= k_;
+
+    // overwrite weights for items from M moving into R, to make bugs more obvious
+    final int stopIdx = leftmostCandSlot + m_;
+    for (int j = leftmostCandSlot; j < stopIdx; ++j) {
+      weights_[j] = -1.0;
+    }
+
+    // The next line works even when deleteSlot == leftmostCandSlot. The leftmost candidate slot
+    // becomes the gap.
+    data_[deleteSlot] = data_[leftmostCandSlot];
+
+    m_ = 0;
+    r_ = numCands - 1;
+    totalWtR_ = wtCands;
+  }
+
+  /* swap values of data_ and weights_ between src and dst indices */
+  private void swapValues(final int src, final int dst) {
+    final long item = data_[src];
+    data_[src] = data_[dst];
+    data_[dst] = item;
+
+    final double wt = weights_[src];
+    weights_[src] = weights_[dst];
+    weights_[dst] = wt;
+  }
+
+  /**
+   * Increases allocated sampling size by (adjusted) ResizeFactor and copies items from old
+   * sampling. Only happens when buffer is not full.
+   */
+  private void growDataArrays() {
+    currItemsAlloc_ = SamplingUtil.getAdjustedSize(k_, currItemsAlloc_ << rf_.lg());
+    if (currItemsAlloc_ == k_) {
+      ++currItemsAlloc_;
+    }
+
+    data_ = Arrays.copyOf(data_, currItemsAlloc_);
+    weights_ = Arrays.copyOf(weights_, currItemsAlloc_);
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static com.yahoo.sketches.theta.PreambleUtil.extractCompressedLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.extractCurCount;
+import static com.yahoo.sketches.theta.PreambleUtil.extractPreLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.insertCompressedLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.insertCurCount;
+import static com.yahoo.sketches.theta.PreambleUtil.insertFamilyID;
+import static com.yahoo.sketches.theta.PreambleUtil.insertFlags;
+import static com.yahoo.sketches.theta.PreambleUtil.insertPreLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.insertSeedHash;
+import static com.yahoo.sketches.theta.PreambleUtil.insertSerVer;
+import static com.yahoo.sketches.theta.PreambleUtil.insertThetaLong;
+
+import java.util.Arrays;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * The compressed serialization of compact, ordered sketches, SerVer 4.
+ *
+ * <p>The retained hashes are sorted, so the differences between consecutive hashes, starting
+ * from zero, are small positive numbers: about 2<sup>63</sup> / <i>n</i> for a stream of
+ * <i>n</i> unique items. The differences are bit-packed in blocks of {@value #BLOCK_SIZE}. Each
+ * block starts with a 6-bit field holding the bit width of its largest difference, followed by
+ * the differences, each with that width. The bits are written into longs starting from the least
+ * significant bit.</p>
+ *
+ * <p>The hashes can only be recovered by decoding the blocks in order, so a compressed image
+ * cannot be wrapped in place, and is heapified instead.</p>
+ */
+final class CompactCompression {
+  static final int BLOCK_SIZE = 16;
+  private static final int WIDTH_BITS = 6;
+
+  private CompactCompression() {}
+
+  /**
+   * Returns the number of longs of compressed data for the given sorted hashes.
+   * @param sortedHashes the given hashes in ascending order
+   * @param count the number of hashes to compress
+   * @return the number of longs of compressed data
+   */
+  static int getDataLongs(final long[] sortedHashes, final int count) {
+    long bits = 0;
+    long prev = 0;
+    for (int b = 0; b < count; b += BLOCK_SIZE) {
+      final int end = Math.min(b + BLOCK_SIZE, count);
+      long or = 0;
+      for (int i = b; i < end; i++) {
+        or |= sortedHashes[i] - prev;
+        prev = sortedHashes[i];
+      }
+      bits += WIDTH_BITS + ((end - b) * (long) width(or));
+    }
+    return (int) ((bits + 63) >>> 6);
+  }
+
+  /**
+   * Returns the number of bytes of the compressed image of the given compact sketch.
+   * @param sketch the given compact sketch
+   * @return the number of bytes of the compressed image
+   */
+  static int getCompressedBytes(final CompactSketch sketch) {
+    final int preLongs = sketch.getPreambleLongs();
+    final int curCount = sketch.getRetainedEntries(true);
+    return (preLongs + getDataLongs(sortedCache(sketch), curCount)) << 3;
+  }
+
+  /**
+   * Writes the compressed image of the given compact sketch into the given Memory.
+   * @param sketch the given compact sketch
+   * @param dstMem the given destination Memory
+   * @return the number of bytes written
+   */
+  static int compress(final CompactSketch sketch, final WritableMemory dstMem) {
+    final boolean empty = sketch.isEmpty();
+    final long thetaLong = sketch.getThetaLong();
+    final int curCount = sketch.getRetainedEntries(true);
+    final long[] hashes = sortedCache(sketch);
+    final int preLongs = Sketch.compactPreambleLongs(thetaLong, empty);
+    final int dataLongs = getDataLongs(hashes, curCount);
+    final int outBytes = (preLongs + dataLongs) << 3;
+    final long dstBytes = dstMem.getCapacity();
+    if (outBytes > dstBytes) {
+      throw new SketchesArgumentException("Insufficient Memory: " + dstBytes
+          + ", Need: " + outBytes);
+    }
+    final Object memObj = dstMem.getArray(); //may be null
+    final long memAdd = dstMem.getCumulativeOffset(0L);
+    final int emptyBit = empty ? EMPTY_FLAG_MASK : 0;
+    insertPreLongs(memObj, memAdd, preLongs);
+    insertSerVer(memObj, memAdd, SER_VER_COMPRESSED);
+    insertFamilyID(memObj, memAdd, Family.COMPACT.getID());
+    insertFlags(memObj, memAdd,
+        emptyBit | READ_ONLY_FLAG_MASK | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK);
+    insertSeedHash(memObj, memAdd, sketch.getSeedHash());
+    if (preLongs > 1) {
+      insertCurCount(memObj, memAdd, curCount);
+      insertCompressedLongs(memObj, memAdd, dataLongs);
+    }
+    if (preLongs > 2) {
+      insertThetaLong(memObj, memAdd, thetaLong);
+    }
+    final BitWriter writer = new BitWriter(dstMem, preLongs << 3);
+    long prev = 0;
+    for (int b = 0; b < curCount; b += BLOCK_SIZE) {
+      final int end = Math.min(b + BLOCK_SIZE, curCount);
+      long or = 0;
+      long p = prev;
+      for (int i = b; i < end; i++) {
+        or |= hashes[i] - p;
+        p = hashes[i];
+      }
+      final int width = width(or);
+      writer.write(width, WIDTH_BITS);
+      for (int i = b; i < end; i++) {
+        writer.write(hashes[i] - prev, width);
+        prev = hashes[i];
+      }
+    }
+    writer.flush();
+    return outBytes;
+  }
+
+  /**
+   * Decodes the hashes of the given compressed image, which must have been checked.
+   * @param srcMem the given compressed image
+   * @return the hashes in ascending order
+   */
+  static long[] decompress(final Memory srcMem) {
+    final Decoder decoder = new Decoder(srcMem);
+    final long[] hashes = new long[decoder.getCount()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = decoder.next();
+    }
+    return hashes;
+  }
+
+  /**
+   * Checks that the given compressed image is large enough for its compressed data.
+   * @param srcMem the given compressed image
+   */
+  static void checkCapacity(final Memory srcMem) {
+    final Object memObj = ((WritableMemory) srcMem).getArray(); //may be null
+    final long memAdd = srcMem.getCumulativeOffset(0L);
+    final int preLongs = extractPreLongs(memObj, memAdd);
+    final long capacity = srcMem.getCapacity();
+    if ((preLongs > 1) && (capacity >= 16)) {
+      final long needBytes = (preLongs + (long) extractCompressedLongs(memObj, memAdd)) << 3;
+      if (needBytes <= capacity) { return; }
+    } else if ((preLongs == 1) && (capacity >= 8)) {
+      return;
+    }
+    throw new SketchesArgumentException("Possible corruption: compressed image of "
+        + capacity + " bytes is too small.");
+  }
+
+  private static long[] sortedCache(final CompactSketch sketch) {
+    final long[] cache = sketch.getCache();
+    if (sketch.isOrdered()) { return cache; }
+    final long[] sorted = Arrays.copyOf(cache, sketch.getRetainedEntries(true));
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  //the number of bits of the given positive value, at most 63.
+  private static int width(final long value) {
+    return 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Decodes the hashes of a compressed image one at a time, in ascending order.
+   */
+  static final class Decoder {
+    private final Memory mem_;
+    private final int count_;
+    private long offsetBytes_;
+    private long bits_; //the bits of the current long not yet read, in the low-order bits
+    private int numBits_;
+    private int index_ = 0;
+    private int width_ = 0;
+    private long prev_ = 0;
+
+    Decoder(final Memory srcMem) {
+      final Object memObj = ((WritableMemory) srcMem).getArray(); //may be null
+      final long memAdd = srcMem.getCumulativeOffset(0L);
+      final int preLongs = extractPreLongs(memObj, memAdd);
+      mem_ = srcMem;
+      count_ = (preLongs > 1) ? extractCurCount(memObj, memAdd) : 0;
+      offsetBytes_ = preLongs << 3;
+    }
+
+    int getCount() {
+      return count_;
+    }
+
+    /**
+     * Returns the next hash. This must not be called more than getCount() times.
+     * @return the next hash.
+     */
+    long next() {
+      if ((index_++ % BLOCK_SIZE) == 0) {
+        width_ = (int) read(WIDTH_BITS);
+      }
+      prev_ += read(width_);
+      return prev_;
+    }
+
+    private long read(final int bits) {
+      if (bits <= numBits_) {
+        final long v = bits_ & ((1L << bits) - 1);
+        bits_ >>>= bits;
+        numBits_ -= bits;
+        return v;
+      }
+      final long lo = bits_;
+      final int loBits = numBits_;
+      final long word = mem_.getLong(offsetBytes_);
+      offsetBytes_ += 8;
+      final int used = bits - loBits; //1 to 63
+      bits_ = word >>> used;
+      numBits_ = 64 - used;
+      return (lo | (word << loBits)) & ((1L << bits) - 1);
+    }
+  }
+
+  private static final class BitWriter {
+    private final WritableMemory mem_;
+    private long offsetBytes_;
+    private long bits_; //pending bits, in the low-order bits
+    private int numBits_;
+
+    BitWriter(final WritableMemory mem, final long offsetBytes) {
+      mem_ = mem;
+      offsetBytes_ = offsetBytes;
+    }
+
+    //writes the low-order bits of the given value, which must have no higher bits set
+    void write(final long value, final int bits) {
+      bits_ |= value << numBits_;
+      if ((numBits_ + bits) < 64) {
+        numBits_ += bits;
+        return;
+      }
+      mem_.putLong(offsetBytes_, bits_);
+      offsetBytes_ += 8;
+      final int used = 64 - numBits_; //1 to 63, since bits < 64
+      bits_ = value >>> used;
+      numBits_ = numBits_ + bits - 64;
+    }
+
+    void flush() {
+      if (numBits_ > 0) {
+        mem_.putLong(offsetBytes_, bits_);
+      }
+    }
+  }
+
+}
@@ -71,6 +71,41 @@ public abstract class CompactSketch extends Sketch {
     return true;
   }
 
+  /**
+   * Returns the number of bytes of the compressed image of this sketch, which is written by
+   * {@link #toCompressedByteArray()} or {@link #putCompressedMemory(WritableMemory)}.
+   * @return the number of bytes of the compressed image of this sketch
+   */
+  public int getCompressedSerializationBytes() {
+    return CompactCompression.getCompressedBytes(this);
+  }
+
+  /**
+   * Serializes this sketch as a compressed, ordered image, SerVer 4. The retained hashes are
+   * stored as bit-packed differences between consecutive sorted hashes, which is typically much
+   * smaller than {@link #toByteArray()}. The image can be read by
+   * {@link Sketch#heapify(Memory)} and {@link Sketch#wrap(Memory)}, which always heapifies it,
+   * and by {@link Union#update(Memory)}. It cannot be read by versions of this library that
+   * do not know SerVer 4.
+   * @return the compressed image of this sketch
+   */
+  public byte[] toCompressedByteArray() {
+    final byte[] byteArr = new byte[getCompressedSerializationBytes()];
+    CompactCompression.compress(this, WritableMemory.wrap(byteArr));
+    return byteArr;
+  }
+
+  /**
+   * Writes the compressed image of this sketch, see {@link #toCompressedByteArray()}, into the
+   * given Memory.
+   * @param dstMem the given destination Memory, which must have at least
+   * {@link #getCompressedSerializationBytes()} bytes.
+   * @return the number of bytes written
+   */
+  public int putCompressedMemory(final WritableMemory dstMem) {
+    return CompactCompression.compress(this, dstMem);
+  }
+
   //restricted methods
 
   @Override
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.LS;
+import static com.yahoo.sketches.hash.MurmurHash3.hash;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.HashOperations;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * A thread-safe Theta sketch that any number of threads may update concurrently.
+ *
+ * <p>The items are accumulated in a shared QuickSelect sketch, which may be on-heap or in a
+ * WritableMemory. Each updating thread hashes its items and pre-filters them against the theta
+ * of the shared sketch, which is published in a volatile field. The surviving hashes are
+ * collected in a small buffer that is local to the thread. Full buffers are handed to a
+ * background propagator thread, which is the only writer of the shared sketch. If the propagator
+ * falls behind, the updating thread propagates its buffer itself.</p>
+ *
+ * <p>Updating threads never take a lock except when they propagate a full buffer themselves. In
+ * exact mode every hash is buffered. Once theta is below 1.0 most hashes are rejected by the
+ * pre-filter, which is what makes the throughput scale with the number of threads on
+ * high-cardinality streams. The estimate of a small stream is exact once the updating threads
+ * have called {@link #flush()}.</p>
+ *
+ * <p>The estimate and bounds are computed from a state that is published after each propagation,
+ * so readers never block writers. Hashes that are still in the local buffer of a thread are not
+ * reflected until that buffer fills up or that thread calls {@link #flush()}.</p>
+ */
+public final class ConcurrentThetaSketch {
+  /**
+   * The default number of hashes in the local buffer of each thread.
+   */
+  public static final int DEFAULT_MAX_BUFFER_SIZE = 256;
+  private static final int MAX_QUEUED_BUFFERS = 16;
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+  private final UpdateSketch shared_;
+  private final long seed_;
+  private final int maxBufferSize_;
+  private final ReentrantLock lock_ = new ReentrantLock();
+  private final Condition propagated_ = lock_.newCondition();
+  private final AtomicInteger pendingBuffers_ = new AtomicInteger();
+  private final ThreadPoolExecutor propagator_;
+  private final ThreadLocal<LocalBuffer> localBuffer_;
+  private volatile SharedState state_;
+  private volatile RuntimeException failure_; //the first failure of a propagation, if any
+
+  /**
+   * Constructs a new concurrent sketch with a shared on-heap QuickSelect sketch of the given
+   * nominal entries and the default seed.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entries</a>
+   */
+  public ConcurrentThetaSketch(final int nomEntries) {
+    this(UpdateSketch.builder().setNominalEntries(nomEntries).build(), DEFAULT_MAX_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructs a new concurrent sketch around the given shared sketch, which must be a
+   * QuickSelect sketch, on-heap or direct, for example one obtained with
+   * {@link UpdateSketchBuilder#build(WritableMemory)}. After this the shared sketch must only be
+   * accessed through this concurrent sketch.
+   * @param sharedSketch the given QuickSelect sketch
+   * @param maxBufferSize the number of hashes in the local buffer of each thread
+   */
+  public ConcurrentThetaSketch(final UpdateSketch sharedSketch, final int maxBufferSize) {
+    if (sharedSketch.getFamily() != Family.QUICKSELECT) {
+      throw new SketchesArgumentException(
+          "The shared sketch must be a QuickSelect sketch: " + sharedSketch.getFamily());
+    }
+    if (maxBufferSize < 1) {
+      throw new SketchesArgumentException("maxBufferSize must be positive: " + maxBufferSize);
+    }
+    shared_ = sharedSketch;
+    seed_ = sharedSketch.getSeed();
+    maxBufferSize_ = maxBufferSize;
+    state_ = new SharedState(sharedSketch);
+    localBuffer_ = new ThreadLocal<LocalBuffer>() {
+      @Override
+      protected LocalBuffer initialValue() {
+        return new LocalBuffer(maxBufferSize_);
+      }
+    };
+    propagator_ = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_QUEUED_BUFFERS), new ThreadFactory() {
+          @Override
+          public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "ConcurrentThetaSketch-propagator-"
+                + THREAD_NUMBER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    propagator_.allowCoreThreadTimeOut(true); //an idle sketch does not hold a thread
+  }
+
+  /**
+   * Gets the unique count estimate.
+   * @return the sketch's best estimate of the cardinality of the input stream.
+   */
+  public double getEstimate() {
+    final SharedState st = state_;
+    return Sketch.estimate(st.thetaLong, st.curCount, st.empty);
+  }
+
+  /**
+   * Gets the approximate lower error bound given the specified number of Standard Deviations.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the lower bound.
+   */
+  public double getLowerBound(final int numStdDev) {
+    final SharedState st = state_;
+    return (Sketch.estMode(st.thetaLong, st.empty))
+        ? Sketch.lowerBound(st.curCount, st.thetaLong, numStdDev, st.empty)
+        : st.curCount;
+  }
+
+  /**
+   * Gets the approximate upper error bound given the specified number of Standard Deviations.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the upper bound.
+   */
+  public double getUpperBound(final int numStdDev) {
+    final SharedState st = state_;
+    return (Sketch.estMode(st.thetaLong, st.empty))
+        ? Sketch.upperBound(st.curCount, st.thetaLong, numStdDev, st.empty)
+        : st.curCount;
+  }
+
+  /**
+   * Returns the number of valid entries that have been retained by the shared sketch.
+   * @return the number of valid retained entries
+   */
+  public int getRetainedEntries() {
+    return state_.curCount;
+  }
+
+  /**
+   * Gets the value of theta of the shared sketch as a double with a value between zero and one
+   * @return the value of theta as a double
+   */
+  public double getTheta() {
+    return state_.thetaLong / PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
+  }
+
+  /**
+   * <a href="{@docRoot}/resources/dictionary.html#empty">See Empty</a>
+   * @return true if empty.
+   */
+  public boolean isEmpty() {
+    return state_.empty;
+  }
+
+  /**
+   * Returns true if the shared sketch is in estimation mode.
+   * @return true if the shared sketch is in estimation mode.
+   */
+  public boolean isEstimationMode() {
+    final SharedState st = state_;
+    return Sketch.estMode(st.thetaLong, st.empty);
+  }
+
+  /**
+   * Propagates the local buffer of the calling thread and waits until all the buffers handed
+   * to the propagator so far have been propagated into the shared sketch.
+   * @throws SketchesStateException if the propagation of any buffer into the shared sketch has
+   * failed, for example because a direct shared sketch could not grow. The failure is the cause.
+   * The shared sketch may then be missing hashes, so every later flush throws as well.
+   */
+  public void flush() {
+    final LocalBuffer lb = localBuffer_.get();
+    if (lb.count > 0) {
+      propagate(lb.buf, lb.count);
+      lb.buf = new long[maxBufferSize_];
+      lb.count = 0;
+    }
+    lock_.lock();
+    try {
+      while (pendingBuffers_.get() > 0) {
+        propagated_.awaitUninterruptibly();
+      }
+    } finally {
+      lock_.unlock();
+    }
+    final RuntimeException failure = failure_;
+    if (failure != null) {
+      final SketchesStateException e =
+          new SketchesStateException("Propagation into the shared sketch failed.");
+      e.initCause(failure);
+      throw e;
+    }
+  }
+
+  /**
+   * Flushes the calling thread as with {@link #flush()} and returns an ordered heap copy of the
+   * shared sketch in compact form.
+   * @return an ordered heap copy of the shared sketch in compact form.
+   */
+  public CompactSketch getResult() {
+    return getResult(true, null);
+  }
+
+  /**
+   * Flushes the calling thread as with {@link #flush()} and returns a copy of the shared sketch
+   * in compact form.
+   * @param dstOrdered <a href="{@docRoot}/resources/dictionary.html#dstOrdered">See Destination Ordered</a>
+   * @param dstMem <a href="{@docRoot}/resources/dictionary.html#dstMem">See Destination Memory</a>.
+   * @return a copy of the shared sketch in compact form.
+   */
+  public CompactSketch getResult(final boolean dstOrdered, final WritableMemory dstMem) {
+    flush();
+    lock_.lock();
+    try {
+      return shared_.compact(dstOrdered, dstMem);
+    } finally {
+      lock_.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### ConcurrentThetaSketch SUMMARY: ").append(LS);
+    sb.append("   Estimate          : ").append(getEstimate()).append(LS);
+    sb.append("   Retained Entries  : ").append(getRetainedEntries()).append(LS);
+    sb.append("   Theta             : ").append(getTheta()).append(LS);
+    sb.append("   Max Buffer Size   : ").append(maxBufferSize_).append(LS);
+    sb.append("### END SKETCH SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  /**
+   * Present this sketch with a long.
+   * @param datum The given long datum.
+   */
+  public void update(final long datum) {
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(datum, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given double (or float) datum, which is canonicalized as with
+   * {@link UpdateSketch#update(double)}.
+   * @param datum The given double datum.
+   */
+  public void update(final double datum) {
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(datum, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given String, encoded as UTF-8.
+   * If the string is null or empty no update attempt is made and the method returns.
+   * @param datum The given String.
+   */
+  public void update(final String datum) {
+    if ((datum == null) || datum.isEmpty()) { return; }
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(datum, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given byte array.
+   * If the byte array is null or empty no update attempt is made and the method returns.
+   * @param data The given byte array.
+   */
+  public void update(final byte[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(data, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given char array.
+   * If the char array is null or empty no update attempt is made and the method returns.
+   * @param data The given char array.
+   */
+  public void update(final char[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(data, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given integer array.
+   * If the integer array is null or empty no update attempt is made and the method returns.
+   * @param data The given int array.
+   */
+  public void update(final int[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(data, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given long array.
+   * If the long array is null or empty no update attempt is made and the method returns.
+   * @param data The given long array.
+   */
+  public void update(final long[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final LocalBuffer lb = localBuffer_.get();
+    hashUpdate(lb, hash(data, seed_, lb.hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given 128-bit hash of an item.
+   * See {@link UpdateSketch#updateHash(long[])}.
+   * @param hash128 the given 128-bit hash as an array of two longs.
+   */
+  public void updateHash(final long[] hash128) {
+    hashUpdate(localBuffer_.get(), hash128[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given 128-bit hash of an item.
+   * See {@link UpdateSketch#updateHash(long, long)}.
+   * @param h0 the first 64 bits of the given 128-bit hash.
+   * @param h1 the second 64 bits of the given 128-bit hash, which is not used.
+   */
+  public void updateHash(final long h0, final long h1) {
+    hashUpdate(localBuffer_.get(), h0 >>> 1);
+  }
+
+  //restricted methods
+
+  private void hashUpdate(final LocalBuffer lb, final long hash) {
+    final SharedState st = state_;
+    if (HashOperations.continueCondition(st.thetaLong, hash) && !st.empty) {
+      return; //rejected by the pre-filter
+    }
+    //while the shared sketch is empty even the hashes over theta are buffered, so that the
+    //shared sketch clears its empty flag as it would with p-sampling
+    lb.buf[lb.count++] = hash;
+    if (lb.count == maxBufferSize_) {
+      propagate(lb.buf, lb.count);
+      lb.buf = new long[maxBufferSize_];
+      lb.count = 0;
+    }
+  }
+
+  //hands the given buffer to the propagator, or propagates it in the calling thread if the
+  //propagator is too far behind. The buffer must not be modified afterwards.
+  private void propagate(final long[] buf, final int count) {
+    pendingBuffers_.incrementAndGet();
+    propagator_.execute(new Runnable() {
+      @Override
+      public void run() {
+        lock_.lock();
+        try {
+          for (int i = 0; i < count; i++) {
+            shared_.hashUpdate(buf[i]); //rejects the hashes that are now over theta
+          }
+          state_ = new SharedState(shared_);
+        } catch (final RuntimeException e) {
+          if (failure_ == null) { failure_ = e; } //rethrown by flush()
+        } finally {
+          pendingBuffers_.decrementAndGet();
+          propagated_.signalAll();
+          lock_.unlock();
+        }
+      }
+    });
+  }
+
+  //The state of the shared sketch that is read by the updating threads and the estimators.
+  private static final class SharedState {
+    final long thetaLong;
+    final int curCount;
+    final boolean empty;
+
+    SharedState(final UpdateSketch sketch) {
+      thetaLong = sketch.getThetaLong();
+      curCount = sketch.getRetainedEntries(true);
+      empty = sketch.isEmpty();
+    }
+  }
+
+  private static final class LocalBuffer {
+    final long[] hashOut = new long[2];
+    long[] buf;
+    int count;
+
+    LocalBuffer(final int maxBufferSize) {
+      buf = new long[maxBufferSize];
+    }
+  }
+
+}
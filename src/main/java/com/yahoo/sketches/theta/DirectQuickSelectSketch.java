@@ -71,9 +71,10 @@ final class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
    * @param p
    * <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
-   * @param rf Currently internally fixed at 2. Unless dstMem is not configured with a valid
-   * MemoryRequest, in which case the rf is effectively 1, which is no resizing at all and the
-   * dstMem must be large enough for a full sketch.
+   * @param rf The hash table starts at MIN_LG_ARR_LONGS and grows by this factor, within dstMem
+   * while it is large enough, and then in larger Memory requested from the MemoryRequestServer
+   * of dstMem. If rf is X1 there is no resizing at all and dstMem must be large enough for a
+   * full sketch.
    * <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @param dstMem the given Memory object destination. It cannot be null.
    * It will be cleared prior to use.
@@ -277,10 +278,24 @@ final class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
           final int reqBytes = tgtArrBytes + preBytes;
 
           final MemoryRequestServer memoryRequestServer = mem_.getMemoryRequestServer();
-          final WritableMemory newDstMem = memoryRequestServer.request(reqBytes);
+          final WritableMemory newDstMem;
+          try {
+            newDstMem = memoryRequestServer.request(reqBytes);
+            if ((newDstMem == null) || (newDstMem.getCapacity() < reqBytes)) {
+              throw new SketchesArgumentException("MemoryRequestServer did not return "
+                  + reqBytes + " bytes for resizing the sketch.");
+            }
+          } catch (final RuntimeException e) {
+            //The update fails as a whole. The hash was the last one inserted, so no probe
+            //sequence passes its slot and clearing it restores the table.
+            mem_.putLong(preBytes + ((long) ~index << 3), 0L);
+            mem_.putInt(RETAINED_ENTRIES_INT, curCount - 1);
+            throw e;
+          }
 
           moveAndResize(mem_, preambleLongs_, lgArrLongs, newDstMem, tgtLgArrLongs, thetaLong);
 
+          memoryRequestServer.requestClose(mem_, newDstMem); //old mem_ is now invalid
           mem_ = newDstMem;
           hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, tgtLgArrLongs);
         } //end of Request more memory to resize
@@ -61,6 +61,30 @@ final class HeapCompactOrderedSketch extends CompactSketch {
     return hcs;
   }
 
+  /**
+   * Heapifies the given compressed source Memory, SerVer 4, with seed
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return this sketch
+   */
+  static HeapCompactOrderedSketch heapifyCompressedInstance(final Memory srcMem,
+      final long seed) {
+    CompactCompression.checkCapacity(srcMem);
+    final Object memObj = ((WritableMemory)srcMem).getArray(); //may be null
+    final long memAdd = srcMem.getCumulativeOffset(0L);
+
+    final int preambleLongs = extractPreLongs(memObj, memAdd);
+    final short memSeedHash = (short) extractSeedHash(memObj, memAdd);
+    final long thetaLong = (preambleLongs > 2) ? extractThetaLong(memObj, memAdd) : Long.MAX_VALUE;
+
+    final short computedSeedHash = computeSeedHash(seed);
+    checkSeedHashes(memSeedHash, computedSeedHash);
+
+    final boolean empty = PreambleUtil.isEmpty(memObj, memAdd);
+    final long[] cacheArr = CompactCompression.decompress(srcMem);
+    return new HeapCompactOrderedSketch(empty, memSeedHash, cacheArr.length, thetaLong, cacheArr);
+  }
+
   /**
    * Converts the given UpdateSketch to this compact form.
    * @param sketch the given UpdateSketch
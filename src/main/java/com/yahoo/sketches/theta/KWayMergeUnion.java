@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_NOMINAL_ENTRIES;
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.Util.checkSeedHashes;
+import static com.yahoo.sketches.Util.computeSeedHash;
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.FAMILY_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
+
+import java.util.Arrays;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * A stateless union of many ordered CompactSketches at once, as in
+ * <i>C = Union(A<sub>1</sub>, ..., A<sub>n</sub>)</i>.
+ *
+ * <p>Each ordered input is a sorted run of hashes. The runs are merged with a min-heap, and the
+ * first <i>k</i> distinct hashes below the minimum theta of all inputs are emitted directly into
+ * the result. Each run stops as soon as its next hash reaches the running theta, so the remaining
+ * hashes of a run are never read. There is no hash table and no rebuilding, unlike
+ * {@link Union}, which makes this faster when there are many inputs. The result is the same as
+ * the result of a {@link Union} with the same nominal entries.</p>
+ *
+ * <p>The inputs are given as Memory images, which are read in place and are never heapified, so
+ * memory-mapped images can be merged without copying. The images must be compact and ordered,
+ * SerVer 3, or compressed, SerVer 4, see {@link CompactSketch#toCompressedByteArray()}.</p>
+ */
+public final class KWayMergeUnion {
+
+  private KWayMergeUnion() {}
+
+  /**
+   * Returns the union of the given ordered compact images with the
+   * {@link com.yahoo.sketches.Util#DEFAULT_NOMINAL_ENTRIES DEFAULT_NOMINAL_ENTRIES} and the
+   * {@link com.yahoo.sketches.Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   * @param images the given ordered compact images. Null entries are ignored.
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch union(final Memory[] images) {
+    return union(images, DEFAULT_NOMINAL_ENTRIES, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns the union of the given ordered compact images with the
+   * {@link com.yahoo.sketches.Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   * @param images the given ordered compact images. Null entries are ignored.
+   * @param k The upper bound of the number of entries to be retained by the result
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch union(final Memory[] images, final int k) {
+    return union(images, k, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns the union of the given ordered compact images.
+   * @param images the given ordered compact images. Null entries are ignored.
+   * @param k The upper bound of the number of entries to be retained by the result
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch union(final Memory[] images, final int k, final long seed) {
+    checkK(k);
+    final short seedHash = computeSeedHash(seed);
+    final Runs runs = new Runs(images.length);
+    for (int i = 0; i < images.length; i++) {
+      if (images[i] != null) { runs.add(images[i], seedHash); }
+    }
+    return runs.merge(k, seedHash);
+  }
+
+  /**
+   * Returns the union of the given ordered CompactSketches, which may be either Heap-based or
+   * Direct.
+   * @param sketches the given ordered CompactSketches. Null entries are ignored.
+   * @param k The upper bound of the number of entries to be retained by the result
+   * @return the result as an ordered CompactSketch, or null if all the sketches are null.
+   */
+  public static CompactSketch union(final CompactSketch[] sketches, final int k) {
+    checkK(k);
+    final Runs runs = new Runs(sketches.length);
+    short seedHash = 0;
+    boolean valid = false;
+    for (int i = 0; i < sketches.length; i++) {
+      final CompactSketch sk = sketches[i];
+      if (sk == null) { continue; }
+      if (!sk.isOrdered()) {
+        throw new SketchesArgumentException("Sketch " + i + " must be ordered!");
+      }
+      seedHash = valid ? checkSeedHashes(seedHash, sk.getSeedHash()) : sk.getSeedHash();
+      valid = true;
+      final Memory mem = sk.getMemory();
+      if (mem != null) {
+        runs.add(mem, seedHash);
+      } else {
+        runs.add(Memory.wrap(sk.getCache()), 0, sk.getRetainedEntries(true), sk.getThetaLong(),
+            sk.isEmpty());
+      }
+    }
+    return valid ? runs.merge(k, seedHash) : null; //no way to construct the seedHash
+  }
+
+  private static void checkK(final int k) {
+    if (k < 1) {
+      throw new SketchesArgumentException("k must be at least 1: " + k);
+    }
+  }
+
+  /**
+   * The sorted runs of hashes and the min-heap of run indices ordered by the next hash of each
+   * run.
+   */
+  private static final class Runs {
+    private final Memory[] mems_;
+    private final long[] offsets_;
+    private final int[] remaining_;
+    private final CompactCompression.Decoder[] decoders_; //null entries for SerVer 3 runs
+    private final long[] heads_; //the current hash of each run
+    private final int[] heap_; //run indices
+    private int numRuns_ = 0;
+    private long thetaLong_ = Long.MAX_VALUE;
+    private boolean empty_ = true;
+
+    Runs(final int maxRuns) {
+      mems_ = new Memory[maxRuns];
+      offsets_ = new long[maxRuns];
+      remaining_ = new int[maxRuns];
+      decoders_ = new CompactCompression.Decoder[maxRuns];
+      heads_ = new long[maxRuns];
+      heap_ = new int[maxRuns];
+    }
+
+    void add(final Memory image, final short seedHash) {
+      final long cap = image.getCapacity();
+      if (cap < 8) {
+        throw new SketchesArgumentException("Image must have at least 8 bytes: " + cap);
+      }
+      final int serVer = image.getByte(SER_VER_BYTE) & 0XFF;
+      final int famID = image.getByte(FAMILY_BYTE) & 0XFF;
+      final int flags = image.getByte(FLAGS_BYTE) & 0XFF;
+      final boolean knownSerVer = (serVer == SER_VER) || (serVer == SER_VER_COMPRESSED);
+      if ((famID != Family.COMPACT.getID()) || !knownSerVer
+          || ((flags & COMPACT_FLAG_MASK) == 0) || ((flags & ORDERED_FLAG_MASK) == 0)) {
+        throw new SketchesArgumentException(
+            "Image must be a compact, ordered sketch of SerVer 3 or 4: SerVer: " + serVer
+            + ", Family: " + Family.idToFamily(famID) + ", Flags: " + flags);
+      }
+      checkSeedHashes(seedHash, image.getShort(SEED_HASH_SHORT));
+      final int preLongs = image.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
+      final boolean empty = (flags & EMPTY_FLAG_MASK) != 0;
+      if (preLongs == 1) {
+        add(image, 0, 0, Long.MAX_VALUE, empty);
+        return;
+      }
+      final long thetaLong = (preLongs > 2) ? image.getLong(THETA_LONG) : Long.MAX_VALUE;
+      if (serVer == SER_VER_COMPRESSED) {
+        CompactCompression.checkCapacity(image);
+        final CompactCompression.Decoder decoder = new CompactCompression.Decoder(image);
+        decoders_[numRuns_] = decoder;
+        add(image, 0, decoder.getCount(), thetaLong, empty);
+        return;
+      }
+      final int curCount = image.getInt(RETAINED_ENTRIES_INT);
+      final long needBytes = (preLongs + (long) curCount) << 3;
+      if (needBytes > cap) {
+        throw new SketchesArgumentException("Possible corruption: image of " + cap
+            + " bytes is too small, need: " + needBytes);
+      }
+      add(image, preLongs << 3, curCount, thetaLong, empty);
+    }
+
+    void add(final Memory mem, final long offsetBytes, final int count, final long thetaLong,
+        final boolean empty) {
+      thetaLong_ = Math.min(thetaLong_, thetaLong); //Theta rule
+      empty_ &= empty; //Empty rule is AND
+      if (count == 0) {
+        decoders_[numRuns_] = null;
+        return;
+      }
+      mems_[numRuns_] = mem;
+      offsets_[numRuns_] = offsetBytes;
+      remaining_[numRuns_] = count;
+      numRuns_++;
+    }
+
+    CompactSketch merge(final int k, final short seedHash) {
+      long thetaLong = thetaLong_;
+      //load the first hash of each run that is below theta
+      int heapSize = 0;
+      for (int r = 0; r < numRuns_; r++) {
+        final long hash = next(r);
+        if (hash < thetaLong) {
+          heads_[r] = hash;
+          heap_[heapSize++] = r;
+        }
+      }
+      for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+        siftDown(i, heapSize);
+      }
+      long[] out = new long[Math.min(k, 1024)];
+      int count = 0;
+      long prev = 0;
+      while (heapSize > 0) {
+        final int r = heap_[0];
+        final long hash = heads_[r];
+        if (hash >= thetaLong) { break; } //all other heads are larger
+        if (hash != prev) {
+          if (count == k) {
+            thetaLong = hash; //the k+1 smallest hash
+            break;
+          }
+          if (count == out.length) {
+            out = Arrays.copyOf(out, Math.min(k, 2 * count));
+          }
+          out[count++] = hash;
+          prev = hash;
+        }
+        final long nextHash = (remaining_[r] > 0) ? next(r) : Long.MAX_VALUE;
+        if (nextHash < thetaLong) { // "early stop" of this run otherwise
+          heads_[r] = nextHash;
+        } else {
+          heap_[0] = heap_[--heapSize];
+        }
+        siftDown(0, heapSize);
+      }
+      return new HeapCompactOrderedSketch(
+          Arrays.copyOf(out, count), empty_, seedHash, count, thetaLong);
+    }
+
+    //returns the next hash of the given run, which must have one
+    private long next(final int r) {
+      remaining_[r]--;
+      final CompactCompression.Decoder decoder = decoders_[r];
+      if (decoder != null) { return decoder.next(); }
+      final long hash = mems_[r].getLong(offsets_[r]);
+      offsets_[r] += 8;
+      return hash;
+    }
+
+    private void siftDown(final int start, final int heapSize) {
+      int i = start;
+      final int r = heap_[i];
+      final long hash = heads_[r];
+      while (true) {
+        int child = (i << 1) + 1;
+        if (child >= heapSize) { break; }
+        if (((child + 1) < heapSize) && (heads_[heap_[child + 1]] < heads_[heap_[child]])) {
+          child++;
+        }
+        if (heads_[heap_[child]] >= hash) { break; }
+        heap_[i] = heap_[child];
+        i = child;
+      }
+      heap_[i] = r;
+    }
+  }
+
+}
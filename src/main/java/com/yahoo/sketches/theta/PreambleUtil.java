@@ -52,6 +52,11 @@ import com.yahoo.sketches.SketchesArgumentException;
  *  3   ||---------------------------Start of Long Array-------------------------------------|
  *  </pre>
  *
+ * <p>SerVer 4 is a compact, ordered sketch with the same preamble as SerVer 3, except that
+ * bytes 12-15 hold the number of longs of the data that follows instead of p. The data is the
+ * sequence of the differences between consecutive hashes, bit-packed in blocks of 16 with one
+ * bit width per block. See {@link CompactCompression}.</p>
+ *
  *  @author Lee Rhodes
  */
 final class PreambleUtil {
@@ -70,6 +75,7 @@ final class PreambleUtil {
   static final int SEED_HASH_SHORT            = 6;  //byte 6,7
   static final int RETAINED_ENTRIES_INT       = 8;  //8 byte aligned
   static final int P_FLOAT                    = 12; //4 byte aligned, not used by compact
+  static final int COMPRESSED_LONGS_INT       = 12; //SerVer 4 only, replaces P_FLOAT
   static final int THETA_LONG                 = 16; //8-byte aligned
   static final int UNION_THETA_LONG           = 24; //8-byte aligned, only used by Union
 
@@ -88,6 +94,7 @@ final class PreambleUtil {
 
   //Other constants
   static final int SER_VER                    = 3;
+  static final int SER_VER_COMPRESSED         = 4; //compact, ordered, delta bit-packed hashes
 
   static final boolean NATIVE_ORDER_IS_BIG_ENDIAN  =
       (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
@@ -151,6 +158,7 @@ final class PreambleUtil {
     final boolean empty = (flags & EMPTY_FLAG_MASK) > 0;
 
     final int seedHash = extractSeedHash(memObj, memAdd);
+    final boolean compressed = serVer == SER_VER_COMPRESSED; //bytes 12-15 are not p
 
     //Assumed if preLongs == 1
     int curCount = 0;
@@ -162,19 +170,19 @@ final class PreambleUtil {
 
     if (preLongs == 2) {
       curCount = extractCurCount(memObj, memAdd);
-      p = extractP(memObj, memAdd);
+      p = compressed ? p : extractP(memObj, memAdd);
       thetaLong = (long)(p * MAX_THETA_LONG_AS_DOUBLE);
       thetaULong = thetaLong;
     }
     else if (preLongs == 3) {
       curCount = extractCurCount(memObj, memAdd);
-      p = extractP(memObj, memAdd);
+      p = compressed ? p : extractP(memObj, memAdd);
       thetaLong = extractThetaLong(memObj, memAdd);
       thetaULong = thetaLong;
     }
     else if (preLongs == 4) {
       curCount = extractCurCount(memObj, memAdd);
-      p = extractP(memObj, memAdd);
+      p = compressed ? p : extractP(memObj, memAdd);
       thetaLong = extractThetaLong(memObj, memAdd);
       thetaULong = extractUnionThetaLong(memObj, memAdd);
     } //else: the same as preLongs == 1
@@ -234,7 +242,9 @@ final class PreambleUtil {
         .append("             ThetaU (long,hex): ").append(thetaUHex).append(LS);
     }
     sb.append(  "Preamble Bytes                : ").append(preLongs * 8).append(LS);
-    sb.append(  "Data Bytes                    : ").append(curCount * 8).append(LS);
+    final int dataLongs = (compressed && (preLongs > 1))
+        ? extractCompressedLongs(memObj, memAdd) : curCount;
+    sb.append(  "Data Bytes                    : ").append(dataLongs * 8).append(LS);
     sb.append(  "TOTAL Sketch Bytes            : ").append(mem.getCapacity()).append(LS)
       .append("### END SKETCH PREAMBLE SUMMARY").append(LS);
     return sb.toString();
@@ -290,6 +300,10 @@ final class PreambleUtil {
     return unsafe.getFloat(memObj, memAdd + P_FLOAT);
   }
 
+  static int extractCompressedLongs(final Object memObj, final long memAdd) {
+    return unsafe.getInt(memObj, memAdd + COMPRESSED_LONGS_INT);
+  }
+
   static long extractThetaLong(final Object memObj, final long memAdd) {
     return unsafe.getLong(memObj, memAdd + THETA_LONG);
   }
@@ -342,6 +356,10 @@ final class PreambleUtil {
     unsafe.putFloat(memObj, memAdd + P_FLOAT, p);
   }
 
+  static void insertCompressedLongs(final Object memObj, final long memAdd, final int longs) {
+    unsafe.putInt(memObj, memAdd + COMPRESSED_LONGS_INT, longs);
+  }
+
   static void insertThetaLong(final Object memObj, final long memAdd, final long thetaLong) {
     unsafe.putLong(memObj, memAdd + THETA_LONG, thetaLong);
   }
@@ -163,6 +163,17 @@ public abstract class SetOperation {
     }
   }
 
+  /**
+   * Returns the minimum storage bytes for a direct Union built with a Resize Factor other than
+   * X1. The hash table of such a Union starts small and, once the given Memory is full, grows by
+   * requesting larger Memory from the MemoryRequestServer of the given Memory.
+   * A Union built with ResizeFactor.X1 needs {@link #getMaxUnionBytes(int)}.
+   * @return the minimum storage bytes for a direct Union
+   */
+  public static int getMinUnionBytes() {
+    return (8 << MIN_LG_ARR_LONGS) + (Family.UNION.getMinPreLongs() << 3);
+  }
+
   /**
    * Returns the maximum required storage bytes given a nomEntries parameter for Union operations
    * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
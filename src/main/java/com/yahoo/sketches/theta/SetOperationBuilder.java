@@ -199,6 +199,12 @@ public class SetOperationBuilder {
    * Convenience method, returns a configured SetOperation Union with
    * <a href="{@docRoot}/resources/dictionary.html#defaultNomEntries">Default Nominal Entries</a>
    * and the given destination memory.
+   *
+   * <p>Unless the Resize Factor is X1, the destination Memory need only hold
+   * {@link SetOperation#getMinUnionBytes()}, and the Union grows through the MemoryRequestServer
+   * of the destination Memory as needed, as described in
+   * {@link UpdateSketchBuilder#build(WritableMemory)}.</p>
+   *
    * @param dstMem The destination Memory.
    * @return a Union object
    */
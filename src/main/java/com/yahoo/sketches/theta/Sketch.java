@@ -18,6 +18,7 @@ import static com.yahoo.sketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
 import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
 import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.sketches.BinomialBoundsN;
@@ -298,6 +299,16 @@ public abstract class Sketch {
     if (serVer == 2) {
       return ForwardCompatibility.heapify2to3(srcMem, seed);
     }
+    if (serVer == SER_VER_COMPRESSED) {
+      final int famID = srcMem.getByte(FAMILY_BYTE);
+      final int flags = srcMem.getByte(FLAGS_BYTE);
+      if ((famID != Family.COMPACT.getID()) || ((flags & COMPACT_FLAG_MASK) == 0)
+          || ((flags & ORDERED_FLAG_MASK) == 0)) {
+        throw new SketchesArgumentException(
+            "Corrupted: compressed image must be a compact, ordered sketch");
+      }
+      return HeapCompactOrderedSketch.heapifyCompressedInstance(srcMem, seed);
+    }
     throw new SketchesArgumentException("Unknown Serialization Version: " + serVer);
   }
 
@@ -319,8 +330,9 @@ public abstract class Sketch {
    * Wrap takes the sketch image in Memory and refers to it directly. There is no data copying onto
    * the java heap.  Only "Direct" Serialization Version 3 (i.e, OpenSource) sketches that have
    * been explicitly stored as direct objects can be wrapped.
-   * An attempt to "wrap" earlier version sketches will result in a "heapified", normal
-   * Java Heap version of the sketch where all data will be copied to the heap.
+   * An attempt to "wrap" earlier version sketches or compressed sketches (SerVer 4) will result
+   * in a "heapified", normal Java Heap version of the sketch where all data will be copied to the
+   * heap.
    * @param srcMem an image of a Sketch where the image seed hash matches the given seed hash.
    * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
@@ -342,13 +354,16 @@ public abstract class Sketch {
               "Corrupted: " + family + " family image: must have SerVer = 3 and preLongs = 3");
         }
       }
-      case COMPACT: { //serVer 1, 2, or 3, preLongs = 1, 2, or 3
+      case COMPACT: { //serVer 1, 2, 3 or 4, preLongs = 1, 2, or 3
         if (serVer == 1) {
           return ForwardCompatibility.heapify1to3(srcMem, seed);
         }
         else if (serVer == 2) {
           return ForwardCompatibility.heapify2to3(srcMem, seed);
         }
+        else if (serVer == SER_VER_COMPRESSED) {
+          return heapify(srcMem, seed);
+        }
         final int flags = srcMem.getByte(FLAGS_BYTE);
         final boolean compact = (flags & COMPACT_FLAG_MASK) > 0; //used for corruption check
         final boolean ordered = (flags & ORDERED_FLAG_MASK) > 0;
@@ -389,6 +404,17 @@ public abstract class Sketch {
     return (numberOfEntries << 3) + (Family.COMPACT.getMaxPreLongs() << 3);
   }
 
+  /**
+   * Returns the minimum number of storage bytes for a direct UpdateSketch built with a Resize
+   * Factor other than X1. Such a sketch starts with a small hash table and, once the given
+   * Memory is full, grows by requesting larger Memory from the MemoryRequestServer of the given
+   * Memory. A sketch built with ResizeFactor.X1 needs {@link #getMaxUpdateSketchBytes(int)}.
+   * @return the minimum number of storage bytes for a direct UpdateSketch
+   */
+  public static int getMinUpdateSketchBytes() {
+    return (8 << Util.MIN_LG_ARR_LONGS) + (Family.QUICKSELECT.getMinPreLongs() << 3);
+  }
+
   /**
    * Returns the maximum number of storage bytes required for an UpdateSketch with the given
    * number of nominal entries (power of 2).
@@ -505,7 +531,7 @@ public abstract class Sketch {
     return BinomialBoundsN.getUpperBound(curCount, theta, numStdDev, empty);
   }
 
-  private static final boolean estMode(final long thetaLong, final boolean empty) {
+  static final boolean estMode(final long thetaLong, final boolean empty) {
     return (thetaLong < Long.MAX_VALUE) && !empty;
   }
 
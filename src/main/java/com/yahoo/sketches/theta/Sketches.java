@@ -14,9 +14,12 @@ import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
 import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
 import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
 
+import java.util.stream.Collector;
+
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchCollector;
 import com.yahoo.sketches.SketchesArgumentException;
 
 /**
@@ -123,6 +126,70 @@ public final class Sketches {
     return new SetOperationBuilder();
   }
 
+  /**
+   * Returns a Collector that builds an ordered CompactSketch from the items of a Stream, which
+   * also works for parallel streams. Each thread updates its own {@link Union}, and the unions of
+   * the threads are combined by a union.
+   *
+   * <p>The items may be of type Long, Integer, Short, Byte, Double, Float, String, byte[],
+   * char[], int[] or long[], and each is presented to the matching update method. Null items
+   * are ignored. A LongStream or a DoubleStream can be collected after
+   * {@link java.util.stream.LongStream#boxed() boxed()}.</p>
+   *
+   * @param <T> the type of the stream items
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entries</a>
+   * of the unions
+   * @return a Collector that builds an ordered CompactSketch
+   */
+  public static <T> Collector<T, ?, CompactSketch> collector(final int nomEntries) {
+    final SetOperationBuilder bldr = new SetOperationBuilder().setNominalEntries(nomEntries);
+    return new SketchCollector<T, Union, CompactSketch>() {
+      @Override
+      protected Union newContainer() {
+        return bldr.buildUnion();
+      }
+
+      @Override
+      protected void accumulate(final Union union, final T item) {
+        updateItem(union, item);
+      }
+
+      @Override
+      protected Union combine(final Union union1, final Union union2) {
+        union1.update(union2.getResult(false, null));
+        return union1;
+      }
+
+      @Override
+      protected CompactSketch finish(final Union union) {
+        return union.getResult();
+      }
+    };
+  }
+
+  static void updateItem(final Union union, final Object item) {
+    if (item == null) { return; }
+    if (item instanceof Long) {
+      union.update(((Long) item).longValue());
+    } else if ((item instanceof Integer) || (item instanceof Short) || (item instanceof Byte)) {
+      union.update(((Number) item).longValue());
+    } else if ((item instanceof Double) || (item instanceof Float)) {
+      union.update(((Number) item).doubleValue());
+    } else if (item instanceof String) {
+      union.update((String) item);
+    } else if (item instanceof byte[]) {
+      union.update((byte[]) item);
+    } else if (item instanceof char[]) {
+      union.update((char[]) item);
+    } else if (item instanceof int[]) {
+      union.update((int[]) item);
+    } else if (item instanceof long[]) {
+      union.update((long[]) item);
+    } else {
+      throw new SketchesArgumentException("Unsupported item type: " + item.getClass().getName());
+    }
+  }
+
   /**
    * Ref: {@link SetOperation#heapify(Memory) SetOperation.heapify(Memory)}
    * @param srcMem Ref: {@link SetOperation#heapify(Memory) SetOperation.heapify(Memory)} {@code srcMem}
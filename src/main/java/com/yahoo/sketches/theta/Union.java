@@ -29,7 +29,8 @@ public abstract class Union extends SetOperation {
   /**
    * Union the given Memory image of the OpenSource Theta Sketch,
    * which may be ordered or unordered, or the earlier versions of SetSketch,
-   * which must be compact and ordered.
+   * which must be compact and ordered. Compressed compact images, see
+   * {@link CompactSketch#toCompressedByteArray()}, are decoded as they are merged.
    *
    * <p>This method can be repeatedly called.
    * If the given sketch is null it is interpreted as an empty sketch.
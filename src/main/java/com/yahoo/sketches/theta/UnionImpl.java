@@ -17,6 +17,7 @@ import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
 import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
 import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
 import static com.yahoo.sketches.theta.PreambleUtil.UNION_THETA_LONG;
 import static java.lang.Math.min;
@@ -309,6 +310,14 @@ final class UnionImpl extends Union {
       if (cap <= 8) { return; } //empty and Theta = 1.0
       processVer3(skMem);
     }
+    else if (serVer == SER_VER_COMPRESSED) { //compressed compact ordered sketches
+      if (fam != 3) {
+        throw new SketchesArgumentException(
+            "Family must be Compact: " + Family.idToFamily(fam));
+      }
+      if (cap <= 8) { return; } //empty and Theta = 1.0
+      processVer4(skMem);
+    }
     else {
       throw new SketchesArgumentException("SerVer is unknown: " + serVer);
     }
@@ -440,4 +449,27 @@ final class UnionImpl extends Union {
     }
   }
 
+  //compact, ordered, hashes decoded one at a time from the compressed data
+  private void processVer4(final Memory skMem) {
+    Util.checkSeedHashes(seedHash_, skMem.getShort(SEED_HASH_SHORT));
+    final int preLongs = skMem.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
+    if (preLongs == 1) {
+      return;
+    }
+    CompactCompression.checkCapacity(skMem);
+    final long thetaLongIn = (preLongs == 2) ? Long.MAX_VALUE : skMem.getLong(THETA_LONG);
+    unionThetaLong_ = min(unionThetaLong_, thetaLongIn); //Theta rule
+    final CompactCompression.Decoder decoder = new CompactCompression.Decoder(skMem);
+    final int curCount = decoder.getCount();
+    for (int i = 0; i < curCount; i++ ) {
+      final long hashIn = decoder.next();
+      if (hashIn >= unionThetaLong_) { break; } // "early stop"
+      gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
+    }
+    unionThetaLong_ = min(unionThetaLong_, gadget_.getThetaLong()); //sync ext vs internal thetas
+    if (gadget_.isDirect()) {
+      gadget_.getMemory().putLong(UNION_THETA_LONG, unionThetaLong_);
+    }
+  }
+
 }
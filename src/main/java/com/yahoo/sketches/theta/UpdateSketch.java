@@ -25,7 +25,6 @@ import static com.yahoo.sketches.theta.PreambleUtil.extractSerVer;
 import static com.yahoo.sketches.theta.PreambleUtil.extractThetaLong;
 import static com.yahoo.sketches.theta.PreambleUtil.getMemBytes;
 import static com.yahoo.sketches.theta.UpdateReturnState.RejectedNullOrEmpty;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.WritableMemory;
@@ -43,6 +42,11 @@ import com.yahoo.sketches.Util;
  */
 public abstract class UpdateSketch extends Sketch {
 
+  /**
+   * Reusable output of the update hash, so that the update path does not allocate.
+   */
+  private final long[] hashOut_ = new long[2];
+
   UpdateSketch() {}
 
   /**
@@ -208,8 +212,7 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final long datum) {
-    final long[] data = { datum };
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(datum, getSeed(), hashOut_)[0] >>> 1);
   }
 
   /**
@@ -224,9 +227,7 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(datum, getSeed(), hashOut_)[0] >>> 1); //canonicalizes datum
   }
 
   /**
@@ -246,8 +247,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((datum == null) || datum.isEmpty()) {
       return RejectedNullOrEmpty;
     }
-    final byte[] data = datum.getBytes(UTF_8);
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(datum, getSeed(), hashOut_)[0] >>> 1); //UTF-8, without copying
   }
 
   /**
@@ -262,7 +262,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(data, getSeed(), hashOut_)[0] >>> 1);
   }
 
   /**
@@ -280,7 +280,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(data, getSeed(), hashOut_)[0] >>> 1);
   }
 
   /**
@@ -295,7 +295,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(data, getSeed(), hashOut_)[0] >>> 1);
   }
 
   /**
@@ -310,7 +310,36 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hash(data, getSeed(), hashOut_)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given 128-bit hash of an item. This allows one hash of an item
+   * to be shared with other sketches, see {@link com.yahoo.sketches.HashFanOut}.
+   * The hash must have been computed by
+   * {@link com.yahoo.sketches.hash.MurmurHash3 MurmurHash3} with the seed of this sketch,
+   * or the result will not be consistent with the other update methods.
+   * Only the first 64 bits of the hash are used.
+   *
+   * @param hash128 the given 128-bit hash as an array of two longs.
+   * @return
+   * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
+   */
+  public UpdateReturnState updateHash(final long[] hash128) {
+    return hashUpdate(hash128[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given 128-bit hash of an item.
+   * See {@link #updateHash(long[])}.
+   *
+   * @param h0 the first 64 bits of the given 128-bit hash.
+   * @param h1 the second 64 bits of the given 128-bit hash, which is not used.
+   * @return
+   * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
+   */
+  public UpdateReturnState updateHash(final long h0, final long h1) {
+    return hashUpdate(h0 >>> 1);
   }
 
   //restricted methods
@@ -165,6 +165,13 @@ public class UpdateSketchBuilder {
    * Returns an UpdateSketch with the current configuration of this Builder
    * with the specified backing destination Memory store.
    * Note: this cannot be used with the Alpha Family of sketches.
+   *
+   * <p>Unless the Resize Factor is X1, the destination Memory need only hold
+   * {@link Sketch#getMinUpdateSketchBytes()}. When the sketch outgrows it, the sketch requests
+   * larger Memory from the MemoryRequestServer of the destination Memory, moves itself there and
+   * asks the server to close the old Memory. With ResizeFactor.X1 the destination Memory must
+   * hold {@link Sketch#getMaxUpdateSketchBytes(int)}.</p>
+   *
    * @param dstMem The destination Memory.
    * @return an UpdateSketch
    */
@@ -17,6 +17,8 @@ import com.yahoo.sketches.hash.MurmurHash3;
 public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch {
 
   final long seed_;
+  // reusable output of the update hash, so that the update path does not allocate
+  private final long[] hashOut_ = new long[2];
 
   ArrayOfDoublesUpdatableSketch(final int numValues, final long seed) {
     super(numValues);
@@ -69,7 +71,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final long key, final double[] values) {
-    update(new long[] {key}, values);
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
   }
 
   /**
@@ -80,7 +82,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final double key, final double[] values) {
-    update(Util.doubleToLongArray(key), values);
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
   }
 
   /**
@@ -91,7 +93,8 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final String key, final double[] values) {
-    update(Util.stringToByteArray(key), values);
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
   }
 
   /**
@@ -103,7 +106,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final byte[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
   }
 
   /**
@@ -115,7 +118,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final int[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
   }
 
   /**
@@ -127,7 +130,33 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final long[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(MurmurHash3.hash(key, seed_, hashOut_)[0] >>> 1, values);
+  }
+
+  /**
+   * Updates this sketch with the given 128-bit hash of a key and double values. This allows one
+   * hash of a key to be shared with other sketches, see {@link com.yahoo.sketches.HashFanOut}.
+   * The hash must have been computed by
+   * {@link com.yahoo.sketches.hash.MurmurHash3 MurmurHash3} with the seed of this sketch.
+   * Only the first 64 bits of the hash are used.
+   *
+   * @param hash128 The given 128-bit hash of the key as an array of two longs
+   * @param values The given values
+   */
+  public void updateHash(final long[] hash128, final double[] values) {
+    insertOrIgnore(hash128[0] >>> 1, values);
+  }
+
+  /**
+   * Updates this sketch with the given 128-bit hash of a key and double values.
+   * See {@link #updateHash(long[], double[])}.
+   *
+   * @param h0 The first 64 bits of the given 128-bit hash of the key
+   * @param h1 The second 64 bits of the given 128-bit hash of the key, which is not used
+   * @param values The given values
+   */
+  public void updateHash(final long h0, final long h1, final double[] values) {
+    insertOrIgnore(h0 >>> 1, values);
   }
 
   /**
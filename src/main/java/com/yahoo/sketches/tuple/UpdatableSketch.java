@@ -26,6 +26,9 @@ import com.yahoo.sketches.hash.MurmurHash3;
  */
 public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSelectSketch<S> {
 
+  // reusable output of the update hash, so that the update path does not allocate
+  private final long[] hashOut_ = new long[2];
+
   /**
    * This is to create an instance of an UpdatableQuickSelectSketch.
    * @param nomEntries Nominal number of entries. Forced to the nearest power of 2 greater than
@@ -62,7 +65,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final long key, final U value) {
-  update(new long[] {key}, value);
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
   }
 
   /**
@@ -73,7 +76,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final double key, final U value) {
-    update(Util.doubleToLongArray(key), value);
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
   }
 
   /**
@@ -84,7 +87,8 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final String key, final U value) {
-    update(Util.stringToByteArray(key), value);
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
   }
 
   /**
@@ -96,7 +100,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final byte[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
   }
 
   /**
@@ -108,7 +112,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final int[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
   }
 
   /**
@@ -120,7 +124,34 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final long[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED, hashOut_)[0] >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with the given 128-bit hash of a key and U value. This allows one hash of
+   * a key to be shared with other sketches, see {@link com.yahoo.sketches.HashFanOut}.
+   * The hash must have been computed by
+   * {@link com.yahoo.sketches.hash.MurmurHash3 MurmurHash3} with the
+   * {@link com.yahoo.sketches.Util#DEFAULT_UPDATE_SEED DEFAULT_UPDATE_SEED}.
+   * Only the first 64 bits of the hash are used.
+   *
+   * @param hash128 The given 128-bit hash of the key as an array of two longs
+   * @param value The given U value
+   */
+  public void updateHash(final long[] hash128, final U value) {
+    insertOrIgnore(hash128[0] >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with the given 128-bit hash of a key and U value.
+   * See {@link #updateHash(long[], Object)}.
+   *
+   * @param h0 The first 64 bits of the given 128-bit hash of the key
+   * @param h1 The second 64 bits of the given 128-bit hash of the key, which is not used
+   * @param value The given U value
+   */
+  public void updateHash(final long h0, final long h1, final U value) {
+    insertOrIgnore(h0 >>> 1, value);
   }
 
   private void insertOrIgnore(final long key, final U value) {
@@ -9,24 +9,12 @@ import static com.yahoo.sketches.Util.MIN_LG_ARR_LONGS;
 import static com.yahoo.sketches.Util.ceilingPowerOf2;
 import static com.yahoo.sketches.Util.startingSubMultiple;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 
 final class Util {
 
-  static final long[] doubleToLongArray(final double value) {
-    final double d = (value == 0.0) ? 0.0 : value; // canonicalize -0.0, 0.0
-    final long[] array = { Double.doubleToLongBits(d) }; // canonicalize all NaN forms
-    return array;
-  }
-
-  static final byte[] stringToByteArray(final String value) {
-    if (value == null || value.isEmpty()) { return null; }
-    return value.getBytes(UTF_8);
-  }
-
   /**
    * Computes and checks the 16-bit seed hash from the given long seed.
    * The seed hash may not be zero in order to maintain compatibility with older serialized
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.hll.TgtHllType;
+import com.yahoo.sketches.hll.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketchBuilder;
+import com.yahoo.sketches.tuple.DoubleSummary;
+import com.yahoo.sketches.tuple.DoubleSummaryFactory;
+import com.yahoo.sketches.tuple.UpdatableSketch;
+import com.yahoo.sketches.tuple.UpdatableSketchBuilder;
+
+public class HashFanOutTest {
+
+  @Test
+  public void checkFanOutMatchesDirectUpdates() {
+    HllSketch hll1 = new HllSketch(10, TgtHllType.HLL_4);
+    HllSketch hll2 = new HllSketch(10, TgtHllType.HLL_4);
+    Union union1 = new Union(10);
+    Union union2 = new Union(10);
+    UpdateSketch theta1 = UpdateSketch.builder().setNominalEntries(512).build();
+    UpdateSketch theta2 = UpdateSketch.builder().setNominalEntries(512).build();
+    UpdatableSketch<Double, DoubleSummary> tuple1 =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory()).build();
+    UpdatableSketch<Double, DoubleSummary> tuple2 =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory()).build();
+    ArrayOfDoublesUpdatableSketch aod1 = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    ArrayOfDoublesUpdatableSketch aod2 = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    double[] values = {1.0};
+
+    HashFanOut fanOut = new HashFanOut().add(hll2).add(union2).add(theta2);
+    for (int i = 0; i < 10000; i++) {
+      String s = Integer.toString(i);
+      hll1.update(i);
+      hll1.update(s);
+      union1.update(i);
+      union1.update(s);
+      theta1.update(i);
+      theta1.update(s);
+      tuple1.update(i, 1.0);
+      tuple1.update(s, 1.0);
+      aod1.update(i, values);
+      aod1.update(s, values);
+
+      long[] h = fanOut.update(i);
+      tuple2.updateHash(h, 1.0);
+      aod2.updateHash(h[0], h[1], values);
+      h = fanOut.update(s);
+      tuple2.updateHash(h[0], h[1], 1.0);
+      aod2.updateHash(h, values);
+    }
+    assertEquals(hll2.toCompactByteArray(), hll1.toCompactByteArray());
+    assertEquals(union2.toCompactByteArray(), union1.toCompactByteArray());
+    assertEquals(theta2.compact().toByteArray(), theta1.compact().toByteArray());
+    assertEquals(tuple2.getEstimate(), tuple1.getEstimate());
+    assertEquals(tuple2.getRetainedEntries(), tuple1.getRetainedEntries());
+    assertEquals(aod2.compact().toByteArray(), aod1.compact().toByteArray());
+  }
+
+  @Test
+  public void checkUpdateTypes() {
+    HllSketch hll1 = new HllSketch(10);
+    HllSketch hll2 = new HllSketch(10);
+    HashFanOut fanOut = new HashFanOut().add(hll2);
+    hll1.update(1.5);
+    fanOut.update(1.5);
+    hll1.update(new byte[] {1, 2});
+    fanOut.update(new byte[] {1, 2});
+    hll1.update(new char[] {'a', 'b'});
+    fanOut.update(new char[] {'a', 'b'});
+    hll1.update(new int[] {1, 2});
+    fanOut.update(new int[] {1, 2});
+    hll1.update(new long[] {1, 2});
+    fanOut.update(new long[] {1, 2});
+    assertEquals(hll2.toCompactByteArray(), hll1.toCompactByteArray());
+    assertNull(fanOut.update((String) null));
+    assertNull(fanOut.update(""));
+    assertNull(fanOut.update(new byte[0]));
+    assertNull(fanOut.update((char[]) null));
+    assertNull(fanOut.update(new int[0]));
+    assertNull(fanOut.update((long[]) null));
+    assertEquals(hll2.getEstimate(), 5.0, 0.01);
+  }
+
+  @Test
+  public void checkSeed() {
+    UpdateSketch theta1 = UpdateSketch.builder().setSeed(123L).build();
+    UpdateSketch theta2 = UpdateSketch.builder().setSeed(123L).build();
+    HashFanOut fanOut = new HashFanOut(123L).add(theta2);
+    assertEquals(fanOut.getSeed(), 123L);
+    for (int i = 0; i < 100; i++) {
+      theta1.update(i);
+      fanOut.update(i);
+    }
+    assertEquals(theta2.compact().toByteArray(), theta1.compact().toByteArray());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkHllRequiresDefaultSeed() {
+    new HashFanOut(123L).add(new HllSketch(10));
+  }
+
+}
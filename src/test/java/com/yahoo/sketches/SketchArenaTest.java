@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.hll.TgtHllType;
+import com.yahoo.sketches.quantiles.DoublesSketch;
+import com.yahoo.sketches.quantiles.DoublesSketchBuilder;
+import com.yahoo.sketches.quantiles.UpdateDoublesSketch;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.theta.UpdateSketchBuilder;
+
+public class SketchArenaTest {
+
+  @Test
+  public void checkSketchesInArena() {
+    final int hllBytes = HllSketch.getMaxUpdatableSerializationBytes(10, TgtHllType.HLL_4);
+    final int thetaBytes = Sketch.getMaxUpdateSketchBytes(512);
+    final int quantilesBytes = DoublesSketch.getUpdatableStorageBytes(32, 10000);
+    final int numEach = 20;
+    final SketchArena arena = new SketchArena(
+        WritableMemory.allocate(numEach * (hllBytes + thetaBytes + quantilesBytes + 64)));
+    final int[] handles = new int[3 * numEach];
+    for (int i = 0; i < numEach; i++) {
+      handles[3 * i] = arena.allocate(hllBytes);
+      final HllSketch hll = new HllSketch(10, TgtHllType.HLL_4, arena.getMemory(handles[3 * i]));
+      handles[(3 * i) + 1] = arena.allocate(thetaBytes);
+      final UpdateSketch theta = new UpdateSketchBuilder().setNominalEntries(512)
+          .build(arena.getMemory(handles[(3 * i) + 1]));
+      handles[(3 * i) + 2] = arena.allocate(quantilesBytes);
+      final UpdateDoublesSketch quantiles = new DoublesSketchBuilder().setK(32)
+          .build(arena.getMemory(handles[(3 * i) + 2]));
+      for (int j = 0; j <= (100 * i); j++) {
+        hll.update(j);
+        theta.update(j);
+        quantiles.update(j);
+      }
+    }
+    assertEquals(arena.getNumRegions(), 3 * numEach);
+
+    //free every other sketch set, compact, and read the others back through their handles
+    for (int i = 0; i < numEach; i += 2) {
+      for (int s = 0; s < 3; s++) {
+        arena.free(handles[(3 * i) + s]);
+        assertFalse(arena.isLive(handles[(3 * i) + s]));
+      }
+    }
+    assertTrue(arena.getFreeBytes() > 0);
+    final long usedBefore = arena.getUsedBytes();
+    arena.compact();
+    assertEquals(arena.getFreeBytes(), 0);
+    assertTrue(arena.getUsedBytes() < usedBefore);
+    assertEquals(arena.getNumRegions(), (3 * numEach) / 2);
+    for (int i = 1; i < numEach; i += 2) {
+      final HllSketch hll = HllSketch.writableWrap(arena.getMemory(handles[3 * i]));
+      final UpdateSketch theta = UpdateSketch.wrap(arena.getMemory(handles[(3 * i) + 1]));
+      final UpdateDoublesSketch quantiles =
+          UpdateDoublesSketch.wrap(arena.getMemory(handles[(3 * i) + 2]));
+      final int n = (100 * i) + 1;
+      assertEquals(hll.getEstimate(), n, n * 0.1);
+      assertEquals(theta.getEstimate(), n, n * 0.1);
+      assertEquals(quantiles.getN(), n);
+      assertEquals(quantiles.getMaxValue(), n - 1.0);
+      hll.update(-1);
+    }
+    println(arena.toString());
+  }
+
+  @Test
+  public void checkFreeListReuse() {
+    final SketchArena arena = new SketchArena(WritableMemory.allocate(1024));
+    final int h1 = arena.allocate(100);
+    final int h2 = arena.allocate(100);
+    final int h3 = arena.allocate(50);
+    assertEquals(arena.getCapacity(h1), 104);
+    assertEquals(arena.getOffset(h1), SketchArena.REGION_HEADER_BYTES);
+    assertEquals(arena.getUsedBytes(), (2 * (104 + 8)) + 56 + 8);
+    arena.getMemory(h1).putLong(0, 42L);
+
+    //the same capacity reuses the region and the handle, zeroed
+    arena.free(h1);
+    assertEquals(arena.getFreeBytes(), 112);
+    final int h4 = arena.allocate(97);
+    assertEquals(h4, h1);
+    assertEquals(arena.getOffset(h4), SketchArena.REGION_HEADER_BYTES);
+    assertEquals(arena.getMemory(h4).getLong(0), 0L);
+    assertEquals(arena.getFreeBytes(), 0);
+
+    //the last region goes back to the unused part of the slab
+    final long used = arena.getUsedBytes();
+    arena.free(h3);
+    assertEquals(arena.getUsedBytes(), used - 64);
+    assertEquals(arena.getFreeBytes(), 0);
+
+    //h2 is now the last region as well
+    arena.free(h2);
+    assertEquals(arena.getUsedBytes(), 112);
+
+    //a different capacity is taken from the top, not from a free region
+    final int h5 = arena.allocate(200);
+    arena.free(h4);
+    final int h6 = arena.allocate(16);
+    assertEquals(arena.getOffset(h5), 112 + SketchArena.REGION_HEADER_BYTES);
+    assertEquals(arena.getOffset(h6), 112 + 200 + (2 * SketchArena.REGION_HEADER_BYTES));
+    assertEquals(arena.getFreeBytes(), 112);
+    assertEquals(arena.getNumRegions(), 2);
+  }
+
+  @Test
+  public void checkAutoCompaction() {
+    final SketchArena arena = new SketchArena(WritableMemory.allocate(10 * 40));
+    final int[] handles = new int[10];
+    for (int i = 0; i < 10; i++) {
+      handles[i] = arena.allocate(32);
+      arena.getMemory(handles[i]).putLong(0, i);
+    }
+    assertEquals(arena.getAvailableBytes(), 0);
+    try {
+      arena.allocate(8);
+      fail();
+    } catch (final SketchesStateException e) {
+      // expected
+    }
+    for (int i = 0; i < 8; i += 2) {
+      arena.free(handles[i]);
+    }
+    //too large for any free region, so the arena compacts
+    final int big = arena.allocate(4 * 40 - 8);
+    assertEquals(arena.getAvailableBytes(), 0);
+    assertEquals(arena.getCapacity(big), 152);
+    for (int i = 1; i < 10; i += 2) {
+      assertEquals(arena.getMemory(handles[i]).getLong(0), i);
+    }
+    assertEquals(arena.getMemory(handles[8]).getLong(0), 8);
+    assertEquals(arena.getNumRegions(), 7);
+  }
+
+  @Test
+  public void checkReset() {
+    final SketchArena arena = new SketchArena(WritableMemory.allocate(1 << 12));
+    for (int i = 0; i < 40; i++) {
+      arena.allocate(64);
+    }
+    assertEquals(arena.getNumRegions(), 40);
+    arena.reset();
+    assertEquals(arena.getNumRegions(), 0);
+    assertEquals(arena.getUsedBytes(), 0);
+    assertEquals(arena.getAvailableBytes(), 1 << 12);
+    assertFalse(arena.isLive(0));
+    final int h = arena.allocate(8);
+    assertEquals(arena.getOffset(h), SketchArena.REGION_HEADER_BYTES);
+  }
+
+  @Test
+  public void checkBadArgs() {
+    final SketchArena arena = new SketchArena(WritableMemory.allocate(64));
+    try {
+      arena.allocate(0);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    try {
+      arena.getMemory(0);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    final int h = arena.allocate(8);
+    arena.free(h);
+    try {
+      arena.free(h);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    try {
+      new SketchArena(null);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.testng.annotations.Test;
+
+public class SplitMixRandomTest {
+
+  @Test
+  public void checkMatchesSplittableRandom() {
+    //both use the SplitMix64 mixing function with the golden gamma
+    SplitMixRandom rand = new SplitMixRandom(12345L);
+    SplittableRandom ref = new SplittableRandom(12345L);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(rand.nextLong(), ref.nextLong());
+    }
+  }
+
+  @Test
+  public void checkDeterminism() {
+    SplitMixRandom rand1 = new SplitMixRandom(1L);
+    SplitMixRandom rand2 = new SplitMixRandom(1L);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(rand1.nextInt(100), rand2.nextInt(100));
+      assertEquals(rand1.nextBoolean(), rand2.nextBoolean());
+      assertEquals(rand1.nextDouble(), rand2.nextDouble());
+    }
+    rand1.setSeed(2L);
+    assertNotEquals(rand1.nextLong(), rand2.nextLong());
+    rand1.setSeed(1L);
+    rand2.setSeed(1L);
+    assertEquals(rand1.nextLong(), rand2.nextLong());
+  }
+
+  @Test
+  public void checkRanges() {
+    SplitMixRandom rand = new SplitMixRandom(7L);
+    int trues = 0;
+    int n = 100000;
+    for (int i = 0; i < n; i++) {
+      double d = rand.nextDouble();
+      assertTrue((d >= 0.0) && (d < 1.0));
+      int r = rand.nextInt(3);
+      assertTrue((r >= 0) && (r < 3));
+      if (rand.nextBoolean()) { trues++; }
+    }
+    assertEquals(trues, n / 2, n * 0.01);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.frequencies.DistTest.randomGeometricDist;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.ArrayOfLongsSerDe;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.frequencies.ItemsSketch.Row;
+
+public class ConcurrentItemsSketchTest {
+
+  @Test
+  public void checkConcurrentUpdates() throws Exception {
+    final int numThreads = 4;
+    final int perThread = 20000;
+    final ConcurrentItemsSketch<Long> sketch = new ConcurrentItemsSketch<>(64, 8);
+    final Long[][] streams = new Long[numThreads][perThread];
+    final Map<Long, Long> trueCounts = new HashMap<>();
+    for (int t = 0; t < numThreads; t++) {
+      for (int i = 0; i < perThread; i++) {
+        final Long item = randomGeometricDist(0.01) + 1;
+        streams[t][i] = item;
+        final Long c = trueCounts.get(item);
+        trueCounts.put(item, (c == null) ? 1L : c + 1);
+      }
+    }
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final Long[] stream = streams[t];
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < stream.length; i++) {
+            sketch.update(stream[i]);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int t = 0; t < numThreads; t++) {
+      threads[t].join();
+    }
+
+    assertEquals(sketch.getStreamLength(), (long) numThreads * perThread);
+    assertTrue(sketch.getMaximumError() > 0); //purged
+    for (Map.Entry<Long, Long> e : trueCounts.entrySet()) {
+      final Long item = e.getKey();
+      final long count = e.getValue();
+      assertTrue(sketch.getLowerBound(item) <= count);
+      assertTrue(sketch.getUpperBound(item) >= count);
+    }
+    final Row<Long>[] fp = sketch.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+    for (int i = 0; i < fp.length; i++) {
+      assertTrue(trueCounts.get(fp[i].getItem()) > sketch.getMaximumError());
+    }
+    final Row<Long>[] fn = sketch.getFrequentItems(ErrorType.NO_FALSE_NEGATIVES);
+    int numFrequent = 0;
+    for (Map.Entry<Long, Long> e : trueCounts.entrySet()) {
+      if (e.getValue() > sketch.getMaximumError()) { numFrequent++; }
+    }
+    assertTrue(fn.length >= numFrequent);
+    assertTrue(fp.length <= numFrequent);
+
+    final ItemsSketch<Long> result = sketch.getResult();
+    assertEquals(result.getStreamLength(), sketch.getStreamLength());
+    assertEquals(result.getMaximumError(), sketch.getMaximumError());
+    final ItemsSketch<Long> heapified = ItemsSketch.getInstance(
+        Memory.wrap(sketch.toByteArray(new ArrayOfLongsSerDe())), new ArrayOfLongsSerDe());
+    assertEquals(heapified.getNumActiveItems(), sketch.getNumActiveItems());
+    println(sketch.toString());
+  }
+
+  @Test
+  public void checkSnapshotInvalidation() {
+    final ConcurrentItemsSketch<Long> sketch = new ConcurrentItemsSketch<>(16, 4);
+    assertEquals(sketch.getNumStripes(), 4);
+    assertTrue(sketch.isEmpty());
+    sketch.update(1L, 10);
+    sketch.update(2L, 5);
+    assertEquals(sketch.getStreamLength(), 15);
+    assertEquals(sketch.getNumActiveItems(), 2);
+    final Row<Long>[] rows = sketch.getFrequentItems(0, ErrorType.NO_FALSE_POSITIVES);
+    assertEquals(rows.length, 2);
+    assertEquals(rows[0].getItem(), Long.valueOf(1));
+    sketch.update(3L, 20);
+    assertEquals(sketch.getStreamLength(), 35);
+    assertEquals(sketch.getFrequentItems(ErrorType.NO_FALSE_NEGATIVES)[0].getItem(),
+        Long.valueOf(3));
+    assertEquals(sketch.getEstimate(3L), 20);
+    sketch.update(null);
+    assertEquals(sketch.getStreamLength(), 35);
+    assertEquals(sketch.getEstimate(null), 0);
+    sketch.reset();
+    assertTrue(sketch.isEmpty());
+    assertEquals(sketch.getStreamLength(), 0);
+    assertEquals(sketch.getEstimate(3L), 0);
+    assertFalse(new ConcurrentItemsSketch<>(16).getNumStripes() < 4);
+  }
+
+  @Test
+  public void checkBadArgs() {
+    try {
+      new ConcurrentItemsSketch<>(16, 3);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    try {
+      new ConcurrentItemsSketch<>(15, 4);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
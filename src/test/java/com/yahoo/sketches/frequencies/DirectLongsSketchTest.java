@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.frequencies;
+
+import static com.yahoo.sketches.frequencies.DistTest.randomGeometricDist;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesReadOnlyException;
+import com.yahoo.sketches.frequencies.LongsSketch.Row;
+
+public class DirectLongsSketchTest {
+
+  @Test
+  public void checkMatchesHeapSketch() {
+    final int maxMapSize = 128;
+    final LongsSketch heap = new LongsSketch(maxMapSize);
+    final WritableMemory wmem =
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(maxMapSize));
+    final DirectLongsSketch direct = DirectLongsSketch.initialize(maxMapSize, wmem);
+    assertTrue(direct.isEmpty());
+    assertEquals(direct.toByteArray(), heap.toByteArray());
+
+    for (int i = 0; i < 10000; i++) {
+      final long item = randomGeometricDist(0.01) + 1;
+      final long count = (i % 3) + 1;
+      heap.update(item, count);
+      direct.update(item, count);
+    }
+    assertTrue(direct.getMaximumError() > 0); //purged
+    checkSame(direct, heap);
+
+    //the heap sketch reads both the compact and the updatable image
+    final LongsSketch heap2 = LongsSketch.getInstance(wmem);
+    assertEquals(heap2.toByteArray(), heap.toByteArray());
+    assertEquals(LongsSketch.getInstance(Memory.wrap(direct.toByteArray())).toByteArray(),
+        heap.toByteArray());
+  }
+
+  @Test
+  public void checkMerge() {
+    final LongsSketch heap1 = new LongsSketch(64);
+    final LongsSketch heap2 = new LongsSketch(256);
+    final DirectLongsSketch direct1 = DirectLongsSketch.initialize(64,
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(64)));
+    final DirectLongsSketch direct2 = DirectLongsSketch.initialize(256,
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(256)));
+    for (int i = 0; i < 5000; i++) {
+      final long item1 = randomGeometricDist(0.02) + 1;
+      final long item2 = randomGeometricDist(0.005) + 1;
+      heap1.update(item1);
+      direct1.update(item1);
+      heap2.update(item2);
+      direct2.update(item2);
+    }
+    heap1.merge(heap2);
+    final DirectLongsSketch directA = DirectLongsSketch.initialize(64,
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(64)));
+    directA.merge(direct1).merge(DirectLongsSketch.wrap(direct2.getMemory()));
+    final DirectLongsSketch directB = DirectLongsSketch.initialize(64,
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(64)));
+    directB.merge(LongsSketch.getInstance(Memory.wrap(direct1.toByteArray())))
+        .merge(LongsSketch.getInstance(Memory.wrap(direct2.toByteArray())));
+    final LongsSketch heapA = new LongsSketch(64);
+    heapA.merge(LongsSketch.getInstance(Memory.wrap(direct1.toByteArray())))
+        .merge(LongsSketch.getInstance(Memory.wrap(direct2.toByteArray())));
+
+    checkSame(directA, heapA);
+    checkSame(directB, heapA);
+    assertEquals(directA.getStreamLength(), heap1.getStreamLength());
+    assertTrue(directA.merge((LongsSketch) null) == directA);
+    assertTrue(directA.merge((DirectLongsSketch) null) == directA);
+  }
+
+  @Test
+  public void checkReadOnlyWrap() {
+    final byte[] arr = new byte[(int) DirectLongsSketch.getUpdatableStorageBytes(32)];
+    final WritableMemory wmem = WritableMemory.wrap(arr);
+    final DirectLongsSketch writable = DirectLongsSketch.initialize(32, wmem);
+    writable.update(1, 10);
+    writable.update(2, 5);
+
+    final DirectLongsSketch ro = DirectLongsSketch.wrap(Memory.wrap(arr));
+    assertTrue(ro.isReadOnly());
+    assertFalse(writable.isReadOnly());
+    assertEquals(ro.getEstimate(1), 10);
+    assertEquals(ro.getUpperBound(2), 5);
+    assertEquals(ro.getLowerBound(3), 0);
+    final Row[] rows = ro.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+    assertEquals(rows.length, 2);
+    assertEquals(rows[0].getItem(), 1);
+
+    //updates through the writable handle are visible in the read-only one
+    writable.update(3, 20);
+    assertEquals(ro.getFrequentItems(ErrorType.NO_FALSE_NEGATIVES)[0].getItem(), 3);
+    assertEquals(DirectLongsSketch.writableWrap(wmem).getStreamLength(), 35);
+
+    try {
+      ro.update(1);
+      fail();
+    } catch (final SketchesReadOnlyException e) {
+      // expected
+    }
+    try {
+      ro.reset();
+      fail();
+    } catch (final SketchesReadOnlyException e) {
+      // expected
+    }
+    try {
+      ro.merge(new LongsSketch(8));
+      fail();
+    } catch (final SketchesReadOnlyException e) {
+      // expected
+    }
+    println(ro.toString());
+    println(PreambleUtil.preambleToString(wmem));
+  }
+
+  @Test
+  public void checkReset() {
+    final WritableMemory wmem =
+        WritableMemory.allocate((int) DirectLongsSketch.getUpdatableStorageBytes(16));
+    final DirectLongsSketch sketch = DirectLongsSketch.initialize(16, wmem);
+    for (int i = 0; i < 100; i++) {
+      sketch.update(i);
+    }
+    assertTrue(sketch.getNumActiveItems() <= sketch.getMaximumMapCapacity());
+    assertEquals(sketch.getStreamLength(), 100);
+    assertEquals(sketch.getCurrentMapCapacity(), sketch.getMaximumMapCapacity());
+    sketch.reset();
+    assertTrue(sketch.isEmpty());
+    assertEquals(sketch.getStreamLength(), 0);
+    assertEquals(sketch.getMaximumError(), 0);
+    assertEquals(sketch.getCurrentMapCapacity(), 6);
+    assertEquals(sketch.getStorageBytes(), 8);
+    sketch.update(7, 3);
+    assertEquals(sketch.getEstimate(7), 3);
+  }
+
+  @Test
+  public void checkBadArgs() {
+    final int bytes = (int) DirectLongsSketch.getUpdatableStorageBytes(16);
+    try {
+      DirectLongsSketch.initialize(16, WritableMemory.allocate(bytes - 1));
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    try {
+      DirectLongsSketch.initialize(15, WritableMemory.allocate(bytes));
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    final WritableMemory wmem = WritableMemory.allocate(bytes);
+    final DirectLongsSketch sketch = DirectLongsSketch.initialize(16, wmem);
+    try {
+      sketch.update(1, -1);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    //compact image
+    sketch.update(1);
+    try {
+      DirectLongsSketch.wrap(Memory.wrap(sketch.toByteArray()));
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    //truncated image
+    try {
+      DirectLongsSketch.wrap(wmem.region(0, bytes - 8));
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void checkSame(final DirectLongsSketch direct, final LongsSketch heap) {
+    assertEquals(direct.getStreamLength(), heap.getStreamLength());
+    assertEquals(direct.getMaximumError(), heap.getMaximumError());
+    assertEquals(direct.getNumActiveItems(), heap.getNumActiveItems());
+    assertEquals(direct.getCurrentMapCapacity(), heap.getCurrentMapCapacity());
+    assertEquals(direct.getStorageBytes(), direct.toByteArray().length);
+    assertEquals(direct.toByteArray(), heap.toByteArray());
+    for (ErrorType errorType : ErrorType.values()) {
+      final Row[] dRows = direct.getFrequentItems(errorType);
+      final Row[] hRows = heap.getFrequentItems(errorType);
+      assertEquals(dRows.length, hRows.length);
+      for (int i = 0; i < dRows.length; i++) {
+        assertEquals(dRows[i].getItem(), hRows[i].getItem());
+        assertEquals(dRows[i].getEstimate(), hRows[i].getEstimate());
+        assertEquals(dRows[i].getUpperBound(), hRows[i].getUpperBound());
+        assertEquals(dRows[i].getLowerBound(), hRows[i].getLowerBound());
+        assertEquals(direct.getEstimate(dRows[i].getItem()),
+            heap.getEstimate(dRows[i].getItem()));
+      }
+    }
+  }
+
+  @Test
+  public void checkLargeStorageBytes() {
+    assertEquals(DirectLongsSketch.getUpdatableStorageBytes(1 << 30), 32 + (18L << 30));
+    assertTrue(DirectLongsSketch.getUpdatableStorageBytes(1 << 27) > Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
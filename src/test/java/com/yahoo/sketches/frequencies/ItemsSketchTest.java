@@ -16,6 +16,9 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -367,6 +370,18 @@ public class ItemsSketchTest {
     }
   }
 
+  @Test
+  public void checkCollector() {
+    final ItemsSketch<Integer> sk = IntStream.range(0, 10000).boxed().parallel()
+        .collect(ItemsSketch.<Integer>collector(64));
+    assertEquals(sk.getStreamLength(), 10000);
+
+    final ItemsSketch<String> sk2 = Stream.of("a", "b", null, "a")
+        .collect(ItemsSketch.<String>collector(8));
+    assertEquals(sk2.getStreamLength(), 3);
+    assertEquals(sk2.getEstimate("a"), 2);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: " + this.getClass().getName());
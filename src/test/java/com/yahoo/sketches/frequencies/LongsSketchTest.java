@@ -18,6 +18,8 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.stream.LongStream;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -498,6 +500,28 @@ public class LongsSketchTest {
     printSketch(size, new long[] {5, 4, 3, 2, 1, 1, 1, 1, 1, 1, 1});
   }
 
+  @Test
+  public void checkCollector() {
+    final int n = 100000;
+    final long[] items = new long[n];
+    final long[] trueCounts = new long[n];
+    for (int i = 0; i < n; i++) {
+      items[i] = randomGeometricDist(0.05);
+      trueCounts[(int) Math.min(items[i], n - 1)]++;
+    }
+    final LongsSketch sk = LongStream.of(items).boxed().parallel()
+        .collect(LongsSketch.collector(256));
+    assertEquals(sk.getStreamLength(), n);
+    assertEquals(sk.getMaximumMapCapacity(), 192);
+    for (int i = 1; i <= 10; i++) {
+      assertTrue(sk.getLowerBound(i) <= trueCounts[i]);
+      assertTrue(sk.getUpperBound(i) >= trueCounts[i]);
+    }
+    final Row[] rows = sk.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+    assertTrue(rows.length > 0);
+    assertEquals(rows[0].getItem(), 1);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: " + this.getClass().getName());
@@ -7,6 +7,8 @@ package com.yahoo.sketches.hash;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.yahoo.memory.Memory;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -210,8 +212,76 @@ public class MurmurHash3Test {
     println(com.yahoo.sketches.Util.longToHexBytes(out[0]));
     println(com.yahoo.sketches.Util.longToHexBytes(out[1]));
   }
-  
-  
+
+
+  @Test
+  public void checkPrimitivesMatchArrays() {
+    long[] out = new long[2];
+    long[] vals = {0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 0X0807060504030201L};
+    for (long v : vals) {
+      Assert.assertEquals(hash(v, 9001L, out), hash(new long[] {v}, 9001L));
+      Assert.assertEquals(hash((int) v, 9001L, out), hash(new int[] {(int) v}, 9001L));
+      double d = Double.longBitsToDouble(v);
+      if (d == 0.0) { continue; } //-0.0 is canonicalized, see below
+      Assert.assertEquals(hash(d, 9001L, out),
+          hash(new long[] {Double.doubleToLongBits(d)}, 9001L));
+    }
+    //canonicalization of -0.0 and NaN forms
+    Assert.assertEquals(hash(-0.0, 0L, new long[2]), hash(0.0, 0L, new long[2]));
+    Assert.assertEquals(hash(Double.longBitsToDouble(0x7ff8000000000001L), 0L, new long[2]),
+        hash(Double.NaN, 0L, new long[2]));
+  }
+
+  @Test
+  public void checkArraysWithHashOut() {
+    String keyStr = "The quick brown fox jumps over the lazy dog";
+    long[] out = new long[2];
+    byte[] bArr = keyStr.getBytes(UTF_8);
+    Assert.assertSame(hash(bArr, 0L, out), out);
+    Assert.assertEquals(out, hash(bArr, 0L));
+    Assert.assertEquals(hash(keyStr.toCharArray(), 0L, out), hash(keyStr.toCharArray(), 0L));
+    Assert.assertEquals(hash(stringToInts(keyStr), 0L, out), hash(stringToInts(keyStr), 0L));
+    Assert.assertEquals(hash(stringToLongs(keyStr), 0L, out), hash(stringToLongs(keyStr), 0L));
+  }
+
+  @Test
+  public void checkStringMatchesUtf8Bytes() {
+    long[] out = new long[2];
+    String[] strs = {
+      "", "a", "The quick brown fox jumps over the lazy dog",
+      "The quick brown fox jumps over the lazy1",
+      "\u00e9t\u00e9 \u00fcber \u20ac100 \u4e2d\u6587\u5b57 0123456789abcdef",
+      "\ud83d\ude00 emoji \ud83c\udf89\ud83c\udf89",
+      "lone high \ud83d end", "lone low \ude00 end", "trailing high \ud83d",
+      "\ude00\ud83d reversed pair"
+    };
+    for (String str : strs) {
+      Assert.assertEquals(hash(str, 0L, out), hash(str.getBytes(UTF_8), 0L), str);
+    }
+    //all lengths over block boundaries with mixed width chars
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append((char) ((i % 3 == 0) ? 'x' : (i % 3 == 1) ? '\u00e9' : '\u4e2d'));
+      String str = sb.toString();
+      Assert.assertEquals(hash(str, 1L, out), hash(str.getBytes(UTF_8), 1L), str);
+    }
+  }
+
+  @Test
+  public void checkMemoryMatchesBytes() {
+    long[] out = new long[2];
+    byte[] bArr = new byte[100];
+    for (int i = 0; i < bArr.length; i++) { bArr[i] = (byte) (i * 37); }
+    Memory mem = Memory.wrap(bArr);
+    for (int off = 0; off < 4; off++) {
+      for (int len = 0; len <= (bArr.length - off); len++) {
+        byte[] sub = new byte[len];
+        System.arraycopy(bArr, off, sub, 0, len);
+        Assert.assertEquals(hash(mem, off, len, 0L, out), hash(sub, 0L));
+      }
+    }
+  }
+
   //Helper methods
   private static long[] stringToLongs(String in) {
     byte[] bArr = in.getBytes(UTF_8);
@@ -11,6 +11,7 @@ import static org.testng.Assert.assertTrue;
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
 
 /**
  * @author Lee Rhodes
@@ -73,6 +74,76 @@ public class BaseHllSketchTest {
     u.update("1234");
   }
 
+  @Test
+  public void checkBatchUpdatesMatchSingleUpdates() {
+    int[] nArr = {0, 7, 100, 1000, 5000, 50000};
+    for (TgtHllType type : TgtHllType.values()) {
+      for (int n : nArr) {
+        long[] longs = new long[n + 5];
+        int[] ints = new int[n + 5];
+        double[] doubles = new double[n + 5];
+        String[] strs = new String[n + 5];
+        for (int i = 0; i < longs.length; i++) {
+          longs[i] = i * 7919L;
+          ints[i] = -i;
+          doubles[i] = i / 3.0;
+          strs[i] = (i % 10 == 0) ? null : Integer.toString(i);
+        }
+        checkBatch(new HllSketch(10, type), new HllSketch(10, type), longs, ints, doubles, strs, n);
+        int bytes = HllSketch.getMaxUpdatableSerializationBytes(10, type);
+        checkBatch(new HllSketch(10, type, WritableMemory.allocate(bytes)),
+            new HllSketch(10, type), longs, ints, doubles, strs, n);
+      }
+    }
+  }
+
+  private static void checkBatch(HllSketch batchSk, HllSketch singleSk, long[] longs,
+      int[] ints, double[] doubles, String[] strs, int n) {
+    Union batchU = new Union(10);
+    Union singleU = new Union(10);
+    batchSk.update(longs, 5, n);
+    batchSk.update(ints, 5, n);
+    batchSk.update(doubles, 5, n);
+    batchSk.update(strs, 5, n);
+    batchU.update(longs, 5, n);
+    batchU.update(ints, 5, n);
+    batchU.update(doubles, 5, n);
+    batchU.update(strs, 5, n);
+    for (int i = 5; i < (n + 5); i++) {
+      singleSk.update(longs[i]);
+      singleU.update(longs[i]);
+    }
+    for (int i = 5; i < (n + 5); i++) {
+      singleSk.update(ints[i]);
+      singleU.update(ints[i]);
+    }
+    for (int i = 5; i < (n + 5); i++) {
+      singleSk.update(doubles[i]);
+      singleU.update(doubles[i]);
+    }
+    for (int i = 5; i < (n + 5); i++) {
+      singleSk.update(strs[i]);
+      singleU.update(strs[i]);
+    }
+    assertEquals(batchSk.getEstimate(), singleSk.getEstimate());
+    assertEquals(batchSk.getCurMode(), singleSk.getCurMode());
+    assertEquals(batchSk.toCompactByteArray(), singleSk.toCompactByteArray());
+    assertEquals(batchU.getEstimate(), singleU.getEstimate());
+    assertEquals(batchU.toCompactByteArray(), singleU.toCompactByteArray());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchUpdateBadRange() {
+    HllSketch sk = new HllSketch(10);
+    sk.update(new long[10], 5, 6);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchUpdateNegativeOffset() {
+    Union u = new Union(10);
+    u.update(new String[10], -1, 2);
+  }
+
   @Test
   public void misc() {
     HllSketch sk = new HllSketch(10, TgtHllType.HLL_4);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class ConcurrentHllSketchTest {
+
+  @Test
+  public void checkSingleThreadMatchesHll8() {
+    int lgK = 12;
+    int[] nArr = {0, 1, 10, 100, 300, 1000, 10000, 100000};
+    for (int n : nArr) {
+      ConcurrentHllSketch csk = new ConcurrentHllSketch(lgK);
+      HllSketch sk = new HllSketch(lgK, TgtHllType.HLL_8);
+      for (int i = 0; i < n; i++) {
+        csk.update(i);
+        sk.update(i);
+      }
+      assertEquals(csk.isEmpty(), n == 0);
+      HllSketch result = csk.getResult();
+      assertEquals(result.getCompositeEstimate(), sk.getCompositeEstimate(), 0.0);
+      if (result.getCurMode() == CurMode.HLL) {
+        checkSameRegisters(result, sk);
+        assertEquals(csk.getEstimate(), sk.getEstimate(), n * 0.05);
+      } else {
+        assertEquals(csk.getEstimate(), sk.getEstimate(), 0.0);
+        assertEquals(result.getCurMode(), sk.getCurMode());
+      }
+      assertEquals(csk.getUpperBound(2), result.getUpperBound(2));
+      assertEquals(csk.getLowerBound(2), result.getLowerBound(2));
+    }
+  }
+
+  @Test
+  public void checkConcurrentUpdates() throws InterruptedException {
+    final int lgK = 11;
+    final int numThreads = 8;
+    final int n = 200000;
+    try (WritableDirectHandle handle =
+        WritableMemory.allocateDirect(ConcurrentHllSketch.getMaxRegisterBytes(lgK))) {
+      final ConcurrentHllSketch csk = new ConcurrentHllSketch(lgK, handle.get());
+      assertTrue(csk.isOffHeap());
+      Thread[] threads = new Thread[numThreads];
+      for (int t = 0; t < numThreads; t++) {
+        final int start = t;
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            for (int i = start; i < n; i += numThreads) {
+              csk.update((long) i);
+              csk.update((long) (i % 100)); //duplicates across threads
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) { thread.join(); }
+
+      HllSketch sk = new HllSketch(lgK, TgtHllType.HLL_8);
+      for (int i = 0; i < n; i++) { sk.update((long) i); }
+      HllSketch result = csk.getResult();
+      checkSameRegisters(result, sk);
+      assertEquals(csk.getCompositeEstimate(), sk.getCompositeEstimate(), 0.0);
+      assertEquals(csk.getEstimate(), n, n * 0.1);
+
+      Union union = new Union(lgK);
+      union.update(csk.getResult(TgtHllType.HLL_4));
+      assertEquals(union.getCompositeEstimate(), sk.getCompositeEstimate(), 0.0);
+    }
+  }
+
+  @Test
+  public void checkConcurrentWarmup() throws InterruptedException {
+    final int lgK = 4; //very small warmup set
+    final int numThreads = 16;
+    final ConcurrentHllSketch csk = new ConcurrentHllSketch(lgK);
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int start = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1000; i++) { csk.update("item" + (start + (i * numThreads))); }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) { thread.join(); }
+    HllSketch sk = new HllSketch(lgK, TgtHllType.HLL_8);
+    for (int i = 0; i < (1000 * numThreads); i++) { sk.update("item" + i); }
+    checkSameRegisters(csk.getResult(), sk);
+  }
+
+  @Test
+  public void checkUpdateTypesAndReset() {
+    ConcurrentHllSketch csk = new ConcurrentHllSketch(10);
+    HllSketch sk = new HllSketch(10, TgtHllType.HLL_8);
+    csk.update(new byte[] {1, 2});
+    csk.update(new char[] {1, 2});
+    csk.update(new int[] {1, 2});
+    csk.update(new long[] {1, 2});
+    csk.update(-0.0);
+    csk.update("abc");
+    csk.update((String) null);
+    csk.update(new byte[0]);
+    sk.update(new byte[] {1, 2});
+    sk.update(new char[] {1, 2});
+    sk.update(new int[] {1, 2});
+    sk.update(new long[] {1, 2});
+    sk.update(0.0);
+    sk.update("abc");
+    assertEquals(csk.getEstimate(), sk.getEstimate(), 0.0);
+    assertEquals(csk.getLgConfigK(), 10);
+    assertFalse(csk.isOffHeap());
+    println(csk.toString());
+    csk.reset();
+    assertTrue(csk.isEmpty());
+    assertEquals(csk.getEstimate(), 0.0);
+    assertTrue(csk.getResult().isEmpty());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkMemTooSmall() {
+    new ConcurrentHllSketch(10, WritableMemory.allocate(100));
+  }
+
+  private static void checkSameRegisters(HllSketch sk1, HllSketch sk2) {
+    assertEquals(sk1.getCurMode(), CurMode.HLL);
+    assertEquals(sk2.getCurMode(), CurMode.HLL);
+    PairIterator itr1 = sk1.getIterator();
+    PairIterator itr2 = sk2.getIterator();
+    while (itr1.nextAll()) {
+      assertTrue(itr2.nextAll());
+      assertEquals(itr1.getValue(), itr2.getValue());
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
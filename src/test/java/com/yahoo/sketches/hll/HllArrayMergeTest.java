@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+
+public class HllArrayMergeTest {
+
+  @Test
+  public void checkUnpackMatchesGetSlot() {
+    for (TgtHllType type : new TgtHllType[] {TgtHllType.HLL_4, TgtHllType.HLL_6}) {
+      HllSketch sk = buildSketch(8, type, 0, 5000, false);
+      AbstractHllArray arr = (AbstractHllArray) sk.hllSketchImpl;
+      Memory mem = arr.getHllByteArrMemory();
+      for (int w = 0; w < (1 << 8) >>> 3; w++) {
+        long word = (type == TgtHllType.HLL_4)
+            ? HllArrayMerge.unpack4(mem, 0, w) : HllArrayMerge.unpack6(mem, 0, w);
+        for (int j = 0; j < 8; j++) {
+          assertEquals((int) (word >>> (j << 3)) & 0xFF, arr.getSlot((w << 3) + j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checkZeroLanes() {
+    assertEquals(HllArrayMerge.zeroLanes(0L), 0x8080808080808080L);
+    assertEquals(HllArrayMerge.zeroLanes(0x3F3F3F3F3F3F3F3FL), 0L);
+    assertEquals(HllArrayMerge.zeroLanes(0x0100010001000100L), 0x0080008000800080L);
+  }
+
+  @Test
+  public void checkMergeMatchesIterator() {
+    for (TgtHllType type : TgtHllType.values()) {
+      for (int lgK = 4; lgK <= 12; lgK += 4) {
+        for (boolean direct : new boolean[] {false, true}) {
+          checkMerge(lgK, type, 1 << (lgK + 6), direct); //HLL_4 with aux exceptions
+          checkMerge(lgK, type, 1 << (lgK + 1), direct);
+        }
+      }
+    }
+  }
+
+  private static void checkMerge(int lgK, TgtHllType srcType, int n, boolean direct) {
+    HllSketch src = buildSketch(lgK, srcType, 0, n, direct);
+    HllSketch dst1 = buildSketch(lgK, TgtHllType.HLL_8, n / 2, n, direct);
+    HllSketch dst2 = buildSketch(lgK, TgtHllType.HLL_8, n / 2, n, direct);
+    AbstractHllArray srcArr = (AbstractHllArray) src.hllSketchImpl;
+    AbstractHllArray dstArr1 = (AbstractHllArray) dst1.hllSketchImpl;
+    AbstractHllArray dstArr2 = (AbstractHllArray) dst2.hllSketchImpl;
+    assertTrue(HllArrayMerge.isApplicable(srcArr, dstArr1));
+    HllArrayMerge.merge(srcArr, dstArr1);
+    PairIterator itr = srcArr.getIterator();
+    while (itr.nextValid()) {
+      dstArr2.couponUpdate(itr.getPair());
+    }
+    assertEquals(dst1.toUpdatableByteArray(), dst2.toUpdatableByteArray());
+    assertEquals(dstArr1.getHipAccum(), dstArr2.getHipAccum());
+    assertEquals(dstArr1.getKxQ0(), dstArr2.getKxQ0());
+    assertEquals(dstArr1.getKxQ1(), dstArr2.getKxQ1());
+    assertEquals(dstArr1.getNumAtCurMin(), dstArr2.getNumAtCurMin());
+  }
+
+  private static HllSketch buildSketch(int lgK, TgtHllType type, int start, int end,
+      boolean direct) {
+    HllSketch sk;
+    if (direct) {
+      int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, type);
+      sk = new HllSketch(lgK, type, WritableMemory.allocate(bytes));
+    } else {
+      sk = new HllSketch(lgK, type);
+    }
+    for (int i = start; i < end; i++) {
+      sk.update(i);
+    }
+    return sk;
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
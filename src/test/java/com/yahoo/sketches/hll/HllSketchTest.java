@@ -21,6 +21,9 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.Memory;
@@ -404,6 +407,34 @@ public class HllSketchTest {
     HllSketch sk2 = HllSketch.writableWrap(wmem);
   }
 
+  @Test
+  public void checkCollector() {
+    final HllSketch sk = LongStream.range(0, 100000).boxed().parallel()
+        .collect(HllSketch.collector(12, HLL_6));
+    assertEquals(sk.getLgConfigK(), 12);
+    assertEquals(sk.getTgtHllType(), HLL_6);
+    assertEquals(sk.getEstimate(), 100000, 100000 * 0.05);
+
+    final HllSketch expected = new HllSketch(10);
+    expected.update(1L);
+    expected.update(2.0);
+    expected.update("a");
+    expected.update(new byte[] {1, 2});
+    expected.update(new char[] {'b'});
+    expected.update(new int[] {3});
+    expected.update(new long[] {4L});
+    final HllSketch sk2 = Stream.<Object>of(1, 2.0f, "a", null, new byte[] {1, 2},
+        new char[] {'b'}, new int[] {3}, new long[] {4L}, 1L).collect(HllSketch.collector(10));
+    assertEquals(sk2.getTgtHllType(), HLL_4);
+    assertEquals(sk2.toCompactByteArray(), expected.toCompactByteArray());
+    try {
+      Stream.of(new Object()).collect(HllSketch.collector(10));
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
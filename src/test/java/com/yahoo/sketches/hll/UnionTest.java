@@ -14,9 +14,13 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 
 /**
@@ -420,6 +424,59 @@ public class UnionTest {
     return est / (1.0 + re);
   }
 
+  @Test
+  public void checkUpdateMemoryMatchesUpdateSketch() {
+    int lgMaxK = 10;
+    int[] nArr2 = {0, 5, 100, 3000, 100000}; //empty, LIST, SET, HLL, HLL with exceptions
+    for (TgtHllType type : TgtHllType.values()) {
+      for (int lgK = lgMaxK - 1; lgK <= lgMaxK + 1; lgK++) {
+        for (boolean direct : new boolean[] {false, true}) {
+          Union u1 = newUnion(lgMaxK, direct);
+          Union u2 = newUnion(lgMaxK, direct);
+          int start = 0;
+          for (int n : nArr2) {
+            HllSketch sk = new HllSketch(lgK, type);
+            for (int i = start; i < (start + n); i++) {
+              sk.update(i);
+            }
+            start += n / 2;
+            u1.update(sk);
+            u2.update(Memory.wrap(sk.toCompactByteArray()));
+            assertEquals(u2.getEstimate(), u1.getEstimate());
+            u2.update(Memory.wrap(sk.toUpdatableByteArray()));
+            u1.update(sk);
+            assertEquals(u2.toCompactByteArray(), u1.toCompactByteArray());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checkStaticUnionOfImages() {
+    List<Memory> images = new ArrayList<>();
+    Union u = new Union(12);
+    for (int j = 0; j < 10; j++) {
+      HllSketch sk = new HllSketch(12, (j % 2 == 0) ? HLL_4 : HLL_6);
+      for (int i = 0; i < (1 << j) * 10; i++) {
+        sk.update((j * 1000000) + i);
+      }
+      u.update(sk);
+      images.add(Memory.wrap(sk.toCompactByteArray()));
+    }
+    images.add(null);
+    Union u2 = Union.union(images, 12);
+    assertEquals(u2.toCompactByteArray(), u.toCompactByteArray());
+  }
+
+  private static Union newUnion(int lgMaxK, boolean direct) {
+    if (direct) {
+      int bytes = Union.getMaxSerializationBytes(lgMaxK);
+      return new Union(lgMaxK, WritableMemory.allocate(bytes));
+    }
+    return new Union(lgMaxK);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
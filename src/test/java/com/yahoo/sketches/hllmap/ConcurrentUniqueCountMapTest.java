@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hllmap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
+
+public class ConcurrentUniqueCountMapTest {
+
+  @Test
+  public void nullKeyAndIdentifier() {
+    ConcurrentUniqueCountMap map = new ConcurrentUniqueCountMap(4);
+    assertTrue(Double.isNaN(map.update(null, null)));
+    assertTrue(Double.isNaN(map.getEstimate(null)));
+    assertTrue(Double.isNaN(map.getUpperBound(null)));
+    assertTrue(Double.isNaN(map.getLowerBound(null)));
+    byte[] key = "1234".getBytes(UTF_8);
+    assertEquals(map.update(key, null), 0.0);
+    assertEquals(map.update(key, "a".getBytes(UTF_8)), 1.0);
+    assertEquals(map.update(key, null), 1.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrongSizeKey() {
+    new ConcurrentUniqueCountMap(1000, 4, 4).update(new byte[] {0}, new byte[] {1});
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void numSegmentsNotPowerOf2() {
+    new ConcurrentUniqueCountMap(1000, 4, 3);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void keySizeTooSmall() {
+    new ConcurrentUniqueCountMap(1000, 2, 4);
+  }
+
+  @Test
+  public void sameEstimatesAsUniqueCountMap() {
+    ConcurrentUniqueCountMap map = new ConcurrentUniqueCountMap(1000, 4, 8);
+    UniqueCountMap single = new UniqueCountMap(1000, 4);
+    byte[] id = new byte[4];
+    for (int i = 0; i < 200000; i++) {
+      byte[] key = Util.intToBytes((i * 7) % 3001, new byte[4]);
+      id = Util.intToBytes(i, id);
+      assertEquals(map.update(key, id), single.update(key, id));
+    }
+    assertEquals(map.getActiveEntries(), single.getActiveEntries());
+    for (int k = 0; k < 3001; k++) {
+      byte[] key = Util.intToBytes(k, new byte[4]);
+      assertEquals(map.getEstimate(key), single.getEstimate(key));
+      assertEquals(map.getUpperBound(key), single.getUpperBound(key));
+      assertEquals(map.getLowerBound(key), single.getLowerBound(key));
+    }
+    //the keys are spread over all segments
+    for (int s = 0; s < map.getNumSegments(); s++) {
+      assertTrue(map.getSegment(s).getActiveEntries() > 0);
+    }
+    assertTrue(map.getMemoryUsageBytes() > map.getKeyMemoryUsageBytes());
+    println(map.toString());
+  }
+
+  @Test
+  public void concurrentUpdatesAndQueries() throws Exception {
+    final int numThreads = 4;
+    final int keysPerThread = 500;
+    final int idsPerKey = 40;
+    final ConcurrentUniqueCountMap map = new ConcurrentUniqueCountMap(1000, 4, 16);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread[] threads = new Thread[numThreads + 1];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            byte[] id = new byte[4];
+            for (int j = 0; j < idsPerKey; j++) {
+              for (int k = 0; k < keysPerThread; k++) {
+                byte[] key = Util.intToBytes((thread * keysPerThread) + k, new byte[4]);
+                id = Util.intToBytes(j, id);
+                map.update(key, id);
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+    }
+    threads[numThreads] = new Thread() { //a reader concurrent with the writers
+      @Override
+      public void run() {
+        try {
+          start.await();
+          for (int i = 0; i < 20000; i++) {
+            byte[] key = Util.intToBytes(i % (numThreads * keysPerThread), new byte[4]);
+            double est = map.getEstimate(key);
+            if ((est < 0) || (est > (idsPerKey * 1.2))) {
+              throw new AssertionError("Bad estimate: " + est);
+            }
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    };
+    for (Thread thread : threads) { thread.start(); }
+    start.countDown();
+    for (Thread thread : threads) { thread.join(); }
+    if (failure.get() != null) { throw new AssertionError(failure.get()); }
+
+    //each key was updated by one thread, so its estimate is that of a single map
+    UniqueCountMap single = new UniqueCountMap(1000, 4);
+    byte[] id = new byte[4];
+    for (int j = 0; j < idsPerKey; j++) {
+      for (int k = 0; k < numThreads * keysPerThread; k++) {
+        single.update(Util.intToBytes(k, new byte[4]), Util.intToBytes(j, id));
+      }
+    }
+    assertEquals(map.getActiveEntries(), numThreads * keysPerThread);
+    for (int k = 0; k < numThreads * keysPerThread; k++) {
+      byte[] key = Util.intToBytes(k, new byte[4]);
+      assertEquals(map.getEstimate(key), single.getEstimate(key));
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
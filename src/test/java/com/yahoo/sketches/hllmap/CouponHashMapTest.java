@@ -11,6 +11,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
 import com.yahoo.sketches.hllmap.CouponHashMap;
 import com.yahoo.sketches.hllmap.Map;
 
@@ -85,6 +86,26 @@ public class CouponHashMapTest {
     println(map.toString());
   }
 
+  @Test
+  public void lookupsDuringIncrementalResize() {
+    CouponHashMap map = CouponHashMap.getInstance(4, 16);
+    int n = 0;
+    while (!map.isMigrating()) {
+      map.update(Util.intToBytes(n++, new byte[4]), (short) 1);
+    }
+    for (int i = 0; i < n; i++) { //estimates of keys still in the old table
+      Assert.assertEquals(map.getEstimate(Util.intToBytes(i, new byte[4])), 1.0, 0.01);
+    }
+    for (int i = 0; i < n; i += 2) { //deletes of keys moved on lookup
+      map.deleteKey(map.findKey(Util.intToBytes(i, new byte[4])));
+    }
+    map.finishMigration();
+    for (int i = 0; i < n; i++) {
+      Assert.assertEquals(map.findKey(Util.intToBytes(i, new byte[4])) >= 0, (i % 2) == 1);
+    }
+    Assert.assertEquals(map.getActiveEntries(), n / 2);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -10,6 +10,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.sketches.Util;
 import com.yahoo.sketches.hllmap.Map;
 import com.yahoo.sketches.hllmap.SingleCouponMap;
 
@@ -85,6 +86,33 @@ public class SingleCouponMapTest {
     Assert.assertEquals(map.getCurrentCountEntries(), 1000);
   }
 
+  @Test
+  public void incrementalResize() {
+    SingleCouponMap map = SingleCouponMap.getInstance(157, 4);
+    int capacity = map.getCapacityEntries();
+    int i = 0;
+    for (; i <= capacity; i++) { //one more than the capacity
+      map.update(Util.intToBytes(i, new byte[4]), (short) (i + 1));
+    }
+    Assert.assertTrue(map.isMigrating());
+    Assert.assertTrue(map.getTableEntries() > 157);
+    //keys are found in either table, and those looked up are moved ahead
+    for (int j = 0; j <= capacity; j++) {
+      Assert.assertEquals(map.update(Util.intToBytes(j, new byte[4]), (short) (j + 1)), 1.0);
+    }
+    //the old table is drained by the following inserts
+    int inserts = 0;
+    while (map.isMigrating()) {
+      map.update(Util.intToBytes(i++, new byte[4]), (short) i);
+      inserts++;
+    }
+    Assert.assertTrue(inserts < (map.getCapacityEntries() - capacity));
+    for (int j = 0; j < i; j++) {
+      Assert.assertEquals(map.getEstimate(Util.intToBytes(j, new byte[4])), 1.0);
+    }
+    Assert.assertEquals(map.getCurrentCountEntries(), i);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -8,9 +8,18 @@ package com.yahoo.sketches.hllmap;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.IdentityHashMap;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMapHandle;
+import com.yahoo.memory.WritableMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.Util;
 import com.yahoo.sketches.hllmap.UniqueCountMap;
@@ -170,6 +179,450 @@ public class UniqueCountMapTest {
 
 
 
+  @Test
+  public void serializeEmpty() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[] bytes = map.toByteArray();
+    Assert.assertEquals(bytes.length, map.getStorageBytes());
+    UniqueCountMap map2 = UniqueCountMap.heapify(Memory.wrap(bytes));
+    Assert.assertEquals(map2.getActiveEntries(), 0);
+    Assert.assertEquals(map2.getActiveMaps(), 1);
+    Assert.assertEquals(map2.update("1234".getBytes(UTF_8), "a".getBytes(UTF_8)), 1.0);
+  }
+
+  @Test
+  public void heapifyAllLevels() {
+    UniqueCountMap map = buildAllLevels();
+    Assert.assertEquals(map.getActiveMaps(), 10);
+    UniqueCountMap map2 = UniqueCountMap.heapify(Memory.wrap(map.toByteArray()));
+    checkSameEstimates(map, map2);
+    Assert.assertEquals(map2.getMemoryUsageBytes(), map.getMemoryUsageBytes());
+
+    //both keep working identically
+    byte[] id = new byte[4];
+    for (int i = 0; i < 2000; i++) {
+      byte[] key = Util.intToBytes(i % 600, new byte[4]);
+      id = Util.intToBytes(100000 + i, id);
+      Assert.assertEquals(map2.update(key, id), map.update(key, id));
+    }
+    checkSameEstimates(map, map2);
+  }
+
+  @Test
+  public void wrapAllLevels() {
+    UniqueCountMap map = buildAllLevels();
+    WritableMemory mem = WritableMemory.allocate((int) map.getStorageBytes());
+    map.putMemory(mem);
+    UniqueCountMap map2 = UniqueCountMap.wrap(mem);
+    checkSameEstimates(map, map2);
+
+    //updates go to the wrapped Memory, and the image is valid again after putMemory()
+    byte[] key = Util.intToBytes(599, new byte[4]);
+    Assert.assertEquals(map2.update(key, "new".getBytes(UTF_8)),
+        map.update(key, "new".getBytes(UTF_8)));
+    WritableMemory mem2 = WritableMemory.allocate((int) map2.getStorageBytes());
+    map2.putMemory(mem2);
+    checkSameEstimates(map, UniqueCountMap.heapify(mem2));
+  }
+
+  @Test
+  public void updateWrappedThenWrapAgain() {
+    UniqueCountMap map = buildAllLevels();
+    WritableMemory mem = WritableMemory.allocate((int) map.getStorageBytes());
+    map.putMemory(mem);
+    UniqueCountMap map2 = UniqueCountMap.wrap(mem);
+    //new identifiers, which promote keys from level to level, and new keys
+    byte[] id = new byte[4];
+    for (int i = 0; i < 3000; i++) {
+      byte[] key = Util.intToBytes(i % 620, new byte[4]);
+      id = Util.intToBytes(200000 + i, id);
+      Assert.assertEquals(map2.update(key, id), map.update(key, id));
+    }
+    checkSameEstimates(map, UniqueCountMap.wrap(mem));
+    checkSameEstimates(map, UniqueCountMap.heapify(mem));
+    UniqueCountMap map3 = UniqueCountMap.wrap(mem);
+    for (int i = 600; i < 620; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(map3.getEstimate(key), map.getEstimate(key));
+    }
+  }
+
+  @Test
+  public void wrappedMapOutgrowsImage() {
+    UniqueCountMap map = buildAllLevels();
+    WritableMemory mem = WritableMemory.wrap(map.toByteArray());
+    UniqueCountMap map2 = UniqueCountMap.wrap(mem);
+    for (int i = 600; i < 3000; i++) { //new keys, so that the base map grows
+      map2.update(Util.intToBytes(i, new byte[4]), Util.intToBytes(i, new byte[4]));
+    }
+    checkOutgrown(mem);
+
+    //a key promoted to a level that the image does not hold
+    UniqueCountMap small = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[] key = Util.intToBytes(1, new byte[4]);
+    small.update(key, "a".getBytes(UTF_8));
+    mem = WritableMemory.wrap(small.toByteArray());
+    UniqueCountMap small2 = UniqueCountMap.wrap(mem);
+    small2.update(key, "b".getBytes(UTF_8));
+    Assert.assertEquals(small2.getEstimate(key), 2.0);
+    checkOutgrown(mem);
+  }
+
+  private static void checkOutgrown(WritableMemory mem) {
+    try {
+      UniqueCountMap.wrap(mem);
+      Assert.fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      UniqueCountMap.heapify(mem);
+      Assert.fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void putMemoryIntoWrappedMemory() {
+    UniqueCountMap map = buildAllLevels();
+    int imageBytes = (int) map.getStorageBytes();
+    WritableMemory mem = WritableMemory.allocate(8 * imageBytes);
+    map.putMemory(mem);
+    UniqueCountMap map2 = UniqueCountMap.wrap(mem);
+    byte[] id = new byte[4];
+    for (int i = 600; i < 3000; i++) { //new keys, so that the base map grows
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(map2.update(key, Util.intToBytes(i, id)), map.update(key, id));
+    }
+    //writing the levels at new offsets would overwrite wrapped tables before they are copied
+    WritableMemory[] overlapping = { mem, mem.writableRegion(imageBytes / 2, 7 * imageBytes) };
+    for (WritableMemory dst : overlapping) {
+      try {
+        map2.putMemory(dst);
+        Assert.fail();
+      } catch (SketchesArgumentException e) {
+        //expected
+      }
+    }
+    //the part of the same Memory after the wrapped image can be written
+    Assert.assertTrue(map2.getStorageBytes() <= (7 * imageBytes));
+    WritableMemory after = mem.writableRegion(imageBytes, 7 * imageBytes);
+    map2.putMemory(after);
+    UniqueCountMap map3 = UniqueCountMap.heapify(after);
+    checkSameEstimates(map, map3);
+    for (int i = 600; i < 3000; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(map3.getEstimate(key), map.getEstimate(key));
+    }
+  }
+
+  @Test
+  public void wrapMappedFile() throws Exception {
+    UniqueCountMap map = buildAllLevels();
+    File file = File.createTempFile("uniqueCountMap", ".bin");
+    file.deleteOnExit();
+    Assert.assertTrue(file.setWritable(true, false)); //the memory library checks the permissions
+    long bytes = map.getStorageBytes();
+    try (WritableMapHandle handle =
+        WritableMemory.writableMap(file, 0, bytes, ByteOrder.nativeOrder())) {
+      map.putMemory(handle.get());
+    }
+    try (WritableMapHandle handle =
+        WritableMemory.writableMap(file, 0, bytes, ByteOrder.nativeOrder())) {
+      checkSameEstimates(map, UniqueCountMap.wrap(handle.get()));
+    }
+    Assert.assertTrue(file.delete());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void putMemoryTooSmall() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    map.putMemory(WritableMemory.allocate((int) map.getStorageBytes() - 1));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void heapifyBadSerVer() {
+    byte[] bytes = new UniqueCountMap(INIT_ENTRIES, 4).toByteArray();
+    bytes[0] = 2;
+    UniqueCountMap.heapify(Memory.wrap(bytes));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void heapifyTruncated() {
+    byte[] bytes = buildAllLevels().toByteArray();
+    UniqueCountMap.heapify(Memory.wrap(java.util.Arrays.copyOf(bytes, bytes.length / 2)));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void heapifyTooSmall() {
+    UniqueCountMap.heapify(Memory.wrap(new byte[8]));
+  }
+
+  @Test
+  public void mergeSplitIdentifiers() {
+    //the identifiers of each key are split between two maps, a third of them in both
+    UniqueCountMap single = new UniqueCountMap(INIT_ENTRIES, 4);
+    UniqueCountMap map1 = new UniqueCountMap(INIT_ENTRIES, 4);
+    UniqueCountMap map2 = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[] id = new byte[4];
+    int n = 0;
+    for (int i = 0; i < 600; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      int ids = (i % 200 == 199) ? 5000 : (i / 3) + 1;
+      for (int j = 0; j < ids; j++) {
+        id = Util.intToBytes(n++, id);
+        single.update(key, id);
+        if (j % 3 != 1) { map1.update(key, id); }
+        if (j % 3 != 0) { map2.update(key, id); }
+      }
+    }
+    //as if map2 came from another host
+    map1.merge(UniqueCountMap.heapify(Memory.wrap(map2.toByteArray())));
+    Assert.assertEquals(map1.getActiveMaps(), single.getActiveMaps());
+    checkMergedEstimates(single, map1);
+  }
+
+  @Test
+  public void mergeDisjointKeys() {
+    UniqueCountMap single = new UniqueCountMap(INIT_ENTRIES, 4);
+    UniqueCountMap map1 = new UniqueCountMap(INIT_ENTRIES, 4);
+    UniqueCountMap map2 = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[] id = new byte[4];
+    int n = 0;
+    for (int i = 0; i < 600; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      int ids = (i % 200 == 199) ? 5000 : (i / 3) + 1;
+      for (int j = 0; j < ids; j++) {
+        id = Util.intToBytes(n++, id);
+        single.update(key, id);
+        ((i % 2 == 0) ? map1 : map2).update(key, id);
+      }
+    }
+    map1.merge(map2);
+    checkMergedEstimates(single, map1);
+    for (int i = 199; i < 600; i += 200) { //HLL arrays added to an empty key keep their estimate
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(map1.getEstimate(key), single.getEstimate(key));
+    }
+    //the other map is unchanged
+    Assert.assertEquals(map2.getActiveEntries(), 300);
+    Assert.assertEquals(map2.getEstimate(Util.intToBytes(0, new byte[4])), 0.0);
+  }
+
+  @Test
+  public void mergeEmptyAndSelf() {
+    UniqueCountMap map = buildAllLevels();
+    UniqueCountMap empty = new UniqueCountMap(INIT_ENTRIES, 4);
+    map.merge(empty);
+    map.merge(map);
+    checkSameEstimates(buildAllLevels(), map);
+    empty.merge(map);
+    checkMergedEstimates(map, empty);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void mergeDifferentKeySize() {
+    new UniqueCountMap(INIT_ENTRIES, 4).merge(new UniqueCountMap(INIT_ENTRIES, 8));
+  }
+
+  @Test
+  public void batchUpdate() {
+    //the updates of fillAllLevels() interleaved, with runs of 1 to 3 updates of each key
+    int[] firstId = new int[601];
+    for (int i = 0; i < 600; i++) {
+      firstId[i + 1] = firstId[i] + ((i % 200 == 199) ? 5000 : (i / 3) + 1);
+    }
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    int batchSize = 1000;
+    byte[][] keys = new byte[batchSize][];
+    byte[][] ids = new byte[batchSize][];
+    int size = 0;
+    int[] nextId = firstId.clone();
+    for (int round = 0; round < 5000; round++) {
+      for (int i = 0; i < 600; i++) {
+        for (int r = 0; (r <= (i + round) % 3) && (nextId[i] < firstId[i + 1]); r++) {
+          keys[size] = Util.intToBytes(i, new byte[4]);
+          ids[size++] = Util.intToBytes(nextId[i]++, new byte[4]);
+          if ((size % 97) == 0) { //pairs to be ignored
+            keys[size] = (round % 2 == 0) ? null : Util.intToBytes(i, new byte[4]);
+            ids[size++] = (round % 2 == 0) ? new byte[4] : null;
+          }
+          if (size >= (batchSize - 1)) {
+            map.updateAll(keys, ids);
+            keys = new byte[batchSize][];
+            ids = new byte[batchSize][];
+            size = 0;
+          }
+        }
+      }
+    }
+    map.updateAll(keys, ids); //the remaining pairs, followed by nulls
+    checkSameEstimates(buildAllLevels(), map);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void batchUpdateLengthsDiffer() {
+    new UniqueCountMap(INIT_ENTRIES, 4).updateAll(new byte[2][4], new byte[1][4]);
+  }
+
+  @Test
+  public void batchUpdateWrongKeySize() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[][] keys = { {1, 2, 3, 4}, {1, 2, 3} };
+    try {
+      map.updateAll(keys, new byte[2][4]);
+      Assert.fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    Assert.assertEquals(map.getActiveEntries(), 0); //checked before any update
+    try { //also when the identifier is null, as with update(byte[], byte[])
+      map.updateAll(keys, new byte[][] { {1}, null });
+      Assert.fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    Assert.assertEquals(map.getActiveEntries(), 0);
+  }
+
+  @Test
+  public void directTables() {
+    TableServer server = new TableServer(false);
+    UniqueCountMap map = fillAllLevels(new UniqueCountMap(INIT_ENTRIES, 4, server));
+    checkSameEstimates(buildAllLevels(), map);
+    Assert.assertTrue(server.requests > map.getActiveMaps()); //the maps have grown
+    Assert.assertTrue(server.handles.size() >= map.getActiveMaps());
+    checkSameEstimates(map, UniqueCountMap.heapify(Memory.wrap(map.toByteArray())));
+    map.close();
+    Assert.assertEquals(server.handles.size(), 0);
+  }
+
+  @Test
+  public void mappedTables() {
+    TableServer server = new TableServer(true);
+    UniqueCountMap map = fillAllLevels(new UniqueCountMap(INIT_ENTRIES, 4, server));
+    checkSameEstimates(buildAllLevels(), map);
+    map.close();
+    Assert.assertEquals(server.handles.size(), 0);
+  }
+
+  @Test
+  public void wrapThenGrowIntoDirectTables() {
+    UniqueCountMap map = buildAllLevels();
+    WritableMemory mem = WritableMemory.wrap(map.toByteArray());
+    TableServer server = new TableServer(false);
+    UniqueCountMap map2 = UniqueCountMap.wrap(mem, server);
+    byte[] id = new byte[4];
+    for (int i = 600; i < 3000; i++) { //new keys, so that the base map grows
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(map2.update(key, Util.intToBytes(i, id)), map.update(key, id));
+    }
+    checkSameEstimates(map, map2);
+    Assert.assertTrue(server.requests > 0);
+    map2.close(); //only the tables from the server are handed back
+    Assert.assertEquals(server.handles.size(), 0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void refusedTableRequest() {
+    new UniqueCountMap(INIT_ENTRIES, 4, new MemoryRequestServer() {
+      @Override
+      public WritableMemory request(final long capacityBytes) {
+        return null;
+      }
+
+      @Override
+      public void requestClose(final WritableMemory memToClose, final WritableMemory newMem) {}
+    });
+  }
+
+  /**
+   * Provides tables in direct Memory, or in memory-mapped temporary files, and keeps the handles
+   * of the tables not yet handed back. The direct tables are larger than requested.
+   */
+  static class TableServer implements MemoryRequestServer {
+    final boolean mapped;
+    final IdentityHashMap<WritableMemory, AutoCloseable> handles = new IdentityHashMap<>();
+    int requests = 0;
+
+    TableServer(final boolean mapped) {
+      this.mapped = mapped;
+    }
+
+    @Override
+    public synchronized WritableMemory request(final long capacityBytes) {
+      requests++;
+      if (!mapped) {
+        WritableDirectHandle handle = WritableMemory.allocateDirect(capacityBytes + 16);
+        handles.put(handle.get(), handle);
+        return handle.get();
+      }
+      try {
+        File file = File.createTempFile("uniqueCountMapTable", ".bin");
+        file.deleteOnExit();
+        Assert.assertTrue(file.setWritable(true, false));
+        WritableMapHandle handle =
+            WritableMemory.writableMap(file, 0, capacityBytes, ByteOrder.nativeOrder());
+        handles.put(handle.get(), handle);
+        return handle.get();
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    @Override
+    public synchronized void requestClose(final WritableMemory memToClose,
+        final WritableMemory newMem) {
+      AutoCloseable handle = handles.remove(memToClose);
+      Assert.assertNotNull(handle, "not provided by this server");
+      try {
+        handle.close();
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+
+  //keys 0..599 with i/3 + 1 identifiers each, so that all levels are used
+  private static UniqueCountMap buildAllLevels() {
+    return fillAllLevels(new UniqueCountMap(INIT_ENTRIES, 4));
+  }
+
+  private static UniqueCountMap fillAllLevels(UniqueCountMap map) {
+    byte[] id = new byte[4];
+    int n = 0;
+    for (int i = 0; i < 600; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      int ids = (i % 200 == 199) ? 5000 : (i / 3) + 1;
+      for (int j = 0; j < ids; j++) {
+        id = Util.intToBytes(n++, id);
+        map.update(key, id);
+      }
+    }
+    return map;
+  }
+
+  private static void checkSameEstimates(UniqueCountMap expected, UniqueCountMap actual) {
+    Assert.assertEquals(actual.getActiveEntries(), expected.getActiveEntries());
+    Assert.assertEquals(actual.getActiveMaps(), expected.getActiveMaps());
+    for (int i = 0; i < 600; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      Assert.assertEquals(actual.getEstimate(key), expected.getEstimate(key));
+      Assert.assertEquals(actual.getUpperBound(key), expected.getUpperBound(key));
+    }
+  }
+
+  //estimates from coupon arrays are exact counts, the others depend on the order of the coupons
+  private static void checkMergedEstimates(UniqueCountMap expected, UniqueCountMap merged) {
+    Assert.assertEquals(merged.getActiveEntries(), expected.getActiveEntries());
+    for (int i = 0; i < 600; i++) {
+      byte[] key = Util.intToBytes(i, new byte[4]);
+      double est = expected.getEstimate(key);
+      Assert.assertEquals(merged.getEstimate(key), est, est <= 8 ? 0.0 : est * 0.1);
+    }
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -1,12 +1,19 @@
 package com.yahoo.sketches.quantiles;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
 
 public class DoublesSketchTest {
 
@@ -108,6 +115,252 @@ public class DoublesSketchTest {
     Assert.assertFalse(sketch.isSameResource(mem));
   }
 
+  @Test
+  public void checkAuxiliaryIsCachedUntilUpdate() {
+    UpdateDoublesSketch sketch = DoublesSketch.builder().setK(32).build();
+    for (int i = 0; i < 1000; i++) { sketch.update(i); }
+    DoublesAuxiliary aux = sketch.getAuxiliary();
+    sketch.getQuantile(0.5);
+    sketch.getPMF(new double[] {100, 500});
+    assertSame(sketch.getAuxiliary(), aux);
+    sketch.update(Double.NaN); //ignored
+    assertSame(sketch.getAuxiliary(), aux);
+    sketch.update(1000);
+    DoublesAuxiliary aux2 = sketch.getAuxiliary();
+    assertNotSame(aux2, aux);
+    assertEquals(aux2.auxN_, 1001);
+    sketch.reset();
+    assertEquals(sketch.getAuxiliary().auxN_, 0);
+    assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+  }
+
+  @Test
+  public void checkAuxiliaryInvalidatedByMerge() {
+    UpdateDoublesSketch src = DoublesSketch.builder().setK(32).build();
+    for (int i = 0; i < 3000; i++) { src.update(1000 + i); }
+    UpdateDoublesSketch heapTgt = DoublesSketch.builder().setK(32).build();
+    WritableMemory mem = WritableMemory.wrap(new byte[DoublesSketch.getUpdatableStorageBytes(32, 4000)]);
+    UpdateDoublesSketch directTgt = DoublesSketch.builder().setK(32).build(mem);
+    for (int i = 0; i < 1000; i++) {
+      heapTgt.update(i);
+      directTgt.update(i);
+    }
+    for (UpdateDoublesSketch tgt : new UpdateDoublesSketch[] {heapTgt, directTgt}) {
+      assertEquals(tgt.getQuantile(0.5), 500, 50);
+      DoublesMergeImpl.mergeInto(src, tgt);
+      assertEquals(tgt.getQuantile(0.5), 2000, 200);
+      assertEquals(tgt.getRank(1000), 0.25, 0.05);
+    }
+  }
+
+  @Test
+  public void checkAuxiliaryOfDirectSketches() {
+    int k = 32;
+    WritableMemory mem = WritableMemory.wrap(new byte[DoublesSketch.getUpdatableStorageBytes(k, 1000)]);
+    UpdateDoublesSketch writer = DoublesSketch.builder().setK(k).build(mem);
+    for (int i = 0; i < 500; i++) { writer.update(i); }
+    DoublesSketch reader = DoublesSketch.wrap(mem);
+    assertEquals(reader.getQuantile(0.5), 250, 25);
+    for (int i = 0; i < 500; i++) { writer.update(10000 + i); } //changes N seen by the reader
+    assertEquals(reader.getQuantile(0.75), 10250, 25);
+
+    DoublesSketch compact = DoublesSketch.wrap(WritableMemory.wrap(writer.toByteArray(true)));
+    DoublesAuxiliary aux = compact.getAuxiliary();
+    compact.getRank(100);
+    compact.getCDF(new double[] {100, 500});
+    assertSame(compact.getAuxiliary(), aux);
+  }
+
+  @Test
+  public void checkRank() {
+    UpdateDoublesSketch sketch = DoublesSketch.builder().setK(128).build();
+    assertTrue(Double.isNaN(sketch.getRank(1)));
+    int n = 100000;
+    for (int i = 0; i < n; i++) { sketch.update(i); }
+    double eps = sketch.getNormalizedRankError();
+    assertEquals(sketch.getRank(-1), 0.0);
+    assertEquals(sketch.getRank(n), 1.0);
+    for (int v = 0; v < n; v += 1000) {
+      double rank = sketch.getRank(v);
+      assertEquals(rank, (double) v / n, eps);
+      assertEquals(rank, sketch.getCDF(new double[] {v})[0]);
+    }
+    //rank and quantile are inverses within the rank error
+    assertEquals(sketch.getRank(sketch.getQuantile(0.3)), 0.3, eps);
+  }
+
+  @Test
+  public void checkPmfCdfConsistent() {
+    UpdateDoublesSketch sketch = DoublesSketch.builder().setK(16).build();
+    for (int i = 0; i < 10000; i++) { sketch.update(i % 97); } //many duplicates
+    double[] splitPoints = new double[96];
+    for (int i = 0; i < splitPoints.length; i++) { splitPoints[i] = i + 0.5; }
+    double[] pmf = sketch.getPMF(splitPoints);
+    double[] cdf = sketch.getCDF(splitPoints);
+    double sum = 0;
+    for (int i = 0; i < pmf.length; i++) {
+      sum += pmf[i];
+      assertEquals(cdf[i], sum, 1e-12);
+      assertEquals(cdf[i], (i < splitPoints.length) ? sketch.getRank(splitPoints[i]) : 1.0, 1e-12);
+    }
+    assertEquals(cdf[cdf.length - 1], 1.0);
+  }
+
+  @Test
+  public void checkPmfCdfAgainstBruteForce() {
+    int k = 16;
+    int n = 5000;
+    UpdateDoublesSketch heap = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(3))
+        .build();
+    UpdateDoublesSketch direct = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(3))
+        .build(WritableMemory.allocate(DoublesSketch.getUpdatableStorageBytes(k, n)));
+    SplitMixRandom rand = new SplitMixRandom(4);
+    for (int i = 0; i < n; i++) {
+      double v = (int) (rand.nextDouble() * 1000) / 4.0; //many duplicates
+      heap.update(v);
+      direct.update(v);
+    }
+    //split points on retained values, between them and outside the range
+    double[] splitPoints = new double[25];
+    for (int i = 0; i < splitPoints.length; i++) {
+      splitPoints[i] = (i * 11.0) - 1.0 + ((i % 2) * 0.25);
+    }
+    for (DoublesSketch sketch : new DoublesSketch[] {heap, direct, heap.compact()}) {
+      long[] counts = bruteForceCounts(sketch, splitPoints);
+      double[] pmf = sketch.getPMF(splitPoints);
+      double[] cdf = sketch.getCDF(splitPoints);
+      long subtotal = 0;
+      for (int j = 0; j < counts.length; j++) {
+        subtotal += counts[j];
+        assertEquals(pmf[j], (double) counts[j] / n);
+        assertEquals(cdf[j], (double) subtotal / n);
+      }
+      assertEquals(subtotal, n);
+    }
+  }
+
+  //the weights of the retained samples in each interval, by a scan of all levels
+  private static long[] bruteForceCounts(DoublesSketch sketch, double[] splitPoints) {
+    long[] counts = new long[splitPoints.length + 1];
+    DoublesSketchAccessor accessor = DoublesSketchAccessor.wrap(sketch);
+    long weight = 1;
+    for (int lvl = DoublesSketchAccessor.BB_LVL_IDX; lvl < 64; lvl++) {
+      accessor.setLevel(lvl);
+      for (int i = 0; i < accessor.numItems(); i++) {
+        int j = 0;
+        while ((j < splitPoints.length) && (accessor.get(i) >= splitPoints[j])) { j++; }
+        counts[j] += weight;
+      }
+      weight = (lvl == DoublesSketchAccessor.BB_LVL_IDX) ? 2 : weight * 2;
+    }
+    return counts;
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkRankOfNaN() {
+    DoublesSketch.builder().build().getRank(Double.NaN);
+  }
+
+  @Test
+  public void checkSeededRandom() {
+    int k = 32;
+    int n = 10000;
+    int bytes = DoublesSketch.getUpdatableStorageBytes(k, n);
+    UpdateDoublesSketch qs1 = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(1))
+        .build();
+    UpdateDoublesSketch qs2 = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(1))
+        .build(WritableMemory.allocate(bytes));
+    DoublesUnion union1 = DoublesUnion.builder().setMaxK(k / 2)
+        .setRandom(new SplitMixRandom(2)).build();
+    DoublesUnion union2 = DoublesUnion.builder().setMaxK(k / 2)
+        .setRandom(new SplitMixRandom(2)).build();
+    for (int i = 0; i < n; i++) {
+      qs1.update(i);
+      qs2.update(i);
+    }
+    assertEquals(qs2.compact().toByteArray(), qs1.compact().toByteArray());
+    union1.update(qs1);
+    union2.update(qs2);
+    assertEquals(union2.getResult().toByteArray(), union1.getResult().toByteArray());
+    DoublesSketchBuilder bldr = DoublesSketch.builder();
+    Assert.assertNull(bldr.getRandom());
+    println(bldr.setRandom(new SplitMixRandom(3)).toString());
+  }
+
+  @Test
+  public void checkBatchUpdate() {
+    int k = 16;
+    int n = 5000;
+    double[] items = new double[n + 10];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = (i % 97 == 0) ? Double.NaN : (i * 7919) % 1009;
+    }
+    int bytes = DoublesSketch.getUpdatableStorageBytes(k, n);
+    UpdateDoublesSketch ref = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(1))
+        .build();
+    UpdateDoublesSketch heap = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(1))
+        .build();
+    UpdateDoublesSketch direct = DoublesSketch.builder().setK(k).setRandom(new SplitMixRandom(1))
+        .build(WritableMemory.allocate(bytes));
+    for (int i = 5; i < (n + 5); i++) { ref.update(items[i]); }
+    //uneven chunks that do and do not end at the base buffer boundary
+    int[] lengths = {0, 1, 30, 1, 32, 100, 1000, 3836};
+    int offset = 5;
+    for (int len : lengths) {
+      heap.update(items, offset, len);
+      direct.update(items, offset, len);
+      offset += len;
+    }
+    assertEquals(offset, n + 5);
+    assertEquals(heap.getN(), ref.getN());
+    assertEquals(heap.getMinValue(), ref.getMinValue());
+    assertEquals(heap.getMaxValue(), ref.getMaxValue());
+    assertEquals(heap.toByteArray(), ref.toByteArray());
+    assertEquals(direct.compact().toByteArray(), ref.compact().toByteArray());
+    assertEquals(heap.getQuantile(0.5), ref.getQuantile(0.5));
+
+    heap.update(new double[] {Double.NaN, Double.NaN});
+    heap.update((double[]) null);
+    assertEquals(heap.getN(), ref.getN());
+  }
+
+  @Test
+  public void checkBatchUpdateEmptySketch() {
+    UpdateDoublesSketch heap = DoublesSketch.builder().build();
+    UpdateDoublesSketch direct = DoublesSketch.builder()
+        .build(WritableMemory.allocate(DoublesSketch.getUpdatableStorageBytes(128, 0)));
+    double[] items = {3.0, Double.NaN, -1.0, 2.0};
+    heap.update(items);
+    direct.update(items);
+    assertEquals(heap.getN(), 3);
+    assertEquals(heap.getMinValue(), -1.0);
+    assertEquals(heap.getMaxValue(), 3.0);
+    assertEquals(direct.getN(), 3);
+    assertEquals(direct.getMinValue(), -1.0);
+    assertEquals(direct.getMaxValue(), 3.0);
+    assertEquals(direct.getQuantile(0.5), 2.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchUpdateBadRange() {
+    DoublesSketch.builder().build().update(new double[4], 2, 3);
+  }
+
+  @Test
+  public void checkCollector() {
+    final int n = 100000;
+    final UpdateDoublesSketch sk = IntStream.range(0, n).boxed().parallel()
+        .collect(DoublesSketch.collector(128));
+    assertEquals(sk.getK(), 128);
+    assertEquals(sk.getN(), n);
+    assertEquals(sk.getMinValue(), 0.0);
+    assertEquals(sk.getMaxValue(), n - 1.0);
+    assertEquals(sk.getQuantile(0.5), n / 2.0, n * 0.02);
+
+    final UpdateDoublesSketch sk2 = Stream.of(1.0, null, 3.0).collect(DoublesSketch.collector(16));
+    assertEquals(sk2.getN(), 2);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: " + this.getClass().getName());
@@ -20,6 +20,7 @@ import com.yahoo.sketches.ArrayOfItemsSerDe;
 import com.yahoo.sketches.ArrayOfLongsSerDe;
 import com.yahoo.sketches.ArrayOfStringsSerDe;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
 
 public class ItemsSketchTest {
 
@@ -441,6 +442,23 @@ public class ItemsSketchTest {
     return sketch;
   }
 
+  @Test
+  public void checkSeededRandom() {
+    ItemsSketch<Long> sketch1 =
+        ItemsSketch.getInstance(16, Comparator.naturalOrder(), new SplitMixRandom(1));
+    ItemsSketch<Long> sketch2 =
+        ItemsSketch.getInstance(16, Comparator.naturalOrder(), new SplitMixRandom(1));
+    for (long i = 0; i < 10000; i++) {
+      sketch1.update(i);
+      sketch2.update(i);
+    }
+    ArrayOfItemsSerDe<Long> serDe = new ArrayOfLongsSerDe();
+    Assert.assertEquals(sketch2.toByteArray(serDe), sketch1.toByteArray(serDe));
+    ItemsSketch<Long> down1 = sketch1.downSample(8);
+    ItemsSketch<Long> down2 = sketch2.downSample(8);
+    Assert.assertEquals(down2.toByteArray(serDe), down1.toByteArray(serDe));
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
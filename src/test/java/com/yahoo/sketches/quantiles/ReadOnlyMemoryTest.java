@@ -35,6 +35,13 @@ public class ReadOnlyMemoryTest {
     } catch (final SketchesReadOnlyException e) {
       // expected
     }
+
+    try {
+      s2.update(new double[] {3.0, 4.0});
+      fail();
+    } catch (final SketchesReadOnlyException e) {
+      // expected
+    }
   }
 
   @Test
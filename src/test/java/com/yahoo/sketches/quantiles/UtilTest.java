@@ -79,100 +79,11 @@ public class UtilTest {
     assertEquals(result, 64);
   }
 
-  // a couple of basic unit tests for the histogram construction helper functions.
-  @Test
-  public void testQuadraticTimeIncrementHistogramCounters () {
-    final double [] samples = {0.1, 0.2, 0.3, 0.4, 0.5};
-    final DoublesArrayAccessor accessor = DoublesArrayAccessor.wrap(samples);
-    {
-      final double [] splitPoints = {0.25, 0.4};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {200, 100, 200};
-      DoublesPmfCdfImpl.bilinearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-        //.bilinearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-
-    {
-      final double [] splitPoints = {0.01, 0.02};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {0, 0, 500};
-      //DoublesPmfCdfImpl.bilinearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      DoublesPmfCdfImpl.bilinearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-
-    {
-      final double [] splitPoints = {0.8, 0.9};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {500, 0, 0};
-      //DoublesPmfCdfImpl.bilinearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      DoublesPmfCdfImpl.bilinearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-  }
-
   @Test(expectedExceptions = SketchesArgumentException.class)
   public void checkValidateFractionsException() {
     Util.validateFractions(null);
   }
 
-  @Test
-  public void testLinearTimeIncrementHistogramCounters () {
-    final double [] samples = {0.1, 0.2, 0.3, 0.4, 0.5};
-    final DoublesArrayAccessor accessor = DoublesArrayAccessor.wrap(samples);
-    {
-      final double [] splitPoints = {0.25, 0.4};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {200, 100, 200};
-      //DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-
-    {
-      final double [] splitPoints = {0.01, 0.02};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {0, 0, 500};
-      //DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-
-    {
-      final double [] splitPoints = {0.8, 0.9};
-      final long counters [] = {0, 0, 0};
-      final long answers  [] = {500, 0, 0};
-      //DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(samples, 0, 5, 100, splitPoints, counters);
-      DoublesPmfCdfImpl.linearTimeIncrementHistogramCounters(accessor, 100, splitPoints, counters);
-      for (int j = 0; j < counters.length; j++) {
-        assert counters[j] == answers[j];
-        // System.out.printf ("counter[%d] = %d%n", j, counters[j]);
-      }
-      // System.out.printf ("%n");
-    }
-  }
-
 //The remainder of this file is a brute force test of corner cases
  // for blockyTandemMergeSort.
 
@@ -18,6 +18,8 @@ import static org.testng.Assert.fail;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 import org.testng.annotations.Test;
 
@@ -31,6 +33,7 @@ import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 
 public class ReservoirItemsSketchTest {
   private static final double EPS = 1e-8;
@@ -532,6 +535,58 @@ public class ReservoirItemsSketchTest {
     }
   }
 
+  @Test
+  public void checkSeededRandom() {
+    final ReservoirItemsSketch<Long> ris1 =
+        ReservoirItemsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    final ReservoirItemsSketch<Long> ris2 =
+        ReservoirItemsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    for (long i = 0; i < 1000; ++i) {
+      ris1.update(i);
+      ris2.update(i);
+    }
+    assertEquals(ris2.getSamples(), ris1.getSamples());
+  }
+
+  @Test
+  public void checkBatchUpdate() {
+    final int k = 16;
+    final Long[] items = new Long[1000];
+    for (int i = 0; i < items.length; ++i) {
+      items[i] = (i % 10 == 0) ? null : Long.valueOf(i);
+    }
+
+    final ReservoirItemsSketch<Long> ris = ReservoirItemsSketch.newInstance(k);
+    ris.updateAll((Long[]) null);
+    ris.updateAll(Arrays.asList(items).subList(0, 10).iterator()); // partial initial phase
+    assertEquals(ris.getN(), 9);
+    ris.updateAll(Arrays.asList(items).subList(10, items.length).iterator());
+    ris.updateAll(items);
+    assertEquals(ris.getN(), 2 * 900); // nulls are ignored
+    assertEquals(ris.getNumSamples(), k);
+    for (Long item : ris.getSamples()) {
+      assertNotNull(item);
+      assertTrue(item % 10 != 0);
+    }
+
+    // matches per-item updates in distribution: each item kept with probability k / n
+    final int numTrials = 10000;
+    final int[] counts = new int[10];
+    final SplitMixRandom rand = new SplitMixRandom(3L);
+    for (int t = 0; t < numTrials; ++t) {
+      final ReservoirItemsSketch<Long> sketch = ReservoirItemsSketch.newInstance(4,
+          ResizeFactor.X8, new SplitMixRandom(rand.nextLong()));
+      sketch.updateAll(items);
+      for (Long item : sketch.getSamples()) {
+        ++counts[(int) (item / 100)];
+      }
+    }
+    final double expected = (numTrials * 4.0) / 10;
+    for (int count : counts) {
+      assertEquals(count, expected, 5 * Math.sqrt(expected));
+    }
+  }
+
   @Test
   public void checkEstimateSubsetSum() {
     final int k = 10;
@@ -647,4 +702,24 @@ public class ReservoirItemsSketchTest {
   private static void println(final String msg) {
     //System.out.println(msg);
   }
+
+  @Test
+  public void checkCollector() {
+    final ReservoirItemsSketch<Integer> sk = IntStream.range(0, 10000).boxed().parallel()
+        .collect(ReservoirItemsSketch.<Integer>collector(100));
+    assertEquals(sk.getK(), 100);
+    assertEquals(sk.getN(), 10000);
+    assertEquals(sk.getNumSamples(), 100);
+    for (Integer item : sk.getSamples()) {
+      assertTrue((item >= 0) && (item < 10000));
+    }
+
+    try {
+      ReservoirItemsSketch.collector(1);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
 }
@@ -15,6 +15,8 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.stream.LongStream;
+
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.Memory;
@@ -24,6 +26,7 @@ import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 
 public class ReservoirLongsSketchTest {
   private static final double EPS = 1e-8;
@@ -385,6 +388,119 @@ public class ReservoirLongsSketchTest {
     }
   }
 
+  @Test
+  public void checkSeededRandom() {
+    final ReservoirLongsSketch rls1 =
+        ReservoirLongsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    final ReservoirLongsSketch rls2 =
+        ReservoirLongsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    for (long i = 0; i < 1000; ++i) {
+      rls1.update(i);
+      rls2.update(i);
+    }
+    assertEquals(rls2.getSamples(), rls1.getSamples());
+
+    try {
+      ReservoirLongsSketch.newInstance(16, ResizeFactor.X2, null);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void checkBatchUpdate() {
+    final int k = 16;
+    final long[] items = new long[1000];
+    for (int i = 0; i < items.length; ++i) {
+      items[i] = i;
+    }
+
+    final ReservoirLongsSketch rls = ReservoirLongsSketch.newInstance(k);
+    rls.update((long[]) null);
+    rls.update(items, 0, 10); // partial initial phase
+    assertEquals(rls.getN(), 10);
+    assertEquals(rls.getNumSamples(), 10);
+    rls.update(items, 10, 0);
+    rls.update(items, 10, items.length - 10);
+    rls.update(items);
+    assertEquals(rls.getN(), 2 * items.length);
+    assertEquals(rls.getNumSamples(), k);
+    for (long item : rls.getSamples()) {
+      assertTrue((item >= 0) && (item < items.length));
+    }
+
+    try {
+      rls.update(items, 990, 20);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+    try {
+      rls.forceIncrementItemsSeen((1L << 48) - 1 - rls.getN() - 5);
+      rls.update(items, 0, 10);
+      fail();
+    } catch (final SketchesStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void checkBatchUpdateDistribution() {
+    // each item must be in the sample with probability k / n, in both skip-count regimes
+    checkBatchUpdateDistribution(8, 100);   // Algorithm X only
+    checkBatchUpdateDistribution(4, 1000);  // mostly Algorithm Z
+  }
+
+  private static void checkBatchUpdateDistribution(final int k, final int n) {
+    final int numTrials = 20000;
+    final int numBins = 10;
+    final long[] items = new long[n];
+    for (int i = 0; i < n; ++i) {
+      items[i] = i;
+    }
+    final SplitMixRandom rand = new SplitMixRandom(7L);
+    final int[] counts = new int[numBins];
+    for (int t = 0; t < numTrials; ++t) {
+      final ReservoirLongsSketch rls = ReservoirLongsSketch.newInstance(k, ResizeFactor.X8,
+          new SplitMixRandom(rand.nextLong()));
+      // split the input to cross batch boundaries in the middle of a skip
+      rls.update(items, 0, n / 3);
+      rls.update(items, n / 3, n - (n / 3));
+      for (long item : rls.getSamples()) {
+        ++counts[(int) ((item * numBins) / n)];
+      }
+    }
+    final double expected = (numTrials * (double) k) / numBins;
+    for (int count : counts) {
+      assertEquals(count, expected, 5 * Math.sqrt(expected));
+    }
+  }
+
+  @Test
+  public void checkSkipCountDistribution() {
+    // compare to Prob(skip >= s) = prod_{i=1..s} (1 - k / (n + i))
+    final int k = 5;
+    final long n = 200; // above the Algorithm Z threshold
+    final int numTrials = 100000;
+    final int maxS = 300;
+    final int[] hist = new int[maxS + 1];
+    final SplitMixRandom rand = new SplitMixRandom(11L);
+    for (int t = 0; t < numTrials; ++t) {
+      final long s = SamplingUtil.reservoirSkipCount(n, k, rand);
+      assertTrue(s >= 0);
+      ++hist[(int) Math.min(s, maxS)];
+    }
+    double survival = 1.0;
+    int atLeast = numTrials;
+    for (int s = 0; s < 200; ++s) {
+      final double expected = numTrials * survival;
+      assertEquals(atLeast, expected, 5 * Math.sqrt(expected) + 1);
+      atLeast -= hist[s];
+      survival *= 1.0 - (k / (double) (n + s + 1));
+    }
+  }
+
   @Test
   public void checkEstimateSubsetSum() {
     final int k = 10;
@@ -516,4 +632,24 @@ public class ReservoirLongsSketchTest {
   private static void println(final String msg) {
     //System.out.println(msg);
   }
+
+  @Test
+  public void checkCollector() {
+    final ReservoirLongsSketch sk = LongStream.range(0, 10000).boxed().parallel()
+        .collect(ReservoirLongsSketch.collector(100));
+    assertEquals(sk.getK(), 100);
+    assertEquals(sk.getN(), 10000);
+    assertEquals(sk.getNumSamples(), 100);
+    for (long item : sk.getSamples()) {
+      assertTrue((item >= 0) && (item < 10000));
+    }
+
+    try {
+      ReservoirLongsSketch.collector(1);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
 }
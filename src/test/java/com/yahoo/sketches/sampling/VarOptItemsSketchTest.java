@@ -24,6 +24,7 @@ import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.SplitMixRandom;
 
 public class VarOptItemsSketchTest {
   static final double EPS = 1e-10;
@@ -525,6 +526,20 @@ public class VarOptItemsSketchTest {
     assertEquals(sketch.getRRegionCount(), 0);
   }
 
+  @Test
+  public void checkSeededRandom() {
+    final VarOptItemsSketch<Long> vis1 =
+        VarOptItemsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    final VarOptItemsSketch<Long> vis2 =
+        VarOptItemsSketch.newInstance(16, ResizeFactor.X2, new SplitMixRandom(1));
+    for (long i = 1; i <= 1000; ++i) {
+      vis1.update(i, 1.0 + (i % 7));
+      vis2.update(i, 1.0 + (i % 7));
+    }
+    final ArrayOfLongsSerDe serDe = new ArrayOfLongsSerDe();
+    assertEquals(vis2.toByteArray(serDe), vis1.toByteArray(serDe));
+  }
+
   @Test
   public void checkEstimateSubsetSum() {
     final int k = 10;
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.sampling;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.function.LongPredicate;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.ArrayOfLongsSerDe;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SplitMixRandom;
+
+public class VarOptLongsSketchTest {
+  private static final double EPS = 1e-13;
+
+  @Test
+  public void checkMatchesItemsSketch() {
+    checkMatchesItemsSketch(20, 15);   // warmup
+    checkMatchesItemsSketch(20, 21);   // just past warmup
+    checkMatchesItemsSketch(20, 2000); // estimation
+    checkMatchesItemsSketch(1, 100);
+  }
+
+  private static void checkMatchesItemsSketch(final int k, final int n) {
+    final VarOptLongsSketch lsk = VarOptLongsSketch.newInstance(k, ResizeFactor.X2,
+            new SplitMixRandom(1L));
+    final VarOptItemsSketch<Long> isk = VarOptItemsSketch.newInstance(k, ResizeFactor.X2,
+            new SplitMixRandom(1L));
+    for (long i = 1; i <= n; ++i) {
+      final double wt = (i % 7 == 0) ? 1000.0 * i : 1.0 + (i % 5);
+      lsk.update(i, wt);
+      isk.update(i, wt);
+    }
+    assertEquals(lsk.getN(), isk.getN());
+    assertEquals(lsk.getNumSamples(), isk.getNumSamples());
+    assertEquals(lsk.toByteArray(), isk.toByteArray(new ArrayOfLongsSerDe()));
+
+    final long[] samples = lsk.getSamples();
+    final double[] weights = lsk.getWeights();
+    double totalWt = 0.0;
+    int i = 0;
+    for (VarOptItemsSamples<Long>.WeightedSample ws : isk.getSketchSamples()) {
+      assertEquals(samples[i], ws.getItem().longValue());
+      assertEquals(weights[i], ws.getWeight(), EPS);
+      totalWt += weights[i];
+      ++i;
+    }
+    assertEquals(i, samples.length);
+    final SampleSubsetSummary ss = lsk.estimateSubsetSum(new LongPredicate() {
+      @Override
+      public boolean test(final long x) {
+        return true;
+      }
+    });
+    assertEquals(ss.getTotalSketchWeight(), totalWt, EPS * totalWt);
+  }
+
+  @Test
+  public void checkSerializationRoundTrip() {
+    final int k = 32;
+    final VarOptLongsSketch sketch = VarOptLongsSketch.newInstance(k);
+
+    // empty
+    byte[] bytes = sketch.toByteArray();
+    assertEquals(bytes.length, 8);
+    VarOptLongsSketch rebuilt = VarOptLongsSketch.heapify(Memory.wrap(bytes));
+    assertEquals(rebuilt.getK(), k);
+    assertEquals(rebuilt.getN(), 0);
+    assertNull(rebuilt.getSamples());
+    assertNull(rebuilt.getWeights());
+
+    // warmup
+    for (long i = 0; i < k - 1; ++i) {
+      sketch.update(i, 1.0 + i);
+    }
+    bytes = sketch.toByteArray();
+    rebuilt = VarOptLongsSketch.heapify(Memory.wrap(bytes));
+    assertEquals(rebuilt.toByteArray(), bytes);
+    rebuilt.update(-1L, 1.0); // fills exactly k
+    rebuilt.update(-2L, 1.0); // and starts estimation mode
+    assertEquals(rebuilt.getNumSamples(), k);
+
+    // estimation
+    for (long i = 0; i < 1000; ++i) {
+      sketch.update(i, 1.0 + (i % 3));
+    }
+    bytes = sketch.toByteArray();
+    rebuilt = VarOptLongsSketch.heapify(Memory.wrap(bytes));
+    assertEquals(rebuilt.toByteArray(), bytes);
+    assertEquals(rebuilt.getSamples(), sketch.getSamples());
+    assertEquals(rebuilt.getWeights(), sketch.getWeights());
+    assertEquals(rebuilt.getTau(), sketch.getTau());
+
+    // an items sketch image is readable as well, and vice versa
+    final VarOptItemsSketch<Long> isk =
+            VarOptItemsSketch.heapify(Memory.wrap(bytes), new ArrayOfLongsSerDe());
+    assertEquals(isk.getN(), sketch.getN());
+    assertEquals(isk.toByteArray(new ArrayOfLongsSerDe()), bytes);
+    isk.update(5000L, 10.0);
+    final byte[] itemsBytes = isk.toByteArray(new ArrayOfLongsSerDe());
+    assertEquals(VarOptLongsSketch.heapify(Memory.wrap(itemsBytes)).toByteArray(), itemsBytes);
+  }
+
+  @Test
+  public void checkUnion() {
+    final int k = 50;
+    final VarOptItemsUnion<Long> union = VarOptItemsUnion.newInstance(k);
+    final VarOptItemsUnion<Long> refUnion = VarOptItemsUnion.newInstance(k);
+    double totalWt = 0.0;
+    for (int s = 0; s < 4; ++s) {
+      final VarOptLongsSketch lsk = VarOptLongsSketch.newInstance(k);
+      final VarOptItemsSketch<Long> isk = VarOptItemsSketch.newInstance(k);
+      final int n = (s % 2 == 0) ? 30 : 500;
+      for (long i = 0; i < n; ++i) {
+        final double wt = 1.0 + (i % 10);
+        lsk.update((s * 1000L) + i, wt);
+        isk.update((s * 1000L) + i, wt);
+        totalWt += wt;
+      }
+      union.update(Memory.wrap(lsk.toByteArray()), new ArrayOfLongsSerDe());
+      refUnion.update(isk);
+    }
+    final VarOptItemsSketch<Long> result = union.getResult();
+    final VarOptItemsSketch<Long> refResult = refUnion.getResult();
+    assertEquals(result.getN(), refResult.getN());
+    assertEquals(result.getNumSamples(), refResult.getNumSamples());
+
+    final VarOptLongsSketch lResult =
+            VarOptLongsSketch.heapify(Memory.wrap(result.toByteArray(new ArrayOfLongsSerDe())));
+    assertEquals(lResult.getN(), result.getN());
+    double resultWt = 0.0;
+    for (double w : lResult.getWeights()) {
+      resultWt += w;
+    }
+    assertEquals(resultWt, totalWt, EPS * totalWt);
+  }
+
+  @Test
+  public void checkEstimateSubsetSum() {
+    final VarOptLongsSketch sketch = VarOptLongsSketch.newInstance(10);
+    final LongPredicate isEven = new LongPredicate() {
+      @Override
+      public boolean test(final long x) {
+        return (x % 2) == 0;
+      }
+    };
+
+    SampleSubsetSummary ss = sketch.estimateSubsetSum(isEven);
+    assertEquals(ss.getEstimate(), 0.0);
+    assertEquals(ss.getTotalSketchWeight(), 0.0);
+
+    // exact mode
+    for (long i = 1; i <= 10; ++i) {
+      sketch.update(i, i);
+    }
+    ss = sketch.estimateSubsetSum(isEven);
+    assertEquals(ss.getEstimate(), 30.0);
+    assertEquals(ss.getLowerBound(), 30.0);
+    assertEquals(ss.getUpperBound(), 30.0);
+    assertEquals(ss.getTotalSketchWeight(), 30.0); // same as VarOptItemsSketch
+
+    // estimation mode
+    for (long i = 11; i <= 1000; ++i) {
+      sketch.update(i, 1.0);
+    }
+    ss = sketch.estimateSubsetSum(isEven);
+    assertTrue(ss.getLowerBound() <= ss.getEstimate());
+    assertTrue(ss.getEstimate() <= ss.getUpperBound());
+    assertEquals(ss.getTotalSketchWeight(), 55.0 + 990.0, EPS * 1045.0);
+  }
+
+  @Test
+  public void checkReset() {
+    final VarOptLongsSketch sketch = VarOptLongsSketch.newInstance(8);
+    for (long i = 0; i < 100; ++i) {
+      sketch.update(i, 1.0);
+    }
+    assertEquals(sketch.getNumSamples(), 8);
+    sketch.reset();
+    assertEquals(sketch.getN(), 0);
+    assertEquals(sketch.getNumSamples(), 0);
+    assertEquals(sketch.getK(), 8);
+    sketch.update(1L, 1.0);
+    assertEquals(sketch.getSamples(), new long[] {1L});
+    println(sketch.toString());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadWeight() {
+    VarOptLongsSketch.newInstance(8).update(1L, 0.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadK() {
+    VarOptLongsSketch.newInstance(0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullRandom() {
+    VarOptLongsSketch.newInstance(8, ResizeFactor.X8, null);
+  }
+
+  @Test
+  public void checkBadImages() {
+    final VarOptLongsSketch sketch = VarOptLongsSketch.newInstance(16);
+    for (long i = 0; i < 100; ++i) {
+      sketch.update(i, 1.0 + i);
+    }
+    final byte[] bytes = sketch.toByteArray();
+
+    // truncated
+    try {
+      VarOptLongsSketch.heapify(Memory.wrap(bytes).region(0, bytes.length - 8));
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+
+    // gadget image
+    final WritableMemory mem = WritableMemory.wrap(bytes.clone());
+    PreambleUtil.insertFlags(mem.getArray(), mem.getCumulativeOffset(0L),
+            PreambleUtil.GADGET_FLAG_MASK);
+    try {
+      VarOptLongsSketch.heapify(mem);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.PreambleUtil.COMPRESSED_LONGS_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class CompactCompressionTest {
+
+  @Test
+  public void checkRoundTrip() {
+    int[] counts = {0, 1, 15, 16, 17, 1000, 4096, 100000};
+    for (int n : counts) {
+      UpdateSketch usk = UpdateSketch.builder().setNominalEntries(4096).build();
+      for (int i = 0; i < n; i++) { usk.update(i); }
+      byte[] expected = usk.compact(true, null).toByteArray();
+      checkRoundTrip(usk.compact(true, null), expected);
+      checkRoundTrip(usk.compact(false, null), expected);
+      int bytes = usk.getCurrentBytes(true);
+      checkRoundTrip(usk.compact(true, WritableMemory.allocate(bytes)), expected);
+      checkRoundTrip(usk.compact(false, WritableMemory.allocate(bytes)), expected);
+    }
+  }
+
+  private static void checkRoundTrip(CompactSketch csk, byte[] expected) {
+    byte[] compressed = csk.toCompressedByteArray();
+    assertEquals(compressed.length, csk.getCompressedSerializationBytes());
+    assertEquals(compressed[1], SER_VER_COMPRESSED);
+    Memory mem = Memory.wrap(compressed);
+    assertEquals(Sketch.getSerializationVersion(mem), SER_VER_COMPRESSED);
+    Sketch sk1 = Sketch.heapify(mem);
+    Sketch sk2 = Sketch.wrap(mem);
+    assertTrue(sk1.isOrdered());
+    assertEquals(((CompactSketch) sk1).toByteArray(), expected);
+    assertEquals(((CompactSketch) sk2).toByteArray(), expected);
+    assertTrue(compressed.length <= (expected.length + 8)); //at most one extra long
+    println(PreambleUtil.preambleToString(compressed));
+  }
+
+  @Test
+  public void checkCompressedSize() {
+    int n = 1 << 20;
+    UpdateSketch usk = UpdateSketch.builder().setNominalEntries(4096).build();
+    for (int i = 0; i < n; i++) { usk.update(i); }
+    CompactSketch csk = usk.compact();
+    int plain = csk.getCurrentBytes(true);
+    int compressed = csk.getCompressedSerializationBytes();
+    //about 63 - 12 + 2 bits per hash instead of 64
+    assertTrue(compressed < (plain * 0.9));
+    println("plain: " + plain + ", compressed: " + compressed);
+  }
+
+  @Test
+  public void checkPutCompressedMemoryWithOffset() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 10000; i++) { usk.update(i); }
+    CompactSketch csk = usk.compact();
+    int bytes = csk.getCompressedSerializationBytes();
+    WritableMemory wmem = WritableMemory.allocate(bytes + 16);
+    assertEquals(csk.putCompressedMemory(wmem.writableRegion(8, bytes)), bytes);
+    Sketch sk = Sketch.heapify(wmem.region(8, bytes));
+    assertEquals(((CompactSketch) sk).toByteArray(), csk.toByteArray());
+  }
+
+  @Test
+  public void checkUnionOfCompressedImages() {
+    int k = 4096;
+    Union u1 = SetOperation.builder().setNominalEntries(k).buildUnion();
+    int bytes = SetOperation.getMaxUnionBytes(k);
+    Union u2 =
+        SetOperation.builder().setNominalEntries(k).buildUnion(WritableMemory.allocate(bytes));
+    for (int s = 0; s < 4; s++) {
+      UpdateSketch usk = UpdateSketch.builder().setNominalEntries(k).build();
+      for (int i = 0; i < 20000; i++) { usk.update((s * 10000) + i); }
+      CompactSketch csk = usk.compact(s % 2 == 0, null);
+      u1.update(csk);
+      u2.update(Memory.wrap(csk.toCompressedByteArray()));
+    }
+    CompactSketch empty = UpdateSketch.builder().build().compact();
+    u1.update(empty);
+    u2.update(Memory.wrap(empty.toCompressedByteArray()));
+    assertEquals(u2.getResult().toByteArray(), u1.getResult().toByteArray());
+  }
+
+  @Test
+  public void checkUnionOfCompressedExactImage() {
+    Union u1 = SetOperation.builder().buildUnion();
+    Union u2 = SetOperation.builder().buildUnion();
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    u1.update(usk.compact());
+    u2.update(Memory.wrap(usk.compact().toCompressedByteArray()));
+    assertEquals(u2.getResult().toByteArray(), u1.getResult().toByteArray());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkInsufficientMemory() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    CompactSketch csk = usk.compact();
+    csk.putCompressedMemory(WritableMemory.allocate(csk.getCompressedSerializationBytes() - 8));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkCorruptDataLongs() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    WritableMemory wmem = WritableMemory.wrap(usk.compact().toCompressedByteArray());
+    wmem.putInt(COMPRESSED_LONGS_INT, wmem.getInt(COMPRESSED_LONGS_INT) + 1);
+    Sketch.heapify(wmem);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedHashMismatch() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    Sketch.heapify(Memory.wrap(usk.compact().toCompressedByteArray()), 123L);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNotOrderedFlag() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    WritableMemory wmem = WritableMemory.wrap(usk.compact().toCompressedByteArray());
+    wmem.putByte(PreambleUtil.FLAGS_BYTE, (byte) PreambleUtil.COMPACT_FLAG_MASK);
+    Sketch.heapify(wmem);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
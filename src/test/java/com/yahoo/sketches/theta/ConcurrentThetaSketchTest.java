@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.hash.MurmurHash3;
+
+public class ConcurrentThetaSketchTest {
+
+  @Test
+  public void checkExactMode() {
+    ConcurrentThetaSketch sk = new ConcurrentThetaSketch(4096);
+    assertTrue(sk.isEmpty());
+    for (int i = 0; i < 1000; i++) {
+      sk.update(i);
+      sk.update(i);
+    }
+    sk.flush(); //small streams are exact once flushed
+    assertFalse(sk.isEmpty());
+    assertFalse(sk.isEstimationMode());
+    assertEquals(sk.getEstimate(), 1000.0);
+    assertEquals(sk.getLowerBound(2), 1000.0);
+    assertEquals(sk.getUpperBound(2), 1000.0);
+    assertEquals(sk.getResult().getEstimate(), 1000.0);
+  }
+
+  @Test
+  public void checkPSampling() {
+    UpdateSketch ref = UpdateSketch.builder().setNominalEntries(4096).setP(0.01f).build();
+    ConcurrentThetaSketch sk = new ConcurrentThetaSketch(
+        UpdateSketch.builder().setNominalEntries(4096).setP(0.01f).build(), 16);
+    assertTrue(sk.isEmpty());
+    for (int i = 1; i <= 3; i++) {
+      ref.update(i);
+      sk.update(i);
+    }
+    sk.flush();
+    assertFalse(ref.isEmpty());
+    assertFalse(sk.isEmpty()); //even if every hash was over theta
+    assertEquals(sk.getRetainedEntries(), ref.getRetainedEntries(true));
+    assertEquals(sk.getEstimate(), ref.getEstimate());
+    assertFalse(sk.getResult().isEmpty());
+  }
+
+  @Test
+  public void checkSingleThreadEstimationMode() {
+    int n = 100000;
+    ConcurrentThetaSketch sk = new ConcurrentThetaSketch(1024);
+    for (int i = 0; i < n; i++) {
+      sk.update(i);
+    }
+    CompactSketch result = sk.getResult();
+    assertTrue(sk.isEstimationMode());
+    assertEquals(sk.getEstimate(), result.getEstimate());
+    checkRetainedHashes(result, n);
+    assertEquals(result.getEstimate(), n, n * 0.1);
+  }
+
+  @Test
+  public void checkConcurrentDirect() throws Exception {
+    final int lgK = 12;
+    final int numThreads = 8;
+    final int n = 200000;
+    int bytes = Sketch.getMaxUpdateSketchBytes(1 << lgK);
+    UpdateSketch shared = UpdateSketch.builder().setNominalEntries(1 << lgK)
+        .build(WritableMemory.allocate(bytes));
+    final ConcurrentThetaSketch sk = new ConcurrentThetaSketch(shared, 64);
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int start = t * (n / numThreads);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = start; i < (start + (n / numThreads)); i++) {
+            sk.update(i);
+            sk.update(i / 2); //duplicates, also across threads
+          }
+          sk.flush();
+        }
+      });
+    }
+    for (Thread thread : threads) { thread.start(); }
+    for (Thread thread : threads) { thread.join(); }
+    CompactSketch result = sk.getResult();
+    checkRetainedHashes(result, n);
+    assertEquals(result.getEstimate(), n, n * 0.05);
+    assertEquals(sk.getRetainedEntries(), result.getRetainedEntries());
+    assertTrue(sk.getLowerBound(2) <= sk.getEstimate());
+    assertTrue(sk.getUpperBound(2) >= sk.getEstimate());
+  }
+
+  //all the hashes of the distinct items 0 to n-1 that are less than theta must be retained
+  private static void checkRetainedHashes(CompactSketch result, int n) {
+    long thetaLong = result.getThetaLong();
+    int count = 0;
+    for (long i = 0; i < n; i++) {
+      long h = MurmurHash3.hash(new long[] {i}, DEFAULT_UPDATE_SEED)[0] >>> 1;
+      if (h < thetaLong) { count++; }
+    }
+    assertEquals(result.getRetainedEntries(), count);
+  }
+
+  @Test(timeOut = 10000)
+  public void checkFailedPropagation() {
+    WritableMemory mem = WritableMemory.allocate(Sketch.getMinUpdateSketchBytes());
+    mem.setMemoryRequest(new MemoryRequestServer() {
+      @Override
+      public WritableMemory request(final long capacityBytes) {
+        return null; //the shared sketch cannot grow
+      }
+
+      @Override
+      public void requestClose(final WritableMemory memToClose, final WritableMemory newMem) {}
+    });
+    UpdateSketch shared = UpdateSketch.builder().setNominalEntries(4096).build(mem);
+    ConcurrentThetaSketch sk = new ConcurrentThetaSketch(shared, 16);
+    for (int i = 0; i < 1000; i++) {
+      sk.update(i);
+    }
+    for (int j = 0; j < 2; j++) { //the failure is reported by every flush, none waits forever
+      try {
+        sk.flush();
+        fail();
+      } catch (SketchesStateException e) {
+        assertTrue(e.getCause() instanceof SketchesArgumentException);
+      }
+    }
+  }
+
+  @Test
+  public void checkUpdateTypes() {
+    ConcurrentThetaSketch sk = new ConcurrentThetaSketch(UpdateSketch.builder().build(), 1);
+    UpdateSketch ref = UpdateSketch.builder().build();
+    sk.update(1.5);
+    ref.update(1.5);
+    sk.update("abc");
+    ref.update("abc");
+    sk.update(new byte[] {1});
+    ref.update(new byte[] {1});
+    sk.update(new char[] {'a'});
+    ref.update(new char[] {'a'});
+    sk.update(new int[] {1});
+    ref.update(new int[] {1});
+    sk.update(new long[] {1});
+    ref.update(new long[] {1});
+    long[] h = MurmurHash3.hash(new long[] {2}, DEFAULT_UPDATE_SEED);
+    sk.updateHash(h);
+    sk.updateHash(h[0], h[1]);
+    ref.update(2L);
+    sk.update("");
+    sk.update((String) null);
+    sk.update(new byte[0]);
+    sk.update((char[]) null);
+    sk.update(new int[0]);
+    sk.update((long[]) null);
+    assertEquals(sk.getResult().toByteArray(), ref.compact().toByteArray());
+    assertEquals(sk.getTheta(), 1.0);
+    println(sk.toString());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNotQuickSelect() {
+    new ConcurrentThetaSketch(UpdateSketch.builder().setFamily(Family.ALPHA).build(), 16);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadBufferSize() {
+    new ConcurrentThetaSketch(UpdateSketch.builder().build(), 0);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.MemoryRequestServer;
+import com.yahoo.memory.WritableDirectHandle;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * The "MemoryManager" below is a proxy for the implementation that <i>owns</i> the memory
+ * allocations, thus is responsible for allocating larger Memory when requested and for freeing
+ * the old allocations.
+ */
+public class DirectThetaMemoryRequestTest {
+
+  @Test
+  public void checkMinBytes() {
+    assertEquals(Sketch.getMinUpdateSketchBytes(), (32 + 3) << 3);
+    assertEquals(SetOperation.getMinUnionBytes(), (32 + 4) << 3);
+  }
+
+  @Test
+  public void checkSketchGrowsThroughRequests() {
+    final int k = 4096;
+    final int u = 2 * k;
+    final MemoryManager mgr = new MemoryManager();
+    final WritableMemory mem1 = mgr.request(Sketch.getMinUpdateSketchBytes());
+    final UpdateSketch sk = Sketches.updateSketchBuilder().setNominalEntries(k).build(mem1);
+    final UpdateSketch heap = Sketches.updateSketchBuilder().setNominalEntries(k).build();
+    assertTrue(sk.isDirect());
+    assertEquals(sk.getLgArrLongs(), 5);
+
+    for (int i = 0; i < u; i++) {
+      sk.update(i);
+      heap.update(i);
+    }
+    println("requests: " + mgr.requests + ", closes: " + mgr.closes);
+    assertTrue(mgr.requests > 1);
+    assertEquals(mgr.closes, mgr.requests - 1); //all but the current Memory are closed
+    assertEquals(sk.getLgArrLongs(), 13);
+    assertFalse(sk.isSameResource(mem1));
+    assertTrue(sk.isSameResource(mgr.last));
+    assertEquals(sk.getEstimate(), heap.getEstimate(), 0.0);
+    assertEquals(sk.getRetainedEntries(true), heap.getRetainedEntries(true));
+
+    //the grown Memory can be wrapped again
+    final Sketch wrapped = Sketches.wrapSketch(mgr.last);
+    assertEquals(wrapped.getEstimate(), sk.getEstimate(), 0.0);
+  }
+
+  @Test
+  public void checkSmallSketchNeverRequests() {
+    final MemoryManager mgr = new MemoryManager();
+    final WritableMemory mem1 = mgr.request(Sketch.getMinUpdateSketchBytes());
+    final UpdateSketch sk = Sketches.updateSketchBuilder().setNominalEntries(4096).build(mem1);
+    for (int i = 0; i < 10; i++) { sk.update(i); }
+    assertEquals(mgr.requests, 1); //just mem1
+    assertEquals(sk.getEstimate(), 10.0, 0.0);
+  }
+
+  @Test
+  public void checkUnionGrowsThroughRequests() {
+    final int k = 1024;
+    final MemoryManager mgr = new MemoryManager();
+    final WritableMemory mem1 = mgr.request(SetOperation.getMinUnionBytes());
+    final Union union = Sketches.setOperationBuilder().setNominalEntries(k).buildUnion(mem1);
+
+    final UpdateSketch sk1 = Sketches.updateSketchBuilder().setNominalEntries(k).build();
+    final UpdateSketch sk2 = Sketches.updateSketchBuilder().setNominalEntries(k).build();
+    for (int i = 0; i < k; i++) {
+      sk1.update(i);
+      sk2.update(i + (k / 2));
+    }
+    union.update(sk1);
+    union.update(sk2);
+    assertTrue(mgr.requests > 1);
+    assertFalse(union.isSameResource(mem1));
+    assertTrue(union.isSameResource(mgr.last));
+
+    final Union heapUnion = Sketches.setOperationBuilder().setNominalEntries(k).buildUnion();
+    heapUnion.update(sk1);
+    heapUnion.update(sk2);
+    assertEquals(union.getResult().getEstimate(), heapUnion.getResult().getEstimate(), 0.0);
+
+    //the grown Memory can be wrapped again, with the union theta intact
+    final Union wrapped = Sketches.wrapUnion(mgr.last);
+    assertEquals(wrapped.getResult().getEstimate(), union.getResult().getEstimate(), 0.0);
+  }
+
+  @Test
+  public void checkDefaultMemoryRequestServer() {
+    final int k = 512;
+    try (WritableDirectHandle handle =
+        WritableMemory.allocateDirect(Sketch.getMinUpdateSketchBytes())) {
+      final WritableMemory mem1 = handle.get();
+      final UpdateSketch sk = Sketches.updateSketchBuilder().setNominalEntries(k).build(mem1);
+      for (int i = 0; i < k; i++) { sk.update(i); }
+      assertEquals(sk.getEstimate(), k, 0.0);
+      assertFalse(sk.isSameResource(mem1));
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkX1NeedsFullMemory() {
+    final WritableMemory mem = WritableMemory.allocate(Sketch.getMinUpdateSketchBytes());
+    Sketches.updateSketchBuilder().setNominalEntries(4096).setResizeFactor(ResizeFactor.X1)
+        .build(mem);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkRefusedRequest() {
+    final WritableMemory mem = WritableMemory.allocate(Sketch.getMinUpdateSketchBytes());
+    mem.setMemoryRequest(new MemoryRequestServer() {
+      @Override
+      public WritableMemory request(final long capacityBytes) {
+        return null;
+      }
+
+      @Override
+      public void requestClose(final WritableMemory memToClose, final WritableMemory newMem) {}
+    });
+    final UpdateSketch sk = Sketches.updateSketchBuilder().setNominalEntries(4096).build(mem);
+    for (int i = 0; i < 4096; i++) { sk.update(i); }
+  }
+
+  @Test
+  public void checkRefusedRequestHasNoEffect() {
+    final MemoryManager mgr = new MemoryManager();
+    final WritableMemory mem = mgr.request(Sketch.getMinUpdateSketchBytes());
+    final UpdateSketch sk = Sketches.updateSketchBuilder().setNominalEntries(4096).build(mem);
+    final UpdateSketch heap = Sketches.updateSketchBuilder().setNominalEntries(4096).build();
+    mgr.refuse = true;
+    int i = 0;
+    int retained = 0;
+    try {
+      for (; i < 4096; i++) {
+        retained = sk.getRetainedEntries(true);
+        sk.update(i);
+        heap.update(i);
+      }
+      fail();
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+    assertEquals(sk.getRetainedEntries(true), retained); //the failed update was undone
+    for (int j = 0; j < 3; j++) { //retries fail the same way and do not fill the table
+      try {
+        sk.update(i);
+        fail();
+      } catch (final SketchesArgumentException e) {
+        assertEquals(sk.getRetainedEntries(true), retained);
+      }
+    }
+    mgr.refuse = false; //the same item is counted once the sketch can grow
+    for (; i < 4096; i++) {
+      sk.update(i);
+      heap.update(i);
+    }
+    assertEquals(sk.getRetainedEntries(true), heap.getRetainedEntries(true));
+    assertEquals(sk.getEstimate(), heap.getEstimate(), 0.0);
+  }
+
+  static class MemoryManager implements MemoryRequestServer {
+    int requests = 0;
+    int closes = 0;
+    boolean refuse = false;
+    WritableMemory last = null;
+
+    @Override
+    public WritableMemory request(final long capacityBytes) {
+      if (refuse) { return null; }
+      requests++;
+      last = WritableMemory.allocate((int) capacityBytes);
+      last.setMemoryRequest(this);
+      return last;
+    }
+
+    @Override
+    public void requestClose(final WritableMemory memToClose, final WritableMemory newMem) {
+      assertTrue(newMem == last);
+      closes++;
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
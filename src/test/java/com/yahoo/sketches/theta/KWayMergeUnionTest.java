@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017, Yahoo! Inc. Licensed under the terms of the
+ * Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class KWayMergeUnionTest {
+
+  @Test
+  public void checkMatchesUnion() {
+    int k = 1024;
+    int numSketches = 50;
+    Union union = SetOperation.builder().setNominalEntries(k).buildUnion();
+    Memory[] images = new Memory[numSketches];
+    CompactSketch[] sketches = new CompactSketch[numSketches];
+    for (int s = 0; s < numSketches; s++) {
+      UpdateSketch usk = UpdateSketch.builder().setNominalEntries(k).build();
+      int n = (s % 3 == 0) ? 100 : 5000; //a mix of exact and estimation mode
+      for (int i = 0; i < n; i++) { usk.update((s * 2000) + i); } //overlapping
+      int bytes = usk.getCurrentBytes(true);
+      CompactSketch csk = (s % 2 == 0)
+          ? usk.compact(true, null) : usk.compact(true, WritableMemory.allocate(bytes));
+      union.update(csk);
+      sketches[s] = csk;
+      images[s] = (s % 5 == 0)
+          ? Memory.wrap(csk.toCompressedByteArray()) : Memory.wrap(csk.toByteArray());
+    }
+    byte[] expected = union.getResult().toByteArray();
+    CompactSketch result = KWayMergeUnion.union(images, k);
+    assertTrue(result.isOrdered());
+    assertTrue(result.isEstimationMode());
+    assertEquals(result.getRetainedEntries(true), k);
+    assertEquals(result.toByteArray(), expected);
+    assertEquals(KWayMergeUnion.union(sketches, k).toByteArray(), expected);
+  }
+
+  @Test
+  public void checkExactMode() {
+    UpdateSketch usk1 = UpdateSketch.builder().build();
+    UpdateSketch usk2 = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) {
+      usk1.update(i);
+      usk2.update(i + 50);
+    }
+    Memory[] images = { Memory.wrap(usk1.compact().toByteArray()), null,
+        Memory.wrap(usk2.compact().toByteArray()) };
+    CompactSketch result = KWayMergeUnion.union(images);
+    assertEquals(result.getEstimate(), 150.0);
+    assertEquals(result.isEmpty(), false);
+    assertEquals(result.isEstimationMode(), false);
+  }
+
+  @Test
+  public void checkEmptyAndNull() {
+    CompactSketch empty = UpdateSketch.builder().build().compact();
+    CompactSketch result = KWayMergeUnion.union(new Memory[] {
+        Memory.wrap(empty.toByteArray()), Memory.wrap(empty.toCompressedByteArray()) });
+    assertTrue(result.isEmpty());
+    assertEquals(result.getRetainedEntries(true), 0);
+    assertTrue(KWayMergeUnion.union(new Memory[0]).isEmpty());
+    assertNull(KWayMergeUnion.union(new CompactSketch[] {null}, 16));
+    assertTrue(KWayMergeUnion.union(new CompactSketch[] {empty, null}, 16).isEmpty());
+  }
+
+  @Test
+  public void checkThetaRule() {
+    UpdateSketch usk1 = UpdateSketch.builder().setP((float) 0.5).build();
+    UpdateSketch usk2 = UpdateSketch.builder().build();
+    for (int i = 0; i < 1000; i++) {
+      usk1.update(i);
+      usk2.update(i);
+    }
+    CompactSketch result = KWayMergeUnion.union(new CompactSketch[] {
+        usk1.compact(), usk2.compact() }, 4096);
+    assertEquals(result.getThetaLong(), usk1.getThetaLong());
+    assertEquals(result.getRetainedEntries(true), usk1.getRetainedEntries(true));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkUnorderedImage() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    KWayMergeUnion.union(new Memory[] { Memory.wrap(usk.compact(false, null).toByteArray()) });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkUnorderedSketch() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    KWayMergeUnion.union(new CompactSketch[] { usk.compact(false, null) }, 16);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkUpdateSketchImage() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    KWayMergeUnion.union(new Memory[] { Memory.wrap(usk.toByteArray()) });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedHash() {
+    UpdateSketch usk = UpdateSketch.builder().setSeed(123L).build();
+    usk.update(1);
+    KWayMergeUnion.union(new Memory[] { Memory.wrap(usk.compact().toByteArray()) });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkTruncatedImage() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    Memory mem = Memory.wrap(usk.compact().toByteArray());
+    KWayMergeUnion.union(new Memory[] { mem.region(0, mem.getCapacity() - 8) });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadK() {
+    KWayMergeUnion.union(new Memory[0], 0);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -20,6 +20,9 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.Memory;
@@ -148,6 +151,24 @@ public class SketchesTest {
     Sketches.getEstimate(srcMem);
   }
 
+  @Test
+  public void checkCollector() {
+    final CompactSketch sk = LongStream.range(0, 100000).boxed().parallel()
+        .collect(Sketches.collector(4096));
+    assertTrue(sk.isOrdered());
+    assertEquals(sk.getEstimate(), 100000, 100000 * 0.05);
+
+    final UpdateSketch expected = updateSketchBuilder().build();
+    expected.update(1L);
+    expected.update(2.0);
+    expected.update("a");
+    expected.update(new int[] {3});
+    final CompactSketch sk2 = Stream.<Object>of((short) 1, 2.0, "a", null, new int[] {3}, 1L)
+        .collect(Sketches.collector(4096));
+    assertEquals(sk2.getRetainedEntries(true), 4);
+    assertEquals(sk2.toByteArray(), expected.compact(true, null).toByteArray());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());